@@ -0,0 +1,139 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Entry point for the benchmark suite. Like JMH, each benchmark runs in freshly forked JVMs by default,
+ * so JIT profiles from one benchmark can't skew the next, and the forks' samples are merged.
+ *
+ * Usage: BenchmarkRunner [regex] [--warmup=N] [--iterations=N] [--time=MS] [--forks=N] [--list]
+ * --forks=0 runs everything in this JVM, which is quicker but less trustworthy.
+ */
+public final class BenchmarkRunner {
+    private static final String RESULT_PREFIX = "#RESULT ";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Harness.Options options = new Harness.Options();
+        Pattern filter = Pattern.compile(".*");
+        boolean list = false;
+        boolean child = false;
+        for (String arg : args) {
+            if (arg.startsWith("--warmup=")) {
+                options.warmupIterations = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--iterations=")) {
+                options.iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            } else if (arg.startsWith("--time=")) {
+                options.iterationMillis = Long.parseLong(arg.substring("--time=".length()));
+            } else if (arg.startsWith("--forks=")) {
+                options.forks = Integer.parseInt(arg.substring("--forks=".length()));
+            } else if (arg.equals("--list")) {
+                list = true;
+            } else if (arg.equals("--child")) {
+                child = true;
+            } else if (!arg.startsWith("--")) {
+                filter = Pattern.compile(arg);
+            } else {
+                System.err.println("Usage: BenchmarkRunner [regex] [--warmup=N] [--iterations=N] [--time=MS] [--forks=N] [--list]");
+                System.exit(2);
+            }
+        }
+
+        List<Harness.Benchmark> selected = new ArrayList<>();
+        for (Harness.Benchmark benchmark : HotPathBenchmarks.all()) {
+            if (filter.matcher(benchmark.getName()).find()) {
+                selected.add(benchmark);
+            }
+        }
+        if (list) {
+            selected.forEach(benchmark -> System.out.println(benchmark.getName()));
+            return;
+        }
+
+        if (child) {
+            // Forked by a parent for exactly one benchmark
+            try {
+                Harness.Result result = Harness.measure(selected.get(0), options);
+                System.out.println(RESULT_PREFIX + result.encode());
+            } finally {
+                HotPathBenchmarks.shutdown();
+            }
+            System.exit(0);
+        }
+
+        System.out.println("# JVM: " + System.getProperty("java.vm.name") + " " + System.getProperty("java.runtime.version"));
+        System.out.println("# Warmup: " + options.warmupIterations + " x " + options.iterationMillis + " ms, measurement: "
+                + options.iterations + " x " + options.iterationMillis + " ms, forks: " + options.forks);
+
+        List<Harness.Result> results = new ArrayList<>();
+        for (Harness.Benchmark benchmark : selected) {
+            System.out.println();
+            System.out.println("# Benchmark: " + benchmark.getName());
+            if (options.forks == 0) {
+                results.add(Harness.measure(benchmark, options));
+                continue;
+            }
+            Harness.Result merged = null;
+            for (int fork = 1; fork <= options.forks; fork++) {
+                System.out.println("# Fork " + fork + " of " + options.forks);
+                Harness.Result result = runFork(benchmark, options);
+                if (merged == null) {
+                    merged = result;
+                } else {
+                    merged.merge(result);
+                }
+            }
+            results.add(merged);
+        }
+        if (options.forks == 0) {
+            HotPathBenchmarks.shutdown();
+        }
+
+        System.out.println();
+        System.out.println(Harness.Result.header());
+        for (Harness.Result result : results) {
+            System.out.println(result);
+        }
+    }
+
+    // Same java binary, classpath and JVM flags as this process, filtered down to one benchmark
+    private static Harness.Result runFork(Harness.Benchmark benchmark, Harness.Options options) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(BenchmarkRunner.class.getName());
+        command.add("^" + Pattern.quote(benchmark.getName()) + "$");
+        command.add("--child");
+        command.add("--warmup=" + options.warmupIterations);
+        command.add("--iterations=" + options.iterations);
+        command.add("--time=" + options.iterationMillis);
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        Harness.Result result = null;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    result = Harness.Result.decode(line.substring(RESULT_PREFIX.length()));
+                } else {
+                    System.out.println(line);
+                }
+            }
+        }
+        int exit = process.waitFor();
+        if (result == null) {
+            throw new IllegalStateException("Fork for " + benchmark.getName() + " exited with " + exit + " and no result");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,507 @@
+package benchmarks;
+
+import common.DBLogger;
+import common.IdAllocator;
+import common.SchemaMigration;
+import librarian.FineCalculator;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fills a scratch MySQL schema with a production-sized dataset: members, books, libraryfacilities,
+ * borrowingrecords and logs. Rows are cut into fixed-size chunks, each generated from its own seed,
+ * so the same --seed and --today always produce the same rows whatever --threads is. Writers insert
+ * with multi-row INSERTs, one transaction per batch.
+ *
+ * Loans only reference members and books generated in the same run, and a book has at most one
+ * open loan (its Availability is 0 exactly when it does). Returned loans that came back late carry
+ * Overdue = 1 and the fine FineCalculator would have charged; open loans past due are mostly already
+ * accrued, with a share still waiting for the nightly fine job. Member and book activity is skewed,
+ * so a few members and titles account for a large share of the loans.
+ *
+ * New IDs start after the highest existing key in each table, so the generator appends rather than
+ * clobbering, and id_sequences is moved past the new rows afterwards.
+ *
+ * Usage: DataGenerator --url=JDBC_URL [--members=N] [--books=N] [--loans=N] [--facilities=N]
+ *                      [--logs=N] [--threads=N] [--batch=N] [--seed=N] [--today=YYYY-MM-DD]
+ */
+public final class DataGenerator {
+    // Rows per independently seeded unit of work
+    private static final int CHUNK_ROWS = 50_000;
+
+    private static final int LOAN_DAYS = 14;
+    private static final int HISTORY_DAYS = 3 * 365;
+    private static final int OPEN_LOAN_PERCENT = 4;
+
+    private static final String[] FIRST_NAMES = {
+            "James", "Mary", "Robert", "Patricia", "John", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+            "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Charles", "Karen",
+            "Aisha", "Wei", "Priya", "Mohammed", "Sofia", "Hiroshi", "Olga", "Kwame", "Lucia", "Arjun"};
+    private static final String[] LAST_NAMES = {
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+            "Hernandez", "Lopez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Jackson", "Martin", "Lee",
+            "Khan", "Chen", "Patel", "Okafor", "Rossi", "Tanaka", "Ivanova", "Mensah", "Silva", "Nguyen"};
+    private static final String[] TITLE_WORDS = {
+            "Silent", "River", "Garden", "Empire", "Shadow", "Light", "Winter", "Stone", "City", "Ocean",
+            "Secret", "History", "Journey", "Night", "Glass", "Fire", "Letters", "House", "Mountain", "Machine",
+            "Memory", "Island", "Storm", "Queen", "Road", "Forest", "Code", "Star", "Harvest", "Bridge"};
+    private static final String[] FACILITY_KINDS = {
+            "Study Room", "Reading Room", "Computer Lab", "Meeting Room", "Media Room", "Quiet Zone", "Archive Room"};
+    private static final String[] LOG_SOURCES = {
+            "BorrowingPlanFunctions", "ReturnBookUI", "FineCalculator", "FineAccrualJob", "MemberInfoViewer",
+            "BookInventoryUI", "FacilityMonitor", "AdminInterface"};
+
+    private final long seed;
+    private final LocalDate today;
+    private final int batchSize;
+    private final String url;
+
+    // First key of each generated range
+    private long memberBase;
+    private long bookBase;
+    private long loanBase;
+    private long facilityBase;
+    private int librarianId = 2;
+
+    private long members;
+    private long books;
+    private long loans;
+    private long facilities;
+    private long openLoans;
+    private Scramble bookForOpenLoan;
+    private Scramble memberActivity;
+    private Scramble bookPopularity;
+
+    private final AtomicLong rowsWritten = new AtomicLong();
+
+    DataGenerator(String url, long seed, LocalDate today, int batchSize) {
+        this.url = url;
+        this.seed = seed;
+        this.today = today;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * One table's rows: a fixed INSERT column list and the values for row index i (0-based within the run).
+     */
+    private abstract class Table {
+        private final String name;
+        private final String columns;
+        private final int columnCount;
+        private final long rows;
+
+        Table(String name, String columns, long rows) {
+            this.name = name;
+            this.columns = columns;
+            this.columnCount = columns.split(",").length;
+            this.rows = rows;
+        }
+
+        abstract void bind(PreparedStatement stmt, int offset, long index, Random random) throws SQLException;
+
+        String insertFor(int rowCount) {
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(name).append(" (").append(columns).append(") VALUES ");
+            String placeholders = "(" + "?,".repeat(columnCount - 1) + "?)";
+            for (int i = 0; i < rowCount; i++) {
+                sql.append(i == 0 ? "" : ",").append(placeholders);
+            }
+            return sql.toString();
+        }
+    }
+
+    private final class Members extends Table {
+        Members(long rows) {
+            super("members", "MemberID, Name, ContactInfo, MembershipType, RegistrationDate, MembershipExpiry, RoleID", rows);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int offset, long index, Random random) throws SQLException {
+            String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            long id = memberBase + index;
+            LocalDate registered = today.minusDays(random.nextInt(10 * 365));
+            // Renewed a random number of times; roughly one in five has lapsed
+            long yearsSince = registered.until(today).getYears();
+            LocalDate expiry = registered.plusYears(1 + (random.nextInt(5) == 0 ? random.nextInt((int) yearsSince + 1) : yearsSince));
+            stmt.setLong(offset, id);
+            stmt.setString(offset + 1, first + " " + last);
+            stmt.setString(offset + 2, (first + "." + last).toLowerCase(Locale.ROOT) + id + "@example.org");
+            stmt.setString(offset + 3, random.nextInt(5) == 0 ? "Premium" : "Regular");
+            stmt.setString(offset + 4, registered.toString());
+            stmt.setString(offset + 5, expiry.toString());
+            stmt.setInt(offset + 6, 3);
+        }
+    }
+
+    private final class Books extends Table {
+        Books(long rows) {
+            super("books", "BookID, Title, Author, Availability", rows);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int offset, long index, Random random) throws SQLException {
+            String title = "The " + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " of "
+                    + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " " + (1 + random.nextInt(999));
+            String author = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            stmt.setLong(offset, bookBase + index);
+            stmt.setString(offset + 1, title);
+            stmt.setString(offset + 2, author);
+            stmt.setInt(offset + 3, bookForOpenLoan.inverse(index) < openLoans ? 0 : 1);
+        }
+    }
+
+    private final class Facilities extends Table {
+        Facilities(long rows) {
+            super("libraryfacilities", "FacilityID, FacilityName, Status, LibrarianID", rows);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int offset, long index, Random random) throws SQLException {
+            stmt.setLong(offset, facilityBase + index);
+            stmt.setString(offset + 1, FACILITY_KINDS[random.nextInt(FACILITY_KINDS.length)] + " " + (facilityBase + index));
+            stmt.setString(offset + 2, random.nextInt(10) == 0 ? "Under Maintenance" : "Available");
+            stmt.setInt(offset + 3, librarianId);
+        }
+    }
+
+    private final class Loans extends Table {
+        Loans(long rows) {
+            super("borrowingrecords", "BorrowID, MemberID, BookID, BorrowDate, DueDate, ReturnDate, Overdue, FineAmount", rows);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int offset, long index, Random random) throws SQLException {
+            // Heavy borrowers and popular titles: skewed index, then scrambled so they aren't all low IDs
+            long member = memberActivity.apply((long) (members * Math.pow(random.nextDouble(), 3)));
+            LocalDate borrowed;
+            LocalDate returned = null;
+            long bookIndex;
+            boolean overdue;
+            double fine;
+
+            long open = index - (loans - openLoans);
+            if (open >= 0) {
+                // The newest BorrowIDs are the loans still out; each has a book of its own
+                bookIndex = bookForOpenLoan.apply(open);
+                int roll = random.nextInt(100);
+                int age = roll < 70 ? random.nextInt(LOAN_DAYS)
+                        : roll < 92 ? LOAN_DAYS + 1 + random.nextInt(30)
+                        : LOAN_DAYS + 31 + (int) exponential(random, 120);
+                borrowed = today.minusDays(age);
+                LocalDate due = borrowed.plusDays(LOAN_DAYS);
+                // Most overdue loans have been picked up by the nightly fine job already
+                overdue = today.isAfter(due) && random.nextInt(5) != 0;
+                fine = overdue ? FineCalculator.fineFor(due, today) : 0.0;
+            } else {
+                bookIndex = bookPopularity.apply((long) (books * Math.pow(random.nextDouble(), 2)));
+                long day = index * HISTORY_DAYS / Math.max(1, loans - openLoans);
+                borrowed = today.minusDays(HISTORY_DAYS + LOAN_DAYS).plusDays(day);
+                LocalDate due = borrowed.plusDays(LOAN_DAYS);
+                int roll = random.nextInt(100);
+                long kept = roll < 75 ? 1 + random.nextInt(LOAN_DAYS)
+                        : roll < 93 ? LOAN_DAYS + 1 + (long) exponential(random, 5)
+                        : LOAN_DAYS + 1 + (long) exponential(random, 40);
+                returned = borrowed.plusDays(kept);
+                if (returned.isAfter(today)) {
+                    returned = today;
+                }
+                overdue = returned.isAfter(due);
+                fine = FineCalculator.fineFor(due, returned);
+            }
+
+            stmt.setLong(offset, loanBase + index);
+            stmt.setLong(offset + 1, memberBase + member);
+            stmt.setLong(offset + 2, bookBase + bookIndex);
+            stmt.setString(offset + 3, borrowed.toString());
+            stmt.setString(offset + 4, borrowed.plusDays(LOAN_DAYS).toString());
+            stmt.setString(offset + 5, returned == null ? null : returned.toString());
+            stmt.setBoolean(offset + 6, overdue);
+            stmt.setDouble(offset + 7, fine);
+        }
+    }
+
+    private final class Logs extends Table {
+        private final long total;
+
+        Logs(long rows) {
+            super("logs", "Action, Timestamp, RecordID, Level, Source, Username", rows);
+            this.total = Math.max(1, rows);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int offset, long index, Random random) throws SQLException {
+            int roll = random.nextInt(100);
+            String level = roll < 94 ? "INFO" : roll < 99 ? "WARN" : "ERROR";
+            String source = LOG_SOURCES[random.nextInt(LOG_SOURCES.length)];
+            String username = "librarian" + (1 + random.nextInt(25));
+            long record = loans == 0 ? 0 : loanBase + (long) (random.nextDouble() * loans);
+            String message = level.equals("INFO") ? "Processed BorrowID " + record
+                    : level.equals("WARN") ? "Retrying BorrowID " + record
+                    : "Failed to update BorrowID " + record;
+            // Spread evenly over the loan history, in insertion order
+            long millis = today.minusDays(HISTORY_DAYS).atStartOfDay().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    + index * (HISTORY_DAYS * 86_400_000L / total) + random.nextInt(60_000);
+            stmt.setString(offset, DBLogger.format(level, source, message, username));
+            stmt.setTimestamp(offset + 1, new Timestamp(millis));
+            if (loans == 0) {
+                stmt.setNull(offset + 2, Types.INTEGER);
+            } else {
+                stmt.setLong(offset + 2, record);
+            }
+            stmt.setString(offset + 3, level);
+            stmt.setString(offset + 4, source);
+            stmt.setString(offset + 5, username);
+        }
+    }
+
+    /**
+     * Bijection on [0, n): i * multiplier + shift mod n, with the multiplier coprime to n. Lets every open
+     * loan get a distinct book, and the book writer tell from its own index whether the book is out.
+     */
+    private static final class Scramble {
+        private final long n;
+        private final long multiplier;
+        private final long inverse;
+        private final long shift;
+
+        Scramble(long n, long salt) {
+            this.n = Math.max(1, n);
+            long m = (long) (this.n * 0.6180339887) | 1;
+            while (BigInteger.valueOf(m).gcd(BigInteger.valueOf(this.n)).longValue() != 1) {
+                m += 2;
+            }
+            this.multiplier = m % this.n;
+            this.inverse = this.n == 1 ? 0 : BigInteger.valueOf(multiplier).modInverse(BigInteger.valueOf(this.n)).longValue();
+            this.shift = Math.floorMod(salt, this.n);
+        }
+
+        // Products stay below n^2, which fits a long for any table this tool will write
+        long apply(long i) {
+            return Math.floorMod(Math.multiplyExact(i, multiplier) + shift, n);
+        }
+
+        long inverse(long value) {
+            return Math.floorMod(Math.multiplyExact(Math.floorMod(value - shift, n), inverse), n);
+        }
+    }
+
+    private static double exponential(Random random, double mean) {
+        return -mean * Math.log(1 - random.nextDouble());
+    }
+
+    private Connection connect() throws SQLException {
+        Connection con = DriverManager.getConnection(url, "root", "");
+        con.setAutoCommit(false);
+        try (Statement stmt = con.createStatement()) {
+            // Keys are valid by construction; skipping the per-row checks roughly halves load time
+            stmt.execute("SET SESSION foreign_key_checks = 0, unique_checks = 0");
+        }
+        return con;
+    }
+
+    private void prepare(long memberCount, long bookCount, long loanCount, long facilityCount) throws SQLException {
+        members = memberCount;
+        facilities = facilityCount;
+        books = bookCount;
+        loans = loanCount;
+        openLoans = Math.min(loans * OPEN_LOAN_PERCENT / 100, books / 2);
+        bookForOpenLoan = new Scramble(books, seed);
+        memberActivity = new Scramble(members, seed * 7 + 1);
+        bookPopularity = new Scramble(books, seed * 13 + 2);
+        if (loans > 0 && (members == 0 || books == 0)) {
+            throw new IllegalArgumentException("Loans need at least one generated member and book");
+        }
+
+        try (Connection con = DriverManager.getConnection(url, "root", "")) {
+            // The logs rows need the structured columns, and the dataset should look like a migrated production schema
+            SchemaMigration.migrate(con);
+            memberBase = maxKey(con, "members", "MemberID") + 1;
+            bookBase = maxKey(con, "books", "BookID") + 1;
+            loanBase = maxKey(con, "borrowingrecords", "BorrowID") + 1;
+            facilityBase = maxKey(con, "libraryfacilities", "FacilityID") + 1;
+            try (Statement stmt = con.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT MIN(LibrarianID) FROM librarians")) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    librarianId = rs.getInt(1);
+                }
+            } catch (SQLException e) {
+                System.out.println("# No librarians table, facilities get LibrarianID " + librarianId);
+            }
+        }
+    }
+
+    private static long maxKey(Connection con, String table, String column) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(" + column + "), 0) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    // Writes rows [first, first + count) of one table on one connection
+    private void writeChunk(Table table, long chunk) throws SQLException {
+        long first = chunk * CHUNK_ROWS;
+        long count = Math.min(CHUNK_ROWS, table.rows - first);
+        Random random = new Random(seed * 1_000_003L + table.name.hashCode() * 65_537L + chunk);
+        try (Connection con = connect();
+             PreparedStatement full = con.prepareStatement(table.insertFor(batchSize))) {
+            long index = first;
+            long end = first + count;
+            while (index < end) {
+                int rowsInBatch = (int) Math.min(batchSize, end - index);
+                PreparedStatement stmt = rowsInBatch == batchSize ? full : con.prepareStatement(table.insertFor(rowsInBatch));
+                try {
+                    for (int row = 0; row < rowsInBatch; row++) {
+                        table.bind(stmt, 1 + row * table.columnCount, index + row, random);
+                    }
+                    stmt.executeUpdate();
+                    con.commit();
+                } finally {
+                    if (stmt != full) {
+                        stmt.close();
+                    }
+                }
+                index += rowsInBatch;
+                rowsWritten.addAndGet(rowsInBatch);
+            }
+        }
+    }
+
+    private void writeAll(ExecutorService writers, List<Table> tables) throws Exception {
+        List<Future<?>> pending = new ArrayList<>();
+        for (Table table : tables) {
+            for (long chunk = 0; chunk * CHUNK_ROWS < table.rows; chunk++) {
+                long c = chunk;
+                pending.add(writers.submit(() -> {
+                    writeChunk(table, c);
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> future : pending) {
+            future.get();
+        }
+    }
+
+    // Moves each allocator sequence past the rows just written, if the table exists yet
+    private void advanceSequences() throws SQLException {
+        String query = "UPDATE id_sequences SET NextValue = GREATEST(NextValue, ?) WHERE Name = ?";
+        try (Connection con = DriverManager.getConnection(url, "root", "");
+             PreparedStatement stmt = con.prepareStatement(query)) {
+            Object[][] next = {
+                    {IdAllocator.Sequence.MEMBER, memberBase + members},
+                    {IdAllocator.Sequence.BOOK, bookBase + books},
+                    {IdAllocator.Sequence.BORROW, loanBase + loans},
+                    {IdAllocator.Sequence.FACILITY, facilityBase + facilities},
+            };
+            for (Object[] sequence : next) {
+                stmt.setLong(1, (Long) sequence[1]);
+                stmt.setString(2, ((IdAllocator.Sequence) sequence[0]).name());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } catch (SQLException e) {
+            // 1146: no id_sequences table, so the allocator will seed from MAX() on first use
+            if (e.getErrorCode() != 1146) {
+                throw e;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        long memberCount = 200_000;
+        long bookCount = 500_000;
+        long loanCount = 10_000_000;
+        long facilityCount = 200;
+        long logCount = 2_000_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int batch = 1_000;
+        long seed = 42;
+        LocalDate today = LocalDate.now();
+        for (String arg : args) {
+            if (arg.startsWith("--url=")) {
+                url = arg.substring("--url=".length());
+            } else if (arg.startsWith("--members=")) {
+                memberCount = Long.parseLong(arg.substring("--members=".length()));
+            } else if (arg.startsWith("--books=")) {
+                bookCount = Long.parseLong(arg.substring("--books=".length()));
+            } else if (arg.startsWith("--loans=")) {
+                loanCount = Long.parseLong(arg.substring("--loans=".length()));
+            } else if (arg.startsWith("--facilities=")) {
+                facilityCount = Long.parseLong(arg.substring("--facilities=".length()));
+            } else if (arg.startsWith("--logs=")) {
+                logCount = Long.parseLong(arg.substring("--logs=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--batch=")) {
+                batch = Integer.parseInt(arg.substring("--batch=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.startsWith("--today=")) {
+                today = LocalDate.parse(arg.substring("--today=".length()));
+            } else {
+                url = null;
+                break;
+            }
+        }
+        if (url == null) {
+            System.err.println("Usage: DataGenerator --url=JDBC_URL [--members=N] [--books=N] [--loans=N] [--facilities=N] "
+                    + "[--logs=N] [--threads=N] [--batch=N] [--seed=N] [--today=YYYY-MM-DD]");
+            System.exit(2);
+        }
+
+        DataGenerator generator = new DataGenerator(url, seed, today, batch);
+        generator.prepare(memberCount, bookCount, loanCount, facilityCount);
+        System.out.println("# Database: " + url + ", seed " + seed + ", today " + today + ", " + threads + " writers");
+        System.out.printf(Locale.ROOT, "# %d members, %d books, %d loans (%d open), %d facilities, %d log rows%n",
+                memberCount, bookCount, loanCount, generator.openLoans, facilityCount, logCount);
+
+        ExecutorService writers = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        Thread progress = Thread.ofPlatform().daemon().start(() -> {
+            try {
+                while (true) {
+                    TimeUnit.SECONDS.sleep(5);
+                    long rows = generator.rowsWritten.get();
+                    System.out.printf(Locale.ROOT, "%,d rows, %,.0f rows/s%n", rows, rows / ((System.nanoTime() - start) / 1e9));
+                }
+            } catch (InterruptedException e) {
+                // Done
+            }
+        });
+        try {
+            // Parents first, so a reader never sees a loan before its member and book
+            generator.writeAll(writers, List.of(generator.new Members(memberCount), generator.new Books(bookCount),
+                    generator.new Facilities(facilityCount)));
+            generator.writeAll(writers, List.of(generator.new Loans(loanCount), generator.new Logs(logCount)));
+            generator.advanceSequences();
+        } finally {
+            writers.shutdownNow();
+            progress.interrupt();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long rows = generator.rowsWritten.get();
+        System.out.printf(Locale.ROOT, "Wrote %,d rows in %.1f s (%,.0f rows/s)%n", rows, seconds, rows / seconds);
+    }
+}
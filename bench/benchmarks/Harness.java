@@ -0,0 +1,227 @@
+package benchmarks;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Small JMH-style measurement loop: warmup iterations, then timed iterations of a fixed length,
+ * each reporting throughput. Allocation is read from the measuring thread's allocated-bytes counter
+ * (the number JMH's GC profiler reports as gc.alloc.rate.norm) and GC counts from the collector beans.
+ * Results from several forked JVMs are merged by BenchmarkRunner.
+ */
+public final class Harness {
+
+    // One benchmark invocation; the return value is kept alive so the JIT can't drop the work
+    @FunctionalInterface
+    public interface Op {
+        Object run() throws Exception;
+
+        // Runs outside the timed window after every iteration, e.g. to clear rows the op piled up
+        default void afterIteration() throws Exception {
+        }
+    }
+
+    @FunctionalInterface
+    public interface Setup {
+        Op create() throws Exception;
+    }
+
+    public static final class Benchmark {
+        private final String name;
+        private final Setup setup;
+
+        public Benchmark(String name, Setup setup) {
+            this.name = name;
+            this.setup = setup;
+        }
+
+        public String getName() { return name; }
+    }
+
+    public static final class Options {
+        int warmupIterations = 5;
+        int iterations = 5;
+        long iterationMillis = 1000;
+        int forks = 1;
+    }
+
+    public static final class Result {
+        private final String name;
+        private final List<Double> opsPerSecond = new ArrayList<>();
+        private long operations;
+        private long allocatedBytes;
+        private long elapsedNanos;
+        private long gcCount;
+        private long gcMillis;
+
+        Result(String name) {
+            this.name = name;
+        }
+
+        public double getMeanOpsPerSecond() {
+            double sum = 0;
+            for (double sample : opsPerSecond) {
+                sum += sample;
+            }
+            return opsPerSecond.isEmpty() ? 0 : sum / opsPerSecond.size();
+        }
+
+        public double getStdDevOpsPerSecond() {
+            if (opsPerSecond.size() < 2) {
+                return 0;
+            }
+            double mean = getMeanOpsPerSecond();
+            double squares = 0;
+            for (double sample : opsPerSecond) {
+                squares += (sample - mean) * (sample - mean);
+            }
+            return Math.sqrt(squares / (opsPerSecond.size() - 1));
+        }
+
+        public double getBytesPerOp() {
+            return operations == 0 ? 0 : (double) allocatedBytes / operations;
+        }
+
+        public double getAllocMegabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : allocatedBytes / 1_048_576.0 / (elapsedNanos / 1e9);
+        }
+
+        void merge(Result other) {
+            opsPerSecond.addAll(other.opsPerSecond);
+            operations += other.operations;
+            allocatedBytes += other.allocatedBytes;
+            elapsedNanos += other.elapsedNanos;
+            gcCount += other.gcCount;
+            gcMillis += other.gcMillis;
+        }
+
+        // One line a forked child prints for its parent
+        String encode() {
+            StringBuilder samples = new StringBuilder();
+            for (double sample : opsPerSecond) {
+                samples.append(samples.length() == 0 ? "" : ",").append(sample);
+            }
+            return String.join("|", name, Long.toString(operations), Long.toString(allocatedBytes),
+                    Long.toString(elapsedNanos), Long.toString(gcCount), Long.toString(gcMillis), samples);
+        }
+
+        static Result decode(String line) {
+            String[] parts = line.split("\\|", -1);
+            Result result = new Result(parts[0]);
+            result.operations = Long.parseLong(parts[1]);
+            result.allocatedBytes = Long.parseLong(parts[2]);
+            result.elapsedNanos = Long.parseLong(parts[3]);
+            result.gcCount = Long.parseLong(parts[4]);
+            result.gcMillis = Long.parseLong(parts[5]);
+            if (!parts[6].isEmpty()) {
+                for (String sample : parts[6].split(",")) {
+                    result.opsPerSecond.add(Double.parseDouble(sample));
+                }
+            }
+            return result;
+        }
+
+        static String header() {
+            return String.format(Locale.ROOT, "%-40s %5s %14s %12s %12s %12s %8s %8s",
+                    "Benchmark", "Cnt", "ops/s", "(sd)", "B/op", "MB/s alloc", "gc.count", "gc.ms");
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-40s %5d %14.1f %12.1f %12.1f %12.1f %8d %8d",
+                    name, opsPerSecond.size(), getMeanOpsPerSecond(), getStdDevOpsPerSecond(),
+                    getBytesPerOp(), getAllocMegabytesPerSecond(), gcCount, gcMillis);
+        }
+    }
+
+    private static final int BATCH = 16;
+
+    // Written on every op so the JIT has to keep results; never read
+    static Object sink;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Harness() {
+    }
+
+    /**
+     * Sets the benchmark up and runs it in this JVM.
+     */
+    static Result measure(Benchmark benchmark, Options options) throws Exception {
+        Op op = benchmark.setup.create();
+        for (int i = 1; i <= options.warmupIterations; i++) {
+            Iteration warmup = iterate(op, options.iterationMillis);
+            System.out.printf(Locale.ROOT, "# Warmup %d: %.1f ops/s%n", i, warmup.opsPerSecond());
+        }
+
+        Result result = new Result(benchmark.name);
+        for (int i = 1; i <= options.iterations; i++) {
+            long gcCountBefore = gcCount();
+            long gcMillisBefore = gcMillis();
+            Iteration iteration = iterate(op, options.iterationMillis);
+            result.opsPerSecond.add(iteration.opsPerSecond());
+            result.operations += iteration.operations;
+            result.allocatedBytes += iteration.allocatedBytes;
+            result.elapsedNanos += iteration.elapsedNanos;
+            result.gcCount += gcCount() - gcCountBefore;
+            result.gcMillis += gcMillis() - gcMillisBefore;
+            System.out.printf(Locale.ROOT, "Iteration %d: %.1f ops/s, %.1f B/op%n", i, iteration.opsPerSecond(),
+                    iteration.operations == 0 ? 0.0 : (double) iteration.allocatedBytes / iteration.operations);
+        }
+        return result;
+    }
+
+    private static Iteration iterate(Op op, long millis) throws Exception {
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long deadline = start + millis * 1_000_000L;
+        long operations = 0;
+        long now;
+        // The clock is read once per batch so it doesn't dominate nanosecond-scale ops
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                sink = op.run();
+            }
+            operations += BATCH;
+        } while ((now = System.nanoTime()) < deadline);
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        op.afterIteration();
+        return new Iteration(operations, now - start, allocated);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static final class Iteration {
+        private final long operations;
+        private final long elapsedNanos;
+        private final long allocatedBytes;
+
+        private Iteration(long operations, long elapsedNanos, long allocatedBytes) {
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        private double opsPerSecond() {
+            return operations / (elapsedNanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package benchmarks;
+
+import common.AsyncLogWriter;
+import common.CheckoutEngine;
+import common.ConnectionPool;
+import common.DBLogger;
+import common.DBUtils;
+import common.hashing;
+import librarian.FineCalculator;
+import librarian.RegisterLibraryMemberFunctions;
+import librarian.ReturnBookUI;
+
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmarks for the security and circulation hot paths. Inputs come from fixed seeds, so two runs
+ * on the same JVM and hardware measure exactly the same work. The circulation benchmarks run the
+ * real CheckoutEngine and return path over the pool against the in-memory stand-in database,
+ * which isolates the Java side (pool, statement cache, ID allocator, availability index, logging)
+ * from MySQL round trips.
+ */
+public final class HotPathBenchmarks {
+    private static final long SEED = 42;
+    private static final String USER = "benchmark";
+    private static final int MEMBERS = 1_000;
+    private static final int BOOKS = 1_000;
+
+    private static StandInDatabase database;
+
+    private HotPathBenchmarks() {
+    }
+
+    public static List<Harness.Benchmark> all() {
+        List<Harness.Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new Harness.Benchmark("hashing.generateHash", HotPathBenchmarks::generateHash));
+        benchmarks.add(new Harness.Benchmark("hashing.generateHashWithSalt", HotPathBenchmarks::generateHashWithSalt));
+        benchmarks.add(new Harness.Benchmark("fines.fineFor", HotPathBenchmarks::fineFor));
+        benchmarks.add(new Harness.Benchmark("registration.validateInputs", HotPathBenchmarks::validateInputs));
+        benchmarks.add(new Harness.Benchmark("logging.format", HotPathBenchmarks::formatLogMessage));
+        benchmarks.add(new Harness.Benchmark("logging.logAsync", HotPathBenchmarks::logAsync));
+        benchmarks.add(new Harness.Benchmark("circulation.checkoutAndReturn", HotPathBenchmarks::checkoutAndReturn));
+        benchmarks.add(new Harness.Benchmark("circulation.checkoutUnavailable", HotPathBenchmarks::checkoutUnavailable));
+        return benchmarks;
+    }
+
+    private static Harness.Op generateHash() {
+        String[] passwords = passwords(256);
+        String salt = "0123456789ABCDEF0123456789ABCDEF01234567";
+        int[] next = {0};
+        return () -> new hashing(passwords[next[0]++ & 255], salt).generateHash();
+    }
+
+    private static Harness.Op generateHashWithSalt() {
+        String[] passwords = passwords(256);
+        String salt = "0123456789ABCDEF0123456789ABCDEF01234567";
+        hashing hasher = new hashing("", salt);
+        int[] next = {0};
+        return () -> hasher.generateHashWithSalt(passwords[next[0]++ & 255], salt);
+    }
+
+    private static Harness.Op fineFor() {
+        // Mostly on time, some a few days late, a tail months late
+        Random random = new Random(SEED);
+        LocalDate today = LocalDate.of(2025, 6, 1);
+        LocalDate[] dueDates = new LocalDate[1024];
+        for (int i = 0; i < dueDates.length; i++) {
+            int lateDays = random.nextInt(10) < 7 ? -random.nextInt(14) : (int) (random.nextGaussian() * 30 + 20);
+            dueDates[i] = today.minusDays(lateDays);
+        }
+        int[] next = {0};
+        return () -> FineCalculator.fineFor(dueDates[next[0]++ & 1023], today);
+    }
+
+    private static Harness.Op validateInputs() throws Exception {
+        ensureDatabase();
+        RegisterLibraryMemberFunctions functions = new RegisterLibraryMemberFunctions(DBUtils.getPool(), USER);
+        String[][] inputs = {
+                {"Ada Lovelace", "ada@example.org", "Standard"},
+                {"Alan Turing", "alan.turing@cs.example.ac.uk", "Premium"},
+                {"Grace Hopper", "not-an-email", "Standard"},
+                {"Edsger Dijkstra", "edsger@example", "Student"},
+        };
+        int[] next = {0};
+        return () -> {
+            String[] input = inputs[next[0]++ & 3];
+            return functions.validateInputs(input[0], input[1], input[2]);
+        };
+    }
+
+    private static Harness.Op formatLogMessage() {
+        int[] next = {0};
+        return () -> DBLogger.format("INFO", "BorrowingPlanFunctions",
+                "Recorded borrowing for MemberID " + (next[0]++ & 1023) + " and BookID 17", USER);
+    }
+
+    private static Harness.Op logAsync() throws Exception {
+        ensureDatabase();
+        int[] next = {0};
+        return () -> {
+            DBLogger.log("INFO", "HotPathBenchmarks", "Benchmark message " + (next[0]++ & 1023), USER);
+            return null;
+        };
+    }
+
+    // One loan cycle: atomic checkout, then the return path on a leased connection
+    private static Harness.Op checkoutAndReturn() throws Exception {
+        ensureDatabase();
+        CheckoutEngine engine = DBUtils.getCheckoutEngine();
+        ConnectionPool pool = DBUtils.getPool();
+        Random random = new Random(SEED);
+        LocalDate dueDate = LocalDate.now().plusDays(14);
+        return new Harness.Op() {
+            @Override
+            public Object run() throws Exception {
+                CheckoutEngine.Result result = engine.checkout(1 + random.nextInt(MEMBERS), 1 + random.nextInt(BOOKS), dueDate);
+                if (!result.isSuccess()) {
+                    throw new IllegalStateException("Checkout failed: " + result.getOutcome());
+                }
+                try (Connection con = pool.getConnection()) {
+                    return ReturnBookUI.processReturn(con, result.getBorrowId(), USER);
+                }
+            }
+
+            @Override
+            public void afterIteration() {
+                database.clearReturnedLoans();
+            }
+        };
+    }
+
+    // The conflict path: the claim UPDATE finds the book already out and rolls back
+    private static Harness.Op checkoutUnavailable() throws Exception {
+        ensureDatabase();
+        CheckoutEngine engine = DBUtils.getCheckoutEngine();
+        LocalDate dueDate = LocalDate.now().plusDays(14);
+        CheckoutEngine.Result held = engine.checkout(1, BOOKS, dueDate);
+        if (!held.isSuccess()) {
+            throw new IllegalStateException("Could not take book " + BOOKS + " out: " + held.getOutcome());
+        }
+        return () -> engine.checkout(2, BOOKS, dueDate);
+    }
+
+    // Points DBUtils and DBLogger at a seeded stand-in database; async logging as in production
+    private static synchronized void ensureDatabase() throws Exception {
+        if (database != null) {
+            return;
+        }
+        StandInDriver.register();
+        database = StandInDriver.database("benchmarks");
+        Random random = new Random(SEED);
+        for (int i = 1; i <= MEMBERS; i++) {
+            database.addMember(i, "Member " + i);
+        }
+        for (int i = 1; i <= BOOKS; i++) {
+            database.addBook(i, "Title " + random.nextInt(1_000_000), "Author " + random.nextInt(5_000));
+        }
+        DBUtils.useDatabase(StandInDriver.PREFIX + "benchmarks");
+        DBLogger.setConnectionPool(DBUtils.getPool());
+        DBLogger.enableAsync(DBUtils.LOG_BUFFER_CAPACITY, DBUtils.LOG_BATCH_SIZE, DBUtils.LOG_FLUSH_INTERVAL_MS,
+                AsyncLogWriter.Backpressure.DROP, DBUtils.LOG_MAX_BLOCK_MS, DBUtils.LOG_SAMPLE_RATE);
+        DBUtils.getAvailabilityIndex().reload();
+        DBUtils.getFineBalances();
+    }
+
+    static void shutdown() {
+        if (database != null) {
+            DBLogger.shutdown(1_000);
+            DBUtils.shutdownPool();
+        }
+    }
+
+    private static String[] passwords(int count) {
+        Random random = new Random(SEED);
+        String[] passwords = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder password = new StringBuilder();
+            int length = 12 + random.nextInt(8);
+            for (int c = 0; c < length; c++) {
+                password.append((char) ('!' + random.nextInt(94)));
+            }
+            passwords[i] = password.toString();
+        }
+        return passwords;
+    }
+}
@@ -0,0 +1,189 @@
+package benchmarks;
+
+import common.AsyncLogWriter;
+import common.ConnectionPool;
+import common.LogRingBuffer;
+
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless check of the async logging path. First several producer threads push numbered entries
+ * through one LogRingBuffer while a single consumer drains it: every entry must arrive exactly once,
+ * in order per producer. Then an AsyncLogWriter in each backpressure mode writes to a stand-in
+ * database whose only connection is held, as during an outage, and the buffer is overfilled.
+ * DROP and SAMPLE must never make the caller wait; BLOCK must give up after maxBlockMillis and then
+ * drop straight away until the writer gets a batch through. Once the connection is released,
+ * everything that was accepted must be written.
+ *
+ * Usage: LogBufferCheck [--producers=N] [--entries=N]
+ * Exits with status 1 if any check fails.
+ */
+public final class LogBufferCheck {
+    private static final int CAPACITY = 64;
+    private static final int BATCH_SIZE = 16;
+    private static final long MAX_BLOCK_MS = 100;
+    private static final int SAMPLE_RATE = 4;
+    // Well past anything the stand-in does; a log call slower than this counts as having waited
+    private static final long FAST_CALL_MS = 20;
+
+    private static int failures;
+
+    private LogBufferCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int producers = 8;
+        int entries = 100_000;
+        for (String arg : args) {
+            if (arg.startsWith("--producers=")) {
+                producers = Integer.parseInt(arg.substring("--producers=".length()));
+            } else if (arg.startsWith("--entries=")) {
+                entries = Integer.parseInt(arg.substring("--entries=".length()));
+            } else {
+                System.err.println("Usage: LogBufferCheck [--producers=N] [--entries=N]");
+                System.exit(2);
+            }
+        }
+
+        checkRingBuffer(producers, entries);
+        checkRingBufferFull();
+        StandInDriver.register();
+        for (AsyncLogWriter.Backpressure mode : AsyncLogWriter.Backpressure.values()) {
+            checkOverflow(mode);
+        }
+
+        System.out.println(failures == 0 ? "All checks passed" : failures + " check(s) failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    // producers x entries values through one buffer; the consumer checks each producer's sequence
+    private static void checkRingBuffer(int producers, int entries) throws InterruptedException {
+        LogRingBuffer<Long> buffer = new LogRingBuffer<>(1024);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long base = (long) p * entries;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < entries; i++) {
+                    Long value = base + i;
+                    while (!buffer.offer(value)) {
+                        Thread.yield();
+                    }
+                }
+            }, "producer-" + p);
+            threads.add(producer);
+        }
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+
+        long[] next = new long[producers];
+        long received = 0;
+        long outOfOrder = 0;
+        long total = (long) producers * entries;
+        long deadline = start + TimeUnit.SECONDS.toNanos(60);
+        while (received < total && System.nanoTime() < deadline) {
+            Long value = buffer.poll();
+            if (value == null) {
+                Thread.yield();
+                continue;
+            }
+            int producer = (int) (value / entries);
+            // A repeat, a gap or a reordering all show up as an unexpected value here
+            if (value % entries != next[producer]) {
+                outOfOrder++;
+            }
+            next[producer] = value % entries + 1;
+            received++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        check("ring buffer: " + producers + " producers x " + entries + " entries arrive exactly once, in order ("
+                + received + " in " + millis + " ms)", received == total && outOfOrder == 0 && buffer.poll() == null);
+    }
+
+    private static void checkRingBufferFull() {
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(CAPACITY);
+        boolean accepted = true;
+        for (int i = 0; i < CAPACITY; i++) {
+            accepted &= buffer.offer(i);
+        }
+        boolean refusedWhenFull = !buffer.offer(CAPACITY);
+        Integer oldest = buffer.poll();
+        boolean acceptedAfterPoll = buffer.offer(CAPACITY);
+        check("ring buffer: full at capacity, oldest out first, room again after a poll",
+                accepted && refusedWhenFull && Integer.valueOf(0).equals(oldest) && acceptedAfterPoll
+                        && buffer.size() == CAPACITY);
+    }
+
+    // Overfills a writer whose database is unreachable, then lets it drain
+    private static void checkOverflow(AsyncLogWriter.Backpressure mode) throws Exception {
+        String name = "logcheck-" + mode.name().toLowerCase();
+        StandInDatabase database = StandInDriver.database(name);
+        ConnectionPool pool = new ConnectionPool(StandInDriver.PREFIX + name, "root", "", 1, 0,
+                10_000, 60_000, 60_000, 16);
+        AsyncLogWriter writer = new AsyncLogWriter(pool, CAPACITY, BATCH_SIZE, 10, mode, MAX_BLOCK_MS, SAMPLE_RATE);
+        try {
+            Connection held = pool.getConnection();
+            int calls = CAPACITY * 4;
+            int accepted = 0;
+            int slowCalls = 0;
+            long firstSlowMillis = -1;
+            for (int i = 0; i < calls; i++) {
+                // Every tenth entry is an error, which SAMPLE keeps until the buffer is full
+                String level = i % 10 == 0 ? "ERROR" : "INFO";
+                long start = System.nanoTime();
+                if (writer.enqueue(level, "LogBufferCheck", "check", "entry " + i, new Timestamp(System.currentTimeMillis()), i)) {
+                    accepted++;
+                }
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if (millis >= FAST_CALL_MS) {
+                    slowCalls++;
+                    if (firstSlowMillis < 0) {
+                        firstSlowMillis = millis;
+                    }
+                }
+            }
+            long refused = writer.getDroppedCount() + writer.getSampledOutCount();
+            check(mode + ": every call either accepted or counted as dropped/sampled out ("
+                    + accepted + " accepted, " + writer.getDroppedCount() + " dropped, "
+                    + writer.getSampledOutCount() + " sampled out)", accepted + refused == calls && refused > 0);
+
+            switch (mode) {
+                case BLOCK:
+                    check(mode + ": one call waits about maxBlockMillis (" + firstSlowMillis + " ms), the rest drop at once",
+                            slowCalls == 1 && firstSlowMillis >= MAX_BLOCK_MS - 10 && firstSlowMillis < MAX_BLOCK_MS * 5
+                                    && writer.isStalled());
+                    break;
+                case SAMPLE:
+                    check(mode + ": never waits and samples out INFO entries past half full",
+                            slowCalls == 0 && writer.getSampledOutCount() > 0);
+                    break;
+                default:
+                    check(mode + ": never waits", slowCalls == 0);
+                    break;
+            }
+
+            held.close();
+            boolean drained = writer.flush(5_000);
+            check(mode + ": after the outage every accepted entry is written once (" + database.getLogRowCount() + " rows)",
+                    drained && writer.getWrittenCount() == accepted && database.getLogRowCount() == accepted
+                            && writer.getFailedCount() == 0 && !writer.isStalled());
+        } finally {
+            writer.shutdown(1_000);
+            pool.shutdown();
+        }
+    }
+
+    private static void check(String description, boolean passed) {
+        System.out.println((passed ? "ok    " : "FAIL  ") + description);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
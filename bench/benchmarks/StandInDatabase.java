@@ -0,0 +1,542 @@
+package benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory stand-in for the librarymanagement schema, just big enough for the circulation, fine and
+ * registration paths: members, books, borrowingrecords, id_sequences, member_fine_balances and a row
+ * counter for logs.
+ * Statements are matched on their exact SQL text (whitespace-normalised), so a changed query shows up
+ * as an "unsupported statement" error rather than silently measuring something else.
+ * Single-row updates are atomic and transactions roll back through an undo log, but there is no
+ * isolation and no row locking: lock waits and deadlocks only show up against a real MySQL.
+ */
+public final class StandInDatabase {
+
+    @FunctionalInterface
+    private interface Handler {
+        // Integer update count for DML, List of rows for queries
+        Object run(Session session, Object[] params) throws SQLException;
+    }
+
+    private static final class Member {
+        private final int memberId;
+        private final String name;
+
+        private Member(int memberId, String name) {
+            this.memberId = memberId;
+            this.name = name;
+        }
+    }
+
+    private static final class Book {
+        private final int bookId;
+        private final String title;
+        private final String author;
+        private boolean available = true;
+
+        private Book(int bookId, String title, String author) {
+            this.bookId = bookId;
+            this.title = title;
+            this.author = author;
+        }
+    }
+
+    private static final class Loan {
+        private final int borrowId;
+        private final int memberId;
+        private final int bookId;
+        private final String dueDate;
+        private String returnDate;
+        private boolean overdue;
+        private double fineAmount;
+
+        private Loan(int borrowId, int memberId, int bookId, String dueDate) {
+            this.borrowId = borrowId;
+            this.memberId = memberId;
+            this.bookId = bookId;
+            this.dueDate = dueDate;
+        }
+    }
+
+    private final Map<Integer, Member> members = new ConcurrentHashMap<>();
+    private final Map<Integer, Book> books = new ConcurrentHashMap<>();
+    private final Map<Integer, Loan> loans = new ConcurrentHashMap<>();
+    // Stands in for the MemberID index on borrowingrecords
+    private final Map<Integer, Set<Integer>> loansByMember = new ConcurrentHashMap<>();
+    private final Map<String, Long> sequences = new HashMap<>();
+    // MemberID -> {balance in cents, version}
+    private final Map<Integer, long[]> fineBalances = new ConcurrentHashMap<>();
+    private final LongAdder logRows = new LongAdder();
+
+    private final Map<String, Handler> exact = new HashMap<>();
+    private final Map<String, Handler> prefixes = new LinkedHashMap<>();
+    // Raw SQL text -> handler, so the hot path skips normalisation
+    private final Map<String, Handler> resolved = new ConcurrentHashMap<>();
+
+    StandInDatabase() {
+        // CheckoutEngine
+        exact.put("UPDATE books SET Availability = 0 WHERE BookID = ? AND Availability = 1", this::claimBook);
+        exact.put("INSERT INTO borrowingrecords (BorrowID, MemberID, BookID, BorrowDate, DueDate, Overdue, FineAmount) " +
+                "SELECT ?, MemberID, ?, ?, ?, 0, 0.00 FROM members WHERE MemberID = ?", this::insertLoan);
+        // ReturnBookUI.processReturn
+        exact.put("SELECT MemberID, BookID, DueDate, Overdue, FineAmount FROM borrowingrecords WHERE BorrowID = ? FOR UPDATE", this::selectLoan);
+        exact.put("UPDATE borrowingrecords SET ReturnDate = ?, Overdue = ?, FineAmount = ? WHERE BorrowID = ?", this::returnLoan);
+        exact.put("UPDATE books SET Availability = 1 WHERE BookID = ?", (s, p) -> setAvailability(s, intParam(p, 0), true));
+        // FineCalculator.applyFines
+        exact.put("SELECT BorrowID, DueDate, FineAmount FROM borrowingrecords WHERE MemberID = ? AND Overdue = 0 FOR UPDATE", this::selectUnfinedLoans);
+        exact.put("UPDATE borrowingrecords SET Overdue = 1, FineAmount = ? WHERE BorrowID = ?", this::fineLoan);
+        // Member registration and lookups
+        exact.put("INSERT INTO members (MemberID, Name, ContactInfo, MembershipType, RegistrationDate, MembershipExpiry, RoleID) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)", this::insertMember);
+        exact.put("SELECT MemberID FROM members WHERE MemberID = ?", (s, p) ->
+                members.containsKey(intParam(p, 0)) ? rows(row("MemberID", intParam(p, 0))) : rows());
+        exact.put("SELECT MAX(MemberID) AS MaxID FROM members", (s, p) -> rows(row("MaxID", (int) maxKey(members))));
+        // AvailabilityIndex
+        exact.put("SELECT BookID, Title, Author, Availability FROM books", this::selectBooks);
+        // FineBalances
+        prefixes.put("CREATE TABLE IF NOT EXISTS member_fine_balances", (s, p) -> 0);
+        exact.put("INSERT INTO member_fine_balances (MemberID, Balance, Version) VALUES (?, ?, 1) " +
+                "ON DUPLICATE KEY UPDATE Balance = Balance + VALUES(Balance), Version = Version + 1", this::adjustBalance);
+        exact.put("SELECT Balance, Version FROM member_fine_balances WHERE MemberID = ?", this::selectBalance);
+        exact.put("SELECT MemberID, Balance, Version FROM member_fine_balances", this::selectBalances);
+        // IdAllocator
+        exact.put("UPDATE id_sequences SET NextValue = LAST_INSERT_ID(NextValue + ?) WHERE Name = ?", this::advanceSequence);
+        exact.put("SELECT LAST_INSERT_ID()", (s, p) -> rows(row("LAST_INSERT_ID()", s.lastInsertId)));
+        prefixes.put("CREATE TABLE IF NOT EXISTS id_sequences", (s, p) -> 0);
+        prefixes.put("INSERT IGNORE INTO id_sequences", this::seedSequence);
+        // DBLogger, AsyncLogWriter and LogSchema
+        prefixes.put("INSERT INTO logs ", (s, p) -> {
+            logRows.increment();
+            return 1;
+        });
+        prefixes.put("SELECT 1 FROM information_schema.", (s, p) -> rows(row("1", 1)));
+    }
+
+    public void addMember(int memberId, String name) {
+        members.put(memberId, new Member(memberId, name));
+    }
+
+    public void addBook(int bookId, String title, String author) {
+        books.put(bookId, new Book(bookId, title, author));
+    }
+
+    // An open loan, e.g. one that is already overdue; the book is marked as out
+    public void addLoan(int borrowId, int memberId, int bookId, String dueDate) {
+        Loan loan = new Loan(borrowId, memberId, bookId, dueDate);
+        loans.put(borrowId, loan);
+        loansByMember.computeIfAbsent(memberId, m -> ConcurrentHashMap.newKeySet()).add(borrowId);
+        Book book = books.get(bookId);
+        if (book != null) {
+            synchronized (book) {
+                book.available = false;
+            }
+        }
+    }
+
+    // Drops loans that have been returned, so long benchmark runs don't grow the table without bound
+    public void clearReturnedLoans() {
+        loans.values().removeIf(loan -> {
+            synchronized (loan) {
+                if (loan.returnDate == null) {
+                    return false;
+                }
+            }
+            Set<Integer> memberLoans = loansByMember.get(loan.memberId);
+            if (memberLoans != null) {
+                memberLoans.remove(loan.borrowId);
+            }
+            return true;
+        });
+    }
+
+    public int getMemberCount() { return members.size(); }
+    public int getBookCount() { return books.size(); }
+    public int getLoanCount() { return loans.size(); }
+    public long getLogRowCount() { return logRows.sum(); }
+
+    Session openSession() {
+        return new Session();
+    }
+
+    /**
+     * One connection's transaction state. Writes made with autocommit off push an undo step;
+     * rollback replays them newest first, commit forgets them.
+     */
+    final class Session {
+        private boolean autoCommit = true;
+        private long lastInsertId;
+        private final Deque<Runnable> undo = new ArrayDeque<>();
+
+        boolean isAutoCommit() { return autoCommit; }
+
+        void setAutoCommit(boolean autoCommit) {
+            if (autoCommit && !this.autoCommit) {
+                commit();
+            }
+            this.autoCommit = autoCommit;
+        }
+
+        void commit() {
+            undo.clear();
+        }
+
+        void rollback() {
+            while (!undo.isEmpty()) {
+                undo.pop().run();
+            }
+        }
+
+        private void onRollback(Runnable step) {
+            if (!autoCommit) {
+                undo.push(step);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> query(String sql, Object[] params) throws SQLException {
+            Object result = execute(sql, params);
+            if (!(result instanceof List)) {
+                throw new SQLException("Not a query: " + sql);
+            }
+            return (List<Map<String, Object>>) result;
+        }
+
+        int update(String sql, Object[] params) throws SQLException {
+            Object result = execute(sql, params);
+            if (!(result instanceof Integer)) {
+                throw new SQLException("Not an update: " + sql);
+            }
+            return (Integer) result;
+        }
+
+        Object execute(String sql, Object[] params) throws SQLException {
+            return handlerFor(sql).run(this, params);
+        }
+    }
+
+    private Handler handlerFor(String sql) throws SQLException {
+        Handler handler = resolved.get(sql);
+        if (handler != null) {
+            return handler;
+        }
+        String normalized = sql.trim().replaceAll("\\s+", " ");
+        handler = exact.get(normalized);
+        if (handler == null) {
+            for (Map.Entry<String, Handler> prefix : prefixes.entrySet()) {
+                if (normalized.startsWith(prefix.getKey())) {
+                    handler = prefix.getValue();
+                    break;
+                }
+            }
+        }
+        if (handler == null) {
+            throw new SQLFeatureNotSupportedException("Stand-in database does not support: " + normalized);
+        }
+        resolved.put(sql, handler);
+        return handler;
+    }
+
+    private Object claimBook(Session session, Object[] params) {
+        Book book = books.get(intParam(params, 0));
+        if (book == null) {
+            return 0;
+        }
+        synchronized (book) {
+            if (!book.available) {
+                return 0;
+            }
+            book.available = false;
+        }
+        session.onRollback(() -> {
+            synchronized (book) {
+                book.available = true;
+            }
+        });
+        return 1;
+    }
+
+    private Object setAvailability(Session session, int bookId, boolean available) {
+        Book book = books.get(bookId);
+        if (book == null) {
+            return 0;
+        }
+        boolean previous;
+        synchronized (book) {
+            previous = book.available;
+            book.available = available;
+        }
+        session.onRollback(() -> {
+            synchronized (book) {
+                book.available = previous;
+            }
+        });
+        return 1;
+    }
+
+    private Object insertLoan(Session session, Object[] params) throws SQLException {
+        int borrowId = intParam(params, 0);
+        int memberId = intParam(params, 4);
+        if (!members.containsKey(memberId)) {
+            return 0;
+        }
+        Loan loan = new Loan(borrowId, memberId, intParam(params, 1), stringParam(params, 3));
+        if (loans.putIfAbsent(borrowId, loan) != null) {
+            throw duplicateKey("borrowingrecords", borrowId);
+        }
+        Set<Integer> memberLoans = loansByMember.computeIfAbsent(memberId, m -> ConcurrentHashMap.newKeySet());
+        memberLoans.add(borrowId);
+        session.onRollback(() -> {
+            loans.remove(borrowId, loan);
+            memberLoans.remove(borrowId);
+        });
+        return 1;
+    }
+
+    private Object insertMember(Session session, Object[] params) throws SQLException {
+        int memberId = intParam(params, 0);
+        Member member = new Member(memberId, stringParam(params, 1));
+        if (members.putIfAbsent(memberId, member) != null) {
+            throw duplicateKey("members", memberId);
+        }
+        session.onRollback(() -> members.remove(memberId, member));
+        return 1;
+    }
+
+    private Object selectUnfinedLoans(Session session, Object[] params) {
+        Set<Integer> memberLoans = loansByMember.get(intParam(params, 0));
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (memberLoans == null) {
+            return result;
+        }
+        for (Integer borrowId : memberLoans) {
+            Loan loan = loans.get(borrowId);
+            if (loan == null) {
+                continue;
+            }
+            synchronized (loan) {
+                if (!loan.overdue) {
+                    Map<String, Object> row = row("BorrowID", loan.borrowId);
+                    row.put("DueDate", loan.dueDate);
+                    row.put("FineAmount", loan.fineAmount);
+                    result.add(row);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Object fineLoan(Session session, Object[] params) {
+        Loan loan = loans.get(intParam(params, 1));
+        if (loan == null) {
+            return 0;
+        }
+        boolean previousOverdue;
+        double previousFine;
+        synchronized (loan) {
+            previousOverdue = loan.overdue;
+            previousFine = loan.fineAmount;
+            loan.overdue = true;
+            loan.fineAmount = ((Number) params[0]).doubleValue();
+        }
+        session.onRollback(() -> {
+            synchronized (loan) {
+                loan.overdue = previousOverdue;
+                loan.fineAmount = previousFine;
+            }
+        });
+        return 1;
+    }
+
+    private Object selectLoan(Session session, Object[] params) {
+        Loan loan = loans.get(intParam(params, 0));
+        if (loan == null) {
+            return rows();
+        }
+        synchronized (loan) {
+            Map<String, Object> row = row("MemberID", loan.memberId);
+            row.put("BookID", loan.bookId);
+            row.put("DueDate", loan.dueDate);
+            row.put("Overdue", loan.overdue);
+            row.put("FineAmount", loan.fineAmount);
+            return rows(row);
+        }
+    }
+
+    private Object returnLoan(Session session, Object[] params) {
+        Loan loan = loans.get(intParam(params, 3));
+        if (loan == null) {
+            return 0;
+        }
+        String previousReturn;
+        boolean previousOverdue;
+        double previousFine;
+        synchronized (loan) {
+            previousReturn = loan.returnDate;
+            previousOverdue = loan.overdue;
+            previousFine = loan.fineAmount;
+            loan.returnDate = stringParam(params, 0);
+            loan.overdue = boolParam(params, 1);
+            loan.fineAmount = ((Number) params[2]).doubleValue();
+        }
+        session.onRollback(() -> {
+            synchronized (loan) {
+                loan.returnDate = previousReturn;
+                loan.overdue = previousOverdue;
+                loan.fineAmount = previousFine;
+            }
+        });
+        return 1;
+    }
+
+    private Object adjustBalance(Session session, Object[] params) {
+        int memberId = intParam(params, 0);
+        long cents = new BigDecimal(params[1].toString()).movePointRight(2).longValue();
+        long[] balance = fineBalances.computeIfAbsent(memberId, m -> new long[2]);
+        synchronized (balance) {
+            balance[0] += cents;
+            balance[1]++;
+        }
+        session.onRollback(() -> {
+            synchronized (balance) {
+                balance[0] -= cents;
+                balance[1]++;
+            }
+        });
+        return 1;
+    }
+
+    private Object selectBalance(Session session, Object[] params) {
+        long[] balance = fineBalances.get(intParam(params, 0));
+        if (balance == null) {
+            return rows();
+        }
+        synchronized (balance) {
+            Map<String, Object> row = row("Balance", BigDecimal.valueOf(balance[0], 2));
+            row.put("Version", balance[1]);
+            return rows(row);
+        }
+    }
+
+    private Object selectBalances(Session session, Object[] params) {
+        List<Map<String, Object>> result = new ArrayList<>(fineBalances.size());
+        for (Map.Entry<Integer, long[]> entry : fineBalances.entrySet()) {
+            long[] balance = entry.getValue();
+            synchronized (balance) {
+                Map<String, Object> row = row("MemberID", entry.getKey());
+                row.put("Balance", BigDecimal.valueOf(balance[0], 2));
+                row.put("Version", balance[1]);
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    private Object selectBooks(Session session, Object[] params) {
+        List<Map<String, Object>> result = new ArrayList<>(books.size());
+        for (Book book : books.values()) {
+            synchronized (book) {
+                Map<String, Object> row = row("BookID", book.bookId);
+                row.put("Title", book.title);
+                row.put("Author", book.author);
+                row.put("Availability", book.available);
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    // Sequence updates are autocommitted by IdAllocator, so no undo step
+    private Object advanceSequence(Session session, Object[] params) {
+        String name = stringParam(params, 1);
+        synchronized (sequences) {
+            Long next = sequences.get(name);
+            if (next == null) {
+                return 0;
+            }
+            long advanced = next + intParam(params, 0);
+            sequences.put(name, advanced);
+            session.lastInsertId = advanced;
+            return 1;
+        }
+    }
+
+    // INSERT IGNORE INTO id_sequences ... SELECT ?, COALESCE(MAX(col), 0) + 1 FROM table
+    private Object seedSequence(Session session, Object[] params) throws SQLException {
+        String name = stringParam(params, 0);
+        long max;
+        switch (name) {
+            case "BORROW":
+                max = maxKey(loans);
+                break;
+            case "MEMBER":
+                max = maxKey(members);
+                break;
+            case "BOOK":
+                max = maxKey(books);
+                break;
+            case "FACILITY":
+                max = 0;
+                break;
+            default:
+                throw new SQLException("Unknown sequence " + name);
+        }
+        synchronized (sequences) {
+            return sequences.putIfAbsent(name, max + 1) == null ? 1 : 0;
+        }
+    }
+
+    private static long maxKey(Map<Integer, ?> table) {
+        long max = 0;
+        for (Integer key : table.keySet()) {
+            max = Math.max(max, key);
+        }
+        return max;
+    }
+
+    private static SQLException duplicateKey(String table, int key) {
+        // Same SQLState and vendor code MySQL uses, so callers classify it the same way
+        return new SQLException("Duplicate entry '" + key + "' for key '" + table + ".PRIMARY'", "23000", 1062);
+    }
+
+    private static Map<String, Object> row(String column, Object value) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put(column, value);
+        return row;
+    }
+
+    @SafeVarargs
+    private static List<Map<String, Object>> rows(Map<String, Object>... rows) {
+        List<Map<String, Object>> result = new ArrayList<>(rows.length);
+        // Not Collections.addAll: handing the generic array on to another varargs method is what -Xlint:varargs flags
+        for (Map<String, Object> row : rows) {
+            result.add(row);
+        }
+        return result;
+    }
+
+    private static int intParam(Object[] params, int index) {
+        return ((Number) params[index]).intValue();
+    }
+
+    private static String stringParam(Object[] params, int index) {
+        return params[index] == null ? null : params[index].toString();
+    }
+
+    private static boolean boolParam(Object[] params, int index) {
+        Object value = params[index];
+        return value instanceof Boolean ? (Boolean) value : ((Number) value).intValue() != 0;
+    }
+}
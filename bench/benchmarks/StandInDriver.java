@@ -0,0 +1,307 @@
+package benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * JDBC driver for jdbc:standin:NAME URLs, backed by an in-memory StandInDatabase.
+ * Lets the real ConnectionPool, StatementCache and DBUtils singletons run unchanged on a box
+ * without MySQL. Connections, statements and result sets are dynamic proxies that implement
+ * only what the circulation code calls; anything else fails loudly instead of returning junk.
+ */
+public final class StandInDriver implements Driver {
+    public static final String PREFIX = "jdbc:standin:";
+
+    private static final Map<String, StandInDatabase> DATABASES = new ConcurrentHashMap<>();
+    private static volatile boolean registered;
+
+    private StandInDriver() {
+    }
+
+    public static synchronized void register() throws SQLException {
+        if (!registered) {
+            DriverManager.registerDriver(new StandInDriver());
+            registered = true;
+        }
+    }
+
+    // The database behind jdbc:standin:NAME, created empty on first use
+    public static StandInDatabase database(String name) {
+        return DATABASES.computeIfAbsent(name, n -> new StandInDatabase());
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        String name = url.substring(PREFIX.length());
+        int options = name.indexOf('?');
+        if (options >= 0) {
+            name = name.substring(0, options);
+        }
+        StandInDatabase.Session session = database(name).openSession();
+        return proxy(Connection.class, new ConnectionHandler(session));
+    }
+
+    @Override public boolean acceptsURL(String url) { return url != null && url.startsWith(PREFIX); }
+    @Override public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) { return new DriverPropertyInfo[0]; }
+    @Override public int getMajorVersion() { return 1; }
+    @Override public int getMinorVersion() { return 0; }
+    @Override public boolean jdbcCompliant() { return false; }
+    @Override public Logger getParentLogger() throws SQLFeatureNotSupportedException { throw new SQLFeatureNotSupportedException(); }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StandInDriver.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static SQLException unsupported(Method method) {
+        return new SQLFeatureNotSupportedException("Stand-in database does not implement " + method.getName());
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final StandInDatabase.Session session;
+        private boolean closed;
+
+        private ConnectionHandler(StandInDatabase.Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class, new StatementHandler(session, (Connection) proxy, (String) args[0]));
+                case "createStatement":
+                    return proxy(Statement.class, new StatementHandler(session, (Connection) proxy, null));
+                case "setAutoCommit":
+                    session.setAutoCommit((Boolean) args[0]);
+                    return null;
+                case "getAutoCommit":
+                    return session.isAutoCommit();
+                case "commit":
+                    session.commit();
+                    return null;
+                case "rollback":
+                    session.rollback();
+                    return null;
+                case "isValid":
+                    return !closed;
+                case "isClosed":
+                    return closed;
+                case "close":
+                    if (!closed) {
+                        session.rollback();
+                        closed = true;
+                    }
+                    return null;
+                case "setTransactionIsolation":
+                case "setReadOnly":
+                case "clearWarnings":
+                    return null;
+                case "getWarnings":
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "StandInConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    throw unsupported(method);
+            }
+        }
+    }
+
+    // Both Statement and PreparedStatement; sql is null for plain statements
+    private static final class StatementHandler implements InvocationHandler {
+        private final StandInDatabase.Session session;
+        private final Connection connection;
+        private final String sql;
+        private final List<Object[]> batch = new ArrayList<>();
+        private Object[] params = new Object[8];
+        // fetchSize, maxRows, queryTimeout: kept only so the getters answer like a driver would
+        private final int[] settings = new int[3];
+
+        private StatementHandler(StandInDatabase.Session session, Connection connection, String sql) {
+            this.session = session;
+            this.connection = connection;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer
+                    && !name.equals("setFetchSize") && !name.equals("setMaxRows")) {
+                int index = (Integer) args[0];
+                if (index > params.length) {
+                    Object[] grown = new Object[Math.max(index, params.length * 2)];
+                    System.arraycopy(params, 0, grown, 0, params.length);
+                    params = grown;
+                }
+                params[index - 1] = name.equals("setNull") ? null : args[1];
+                return null;
+            }
+            switch (name) {
+                case "executeQuery":
+                    return resultSet(session.query(args == null ? sql : (String) args[0], params));
+                case "executeUpdate":
+                    return session.update(args == null ? sql : (String) args[0], params);
+                case "execute":
+                    Object result = session.execute(args == null ? sql : (String) args[0], params);
+                    return !(result instanceof Integer);
+                case "addBatch":
+                    batch.add(params.clone());
+                    return null;
+                case "executeBatch":
+                    int[] counts = new int[batch.size()];
+                    for (int i = 0; i < counts.length; i++) {
+                        counts[i] = session.update(sql, batch.get(i));
+                    }
+                    batch.clear();
+                    return counts;
+                case "clearBatch":
+                    batch.clear();
+                    return null;
+                case "clearParameters":
+                    params = new Object[params.length];
+                    return null;
+                case "getConnection":
+                    return connection;
+                case "setFetchSize":
+                    settings[0] = (Integer) args[0];
+                    return null;
+                case "setMaxRows":
+                    settings[1] = (Integer) args[0];
+                    return null;
+                case "setQueryTimeout":
+                    settings[2] = (Integer) args[0];
+                    return null;
+                case "getFetchSize":
+                    return settings[0];
+                case "getMaxRows":
+                    return settings[1];
+                case "getQueryTimeout":
+                    return settings[2];
+                case "getResultSet":
+                    return null;
+                case "clearWarnings":
+                case "close":
+                case "cancel":
+                    return null;
+                case "isClosed":
+                    return false;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "StandInStatement[" + sql + "]";
+                default:
+                    throw unsupported(method);
+            }
+        }
+    }
+
+    private static ResultSet resultSet(List<Map<String, Object>> rows) {
+        return proxy(ResultSet.class, new ResultSetHandler(rows));
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final List<Map<String, Object>> rows;
+        private int position = -1;
+        private boolean wasNull;
+
+        private ResultSetHandler(List<Map<String, Object>> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "next":
+                    return ++position < rows.size();
+                case "close":
+                    return null;
+                case "isClosed":
+                    return false;
+                case "wasNull":
+                    return wasNull;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "StandInResultSet[" + rows.size() + " rows]";
+                default:
+                    break;
+            }
+            if (!name.startsWith("get") || args == null || args.length != 1) {
+                throw unsupported(method);
+            }
+            Object value = column(args[0]);
+            wasNull = value == null;
+            switch (name) {
+                case "getObject":
+                    return value;
+                case "getString":
+                    return value == null ? null : value.toString();
+                case "getInt":
+                    return value == null ? 0 : ((Number) value).intValue();
+                case "getLong":
+                    return value == null ? 0L : ((Number) value).longValue();
+                case "getDouble":
+                    return value == null ? 0.0 : ((Number) value).doubleValue();
+                case "getBoolean":
+                    return value instanceof Boolean ? value : value != null && ((Number) value).intValue() != 0;
+                case "getTimestamp":
+                    return (Timestamp) value;
+                case "getBigDecimal":
+                    return value == null ? null : value instanceof BigDecimal ? value : new BigDecimal(value.toString());
+                default:
+                    throw unsupported(method);
+            }
+        }
+
+        private Object column(Object key) throws SQLException {
+            if (position < 0 || position >= rows.size()) {
+                throw new SQLException("No current row");
+            }
+            Map<String, Object> row = rows.get(position);
+            if (key instanceof Integer) {
+                int index = (Integer) key;
+                for (Object value : row.values()) {
+                    if (--index == 0) {
+                        return value;
+                    }
+                }
+                throw new SQLException("Column index out of range: " + key);
+            }
+            if (!row.containsKey(key)) {
+                throw new SQLException("Unknown column: " + key);
+            }
+            return row.get(key);
+        }
+    }
+}
@@ -14,20 +14,24 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 
+import common.DBExecutor;
+import common.DBUtils;
+import common.IdAllocator;
+import common.LogViewer;
 import common.hashing;
 
 
 public class AdminInterface {
 private Stage stage;
 private String adminUsername;
-private Connection connection;
+private DBExecutor db;
 private List<User> users;
 
 
-public AdminInterface(Stage stage, String adminUsername, Connection connection, List<User> users) {
+public AdminInterface(Stage stage, String adminUsername, DBExecutor db, List<User> users) {
     this.stage = stage;
     this.adminUsername = adminUsername;
-    this.connection = connection;
+    this.db = db;
     this.users = users;
 }
         
@@ -42,19 +46,21 @@ public void initializeComponents() {
     Button manageUsersBtn = new Button("Manage Users");
     Button viewLogsBtn = new Button("View System Logs");
     Button enforcePolicyBtn = new Button("Enforce Security Policy");
+    Button performanceBtn = new Button("Performance");
     Button logoutBtn = new Button("Logout");
 
     manageUsersBtn.setOnAction(e -> showManageUsers(getUsers()));
-    viewLogsBtn.setOnAction(e -> showSystemLogs(getSystemLogs()));
+    viewLogsBtn.setOnAction(e -> showSystemLogs());
     enforcePolicyBtn.setOnAction(e -> showSecurityPolicy(new SecurityPolicy("Minimum password length is 12")));
+    performanceBtn.setOnAction(e -> new PerformanceDashboard(adminUsername).display());
     logoutBtn.setOnAction(e -> stage.close());
     logoutBtn.setOnAction(e -> stage.close());
 
-    VBox layout = new VBox(15, welcomeLabel, manageUsersBtn, viewLogsBtn, enforcePolicyBtn, logoutBtn);
+    VBox layout = new VBox(15, welcomeLabel, manageUsersBtn, viewLogsBtn, enforcePolicyBtn, performanceBtn, logoutBtn);
     layout.setAlignment(Pos.CENTER);
     layout.setPadding(new Insets(20));
 
-    Scene scene = new Scene(layout, 400, 300);
+    Scene scene = new Scene(layout, 400, 350);
     stage.setTitle("Admin Dashboard");
     stage.setScene(scene);
     stage.show();
@@ -77,20 +83,8 @@ private void showAlert(String title, String message) {
 }
 
 
-private void showSystemLogs(List<String> logs) {
-    Stage logStage = new Stage();
-    logStage.setTitle("System Logs");
-
-    TextArea logArea = new TextArea();
-    logArea.setEditable(false);
-    logArea.setWrapText(true);
-    logArea.setText(String.join("\n", logs));
-
-    VBox layout = new VBox(10, new Label("System Logs:"), logArea);
-    layout.setPadding(new Insets(15));
-    Scene scene = new Scene(layout, 400, 300);
-    logStage.setScene(scene);
-    logStage.show();
+private void showSystemLogs() {
+    new LogViewer(db, adminUsername).display();
 }
 
 private void showManageUsers(List<User> users) {
@@ -131,80 +125,36 @@ private void showManageUsers(List<User> users) {
         String selectedRole = roleComboBox.getValue();
 
         if (!newUsername.isEmpty() && !password.isEmpty()) {
-            try {
-                // Check if username already exists
-                String checkUser = "SELECT Username FROM users WHERE Username = ?";
-                PreparedStatement checkStmt = connection.prepareStatement(checkUser);
-                checkStmt.setString(1, newUsername);
-                ResultSet checkRs = checkStmt.executeQuery();
-                
-                if (checkRs.next()) {
-                    showAlert("User Exists", "A user with this username already exists.");
-                    return;
-                }
-                
-                hashing hasher = new hashing(password);
-                String[] hashed = hasher.generateHash(); // returns [hash, salt]
-                String hash = hashed[0];
-                String salt = hashed[1];
-
-                // Insert into users table with selected role
-                String sql = "INSERT INTO users (Username, PasswordHash, Salt, Role, IsLocked) VALUES (?, ?, ?, ?, false)";
-                PreparedStatement stmt = connection.prepareStatement(sql);
-                stmt.setString(1, newUsername);
-                stmt.setString(2, hash);
-                stmt.setString(3, salt);
-                stmt.setString(4, selectedRole);
-                stmt.executeUpdate();
-
-                // Set a default RoleID based on selected role
-                int roleId = 3; // Default to member (assuming RoleID 3 is member)
-                
-                if (selectedRole.equals("librarian")) {
-                    roleId = 2; // Assuming RoleID 2 is librarian
-                } else if (selectedRole.equals("admin")) {
-                    roleId = 1; // Assuming RoleID 1 is admin
-                } else if (selectedRole.equals("assistant")) {
-                    roleId = 4; // Assuming RoleID 4 is assistant
-                }
-                
-                // Insert into members table if role is 'member'
-                if (selectedRole.equals("member")) {
-                    try {
-                        // For members, we now know the table structure from your screenshot
-                        String insertMember = "INSERT INTO members (Name, ContactInfo, MembershipType, RegistrationDate, MembershipExpiry, RoleID) VALUES (?, ?, ?, CURDATE(), DATE_ADD(CURDATE(), INTERVAL 1 YEAR), ?)";
-                        PreparedStatement memberStmt = connection.prepareStatement(insertMember);
-                        memberStmt.setString(1, newUsername);
-                        memberStmt.setString(2, newUsername + "@example.com"); // Default email format
-                        memberStmt.setString(3, "Regular");
-                        memberStmt.setInt(4, roleId);
-                        memberStmt.executeUpdate();
-                    } catch (SQLException memberEx) {
-                        System.out.println("Error inserting member data: " + memberEx.getMessage());
-                        // Continue without showing alert - user was created in users table
-                    }
-                }
-                
-                // Create user object and update UI
-                User newUser = new User(newUsername, selectedRole, false);
-                users.add(newUser);
-                userList.getItems().add(newUser);
+            addUserBtn.setDisable(true);
+            db.submit("addUser", connection -> addUser(connection, newUsername, password, selectedRole),
+                    added -> {
+                        addUserBtn.setDisable(false);
+                        if (!added) {
+                            showAlert("User Exists", "A user with this username already exists.");
+                            return;
+                        }
 
-                usernameInput.clear();
-                passwordInput.clear();
-                
-                // Show success message
-                if ((selectedRole.equals("librarian") || selectedRole.equals("assistant")) ) {
-                    showInfo("User Added with Warning", 
-                        newUsername + " was added as a " + selectedRole + " to the users table");
-                } else {
-                    showInfo("User Added", newUsername + " was added as " + selectedRole + ".");
-                }
-                
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                showAlert("Error", "Could not add user: " + ex.getMessage());
-            }
+                        // Create user object and update UI
+                        User newUser = new User(newUsername, selectedRole, false);
+                        users.add(newUser);
+                        userList.getItems().add(newUser);
+
+                        usernameInput.clear();
+                        passwordInput.clear();
+
+                        // Show success message
+                        if ((selectedRole.equals("librarian") || selectedRole.equals("assistant")) ) {
+                            showInfo("User Added with Warning", 
+                                newUsername + " was added as a " + selectedRole + " to the users table");
+                        } else {
+                            showInfo("User Added", newUsername + " was added as " + selectedRole + ".");
+                        }
+                    },
+                    ex -> {
+                        addUserBtn.setDisable(false);
+                        ex.printStackTrace();
+                        showAlert("Error", "Could not add user: " + ex.getMessage());
+                    });
         } else {
             showAlert("Input Error", "Please enter username and password.");
         }
@@ -216,20 +166,23 @@ private void showManageUsers(List<User> users) {
         User selected = userList.getSelectionModel().getSelectedItem();
         if (selected != null) {
             boolean newLockState = !selected.isLocked(); // toggle
-            try {
-                String sql = "UPDATE users SET IsLocked = ? WHERE Username = ?";
-                PreparedStatement stmt = connection.prepareStatement(sql);
-                stmt.setBoolean(1, newLockState);
-                stmt.setString(2, selected.getUsername());
-                stmt.executeUpdate();
-    
-                selected.setLocked(newLockState);
-                userList.refresh(); // refresh UI display
-                showInfo("User Updated", selected.getUsername() + " is now " + (newLockState ? "locked" : "unlocked") + ".");
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                showAlert("Error", "Could not update user.");
-            }
+            String sql = "UPDATE users SET IsLocked = ? WHERE Username = ?";
+            db.submit("toggleUserLock", connection -> {
+                        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                            stmt.setBoolean(1, newLockState);
+                            stmt.setString(2, selected.getUsername());
+                            return stmt.executeUpdate();
+                        }
+                    },
+                    updated -> {
+                        selected.setLocked(newLockState);
+                        userList.refresh(); // refresh UI display
+                        showInfo("User Updated", selected.getUsername() + " is now " + (newLockState ? "locked" : "unlocked") + ".");
+                    },
+                    ex -> {
+                        ex.printStackTrace();
+                        showAlert("Error", "Could not update user.");
+                    });
         }
     });
     
@@ -246,38 +199,20 @@ private void showManageUsers(List<User> users) {
                 
                 confirmDelete.showAndWait().ifPresent(response -> {
                     if (response == ButtonType.OK) {
-                        try {
-                            // Delete from the appropriate role-specific table first (foreign key constraints)
-                            String role = selected.getRole();
-                            if (role.equals("member")) {
-                                String memberQuery = "DELETE FROM members WHERE Name = ?";
-                                PreparedStatement memberStmt = connection.prepareStatement(memberQuery);
-                                memberStmt.setString(1, selected.getUsername());
-                                memberStmt.executeUpdate();
-                            } else if (role.equals("librarian") || role.equals("assistant")) {
-                                String librarianQuery = "DELETE FROM librarians WHERE Name = ?";
-                                PreparedStatement librarianStmt = connection.prepareStatement(librarianQuery);
-                                librarianStmt.setString(1, selected.getUsername());
-                                librarianStmt.executeUpdate();
-                            }
-                            
-                            // Then delete from users table
-                            String sql = "DELETE FROM users WHERE Username = ?";
-                            PreparedStatement stmt = connection.prepareStatement(sql);
-                            stmt.setString(1, selected.getUsername());
-                            int result = stmt.executeUpdate();
-                            
-                            if (result > 0) {
-                                users.remove(selected);
-                                userList.getItems().remove(selected);
-                                showInfo("User Deleted", selected.getUsername() + " was deleted.");
-                            } else {
-                                showAlert("Error", "User not found in database.");
-                            }
-                        } catch (SQLException ex) {
-                            ex.printStackTrace();
-                            showAlert("Error", "Could not delete user: " + ex.getMessage());
-                        }
+                        db.submit("deleteUser", connection -> deleteUser(connection, selected),
+                                result -> {
+                                    if (result > 0) {
+                                        users.remove(selected);
+                                        userList.getItems().remove(selected);
+                                        showInfo("User Deleted", selected.getUsername() + " was deleted.");
+                                    } else {
+                                        showAlert("Error", "User not found in database.");
+                                    }
+                                },
+                                ex -> {
+                                    ex.printStackTrace();
+                                    showAlert("Error", "Could not delete user: " + ex.getMessage());
+                                });
                     }
                 });
             } catch (Exception ex) {
@@ -314,41 +249,134 @@ private void showManageUsers(List<User> users) {
 
 // Add method to refresh user list from database
 private void refreshUserList(ListView<User> userList, List<User> usersList) {
-    userList.getItems().clear();
-    usersList.clear();
+    String query = "SELECT Username, Role, IsLocked FROM users ORDER BY Username";
+    db.submit("refreshUserList", connection -> {
+                List<User> loaded = new ArrayList<>();
+                try (PreparedStatement stmt = connection.prepareStatement(query);
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String username = rs.getString("Username");
+                        String role = rs.getString("Role");
+                        boolean locked = rs.getBoolean("IsLocked");
+
+                        loaded.add(new User(username, role, locked));
+                    }
+                }
+                return loaded;
+            },
+            loaded -> {
+                usersList.clear();
+                usersList.addAll(loaded);
+                userList.getItems().setAll(loaded);
+            },
+            e -> {
+                e.printStackTrace();
+                showAlert("Database Error", "Could not load users from database.");
+            });
+}
+
+// Runs on a DB worker thread; returns false if the username is already taken
+private boolean addUser(Connection connection, String newUsername, String password, String selectedRole) throws Exception {
+    // Check if username already exists
+    String checkUser = "SELECT Username FROM users WHERE Username = ?";
+    try (PreparedStatement checkStmt = connection.prepareStatement(checkUser)) {
+        checkStmt.setString(1, newUsername);
+        try (ResultSet checkRs = checkStmt.executeQuery()) {
+            if (checkRs.next()) {
+                return false;
+            }
+        }
+    }
     
-    try {
-        String query = "SELECT Username, Role, IsLocked FROM users ORDER BY Username";
-        PreparedStatement stmt = connection.prepareStatement(query);
-        ResultSet rs = stmt.executeQuery();
-        
-        while (rs.next()) {
-            String username = rs.getString("Username");
-            String role = rs.getString("Role");
-            boolean locked = rs.getBoolean("IsLocked");
-            
-            User user = new User(username, role, locked);
-            usersList.add(user);
-            userList.getItems().add(user);
+    hashing hasher = new hashing(password);
+    String[] hashed = hasher.generateHash(); // returns [hash, salt]
+    String hash = hashed[0];
+    String salt = hashed[1];
+
+    // Insert into users table with selected role
+    String sql = "INSERT INTO users (Username, PasswordHash, Salt, Role, IsLocked) VALUES (?, ?, ?, ?, false)";
+    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        stmt.setString(1, newUsername);
+        stmt.setString(2, hash);
+        stmt.setString(3, salt);
+        stmt.setString(4, selectedRole);
+        stmt.executeUpdate();
+    }
+
+    // Set a default RoleID based on selected role
+    int roleId = 3; // Default to member (assuming RoleID 3 is member)
+    
+    if (selectedRole.equals("librarian")) {
+        roleId = 2; // Assuming RoleID 2 is librarian
+    } else if (selectedRole.equals("admin")) {
+        roleId = 1; // Assuming RoleID 1 is admin
+    } else if (selectedRole.equals("assistant")) {
+        roleId = 4; // Assuming RoleID 4 is assistant
+    }
+    
+    // Insert into members table if role is 'member'
+    if (selectedRole.equals("member")) {
+        // For members, we now know the table structure from your screenshot
+        // MemberID comes from the shared allocator so it can't clash with IDs the librarian desks already hold
+        String insertMember = "INSERT INTO members (MemberID, Name, ContactInfo, MembershipType, RegistrationDate, MembershipExpiry, RoleID) VALUES (?, ?, ?, ?, CURDATE(), DATE_ADD(CURDATE(), INTERVAL 1 YEAR), ?)";
+        try (PreparedStatement memberStmt = connection.prepareStatement(insertMember)) {
+            int memberId = DBUtils.getIdAllocator().next(IdAllocator.Sequence.MEMBER);
+            memberStmt.setInt(1, memberId);
+            memberStmt.setString(2, newUsername);
+            memberStmt.setString(3, newUsername + "@example.com"); // Default email format
+            memberStmt.setString(4, "Regular");
+            memberStmt.setInt(5, roleId);
+            memberStmt.executeUpdate();
+            DBUtils.getMemberNameIndex().put(memberId, newUsername);
+        } catch (SQLException memberEx) {
+            System.out.println("Error inserting member data: " + memberEx.getMessage());
+            // Continue without showing alert - user was created in users table
         }
-    } catch (SQLException e) {
-        e.printStackTrace();
-        showAlert("Database Error", "Could not load users from database.");
+    }
+    return true;
+}
+
+// Runs on a DB worker thread; returns the number of users rows deleted
+private int deleteUser(Connection connection, User selected) throws SQLException {
+    // Delete from the appropriate role-specific table first (foreign key constraints)
+    String role = selected.getRole();
+    if (role.equals("member")) {
+        String memberQuery = "DELETE FROM members WHERE Name = ?";
+        try (PreparedStatement memberStmt = connection.prepareStatement(memberQuery)) {
+            memberStmt.setString(1, selected.getUsername());
+            if (memberStmt.executeUpdate() > 0) {
+                DBUtils.getMemberNameIndex().removeByName(selected.getUsername());
+                // The delete is by name, so the cached IDs it hit aren't known
+                DBUtils.getMemberProfileCache().invalidateAll();
+            }
+        }
+    } else if (role.equals("librarian") || role.equals("assistant")) {
+        String librarianQuery = "DELETE FROM librarians WHERE Name = ?";
+        try (PreparedStatement librarianStmt = connection.prepareStatement(librarianQuery)) {
+            librarianStmt.setString(1, selected.getUsername());
+            librarianStmt.executeUpdate();
+        }
+    }
+    
+    // Then delete from users table
+    String sql = "DELETE FROM users WHERE Username = ?";
+    try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        stmt.setString(1, selected.getUsername());
+        return stmt.executeUpdate();
     }
 }
 
 // Helper method to get role ID from role name
-private int getRoleIdByName(String roleName) {
+private int getRoleIdByName(Connection connection, String roleName) {
     int roleId = 3; // Default to member role ID (assuming 3 is member)
     
-    try {
-        String query = "SELECT RoleID FROM userroles WHERE RoleName = ?";
-        PreparedStatement stmt = connection.prepareStatement(query);
+    String query = "SELECT RoleID FROM userroles WHERE RoleName = ?";
+    try (PreparedStatement stmt = connection.prepareStatement(query)) {
         stmt.setString(1, roleName);
-        ResultSet rs = stmt.executeQuery();
-        
-        if (rs.next()) {
-            roleId = rs.getInt("RoleID");
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                roleId = rs.getInt("RoleID");
+            }
         }
     } catch (SQLException e) {
         e.printStackTrace();
@@ -364,26 +392,5 @@ private void showSecurityPolicy(SecurityPolicy policy) {
     alert.setContentText(policy.getDescription());
     alert.showAndWait();
 }
-
-private List<String> getSystemLogs() {
-    List<String> logs = new ArrayList<>();
-
-    String query = "SELECT Timestamp, Action FROM logs ORDER BY Timestamp DESC";
-
-    try (PreparedStatement stmt = connection.prepareStatement(query);
-         ResultSet rs = stmt.executeQuery()) {
-
-        while (rs.next()) {
-            String time = rs.getTimestamp("Timestamp").toString();
-            String action = rs.getString("Action");
-            logs.add(time + " - " + action);
-        }
-
-    } catch (SQLException e) {
-        logs.add("Error retrieving logs: " + e.getMessage());
-        e.printStackTrace();
-    }
-
-    return logs;
-}    
+    
 };
\ No newline at end of file
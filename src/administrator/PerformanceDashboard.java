@@ -0,0 +1,105 @@
+package administrator;
+
+import common.ConnectionPool;
+import common.DBLogger;
+import common.DBMetrics;
+import common.DBUtils;
+import common.OperationStats;
+import common.StatementCache;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+/**
+ * Admin window over DBMetrics: latency percentiles, row and error counts for every named
+ * database operation since startup (or the last reset), plus the pool and cache counters.
+ * The same per-operation numbers are published over JMX under common:type=DBMetrics.
+ */
+public class PerformanceDashboard {
+    private final String username;
+    private final TableView<OperationStats> table = new TableView<>();
+    private final TextArea componentsArea = new TextArea();
+
+    public PerformanceDashboard(String username) {
+        this.username = username;
+    }
+
+    public void display() {
+        Stage stage = new Stage();
+        stage.setTitle("Performance");
+
+        table.getColumns().add(column("Operation", "name", 180));
+        table.getColumns().add(column("Calls", "count", 70));
+        table.getColumns().add(column("Errors", "errorCount", 60));
+        table.getColumns().add(column("Rows", "rowCount", 70));
+        table.getColumns().add(millisColumn("Mean (ms)", "meanMillis"));
+        table.getColumns().add(millisColumn("p50 (ms)", "p50Millis"));
+        table.getColumns().add(millisColumn("p95 (ms)", "p95Millis"));
+        table.getColumns().add(millisColumn("p99 (ms)", "p99Millis"));
+        table.getColumns().add(millisColumn("Max (ms)", "maxMillis"));
+        table.setPlaceholder(new Label("No database operations recorded yet"));
+        VBox.setVgrow(table, Priority.ALWAYS);
+
+        componentsArea.setEditable(false);
+        componentsArea.setPrefRowCount(5);
+
+        Button refreshBtn = new Button("Refresh");
+        Button resetBtn = new Button("Reset");
+        refreshBtn.setOnAction(e -> refresh());
+        resetBtn.setOnAction(e -> {
+            DBMetrics.resetAll();
+            DBLogger.log("INFO", "PerformanceDashboard", "Reset operation metrics", username);
+            refresh();
+        });
+
+        HBox buttons = new HBox(10, refreshBtn, resetBtn);
+        buttons.setAlignment(Pos.CENTER_LEFT);
+
+        VBox layout = new VBox(10, new Label("Database operations:"), table, new Label("Components:"), componentsArea, buttons);
+        layout.setPadding(new Insets(15));
+        stage.setScene(new Scene(layout, 900, 600));
+        stage.show();
+
+        refresh();
+    }
+
+    private void refresh() {
+        table.getItems().setAll(DBMetrics.snapshot());
+        table.refresh();
+
+        // Only components that are already running; asking DBUtils for the others would start them
+        StringBuilder components = new StringBuilder();
+        ConnectionPool pool = DBUtils.getPool();
+        components.append(pool).append('\n');
+        components.append(StatementCache.stats()).append('\n');
+        if (DBLogger.getAsyncWriter() != null) {
+            components.append(DBLogger.getAsyncWriter()).append('\n');
+        }
+        componentsArea.setText(components.toString());
+    }
+
+    private static <T> TableColumn<OperationStats, T> column(String title, String property, double width) {
+        TableColumn<OperationStats, T> column = new TableColumn<>(title);
+        column.setCellValueFactory(new PropertyValueFactory<>(property));
+        column.setPrefWidth(width);
+        return column;
+    }
+
+    private static TableColumn<OperationStats, Double> millisColumn(String title, String property) {
+        TableColumn<OperationStats, Double> column = column(title, property, 80);
+        column.setCellFactory(col -> new TableCell<OperationStats, Double>() {
+            @Override
+            protected void updateItem(Double value, boolean empty) {
+                super.updateItem(value, empty);
+                setText(empty || value == null ? null : String.format("%.2f", value));
+            }
+        });
+        return column;
+    }
+}
@@ -8,6 +8,14 @@ public class App extends Application {
         LoginInterface login = new LoginInterface(primaryStage);
         login.initializeComponents();
     }
+
+    @Override
+    public void stop() {
+        DBUtils.shutdownExecutor();
+        // Write out queued log rows before the pool goes away
+        DBLogger.shutdown(5000);
+        DBUtils.shutdownPool();
+    }
     
     public static void main(String[] args) {
         launch(args);
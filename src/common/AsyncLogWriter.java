@@ -0,0 +1,270 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background writer behind DBLogger's async mode.
+ * Callers enqueue log rows into a LogRingBuffer and return straight away; a single daemon
+ * thread drains the buffer and inserts the rows in JDBC batches, one transaction per batch.
+ * A batch is flushed once it reaches batchSize or once its oldest row is flushIntervalMillis old.
+ * In BLOCK mode a full buffer makes the caller wait, but never for longer than maxBlockMillis: the
+ * callers include the FX thread, and while the database is down the writer cannot free slots. After
+ * one wait has run out, later callers drop straight away until the writer next gets a batch through.
+ */
+public class AsyncLogWriter {
+
+    // What log() does when the buffer is full
+    public enum Backpressure {
+        BLOCK,  // wait up to maxBlockMillis for the writer to free a slot, then discard
+        DROP,   // discard the new entry
+        SAMPLE  // past half full keep one in sampleRate entries (errors are always kept), drop when full
+    }
+
+    private static final String INSERT_QUERY = "INSERT INTO logs (Action, Timestamp, RecordID, Level, Source, Username) VALUES (?, ?, ?, ?, ?, ?)";
+    // Until SchemaMigration has added the structured columns
+    private static final String LEGACY_INSERT_QUERY = "INSERT INTO logs (Action, Timestamp, RecordID) VALUES (?, ?, ?)";
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final ConnectionPool pool;
+    private final LogRingBuffer<Entry> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Backpressure backpressure;
+    private final long maxBlockNanos;
+    private final int sampleRate;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private volatile boolean flushRequested = false;
+    // Set when a BLOCK wait runs out, cleared by the next successful batch
+    private volatile boolean stalled = false;
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong sampledOutCount = new AtomicLong();
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final AtomicLong blockedCount = new AtomicLong();
+    // Written by the writer thread only
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    public AsyncLogWriter(ConnectionPool pool, int capacity, int batchSize, long flushIntervalMillis,
+                          Backpressure backpressure, long maxBlockMillis, int sampleRate) {
+        if (batchSize < 1 || flushIntervalMillis < 1 || sampleRate < 1 || maxBlockMillis < 0) {
+            throw new IllegalArgumentException("batchSize, flushIntervalMillis and sampleRate must be positive, maxBlockMillis not negative");
+        }
+        this.pool = pool;
+        this.buffer = new LogRingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.backpressure = backpressure;
+        this.maxBlockNanos = TimeUnit.MILLISECONDS.toNanos(maxBlockMillis);
+        this.sampleRate = sampleRate;
+
+        this.writerThread = new Thread(this::runWriter, "db-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queues one row for the logs table. Returns false if the entry was dropped or sampled out.
+     */
+    public boolean enqueue(String level, String source, String username, String action, Timestamp timestamp, Integer recordID) {
+        if (!running) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        Entry entry = new Entry(level, source, username, action, timestamp, recordID);
+
+        if (backpressure == Backpressure.SAMPLE && !"ERROR".equals(level)
+                && buffer.size() >= buffer.capacity() / 2
+                && sampleCounter.getAndIncrement() % sampleRate != 0) {
+            sampledOutCount.incrementAndGet();
+            return false;
+        }
+
+        if (buffer.offer(entry)) {
+            enqueuedCount.incrementAndGet();
+            return true;
+        }
+
+        if (backpressure == Backpressure.BLOCK && !stalled) {
+            blockedCount.incrementAndGet();
+            LockSupport.unpark(writerThread);
+            long deadline = System.nanoTime() + maxBlockNanos;
+            while (running && !Thread.currentThread().isInterrupted()) {
+                if (System.nanoTime() - deadline >= 0) {
+                    stalled = true;
+                    break;
+                }
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                if (buffer.offer(entry)) {
+                    enqueuedCount.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+
+        droppedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Asks the writer to flush now and waits until everything enqueued so far has been written
+     * (or has failed), or until the timeout passes. Returns true if the buffer was drained in time.
+     */
+    public boolean flush(long timeoutMillis) {
+        long target = enqueuedCount.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        flushRequested = true;
+        LockSupport.unpark(writerThread);
+        while (writtenCount.get() + failedCount.get() < target) {
+            if (System.nanoTime() > deadline || !writerThread.isAlive()) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting entries, writes out whatever is still buffered and stops the writer thread.
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        long batchStarted = 0;
+
+        while (running || !buffer.isEmpty() || !batch.isEmpty()) {
+            boolean wasEmpty = batch.isEmpty();
+            int drained = buffer.drainTo(batch, batchSize - batch.size());
+            if (wasEmpty && drained > 0) {
+                batchStarted = System.nanoTime();
+            }
+
+            boolean due = !batch.isEmpty() && (batch.size() >= batchSize
+                    || System.nanoTime() - batchStarted >= flushIntervalNanos
+                    || flushRequested || !running);
+            if (due) {
+                if (buffer.isEmpty()) {
+                    flushRequested = false;
+                }
+                writeBatch(batch);
+                batch.clear();
+            } else if (drained == 0) {
+                if (batch.isEmpty()) {
+                    flushRequested = false;
+                }
+                LockSupport.parkNanos(Math.min(flushIntervalNanos, MAX_IDLE_PARK_NANOS));
+            }
+        }
+    }
+
+    private void writeBatch(List<Entry> batch) {
+        long start = System.nanoTime();
+        try (Connection con = pool.getConnection()) {
+            boolean structured = LogSchema.hasStructuredColumns(con);
+            try (PreparedStatement stmt = con.prepareStatement(structured ? INSERT_QUERY : LEGACY_INSERT_QUERY)) {
+                con.setAutoCommit(false);
+                for (Entry entry : batch) {
+                    stmt.setString(1, entry.action);
+                    stmt.setTimestamp(2, entry.timestamp);
+                    if (entry.recordID != null) {
+                        stmt.setInt(3, entry.recordID);
+                    } else {
+                        stmt.setNull(3, Types.INTEGER);
+                    }
+                    if (structured) {
+                        stmt.setString(4, entry.level);
+                        stmt.setString(5, entry.source);
+                        stmt.setString(6, entry.username);
+                    }
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                con.commit();
+                con.setAutoCommit(true);
+                writtenCount.addAndGet(batch.size());
+                stalled = false;
+            }
+        } catch (SQLException e) {
+            // The pool rolls back the open transaction when the connection is returned
+            failedCount.addAndGet(batch.size());
+            System.err.println("[DBLogger] Failed to write " + batch.size() + " log entries: " + e.getMessage());
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            flushCount.incrementAndGet();
+            totalFlushNanos.addAndGet(elapsed);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    public Backpressure getBackpressure() { return backpressure; }
+    public boolean isStalled() { return stalled; }
+    public int getCapacity() { return buffer.capacity(); }
+    public int getQueuedCount() { return buffer.size(); }
+    public long getEnqueuedCount() { return enqueuedCount.get(); }
+    public long getDroppedCount() { return droppedCount.get(); }
+    public long getSampledOutCount() { return sampledOutCount.get(); }
+    public long getBlockedCount() { return blockedCount.get(); }
+    public long getWrittenCount() { return writtenCount.get(); }
+    public long getFailedCount() { return failedCount.get(); }
+    public long getFlushCount() { return flushCount.get(); }
+
+    public double getAverageFlushMillis() {
+        long flushes = flushCount.get();
+        return flushes == 0 ? 0.0 : totalFlushNanos.get() / 1_000_000.0 / flushes;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AsyncLogWriter[mode=%s, queued=%d/%d, enqueued=%d, written=%d, dropped=%d, sampledOut=%d, failed=%d, flushes=%d, avgFlush=%.2fms, maxFlush=%.2fms]",
+                backpressure, getQueuedCount(), getCapacity(), getEnqueuedCount(), getWrittenCount(),
+                getDroppedCount(), getSampledOutCount(), getFailedCount(), getFlushCount(),
+                getAverageFlushMillis(), getMaxFlushMillis());
+    }
+
+    // One pending row; the timestamp is taken when log() is called, not when the batch is written
+    private static final class Entry {
+        private final String level;
+        private final String source;
+        private final String username;
+        private final String action;
+        private final Timestamp timestamp;
+        private final Integer recordID;
+
+        private Entry(String level, String source, String username, String action, Timestamp timestamp, Integer recordID) {
+            this.level = level;
+            this.source = source;
+            this.username = username;
+            this.action = action;
+            this.timestamp = timestamp;
+            this.recordID = recordID;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory copy of books.Availability: one bit per BookID plus the title/author of every book.
+ * isAvailable() and listAvailable() answer without touching the database. Checkout, return and the
+ * inventory screen keep it current, and a background reload re-checks it against the table.
+ */
+public class AvailabilityIndex {
+
+    // Title and author for one BookID
+    public static final class CatalogEntry {
+        private final int bookId;
+        private final String title;
+        private final String author;
+
+        public CatalogEntry(int bookId, String title, String author) {
+            this.bookId = bookId;
+            this.title = title;
+            this.author = author;
+        }
+
+        public int getBookId() { return bookId; }
+        public String getTitle() { return title; }
+        public String getAuthor() { return author; }
+    }
+
+    // One loaded snapshot; words are replaced wholesale when the bitmap has to grow
+    private static final class State {
+        private final AtomicLongArray words;
+        private final ConcurrentHashMap<Integer, CatalogEntry> catalog;
+
+        private State(int wordCount, ConcurrentHashMap<Integer, CatalogEntry> catalog) {
+            this.words = new AtomicLongArray(Math.max(1, wordCount));
+            this.catalog = catalog;
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final ScheduledExecutorService revalidator;
+    private final Object loadLock = new Object();
+    // Guards writes and the pending list; reads never take it
+    private final Object writeLock = new Object();
+    private volatile State state;
+    // Changes made while a reload is reading the table, replayed onto the new snapshot
+    private List<Change> pending;
+
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong driftCount = new AtomicLong();
+    private volatile long lastLoadMillis;
+
+    public AvailabilityIndex(ConnectionPool pool) {
+        this.pool = pool;
+        this.revalidator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "availability-index-revalidator");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Loads the index in the background now and re-checks it against the table every interval.
+     */
+    public void start(long revalidateMinutes) {
+        revalidator.scheduleWithFixedDelay(() -> {
+            try {
+                reload();
+            } catch (SQLException e) {
+                System.err.println("[AvailabilityIndex] Reload failed: " + e.getMessage());
+            }
+        }, 0, revalidateMinutes, TimeUnit.MINUTES);
+    }
+
+    public void shutdown() {
+        revalidator.shutdownNow();
+    }
+
+    public boolean isAvailable(int bookId) throws SQLException {
+        return bookId >= 0 && testBit(loaded().words, bookId);
+    }
+
+    public boolean contains(int bookId) throws SQLException {
+        return loaded().catalog.containsKey(bookId);
+    }
+
+    // Never triggers a load; false until the first load has finished
+    public boolean isCatalogued(int bookId) {
+        State current = state;
+        return current != null && current.catalog.containsKey(bookId);
+    }
+
+    /**
+     * Every available book in BookID order: a scan of the set bits plus a catalog lookup per bit.
+     */
+    public List<CatalogEntry> listAvailable() throws SQLException {
+        State current = loaded();
+        AtomicLongArray words = current.words;
+        List<CatalogEntry> available = new ArrayList<>();
+        for (int w = 0; w < words.length(); w++) {
+            long word = words.get(w);
+            while (word != 0) {
+                int bookId = w * 64 + Long.numberOfTrailingZeros(word);
+                CatalogEntry entry = current.catalog.get(bookId);
+                if (entry != null) {
+                    available.add(entry);
+                }
+                word &= word - 1;
+            }
+        }
+        return available;
+    }
+
+    public int getAvailableCount() throws SQLException {
+        AtomicLongArray words = loaded().words;
+        int count = 0;
+        for (int w = 0; w < words.length(); w++) {
+            count += Long.bitCount(words.get(w));
+        }
+        return count;
+    }
+
+    // Called after the checkout commits (or after it finds the book already out)
+    public void markBorrowed(int bookId) {
+        record(new Change(bookId, false, null, false));
+    }
+
+    // Called after a return commits
+    public void markReturned(int bookId) {
+        record(new Change(bookId, true, null, false));
+    }
+
+    public void addBook(int bookId, String title, String author) {
+        record(new Change(bookId, true, new CatalogEntry(bookId, title, author), false));
+    }
+
+    public void removeBook(int bookId) {
+        record(new Change(bookId, false, null, true));
+    }
+
+    /**
+     * Re-reads the whole table and swaps the new snapshot in. Bits that disagree with the
+     * previous snapshot are counted as drift (some path changed books without telling the index).
+     */
+    public void reload() throws SQLException {
+        synchronized (loadLock) {
+            synchronized (writeLock) {
+                pending = new ArrayList<>();
+            }
+            State fresh;
+            try {
+                fresh = readTable();
+            } catch (SQLException e) {
+                synchronized (writeLock) {
+                    pending = null;
+                }
+                throw e;
+            }
+
+            synchronized (writeLock) {
+                State old = state;
+                for (Change change : pending) {
+                    fresh = change.applyTo(fresh);
+                }
+                pending = null;
+                if (old != null) {
+                    long drift = countDifferences(old.words, fresh.words);
+                    if (drift > 0) {
+                        driftCount.addAndGet(drift);
+                        DBLogger.log("WARN", "AvailabilityIndex", "Corrected " + drift + " stale availability bits", "system");
+                    }
+                }
+                state = fresh;
+            }
+            loadCount.incrementAndGet();
+            lastLoadMillis = System.currentTimeMillis();
+        }
+    }
+
+    public boolean isLoaded() { return state != null; }
+    public long getLoadCount() { return loadCount.get(); }
+    public long getDriftCount() { return driftCount.get(); }
+    public long getLastLoadMillis() { return lastLoadMillis; }
+
+    public String stats() {
+        State current = state;
+        if (current == null) {
+            return "AvailabilityIndex[not loaded]";
+        }
+        int available = 0;
+        for (int w = 0; w < current.words.length(); w++) {
+            available += Long.bitCount(current.words.get(w));
+        }
+        return String.format("AvailabilityIndex[books=%d, available=%d, loads=%d, drift=%d]",
+                current.catalog.size(), available, getLoadCount(), getDriftCount());
+    }
+
+    // Blocks only until the first load has finished
+    private State loaded() throws SQLException {
+        State current = state;
+        if (current == null) {
+            synchronized (loadLock) {
+                if (state == null) {
+                    reload();
+                }
+                current = state;
+            }
+        }
+        return current;
+    }
+
+    private void record(Change change) {
+        if (change.bookId < 0) {
+            return;
+        }
+        synchronized (writeLock) {
+            if (pending != null) {
+                pending.add(change);
+            }
+            State current = state;
+            if (current != null) {
+                State updated = change.applyTo(current);
+                if (updated != current) {
+                    state = updated;
+                }
+            }
+        }
+    }
+
+    // One write to the index, kept so it can be replayed onto a snapshot that was read before it happened
+    private static final class Change {
+        private final int bookId;
+        private final boolean available;
+        private final CatalogEntry added;
+        private final boolean removed;
+
+        private Change(int bookId, boolean available, CatalogEntry added, boolean removed) {
+            this.bookId = bookId;
+            this.available = available;
+            this.added = added;
+            this.removed = removed;
+        }
+
+        private State applyTo(State target) {
+            if (added != null) {
+                target.catalog.put(bookId, added);
+            } else if (removed) {
+                target.catalog.remove(bookId);
+            }
+            return apply(target, bookId, available);
+        }
+    }
+
+    // Sets or clears one bit, growing the bitmap into a new State if a set bit is past the end
+    private static State apply(State current, int bookId, boolean available) {
+        int word = bookId >>> 6;
+        State target = current;
+        if (word >= current.words.length()) {
+            if (!available) {
+                // Past the end already reads as clear
+                return current;
+            }
+            target = new State(Math.max(word + 1, current.words.length() * 2), current.catalog);
+            for (int w = 0; w < current.words.length(); w++) {
+                target.words.set(w, current.words.get(w));
+            }
+        }
+        long mask = 1L << (bookId & 63);
+        if (available) {
+            target.words.getAndAccumulate(word, mask, (v, m) -> v | m);
+        } else {
+            target.words.getAndAccumulate(word, mask, (v, m) -> v & ~m);
+        }
+        return target;
+    }
+
+    private State readTable() throws SQLException {
+        String query = "SELECT BookID, Title, Author, Availability FROM books";
+        ConcurrentHashMap<Integer, CatalogEntry> catalog = new ConcurrentHashMap<>();
+        List<Integer> availableIds = new ArrayList<>();
+        int maxId = 0;
+        try (Connection con = pool.getConnection();
+             PreparedStatement stmt = con.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int bookId = rs.getInt("BookID");
+                catalog.put(bookId, new CatalogEntry(bookId, rs.getString("Title"), rs.getString("Author")));
+                if (rs.getBoolean("Availability") && bookId >= 0) {
+                    availableIds.add(bookId);
+                }
+                maxId = Math.max(maxId, bookId);
+            }
+        }
+        State fresh = new State((maxId >>> 6) + 1, catalog);
+        for (int bookId : availableIds) {
+            apply(fresh, bookId, true);
+        }
+        return fresh;
+    }
+
+    private static boolean testBit(AtomicLongArray words, int bookId) {
+        int word = bookId >>> 6;
+        return word < words.length() && (words.get(word) & (1L << (bookId & 63))) != 0;
+    }
+
+    private static long countDifferences(AtomicLongArray a, AtomicLongArray b) {
+        long diff = 0;
+        int length = Math.max(a.length(), b.length());
+        for (int w = 0; w < length; w++) {
+            long x = w < a.length() ? a.get(w) : 0;
+            long y = w < b.length() ? b.get(w) : 0;
+            diff += Long.bitCount(x ^ y);
+        }
+        return diff;
+    }
+}
@@ -0,0 +1,176 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Title/author filters and sort order for the available-books browser, and the keyset-paginated query
+ * that applies them. Pages are ordered on (sort column, BookID) and start strictly after (or, paging
+ * back, strictly before) a row already shown, so any page costs the same as the first.
+ * Books with no title or author only show up when sorting by Book ID. The (Availability, column) indexes
+ * that make title and author pages cheap are added by migrateIndexes(), run from SchemaMigration; the
+ * query never changes the schema itself.
+ */
+public class BookPageQuery {
+
+    public enum SortKey {
+        BOOK_ID("Book ID", null),
+        TITLE("Title", "Title"),
+        AUTHOR("Author", "Author");
+
+        private final String label;
+        private final String column;
+
+        SortKey(String label, String column) {
+            this.label = label;
+            this.column = column;
+        }
+
+        @Override
+        public String toString() { return label; }
+    }
+
+    // Index name -> column; each lets Availability = 1 be read in (column, BookID) order without a sort
+    private static final String[][] INDEXES = {
+            {"idx_books_available_title", "Title"},
+            {"idx_books_available_author", "Author"},
+    };
+
+    private final String title;
+    private final String author;
+    private final SortKey sort;
+
+    // Either filter may be null or blank for "no filter"
+    public BookPageQuery(String title, String author, SortKey sort) {
+        this.title = blankToNull(title);
+        this.author = blankToNull(author);
+        this.sort = sort == null ? SortKey.BOOK_ID : sort;
+    }
+
+    public String getTitle() { return title; }
+    public String getAuthor() { return author; }
+    public SortKey getSort() { return sort; }
+
+    public boolean isFiltered() {
+        return title != null || author != null;
+    }
+
+    /**
+     * Up to pageSize available books after the given one (or from the start if after is null).
+     */
+    public List<AvailabilityIndex.CatalogEntry> fetchPage(Connection con, AvailabilityIndex.CatalogEntry after, int pageSize)
+            throws SQLException {
+        return fetch(con, after, true, pageSize);
+    }
+
+    /**
+     * Up to pageSize available books just before the given one, in display order.
+     */
+    public List<AvailabilityIndex.CatalogEntry> fetchPageBefore(Connection con, AvailabilityIndex.CatalogEntry before, int pageSize)
+            throws SQLException {
+        List<AvailabilityIndex.CatalogEntry> page = fetch(con, before, false, pageSize);
+        Collections.reverse(page);
+        return page;
+    }
+
+    private List<AvailabilityIndex.CatalogEntry> fetch(Connection con, AvailabilityIndex.CatalogEntry from, boolean forward,
+                                                       int pageSize) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT BookID, Title, Author FROM books WHERE Availability = 1");
+        List<Object> params = new ArrayList<>();
+        if (title != null) {
+            sql.append(" AND Title LIKE ?");
+            params.add("%" + escapeLike(title) + "%");
+        }
+        if (author != null) {
+            sql.append(" AND Author LIKE ?");
+            params.add("%" + escapeLike(author) + "%");
+        }
+        String op = forward ? ">" : "<";
+        if (from != null) {
+            if (sort.column == null) {
+                sql.append(" AND BookID ").append(op).append(" ?");
+            } else {
+                String key = sort == SortKey.TITLE ? from.getTitle() : from.getAuthor();
+                sql.append(" AND (").append(sort.column).append(' ').append(op).append(" ? OR (")
+                        .append(sort.column).append(" = ? AND BookID ").append(op).append(" ?))");
+                params.add(key == null ? "" : key);
+                params.add(key == null ? "" : key);
+            }
+            params.add(from.getBookId());
+        } else if (sort.column != null) {
+            sql.append(" AND ").append(sort.column).append(" IS NOT NULL");
+        }
+        String direction = forward ? "" : " DESC";
+        sql.append(" ORDER BY ");
+        if (sort.column != null) {
+            sql.append(sort.column).append(direction).append(", ");
+        }
+        sql.append("BookID").append(direction).append(" LIMIT ?");
+        params.add(pageSize);
+
+        List<AvailabilityIndex.CatalogEntry> page = new ArrayList<>(pageSize);
+        try (PreparedStatement stmt = con.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            stmt.setFetchSize(pageSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    page.add(new AvailabilityIndex.CatalogEntry(rs.getInt("BookID"), rs.getString("Title"), rs.getString("Author")));
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Adds the missing sort indexes; only on character columns, where a full-length index is allowed.
+     * Rebuilds the books table, so it belongs in SchemaMigration, not on a desk.
+     */
+    public static void migrateIndexes(Connection con) throws SQLException {
+        for (String[] index : INDEXES) {
+            if (!indexExists(con, index[0]) && isCharColumn(con, index[1])) {
+                try (Statement stmt = con.createStatement()) {
+                    stmt.executeUpdate("ALTER TABLE books ADD INDEX " + index[0] + " (Availability, " + index[1] + ")");
+                }
+            }
+        }
+    }
+
+    private static boolean indexExists(Connection con, String indexName) throws SQLException {
+        String query = "SELECT 1 FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = 'books' AND index_name = ? LIMIT 1";
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setString(1, indexName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean isCharColumn(Connection con, String columnName) throws SQLException {
+        String query = "SELECT 1 FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = 'books' AND column_name = ? " +
+                "AND data_type IN ('varchar', 'char') LIMIT 1";
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setString(1, columnName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
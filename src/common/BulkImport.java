@@ -0,0 +1,537 @@
+package common;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Loads a CSV or TSV file into one table in three stages. The calling thread streams the file through
+ * a FileChannel and cuts it into chunks of records; a pool parses and validates chunks in parallel;
+ * writer threads, each on its own pooled connection, take IDs for a whole chunk in one IdAllocator
+ * round trip and insert it with multi-row INSERTs, one transaction per chunk. Bounded queues between
+ * the stages keep memory flat whatever the file size.
+ *
+ * Rows that fail validation, or that the database refuses, go to a reject file with their line number
+ * and reason; everything else is imported. If a chunk's transaction fails its rows are retried one by
+ * one so a single bad row costs only itself. A first record naming the target's required fields is
+ * taken as a header and decides the column order.
+ */
+public class BulkImport<R> {
+
+    /**
+     * What is imported: how a record's fields become a row and how a row is bound into the INSERT.
+     */
+    public interface Target<R> {
+        // Expected fields, in the order assumed when the file has no header
+        String[] fields();
+
+        // How many of fields() a header must name; the rest are optional and read as "" when absent
+        default int requiredFields() {
+            return fields().length;
+        }
+
+        // Throws IllegalArgumentException with the reason the record is rejected
+        R parse(String[] fields);
+
+        IdAllocator.Sequence sequence();
+
+        // e.g. "books (BookID, Title, Author, Availability)"
+        String insertInto();
+
+        // e.g. "(?, ?, ?, 1)"
+        String valuesRow();
+
+        // Binds one row starting at parameter index; returns the next free index
+        int bind(PreparedStatement stmt, int index, int id, R row) throws SQLException;
+
+        // Called after the row's transaction has committed
+        default void committed(int id, R row) {
+        }
+
+        // Called when the database refuses a row on its own; the row also goes to the reject file
+        default void refused(R row, SQLException error) {
+        }
+    }
+
+    /**
+     * Called from the reading thread after every chunk.
+     */
+    public interface Listener {
+        void progress(long bytesRead, long bytesTotal, long read, long imported, long rejected);
+    }
+
+    /**
+     * Counts for one run.
+     */
+    public static final class Report {
+        private final long read;
+        private final long imported;
+        private final long rejected;
+        private final long elapsedMillis;
+        private final Path rejectFile;
+        private final boolean cancelled;
+
+        private Report(long read, long imported, long rejected, long elapsedMillis, Path rejectFile, boolean cancelled) {
+            this.read = read;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.elapsedMillis = elapsedMillis;
+            this.rejectFile = rejectFile;
+            this.cancelled = cancelled;
+        }
+
+        public long getRead() { return read; }
+        public long getImported() { return imported; }
+        public long getRejected() { return rejected; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public Path getRejectFile() { return rejectFile; }
+        public boolean isCancelled() { return cancelled; }
+
+        public double rowsPerSecond() {
+            return elapsedMillis == 0 ? imported : imported * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s%d records read, %d imported, %d rejected in %.1f s (%.0f rows/s)%s",
+                    cancelled ? "Cancelled: " : "", read, imported, rejected, elapsedMillis / 1000.0, rowsPerSecond(),
+                    rejected > 0 ? "\nRejected rows: " + rejectFile : "");
+        }
+    }
+
+    // Raw records of one chunk, with the file line each starts on
+    private static final class RawChunk {
+        private final List<String> records = new ArrayList<>();
+        private final List<Long> lines = new ArrayList<>();
+    }
+
+    // Valid rows with their line and raw record, kept for rows the database refuses later
+    private final class ParsedChunk {
+        private final List<R> rows = new ArrayList<>();
+        private final List<Long> lines = new ArrayList<>();
+        private final List<String> records = new ArrayList<>();
+        private final List<String> rejects = new ArrayList<>();
+    }
+
+    private final ConnectionPool pool;
+    private final IdAllocator ids;
+    private final Target<R> target;
+    private int chunkRows = 5000;
+    private int batchRows = 1000;
+    private int parseThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private int writerThreads = 3;
+
+    public BulkImport(ConnectionPool pool, IdAllocator ids, Target<R> target) {
+        this.pool = pool;
+        this.ids = ids;
+        this.target = target;
+    }
+
+    // Rows per transaction
+    public void setChunkRows(int chunkRows) { this.chunkRows = Math.max(1, chunkRows); }
+    // Rows per multi-row INSERT
+    public void setBatchRows(int batchRows) { this.batchRows = Math.max(1, batchRows); }
+    public void setParseThreads(int parseThreads) { this.parseThreads = Math.max(1, parseThreads); }
+    // Each writer holds one pooled connection for the whole run
+    public void setWriterThreads(int writerThreads) { this.writerThreads = Math.max(1, writerThreads); }
+
+    /**
+     * Imports file, writing rejected rows to rejectFile (only created if something is rejected).
+     * Stops reading once cancelled returns true; chunks already read are still written.
+     * Fails only if the file can't be read or the database connection is lost.
+     */
+    public Report run(Path file, Path rejectFile, BooleanSupplier cancelled, Listener listener) throws Exception {
+        long start = System.currentTimeMillis();
+        char delimiter = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".tsv") ? '\t' : ',';
+        AtomicLong imported = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        RejectWriter rejects = new RejectWriter(rejectFile);
+        // Parsed chunks in flight; a writer blocks on a chunk's future, the reader blocks when the queue is full
+        BlockingQueue<Future<ParsedChunk>> parsed = new ArrayBlockingQueue<>(parseThreads + writerThreads * 2);
+        ExecutorService parsers = Executors.newFixedThreadPool(parseThreads, daemon("bulk-import-parser"));
+        ExecutorService writers = Executors.newFixedThreadPool(writerThreads, daemon("bulk-import-writer"));
+        List<Future<?>> writerResults = new ArrayList<>();
+        AtomicBoolean writerFailed = new AtomicBoolean();
+        long read = 0;
+        boolean stopped = false;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8), 1 << 16)) {
+            for (int i = 0; i < writerThreads; i++) {
+                writerResults.add(writers.submit(() -> {
+                    try {
+                        write(parsed, imported, rejected, rejects);
+                    } catch (Exception e) {
+                        writerFailed.set(true);
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+
+            int[] columns = null;
+            long lineNumber = 0;
+            RawChunk chunk = new RawChunk();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                long recordLine = lineNumber;
+                // A quoted field may run over several lines; keep reading until the quotes balance
+                StringBuilder record = null;
+                while (countQuotes(line) % 2 != 0) {
+                    String more = reader.readLine();
+                    if (more == null) {
+                        break;
+                    }
+                    lineNumber++;
+                    record = (record == null ? new StringBuilder(line) : record).append('\n').append(more);
+                    line = record.toString();
+                }
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (columns == null) {
+                    columns = headerColumns(split(line, delimiter));
+                    if (columns != null) {
+                        continue;
+                    }
+                    columns = defaultColumns();
+                }
+                chunk.records.add(line);
+                chunk.lines.add(recordLine);
+                read++;
+                if (chunk.records.size() >= chunkRows) {
+                    RawChunk full = chunk;
+                    chunk = new RawChunk();
+                    int[] order = columns;
+                    if (!enqueue(parsed, parsers.submit(() -> parse(full, order, delimiter)), writerFailed)) {
+                        stopped = true;
+                        break;
+                    }
+                    listener.progress(channel.position(), channel.size(), read, imported.get(), rejected.get());
+                    if (cancelled.getAsBoolean()) {
+                        stopped = true;
+                        break;
+                    }
+                }
+            }
+            if (!stopped && !chunk.records.isEmpty()) {
+                RawChunk last = chunk;
+                int[] order = columns == null ? defaultColumns() : columns;
+                enqueue(parsed, parsers.submit(() -> parse(last, order, delimiter)), writerFailed);
+            }
+        } finally {
+            // One end-of-input marker per writer; if one has failed, stop the others where they are
+            boolean ended = true;
+            for (int i = 0; i < writerThreads && ended; i++) {
+                ended = enqueue(parsed, CompletableFuture.completedFuture(null), writerFailed);
+            }
+            parsers.shutdown();
+            if (ended) {
+                writers.shutdown();
+            } else {
+                writers.shutdownNow();
+            }
+            writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            rejects.close();
+        }
+        // Report the writer failure that stopped the run, not the interrupts it caused in the others
+        Exception failure = null;
+        for (Future<?> result : writerResults) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                if (failure == null || failure instanceof InterruptedException) {
+                    failure = cause;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        Report report = new Report(read, imported.get(), rejected.get(), System.currentTimeMillis() - start,
+                rejectFile, stopped && cancelled.getAsBoolean());
+        listener.progress(1, 1, read, report.imported, report.rejected);
+        return report;
+    }
+
+    // Waits for room in the queue; gives up (returning false) once a writer has failed
+    private boolean enqueue(BlockingQueue<Future<ParsedChunk>> parsed, Future<ParsedChunk> chunk,
+                            AtomicBoolean writerFailed) throws InterruptedException {
+        while (!parsed.offer(chunk, 200, TimeUnit.MILLISECONDS)) {
+            if (writerFailed.get()) {
+                return false;
+            }
+        }
+        return !writerFailed.get();
+    }
+
+    // Runs on a parser thread
+    private ParsedChunk parse(RawChunk chunk, int[] columns, char delimiter) {
+        ParsedChunk result = new ParsedChunk();
+        int expected = target.fields().length;
+        for (int i = 0; i < chunk.records.size(); i++) {
+            String record = chunk.records.get(i);
+            try {
+                String[] raw = split(record, delimiter);
+                String[] fields = new String[expected];
+                for (int f = 0; f < expected; f++) {
+                    int column = columns[f];
+                    fields[f] = column >= 0 && column < raw.length ? raw[column].trim() : "";
+                }
+                result.rows.add(target.parse(fields));
+                result.lines.add(chunk.lines.get(i));
+                result.records.add(record);
+            } catch (IllegalArgumentException e) {
+                result.rejects.add(rejectLine(chunk.lines.get(i), e.getMessage(), record));
+            }
+        }
+        return result;
+    }
+
+    // Runs on a writer thread until it takes an end-of-input marker
+    private void write(BlockingQueue<Future<ParsedChunk>> parsed, AtomicLong imported, AtomicLong rejected,
+                       RejectWriter rejects) throws Exception {
+        while (true) {
+            ParsedChunk chunk = parsed.take().get();
+            if (chunk == null) {
+                return;
+            }
+            rejects.write(chunk.rejects);
+            rejected.addAndGet(chunk.rejects.size());
+            if (!chunk.rows.isEmpty()) {
+                // Leased per chunk, so desk operations still get connections during a long import
+                try (Connection con = pool.getConnection()) {
+                    writeChunk(con, chunk, imported, rejected, rejects);
+                }
+            }
+        }
+    }
+
+    private void writeChunk(Connection con, ParsedChunk chunk, AtomicLong imported, AtomicLong rejected,
+                            RejectWriter rejects) throws SQLException, IOException {
+        int firstId = ids.reserveRange(target.sequence(), chunk.rows.size());
+        long start = DBMetrics.start();
+        try {
+            insertChunk(con, chunk.rows, firstId);
+            DBMetrics.record("bulkImportChunk", start, chunk.rows.size());
+            imported.addAndGet(chunk.rows.size());
+            for (int i = 0; i < chunk.rows.size(); i++) {
+                target.committed(firstId + i, chunk.rows.get(i));
+            }
+        } catch (SQLException e) {
+            DBMetrics.recordError("bulkImportChunk", start);
+            if (isConnectionError(e)) {
+                throw e;
+            }
+            // Find the rows the database refuses; the rest still go in
+            try (PreparedStatement single = con.prepareStatement(insertSql(1))) {
+                for (int i = 0; i < chunk.rows.size(); i++) {
+                    try {
+                        target.bind(single, 1, firstId + i, chunk.rows.get(i));
+                        single.executeUpdate();
+                        imported.incrementAndGet();
+                        target.committed(firstId + i, chunk.rows.get(i));
+                    } catch (SQLException rowError) {
+                        if (isConnectionError(rowError)) {
+                            throw rowError;
+                        }
+                        rejects.write(List.of(rejectLine(chunk.lines.get(i), rowError.getMessage(), chunk.records.get(i))));
+                        rejected.incrementAndGet();
+                        target.refused(chunk.rows.get(i), rowError);
+                    }
+                }
+            }
+        }
+    }
+
+    private void insertChunk(Connection con, List<R> rows, int firstId) throws SQLException {
+        con.setAutoCommit(false);
+        try {
+            int done = 0;
+            if (rows.size() >= batchRows) {
+                try (PreparedStatement full = con.prepareStatement(insertSql(batchRows))) {
+                    while (rows.size() - done >= batchRows) {
+                        bindRows(full, rows, done, batchRows, firstId);
+                        full.executeUpdate();
+                        done += batchRows;
+                    }
+                }
+            }
+            if (done < rows.size()) {
+                try (PreparedStatement tail = con.prepareStatement(insertSql(rows.size() - done))) {
+                    bindRows(tail, rows, done, rows.size() - done, firstId);
+                    tail.executeUpdate();
+                }
+            }
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    private void bindRows(PreparedStatement stmt, List<R> rows, int from, int count, int firstId) throws SQLException {
+        int index = 1;
+        for (int i = from; i < from + count; i++) {
+            index = target.bind(stmt, index, firstId + i, rows.get(i));
+        }
+    }
+
+    private String insertSql(int rows) {
+        String rowSql = target.valuesRow();
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(target.insertInto()).append(" VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(rowSql);
+        }
+        return sql.toString();
+    }
+
+    // Column of each target field if the first record is a header naming them all, else null
+    private int[] headerColumns(String[] first) {
+        String[] fields = target.fields();
+        int[] columns = new int[fields.length];
+        for (int f = 0; f < fields.length; f++) {
+            columns[f] = -1;
+            for (int c = 0; c < first.length; c++) {
+                if (first[c].trim().equalsIgnoreCase(fields[f])) {
+                    columns[f] = c;
+                }
+            }
+            if (columns[f] < 0 && f < target.requiredFields()) {
+                return null;
+            }
+        }
+        return columns;
+    }
+
+    private int[] defaultColumns() {
+        int[] columns = new int[target.fields().length];
+        for (int f = 0; f < columns.length; f++) {
+            columns[f] = f;
+        }
+        return columns;
+    }
+
+    /**
+     * Splits one record; fields may be quoted, with "" standing for a quote inside a quoted field.
+     */
+    public static String[] split(String record, char delimiter) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    private static int countQuotes(String line) {
+        int count = 0;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String rejectLine(long line, String reason, String record) {
+        return line + "\t" + reason + "\t" + record.replace('\n', ' ');
+    }
+
+    // Connection-level SQLSTATE class: the remaining rows would fail the same way
+    private static boolean isConnectionError(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // Shared by the writers; the file is only created once there is something to write
+    private static final class RejectWriter {
+        private final Path file;
+        private BufferedWriter out;
+
+        private RejectWriter(Path file) {
+            this.file = file;
+        }
+
+        private synchronized void write(List<String> lines) throws IOException {
+            if (lines.isEmpty()) {
+                return;
+            }
+            if (out == null) {
+                out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+                out.write("line\treason\trecord");
+                out.newLine();
+            }
+            for (String line : lines) {
+                out.write(line);
+                out.newLine();
+            }
+        }
+
+        private synchronized void close() throws IOException {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+}
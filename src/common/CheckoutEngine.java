@@ -0,0 +1,174 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks a book out in one transaction: claim the book with a conditional UPDATE, then insert the loan.
+ * The affected-row count decides the outcome, so two desks racing for the same copy can't both win
+ * and there is no separate check-then-act round trip for the member or the book.
+ */
+public class CheckoutEngine {
+
+    public enum Outcome { SUCCESS, INVALID_MEMBER, BOOK_UNAVAILABLE }
+
+    // What a checkout did; borrowId is only meaningful on SUCCESS
+    public static final class Result {
+        private final Outcome outcome;
+        private final int borrowId;
+        private final LocalDate dueDate;
+
+        private Result(Outcome outcome, int borrowId, LocalDate dueDate) {
+            this.outcome = outcome;
+            this.borrowId = borrowId;
+            this.dueDate = dueDate;
+        }
+
+        public Outcome getOutcome() { return outcome; }
+        public int getBorrowId() { return borrowId; }
+        public LocalDate getDueDate() { return dueDate; }
+        public boolean isSuccess() { return outcome == Outcome.SUCCESS; }
+    }
+
+    private static final String CLAIM_BOOK =
+            "UPDATE books SET Availability = 0 WHERE BookID = ? AND Availability = 1";
+    // Selecting from members makes the insert itself the member check
+    private static final String INSERT_LOAN =
+            "INSERT INTO borrowingrecords (BorrowID, MemberID, BookID, BorrowDate, DueDate, Overdue, FineAmount) " +
+            "SELECT ?, MemberID, ?, ?, ?, 0, 0.00 FROM members WHERE MemberID = ?";
+
+    private final ConnectionPool pool;
+    private final IdAllocator ids;
+    private final AvailabilityIndex availability;
+
+    private final AtomicLong attemptCount = new AtomicLong();
+    private final AtomicLong successCount = new AtomicLong();
+    private final AtomicLong conflictCount = new AtomicLong();
+    private final AtomicLong invalidMemberCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private volatile long windowStartNanos = System.nanoTime();
+
+    public CheckoutEngine(ConnectionPool pool, IdAllocator ids, AvailabilityIndex availability) {
+        this.pool = pool;
+        this.ids = ids;
+        this.availability = availability;
+    }
+
+    /**
+     * Leases a connection and checks the book out to the member.
+     */
+    public Result checkout(int memberId, int bookId, LocalDate dueDate) throws SQLException {
+        // Reserve the ID before leasing, so a block refill never needs a second lease from this thread
+        int borrowId = ids.next(IdAllocator.Sequence.BORROW);
+        long start = DBMetrics.start();
+        try (Connection con = pool.getConnection()) {
+            Result result = checkout(con, borrowId, memberId, bookId, dueDate);
+            DBMetrics.record("checkout", start, result.isSuccess() ? 1 : 0);
+            return result;
+        } catch (SQLException e) {
+            DBMetrics.recordError("checkout", start);
+            throw e;
+        }
+    }
+
+    private Result checkout(Connection con, int borrowId, int memberId, int bookId, LocalDate dueDate) throws SQLException {
+        long start = System.nanoTime();
+        attemptCount.incrementAndGet();
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try {
+            try (PreparedStatement claim = con.prepareStatement(CLAIM_BOOK)) {
+                claim.setInt(1, bookId);
+                if (claim.executeUpdate() == 0) {
+                    // Already out, or no such book
+                    con.rollback();
+                    conflictCount.incrementAndGet();
+                    // The table says it's out, so make sure the bitmap agrees (unknown IDs have no bit to clear)
+                    if (availability.isCatalogued(bookId)) {
+                        availability.markBorrowed(bookId);
+                    }
+                    return new Result(Outcome.BOOK_UNAVAILABLE, 0, dueDate);
+                }
+            }
+
+            try (PreparedStatement insert = con.prepareStatement(INSERT_LOAN)) {
+                insert.setInt(1, borrowId);
+                insert.setInt(2, bookId);
+                insert.setString(3, LocalDate.now().toString());
+                insert.setString(4, dueDate.toString());
+                insert.setInt(5, memberId);
+                if (insert.executeUpdate() == 0) {
+                    con.rollback();
+                    invalidMemberCount.incrementAndGet();
+                    return new Result(Outcome.INVALID_MEMBER, 0, dueDate);
+                }
+            }
+
+            con.commit();
+            availability.markBorrowed(bookId);
+            successCount.incrementAndGet();
+            return new Result(Outcome.SUCCESS, borrowId, dueDate);
+        } catch (SQLException e) {
+            errorCount.incrementAndGet();
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+            long elapsed = System.nanoTime() - start;
+            totalNanos.addAndGet(elapsed);
+            maxNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    public long getAttemptCount() { return attemptCount.get(); }
+    public long getSuccessCount() { return successCount.get(); }
+    public long getConflictCount() { return conflictCount.get(); }
+    public long getInvalidMemberCount() { return invalidMemberCount.get(); }
+    public long getErrorCount() { return errorCount.get(); }
+
+    // Share of attempts that lost the book to another desk (or found it already out)
+    public double getConflictRate() {
+        long attempts = attemptCount.get();
+        return attempts == 0 ? 0.0 : (double) conflictCount.get() / attempts;
+    }
+
+    // Successful checkouts per second since construction or the last resetStats()
+    public double getCheckoutsPerSecond() {
+        double seconds = (System.nanoTime() - windowStartNanos) / 1_000_000_000.0;
+        return seconds <= 0 ? 0.0 : successCount.get() / seconds;
+    }
+
+    public double getAverageMillis() {
+        long attempts = attemptCount.get();
+        return attempts == 0 ? 0.0 : totalNanos.get() / 1_000_000.0 / attempts;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Zeroes the counters and restarts the throughput window, e.g. before a contention run.
+     */
+    public void resetStats() {
+        attemptCount.set(0);
+        successCount.set(0);
+        conflictCount.set(0);
+        invalidMemberCount.set(0);
+        errorCount.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+        windowStartNanos = System.nanoTime();
+    }
+
+    public String stats() {
+        return String.format("CheckoutEngine[attempts=%d, ok=%d, conflicts=%d (%.1f%%), invalidMember=%d, errors=%d, %.1f/s, avg=%.2fms, max=%.2fms]",
+                getAttemptCount(), getSuccessCount(), getConflictCount(), getConflictRate() * 100,
+                getInvalidMemberCount(), getErrorCount(), getCheckoutsPerSecond(), getAverageMillis(), getMaxMillis());
+    }
+}
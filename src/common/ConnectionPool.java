@@ -0,0 +1,344 @@
+package common;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of MySQL connections shared by every window after login.
+ * Callers lease a connection with getConnection() and give it back by closing it,
+ * so it fits naturally in a try-with-resources block.
+ */
+public class ConnectionPool {
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int maxSize;
+    private final int minIdle;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final long validationWindowMillis;
+    private final int statementCacheSize;
+
+    // Caps the number of concurrent leases at maxSize
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> leased = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown = false;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    public ConnectionPool(String url, String username, String password, int maxSize, int minIdle,
+                          long borrowTimeoutMillis, long idleTimeoutMillis, long leakThresholdMillis,
+                          int statementCacheSize) {
+        if (maxSize < 1 || minIdle < 0 || minIdle > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: max=" + maxSize + ", minIdle=" + minIdle);
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = minIdle;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.validationWindowMillis = 5000;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Opens minIdle connections up front so the first logins don't pay the handshake.
+     */
+    public void warmUp() {
+        while (idle.size() < minIdle && idle.size() + leased.size() < maxSize) {
+            if (!permits.tryAcquire()) {
+                return;
+            }
+            try {
+                idle.offerLast(createConnection());
+            } catch (SQLException e) {
+                System.err.println("[ConnectionPool] Warm-up failed: " + e.getMessage());
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Runs warmUp() on the housekeeper thread so the caller doesn't wait for the handshakes.
+     */
+    public void warmUpInBackground() {
+        housekeeper.execute(this::warmUp);
+    }
+
+    /**
+     * Leases a connection. Closing the returned connection hands it back to the pool.
+     */
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            PooledConnection pooled = takeValidConnection();
+            pooled.leasedAt = System.currentTimeMillis();
+            pooled.leaseTrace = leakThresholdMillis > 0 ? new Throwable("Connection leased here") : null;
+            leased.add(pooled);
+            return pooled.newLease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection takeValidConnection() throws SQLException {
+        PooledConnection pooled;
+        // Most recently returned first, so warm connections get reused
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled)) {
+                return pooled;
+            }
+            destroy(pooled);
+        }
+        return createConnection();
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        // Skip the ping for connections that were in use moments ago
+        if (System.currentTimeMillis() - pooled.lastUsed < validationWindowMillis) {
+            return true;
+        }
+        try {
+            return pooled.raw.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        leased.remove(pooled);
+        pooled.lastUsed = System.currentTimeMillis();
+        pooled.leaseTrace = null;
+        if (pooled.statements != null) {
+            pooled.statements.releaseAll();
+        }
+
+        boolean reusable = !shutdown;
+        if (reusable) {
+            try {
+                if (pooled.raw.isClosed()) {
+                    reusable = false;
+                } else if (!pooled.raw.getAutoCommit()) {
+                    // Don't hand a half-finished transaction to the next caller
+                    pooled.raw.rollback();
+                    pooled.raw.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                reusable = false;
+            }
+        }
+
+        if (reusable) {
+            idle.offerFirst(pooled);
+        } else {
+            destroy(pooled);
+        }
+        permits.release();
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, username, password);
+        createdCount.incrementAndGet();
+        return new PooledConnection(raw);
+    }
+
+    private void destroy(PooledConnection pooled) {
+        if (pooled.statements != null) {
+            pooled.statements.closeAll();
+        }
+        try {
+            pooled.raw.close();
+        } catch (SQLException e) {
+            System.err.println("[ConnectionPool] Failed to close connection: " + e.getMessage());
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    // Runs on the housekeeper thread: evicts stale idle connections, tops up to minIdle and reports leaks
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && idle.size() > minIdle) {
+            PooledConnection pooled = it.next();
+            if (now - pooled.lastUsed > idleTimeoutMillis && idle.remove(pooled)) {
+                destroy(pooled);
+                evictedCount.incrementAndGet();
+            }
+        }
+
+        if (!shutdown) {
+            warmUp();
+        }
+
+        if (leakThresholdMillis > 0) {
+            for (PooledConnection pooled : leased) {
+                Throwable trace = pooled.leaseTrace;
+                if (trace != null && now - pooled.leasedAt > leakThresholdMillis) {
+                    pooled.leaseTrace = null; // report each lease once
+                    leakCount.incrementAndGet();
+                    System.err.println("[ConnectionPool] Possible connection leak: leased "
+                            + (now - pooled.leasedAt) + " ms ago and not returned");
+                    trace.printStackTrace();
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    public int getMaxSize() { return maxSize; }
+    public int getActiveCount() { return leased.size(); }
+    public int getIdleCount() { return idle.size(); }
+    public int getWaitingCount() { return permits.getQueueLength(); }
+    public long getTotalBorrows() { return borrowCount.get(); }
+    public long getCreatedCount() { return createdCount.get(); }
+    public long getEvictedCount() { return evictedCount.get(); }
+    public long getTimeoutCount() { return timeoutCount.get(); }
+    public long getLeakCount() { return leakCount.get(); }
+
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0.0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool[active=%d, idle=%d, waiting=%d, max=%d, borrows=%d, avgWait=%.2fms, maxWait=%.2fms, timeouts=%d, leaks=%d]",
+                getActiveCount(), getIdleCount(), getWaitingCount(), maxSize, getTotalBorrows(),
+                getAverageWaitMillis(), getMaxWaitMillis(), getTimeoutCount(), getLeakCount());
+    }
+
+    // A physical connection plus its bookkeeping
+    private final class PooledConnection {
+        private final Connection raw;
+        // null when statement caching is turned off
+        private final StatementCache statements;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile long leasedAt;
+        private volatile Throwable leaseTrace;
+
+        private PooledConnection(Connection raw) {
+            this.raw = raw;
+            this.statements = statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null;
+        }
+
+        // Each lease gets its own proxy so a closed handle can't touch the next caller's session
+        private Connection newLease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, new Lease(this));
+        }
+    }
+
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private volatile boolean closed = false;
+
+        private Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    if (closed) return true;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.raw + (closed ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (pooled.statements != null && "prepareStatement".equals(method.getName()) && args.length == 1) {
+                return pooled.statements.prepare(pooled.raw, (Connection) proxy, (String) args[0]);
+            }
+            try {
+                return method.invoke(pooled.raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package common;
+
+import javafx.application.Platform;
+
+import java.sql.Connection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Runs database work off the JavaFX Application Thread.
+ * Every call gets its own virtual thread; the pool still caps how many of them hold a connection at once.
+ * Results and errors handed to the callback variants are delivered back on the FX thread.
+ * Each call is named after the operation it performs and timed into DBMetrics under that name.
+ */
+public class DBExecutor {
+
+    // Work that needs a leased connection
+    @FunctionalInterface
+    public interface DBCall<T> {
+        T call(Connection con) throws Exception;
+    }
+
+    // Work that leases its own connections (the *Functions classes)
+    @FunctionalInterface
+    public interface Work<T> {
+        T call() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    private final ConnectionPool pool;
+    private final ExecutorService executor;
+
+    public DBExecutor(ConnectionPool pool) {
+        this.pool = pool;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("db-worker-", 0).factory());
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Leases a connection on a worker thread and completes with whatever the call returns.
+     */
+    public <T> CompletableFuture<T> supply(String operation, DBCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            // Timed from before the lease, so pool waits show up in the operation's latency
+            long start = DBMetrics.start();
+            try (Connection con = pool.getConnection()) {
+                T result = call.call(con);
+                DBMetrics.record(operation, start, result);
+                return result;
+            } catch (Exception e) {
+                DBMetrics.recordError(operation, start);
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Same as supply, with the outcome handed to onSuccess or onError on the FX thread.
+     */
+    public <T> CompletableFuture<T> submit(String operation, DBCall<T> call, Consumer<? super T> onSuccess, Consumer<Throwable> onError) {
+        CompletableFuture<T> future = supply(operation, call);
+        deliver(future, onSuccess, onError);
+        return future;
+    }
+
+    /**
+     * Runs blocking work on a worker thread without leasing a connection for it.
+     */
+    public <T> CompletableFuture<T> call(String operation, Work<T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = DBMetrics.start();
+            try {
+                T result = work.call();
+                DBMetrics.record(operation, start, result);
+                return result;
+            } catch (Exception e) {
+                DBMetrics.recordError(operation, start);
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    public <T> CompletableFuture<T> call(String operation, Work<T> work, Consumer<? super T> onSuccess, Consumer<Throwable> onError) {
+        CompletableFuture<T> future = call(operation, work);
+        deliver(future, onSuccess, onError);
+        return future;
+    }
+
+    public CompletableFuture<Void> run(String operation, Action action) {
+        return call(operation, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> run(String operation, Action action, Runnable onSuccess, Consumer<Throwable> onError) {
+        CompletableFuture<Void> future = run(operation, action);
+        deliver(future, ignored -> onSuccess.run(), onError);
+        return future;
+    }
+
+    /**
+     * Starts a cancellable load. Bind the returned task to a progress indicator; its
+     * onSucceeded/onFailed handlers already run on the FX thread.
+     */
+    public <T> DBTask<T> task(String operation, DBTask.Body<T> body) {
+        DBTask<T> task = new DBTask<>(operation, pool, executor, body);
+        executor.execute(task);
+        return task;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Runs the action on the FX thread: straight away if already there, otherwise via Platform.runLater.
+     */
+    public static void runOnFx(Runnable action) {
+        if (Platform.isFxApplicationThread()) {
+            action.run();
+        } else {
+            Platform.runLater(action);
+        }
+    }
+
+    /**
+     * Strips the CompletionException/ExecutionException wrappers so callers see the real cause.
+     */
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static <T> void deliver(CompletableFuture<T> future, Consumer<? super T> onSuccess, Consumer<Throwable> onError) {
+        future.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (error == null) {
+                onSuccess.accept(result);
+            } else {
+                onError.accept(unwrap(error));
+            }
+        }));
+    }
+}
@@ -8,38 +8,101 @@ import java.time.LocalDateTime;
 
 public class DBLogger {
 
-    private static Connection connection;
+    private static ConnectionPool pool;
+    private static volatile AsyncLogWriter asyncWriter;
 
-    //inject connection externally
-    public static void setConnection(Connection con) {
-        connection = con;
+    //inject connection pool externally
+    public static void setConnectionPool(ConnectionPool connectionPool) {
+        pool = connectionPool;
+    }
+
+    /**
+     * Switches to async mode: log() enqueues the row and a background thread writes it in batches.
+     * Calling this again while async mode is already on has no effect.
+     */
+    public static synchronized void enableAsync(int capacity, int batchSize, long flushIntervalMillis,
+                                                AsyncLogWriter.Backpressure backpressure, long maxBlockMillis, int sampleRate) {
+        if (pool == null) {
+            System.err.println("[DBLogger] Connection pool not set. Async logging not enabled.");
+            return;
+        }
+        if (asyncWriter == null) {
+            asyncWriter = new AsyncLogWriter(pool, capacity, batchSize, flushIntervalMillis, backpressure, maxBlockMillis, sampleRate);
+        }
+    }
+
+    /**
+     * Waits until every queued log row has been written. No-op in synchronous mode.
+     */
+    public static boolean flush(long timeoutMillis) {
+        AsyncLogWriter writer = asyncWriter;
+        return writer == null || writer.flush(timeoutMillis);
+    }
+
+    /**
+     * Writes out anything still queued and goes back to synchronous logging.
+     */
+    public static synchronized void shutdown(long timeoutMillis) {
+        if (asyncWriter != null) {
+            asyncWriter.shutdown(timeoutMillis);
+            asyncWriter = null;
+        }
+    }
+
+    // Counters for the async writer, or null in synchronous mode
+    public static AsyncLogWriter getAsyncWriter() {
+        return asyncWriter;
     }
 
 
     public static void log(String level, String source, String message, String username, Integer recordID) {
-        if (connection == null) {
-            System.err.println("[DBLogger] Database connection not set. Logging skipped.");
+        if (pool == null) {
+            System.err.println("[DBLogger] Connection pool not set. Logging skipped.");
+            return;
+        }
+
+        String fullMessage = format(level, source, message, username);
+        Timestamp timestamp = Timestamp.valueOf(LocalDateTime.now());
+
+        AsyncLogWriter writer = asyncWriter;
+        if (writer != null) {
+            writer.enqueue(level, source, username, fullMessage, timestamp, recordID);
             return;
         }
 
-        String fullMessage = String.format("[%s] [%s] %s (User: %s)", level, source, message, username);
-
-        try {
-            String query = "INSERT INTO logs (Action, Timestamp, RecordID) VALUES (?, ?, ?)";
-            PreparedStatement stmt = connection.prepareStatement(query);
-            stmt.setString(1, fullMessage);
-            stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
-            if (recordID != null) {
-                stmt.setInt(3, recordID);
-            } else {
-                stmt.setNull(3, java.sql.Types.INTEGER);
+        // Action keeps the flattened text for older readers; Level, Source and Username are the indexed copies
+        String query = "INSERT INTO logs (Action, Timestamp, RecordID, Level, Source, Username) VALUES (?, ?, ?, ?, ?, ?)";
+        try (Connection connection = pool.getConnection()) {
+            // Not migrated yet (see SchemaMigration): Action alone still carries everything
+            boolean structured = LogSchema.hasStructuredColumns(connection);
+            if (!structured) {
+                query = "INSERT INTO logs (Action, Timestamp, RecordID) VALUES (?, ?, ?)";
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setString(1, fullMessage);
+                stmt.setTimestamp(2, timestamp);
+                if (recordID != null) {
+                    stmt.setInt(3, recordID);
+                } else {
+                    stmt.setNull(3, java.sql.Types.INTEGER);
+                }
+                if (structured) {
+                    stmt.setString(4, level);
+                    stmt.setString(5, source);
+                    stmt.setString(6, username);
+                }
+                stmt.executeUpdate();
             }
-            stmt.executeUpdate();
         } catch (SQLException e) {
             System.err.println("[DBLogger] Failed to insert log into DB: " + e.getMessage());
         }
     }
 
+    // Text stored in the Action column
+    public static String format(String level, String source, String message, String username) {
+        return String.format("[%s] [%s] %s (User: %s)", level, source, message, username);
+    }
+
     /**
      * Overloaded logger when no `recordID` is available (standard usage).
      */
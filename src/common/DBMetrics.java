@@ -0,0 +1,78 @@
+package common;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of per-operation database timings. DBExecutor and DBTask record every named call;
+ * code that leases connections itself wraps its work in start()/record() or recordError().
+ * Each operation is also published over JMX the first time it is recorded.
+ */
+public class DBMetrics {
+    private static final Map<String, OperationStats> OPERATIONS = new ConcurrentHashMap<>();
+
+    private DBMetrics() {
+    }
+
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public static void record(String operation, long startNanos, long rows) {
+        // Elapsed time is taken before get(), which registers the MBean on first use
+        long elapsed = System.nanoTime() - startNanos;
+        get(operation).record(elapsed, rows);
+    }
+
+    // Collections returned by a load count as its rows
+    public static void record(String operation, long startNanos, Object result) {
+        record(operation, startNanos, result instanceof Collection ? ((Collection<?>) result).size() : 0);
+    }
+
+    public static void recordError(String operation, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        get(operation).recordError(elapsed);
+    }
+
+    public static OperationStats get(String operation) {
+        OperationStats stats = OPERATIONS.get(operation);
+        if (stats == null) {
+            stats = OPERATIONS.computeIfAbsent(operation, DBMetrics::create);
+        }
+        return stats;
+    }
+
+    // Every operation recorded so far, by name
+    public static List<OperationStats> snapshot() {
+        List<OperationStats> all = new ArrayList<>(OPERATIONS.values());
+        all.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return all;
+    }
+
+    public static void resetAll() {
+        for (OperationStats stats : OPERATIONS.values()) {
+            stats.reset();
+        }
+    }
+
+    private static OperationStats create(String operation) {
+        OperationStats stats = new OperationStats(operation);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("common:type=DBMetrics,name=" + ObjectName.quote(operation));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(stats, name);
+            }
+        } catch (Exception e) {
+            // Metrics still work without JMX
+            System.err.println("[DBMetrics] Could not register MBean for " + operation + ": " + e.getMessage());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,94 @@
+package common;
+
+import javafx.concurrent.Task;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executor;
+
+/**
+ * JavaFX Task that runs a load on a leased connection.
+ * The body reports progress through progress()/message() and should check isCancelled() between rows.
+ * Cancelling also cancels the statement passed to track(), so a long query stops on the server too.
+ * The run is timed into DBMetrics under the task's operation name.
+ * Bodies that stream rows out instead of returning a collection report their count through rows().
+ */
+public class DBTask<T> extends Task<T> {
+
+    @FunctionalInterface
+    public interface Body<T> {
+        T call(Connection con, DBTask<T> task) throws Exception;
+    }
+
+    private final String operation;
+    private final ConnectionPool pool;
+    private final Executor executor;
+    private final Body<T> body;
+    private volatile Statement running;
+    private volatile long rows = -1;
+
+    DBTask(String operation, ConnectionPool pool, Executor executor, Body<T> body) {
+        this.operation = operation;
+        this.pool = pool;
+        this.executor = executor;
+        this.body = body;
+    }
+
+    @Override
+    protected T call() throws Exception {
+        long start = DBMetrics.start();
+        try (Connection con = pool.getConnection()) {
+            T result = body.call(con, this);
+            if (rows >= 0) {
+                DBMetrics.record(operation, start, rows);
+            } else {
+                DBMetrics.record(operation, start, result);
+            }
+            return result;
+        } catch (Exception e) {
+            DBMetrics.recordError(operation, start);
+            throw e;
+        } finally {
+            running = null;
+        }
+    }
+
+    /**
+     * Remembers the statement currently executing so cancel() can interrupt it.
+     */
+    public <S extends Statement> S track(S statement) {
+        running = statement;
+        return statement;
+    }
+
+    /**
+     * Sets the row count recorded for this run, for bodies whose result isn't the rows themselves.
+     */
+    public void rows(long count) {
+        rows = count;
+    }
+
+    public void progress(long done, long total) {
+        updateProgress(done, total);
+    }
+
+    public void message(String message) {
+        updateMessage(message);
+    }
+
+    @Override
+    protected void cancelled() {
+        Statement statement = running;
+        if (statement != null) {
+            // Statement.cancel() opens a second connection to kill the query, so keep it off the FX thread
+            executor.execute(() -> {
+                try {
+                    statement.cancel();
+                } catch (SQLException e) {
+                    System.err.println("[DBTask] Failed to cancel statement: " + e.getMessage());
+                }
+            });
+        }
+    }
+}
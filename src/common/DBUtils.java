@@ -1,4 +1,5 @@
 package common;
+import java.nio.file.Paths;
 import java.sql.*;
 
 public class DBUtils {
@@ -6,6 +7,247 @@ public class DBUtils {
     private static String DBUsername = "aisha";
     private static String DBPassword = "A1sh@123";
 
+    // Connection pool settings
+    private static final int POOL_MAX_SIZE = 10;
+    private static final int POOL_MIN_IDLE = 2;
+    private static final long POOL_BORROW_TIMEOUT_MS = 10_000;
+    private static final long POOL_IDLE_TIMEOUT_MS = 10 * 60_000;
+    private static final long POOL_LEAK_THRESHOLD_MS = 60_000;
+    private static final int POOL_STATEMENT_CACHE_SIZE = 64;
+    // Server-side prepares, so a cached statement also saves the parse on MySQL
+    private static final String POOL_URL_OPTIONS = "?useServerPrepStmts=true";
+
+    // Async log writer settings
+    public static final int LOG_BUFFER_CAPACITY = 8192;
+    public static final int LOG_BATCH_SIZE = 200;
+    public static final long LOG_FLUSH_INTERVAL_MS = 250;
+    public static final AsyncLogWriter.Backpressure LOG_BACKPRESSURE = AsyncLogWriter.Backpressure.BLOCK;
+    // Longest a log call waits for room in BLOCK mode; log() is also called on the FX thread
+    public static final long LOG_MAX_BLOCK_MS = 100;
+    public static final int LOG_SAMPLE_RATE = 10;
+
+    // IDs reserved per round trip to id_sequences
+    private static final int ID_BLOCK_SIZE = 50;
+    // How often the availability bitmap is re-read from the books table
+    private static final long AVAILABILITY_REVALIDATE_MINUTES = 5;
+    // Member profiles kept in memory, and how long one is trusted before it is re-read
+    private static final int MEMBER_CACHE_SIZE = 2048;
+    private static final long MEMBER_CACHE_TTL_MS = 5 * 60_000;
+    // Days of logs kept in MySQL; LogRetention moves older days to compressed segments in the log archive
+    public static final int LOG_RETENTION_DAYS = 90;
+    // The log archive is one shared directory: the retention job writes it and every desk's viewer reads it
+    public static final String LOG_ARCHIVE_DIR_PROPERTY = "librarymanagement.logArchiveDir";
+    private static final String LOG_ARCHIVE_DIR = "logs-archive";
+    // How often the fine balance mirror is re-read, and how often balances are recomputed from the loans
+    private static final long FINE_BALANCE_RELOAD_MINUTES = 5;
+    private static final long FINE_BALANCE_RECONCILE_HOURS = 24;
+    // How often the per-facility maintenance summary is rebuilt from maintenancerecords
+    private static final long MAINTENANCE_SUMMARY_REBUILD_HOURS = 24;
+    // How often the member name index is rebuilt, to pick up members added or renamed at other desks
+    private static final long MEMBER_NAME_INDEX_RELOAD_MINUTES = 5;
+    // How often recurring maintenance rules are re-read, to pick up rules added at other desks
+    private static final long MAINTENANCE_CALENDAR_RELOAD_MINUTES = 5;
+
+    private static ConnectionPool pool;
+    private static DBExecutor executor;
+    private static IdAllocator idAllocator;
+    private static CheckoutEngine checkoutEngine;
+    private static AvailabilityIndex availabilityIndex;
+    private static MemberNameIndex memberNameIndex;
+    private static MemberProfileCache memberProfileCache;
+    private static LogArchive logArchive;
+    private static FineBalances fineBalances;
+    private static MaintenanceSummary maintenanceSummary;
+    private static MaintenanceCalendar maintenanceCalendar;
+
+    /**
+     * Points the shared pool at another database, e.g. a scratch schema for benchmarks.
+     * Must be called before the pool is first used.
+     */
+    public static synchronized void useDatabase(String jdbcUrl) {
+        if (pool != null) {
+            throw new IllegalStateException("Connection pool already created for " + url);
+        }
+        url = jdbcUrl;
+    }
+
+    /**
+     * Shared pool used for the whole session. Created and warmed up on first use.
+     */
+    public static synchronized ConnectionPool getPool() {
+        if (pool == null) {
+            pool = new ConnectionPool(url + POOL_URL_OPTIONS, "root", "", POOL_MAX_SIZE, POOL_MIN_IDLE,
+                    POOL_BORROW_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, POOL_LEAK_THRESHOLD_MS, POOL_STATEMENT_CACHE_SIZE);
+            pool.warmUpInBackground();
+        }
+        return pool;
+    }
+
+    /**
+     * Shared executor that keeps JDBC work off the JavaFX thread.
+     */
+    public static synchronized DBExecutor getExecutor() {
+        if (executor == null) {
+            executor = new DBExecutor(getPool());
+        }
+        return executor;
+    }
+
+    /**
+     * Shared allocator for borrow, member, book and facility IDs.
+     */
+    public static synchronized IdAllocator getIdAllocator() {
+        if (idAllocator == null) {
+            idAllocator = new IdAllocator(getPool(), ID_BLOCK_SIZE);
+        }
+        return idAllocator;
+    }
+
+    /**
+     * Shared checkout engine, so its throughput and conflict counters cover every desk.
+     */
+    public static synchronized CheckoutEngine getCheckoutEngine() {
+        if (checkoutEngine == null) {
+            checkoutEngine = new CheckoutEngine(getPool(), getIdAllocator(), getAvailabilityIndex());
+        }
+        return checkoutEngine;
+    }
+
+    /**
+     * Shared book availability bitmap. The first call starts loading it in the background.
+     */
+    public static synchronized AvailabilityIndex getAvailabilityIndex() {
+        if (availabilityIndex == null) {
+            availabilityIndex = new AvailabilityIndex(getPool());
+            availabilityIndex.start(AVAILABILITY_REVALIDATE_MINUTES);
+        }
+        return availabilityIndex;
+    }
+
+    /**
+     * Shared member name index; loaded on the first search and rebuilt periodically.
+     */
+    public static synchronized MemberNameIndex getMemberNameIndex() {
+        if (memberNameIndex == null) {
+            memberNameIndex = new MemberNameIndex(getPool());
+            memberNameIndex.start(MEMBER_NAME_INDEX_RELOAD_MINUTES);
+        }
+        return memberNameIndex;
+    }
+
+    /**
+     * Shared member profile cache for the desk screens.
+     */
+    public static synchronized MemberProfileCache getMemberProfileCache() {
+        if (memberProfileCache == null) {
+            memberProfileCache = new MemberProfileCache(getPool(), MEMBER_CACHE_SIZE, MEMBER_CACHE_TTL_MS);
+        }
+        return memberProfileCache;
+    }
+
+    /**
+     * Shared per-member fine balances; the first call creates the table if needed and schedules the
+     * reload and the reconciler. Make the first call before holding a pooled connection, since
+     * creating the table leases one of its own.
+     */
+    public static synchronized FineBalances getFineBalances() {
+        if (fineBalances == null) {
+            fineBalances = new FineBalances(getPool());
+            try (Connection con = getPool().getConnection()) {
+                fineBalances.ensureTable(con);
+            } catch (SQLException e) {
+                System.err.println("[FineBalances] Could not create member_fine_balances: " + e.getMessage());
+            }
+            fineBalances.start(FINE_BALANCE_RELOAD_MINUTES, FINE_BALANCE_RECONCILE_HOURS);
+        }
+        return fineBalances;
+    }
+
+    /**
+     * Shared facility maintenance summary; the first call creates the table if needed and schedules
+     * its rebuild. Like getFineBalances(), make the first call before holding a pooled connection.
+     */
+    public static synchronized MaintenanceSummary getMaintenanceSummary() {
+        if (maintenanceSummary == null) {
+            maintenanceSummary = new MaintenanceSummary(getPool());
+            try (Connection con = getPool().getConnection()) {
+                maintenanceSummary.ensureTable(con);
+            } catch (SQLException e) {
+                System.err.println("[MaintenanceSummary] Could not create facility_maintenance_summary: " + e.getMessage());
+            }
+            maintenanceSummary.start(MAINTENANCE_SUMMARY_REBUILD_HOURS);
+        }
+        return maintenanceSummary;
+    }
+
+    /**
+     * Shared recurring maintenance calendar; the first call creates maintenance_rules if needed, reads the
+     * rules and schedules their reload. Like getFineBalances(), make the first call before holding a pooled connection.
+     */
+    public static synchronized MaintenanceCalendar getMaintenanceCalendar() {
+        if (maintenanceCalendar == null) {
+            maintenanceCalendar = new MaintenanceCalendar(getPool());
+            try {
+                try (Connection con = getPool().getConnection()) {
+                    maintenanceCalendar.ensureTable(con);
+                }
+                maintenanceCalendar.reload();
+            } catch (SQLException e) {
+                System.err.println("[MaintenanceCalendar] Could not load maintenance_rules: " + e.getMessage());
+            }
+            maintenanceCalendar.start(MAINTENANCE_CALENDAR_RELOAD_MINUTES);
+        }
+        return maintenanceCalendar;
+    }
+
+    /**
+     * The shared log archive, read by the log viewer. Its directory comes from the
+     * librarymanagement.logArchiveDir system property and must be the one the retention job writes to.
+     */
+    public static synchronized LogArchive getLogArchive() {
+        if (logArchive == null) {
+            logArchive = new LogArchive(Paths.get(System.getProperty(LOG_ARCHIVE_DIR_PROPERTY, LOG_ARCHIVE_DIR)));
+        }
+        return logArchive;
+    }
+
+    public static synchronized void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    public static synchronized void shutdownPool() {
+        if (fineBalances != null) {
+            fineBalances.shutdown();
+            fineBalances = null;
+        }
+        if (maintenanceSummary != null) {
+            maintenanceSummary.shutdown();
+            maintenanceSummary = null;
+        }
+        if (maintenanceCalendar != null) {
+            maintenanceCalendar.shutdown();
+            maintenanceCalendar = null;
+        }
+        if (memberNameIndex != null) {
+            memberNameIndex.shutdown();
+            memberNameIndex = null;
+        }
+        if (availabilityIndex != null) {
+            availabilityIndex.shutdown();
+            availabilityIndex = null;
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+            idAllocator = null;
+            checkoutEngine = null;
+            memberProfileCache = null;
+        }
+    }
+
     public static Connection establishConnection(String username, String password) {
         Connection con = null;
         try {
@@ -0,0 +1,390 @@
+package common;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outstanding fines per member, kept in member_fine_balances (one row per member, indexed by balance)
+ * and mirrored in memory. Every path that changes a loan's FineAmount calls adjust() with the change,
+ * in the same transaction, and publish() after it commits; each write bumps the row's Version so the
+ * mirror never goes back to an older value. balanceOf() is a map lookup and owingMoreThan() a range
+ * scan on the balance index, instead of summing borrowingrecords.
+ *
+ * The mirror is re-read every few minutes to pick up other desks' writes, and a reconciler
+ * periodically recomputes every balance from borrowingrecords and corrects any drift.
+ */
+public class FineBalances {
+
+    // One member's balance as of a given Version
+    public static final class Entry {
+        private final int memberId;
+        private final long cents;
+        private final long version;
+
+        private Entry(int memberId, long cents, long version) {
+            this.memberId = memberId;
+            this.cents = cents;
+            this.version = version;
+        }
+
+        public int getMemberId() { return memberId; }
+        public double getBalance() { return cents / 100.0; }
+        public long getVersion() { return version; }
+    }
+
+    private static final String LOCK_NAME = "librarymanagement.fine_balance_reconcile";
+    private static final String ADJUST_QUERY =
+            "INSERT INTO member_fine_balances (MemberID, Balance, Version) VALUES (?, ?, 1) " +
+            "ON DUPLICATE KEY UPDATE Balance = Balance + VALUES(Balance), Version = Version + 1";
+    private static final String SET_QUERY =
+            "INSERT INTO member_fine_balances (MemberID, Balance, Version) VALUES (?, ?, 1) " +
+            "ON DUPLICATE KEY UPDATE Balance = VALUES(Balance), Version = Version + 1";
+    private static final String SELECT_QUERY = "SELECT Balance, Version FROM member_fine_balances WHERE MemberID = ?";
+
+    private final ConnectionPool pool;
+    private final ScheduledExecutorService scheduler;
+    private final Object loadLock = new Object();
+    private volatile Map<Integer, Entry> balances;
+    private volatile boolean tableChecked;
+
+    private final AtomicLong reconcileCount = new AtomicLong();
+    private final AtomicLong driftCount = new AtomicLong();
+    private volatile long lastReconcileMillis;
+
+    public FineBalances(ConnectionPool pool) {
+        this.pool = pool;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fine-balances");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Re-reads the mirror every reloadMinutes and reconciles against borrowingrecords every reconcileHours.
+     */
+    public void start(long reloadMinutes, long reconcileHours) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reload();
+            } catch (SQLException e) {
+                System.err.println("[FineBalances] Reload failed: " + e.getMessage());
+            }
+        }, reloadMinutes, reloadMinutes, TimeUnit.MINUTES);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (SQLException e) {
+                System.err.println("[FineBalances] Reconcile failed: " + e.getMessage());
+            }
+        }, 1, TimeUnit.HOURS.toMinutes(reconcileHours), TimeUnit.MINUTES);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Adds delta to the member's balance on the caller's connection, inside its transaction.
+     * Returns the new balance to publish() once that transaction commits, or null if delta is zero.
+     * The caller must have read the FineAmount that delta is based on with FOR UPDATE in the same
+     * transaction, so a concurrent fine write can't slip in between. The table itself is created by
+     * DBUtils.getFineBalances(), never here.
+     */
+    public Entry adjust(Connection con, int memberId, double delta) throws SQLException {
+        long cents = Math.round(delta * 100);
+        if (cents == 0) {
+            return null;
+        }
+        try (PreparedStatement stmt = con.prepareStatement(ADJUST_QUERY)) {
+            stmt.setInt(1, memberId);
+            stmt.setBigDecimal(2, BigDecimal.valueOf(cents, 2));
+            stmt.executeUpdate();
+        }
+        // The row is locked by our update, so this sees our own write
+        return read(con, memberId);
+    }
+
+    // Called after the transaction holding the adjust() commits
+    public void publish(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        // Retried if a reload swapped the map in the meantime, so the new map gets it too
+        Map<Integer, Entry> current;
+        do {
+            current = balances;
+            if (current == null) {
+                return;
+            }
+            current.merge(entry.memberId, entry, FineBalances::newer);
+        } while (current != balances);
+    }
+
+    public void publishAll(List<Entry> entries) {
+        for (Entry entry : entries) {
+            publish(entry);
+        }
+    }
+
+    /**
+     * What the member owes, from the in-memory mirror.
+     */
+    public double balanceOf(int memberId) throws SQLException {
+        Entry entry = loaded().get(memberId);
+        return entry == null ? 0.0 : entry.getBalance();
+    }
+
+    /**
+     * Members owing more than amount, largest balance first, read from the balance index.
+     */
+    public List<Entry> owingMoreThan(double amount, int limit) throws SQLException {
+        String query = "SELECT MemberID, Balance, Version FROM member_fine_balances WHERE Balance > ? " +
+                "ORDER BY Balance DESC LIMIT ?";
+        List<Entry> owing = new ArrayList<>();
+        try (Connection con = pool.getConnection()) {
+            ensureTable(con);
+            try (PreparedStatement stmt = con.prepareStatement(query)) {
+                stmt.setBigDecimal(1, BigDecimal.valueOf(amount));
+                stmt.setInt(2, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        owing.add(entry(rs.getInt("MemberID"), rs));
+                    }
+                }
+            }
+        }
+        return owing;
+    }
+
+    /**
+     * Re-reads the whole table into a new mirror. Entries published while it was reading are kept
+     * if they are newer than what was read.
+     */
+    public void reload() throws SQLException {
+        synchronized (loadLock) {
+            Map<Integer, Entry> fresh = new ConcurrentHashMap<>();
+            try (Connection con = pool.getConnection()) {
+                ensureTable(con);
+                try (PreparedStatement stmt = con.prepareStatement("SELECT MemberID, Balance, Version FROM member_fine_balances");
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        int memberId = rs.getInt("MemberID");
+                        fresh.put(memberId, entry(memberId, rs));
+                    }
+                }
+            }
+            Map<Integer, Entry> old = balances;
+            balances = fresh;
+            if (old != null) {
+                for (Entry entry : old.values()) {
+                    fresh.merge(entry.memberId, entry, FineBalances::newer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes every balance from borrowingrecords and corrects the ones that disagree. Each suspect
+     * member is re-checked in its own transaction with their loans share-locked, so a fine being written
+     * at the same moment isn't mistaken for drift. Returns the number of balances corrected, or -1 if
+     * another client is already reconciling.
+     */
+    public int reconcile() throws SQLException {
+        long start = DBMetrics.start();
+        try (Connection con = pool.getConnection()) {
+            ensureTable(con);
+            if (!acquireLock(con)) {
+                return -1;
+            }
+            try {
+                Map<Integer, Long> owed = new HashMap<>();
+                String recompute = "SELECT MemberID, SUM(FineAmount) AS Owed FROM borrowingrecords " +
+                        "GROUP BY MemberID HAVING SUM(FineAmount) <> 0";
+                try (PreparedStatement stmt = con.prepareStatement(recompute);
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        owed.put(rs.getInt("MemberID"), toCents(rs.getBigDecimal("Owed")));
+                    }
+                }
+                Map<Integer, Long> stored = new HashMap<>();
+                try (PreparedStatement stmt = con.prepareStatement("SELECT MemberID, Balance FROM member_fine_balances");
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        stored.put(rs.getInt("MemberID"), toCents(rs.getBigDecimal("Balance")));
+                    }
+                }
+
+                Set<Integer> suspects = new HashSet<>();
+                for (Map.Entry<Integer, Long> member : owed.entrySet()) {
+                    if (!member.getValue().equals(stored.getOrDefault(member.getKey(), 0L))) {
+                        suspects.add(member.getKey());
+                    }
+                }
+                for (Map.Entry<Integer, Long> member : stored.entrySet()) {
+                    if (member.getValue() != 0 && !owed.containsKey(member.getKey())) {
+                        suspects.add(member.getKey());
+                    }
+                }
+
+                int corrected = 0;
+                for (int memberId : suspects) {
+                    if (recheck(con, memberId)) {
+                        corrected++;
+                    }
+                }
+                if (corrected > 0) {
+                    driftCount.addAndGet(corrected);
+                    DBLogger.log("WARN", "FineBalances", "Corrected " + corrected + " drifted fine balances", "system");
+                }
+                reconcileCount.incrementAndGet();
+                lastReconcileMillis = System.currentTimeMillis();
+                DBMetrics.record("reconcileFineBalances", start, corrected);
+                return corrected;
+            } finally {
+                releaseLock(con);
+            }
+        } catch (SQLException e) {
+            DBMetrics.recordError("reconcileFineBalances", start);
+            throw e;
+        }
+    }
+
+    public long getReconcileCount() { return reconcileCount.get(); }
+    public long getDriftCount() { return driftCount.get(); }
+    public long getLastReconcileMillis() { return lastReconcileMillis; }
+
+    public String stats() {
+        Map<Integer, Entry> current = balances;
+        return String.format("FineBalances[members=%s, reconciles=%d, drift=%d]",
+                current == null ? "not loaded" : Integer.toString(current.size()), getReconcileCount(), getDriftCount());
+    }
+
+    /**
+     * Creates member_fine_balances if it doesn't exist yet. A new table is filled in by the first reconcile.
+     * DDL commits implicitly, so call this on a connection of its own, not inside a transaction.
+     */
+    public void ensureTable(Connection con) throws SQLException {
+        if (tableChecked) {
+            return;
+        }
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS member_fine_balances ("
+                    + "MemberID INT NOT NULL PRIMARY KEY, "
+                    + "Balance DECIMAL(12,2) NOT NULL, "
+                    + "Version BIGINT NOT NULL, "
+                    + "KEY idx_balance (Balance))");
+        }
+        tableChecked = true;
+    }
+
+    // Loans first, then the balance row: the same lock order as the writers, so the two can't deadlock
+    private boolean recheck(Connection con, int memberId) throws SQLException {
+        con.setAutoCommit(false);
+        try {
+            long owed;
+            try (PreparedStatement stmt = con.prepareStatement(
+                    "SELECT COALESCE(SUM(FineAmount), 0) AS Owed FROM borrowingrecords WHERE MemberID = ? LOCK IN SHARE MODE")) {
+                stmt.setInt(1, memberId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    owed = toCents(rs.getBigDecimal("Owed"));
+                }
+            }
+            long stored = 0;
+            try (PreparedStatement stmt = con.prepareStatement(SELECT_QUERY + " FOR UPDATE")) {
+                stmt.setInt(1, memberId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        stored = toCents(rs.getBigDecimal("Balance"));
+                    }
+                }
+            }
+            if (owed == stored) {
+                con.commit();
+                return false;
+            }
+            try (PreparedStatement stmt = con.prepareStatement(SET_QUERY)) {
+                stmt.setInt(1, memberId);
+                stmt.setBigDecimal(2, BigDecimal.valueOf(owed, 2));
+                stmt.executeUpdate();
+            }
+            Entry entry = read(con, memberId);
+            con.commit();
+            publish(entry);
+            return true;
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    private Entry read(Connection con, int memberId) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(SELECT_QUERY)) {
+            stmt.setInt(1, memberId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? entry(memberId, rs) : null;
+            }
+        }
+    }
+
+    // Blocks only until the first load has finished
+    private Map<Integer, Entry> loaded() throws SQLException {
+        Map<Integer, Entry> current = balances;
+        if (current == null) {
+            synchronized (loadLock) {
+                if (balances == null) {
+                    reload();
+                }
+                current = balances;
+            }
+        }
+        return current;
+    }
+
+    private static Entry entry(int memberId, ResultSet rs) throws SQLException {
+        return new Entry(memberId, toCents(rs.getBigDecimal("Balance")), rs.getLong("Version"));
+    }
+
+    private static Entry newer(Entry a, Entry b) {
+        return b.version > a.version ? b : a;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private boolean acquireLock(Connection con) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            stmt.setString(1, LOCK_NAME);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void releaseLock(Connection con) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hands out primary keys from blocks reserved in the id_sequences table (hi/lo).
+ * Reserving a block is one atomic UPDATE on its own connection; the IDs inside a block
+ * come from an in-memory counter, so most inserts no longer need a SELECT MAX(...) round trip
+ * and two desks never get the same ID. IDs left in a block at shutdown are skipped, not reused.
+ */
+public class IdAllocator {
+
+    // Tables whose keys come from the allocator
+    public enum Sequence {
+        BORROW("borrowingrecords", "BorrowID"),
+        MEMBER("members", "MemberID"),
+        BOOK("books", "BookID"),
+        FACILITY("libraryfacilities", "FacilityID");
+
+        private final String table;
+        private final String column;
+
+        Sequence(String table, String column) {
+            this.table = table;
+            this.column = column;
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final int blockSize;
+    // Current block per sequence, indexed by ordinal
+    private final AtomicReferenceArray<Block> blocks = new AtomicReferenceArray<>(Sequence.values().length);
+    private final Object[] refillLocks = new Object[Sequence.values().length];
+
+    private volatile boolean tableChecked = false;
+
+    private final AtomicLong issuedCount = new AtomicLong();
+    private final AtomicLong reservedBlockCount = new AtomicLong();
+
+    public IdAllocator(ConnectionPool pool, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.pool = pool;
+        this.blockSize = blockSize;
+        for (int i = 0; i < refillLocks.length; i++) {
+            // Starts exhausted so the first next() reserves a real block
+            blocks.set(i, new Block(0, 0));
+            refillLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the next unused ID for the sequence. Only the call that crosses a block boundary touches the database.
+     */
+    public int next(Sequence sequence) throws SQLException {
+        while (true) {
+            Block block = blocks.get(sequence.ordinal());
+            long id = block.next.getAndIncrement();
+            if (id < block.limit) {
+                issuedCount.incrementAndGet();
+                return Math.toIntExact(id);
+            }
+            refill(sequence, block);
+        }
+    }
+
+    /**
+     * Reserves count consecutive IDs in one round trip, for bulk imports, and returns the first.
+     * The range is separate from the shared block, so interleaved next() calls are unaffected.
+     */
+    public int reserveRange(Sequence sequence, int count) throws SQLException {
+        if (count < 1) {
+            throw new IllegalArgumentException("Invalid range size: " + count);
+        }
+        long end = reserve(sequence, count);
+        reservedBlockCount.incrementAndGet();
+        issuedCount.addAndGet(count);
+        return Math.toIntExact(end - count);
+    }
+
+    public long getIssuedCount() { return issuedCount.get(); }
+    public long getReservedBlockCount() { return reservedBlockCount.get(); }
+
+    public String stats() {
+        return String.format("IdAllocator[blockSize=%d, issued=%d, blocksReserved=%d]",
+                blockSize, getIssuedCount(), getReservedBlockCount());
+    }
+
+    // Only one thread reserves per sequence; the others wait here and then use the new block
+    private void refill(Sequence sequence, Block exhausted) throws SQLException {
+        synchronized (refillLocks[sequence.ordinal()]) {
+            if (blocks.get(sequence.ordinal()) != exhausted) {
+                return;
+            }
+            long end = reserve(sequence, blockSize);
+            blocks.set(sequence.ordinal(), new Block(end - blockSize, end));
+            reservedBlockCount.incrementAndGet();
+        }
+    }
+
+    // Moves the high-water mark up by count and returns the new mark (exclusive end of the range)
+    private long reserve(Sequence sequence, int count) throws SQLException {
+        try (Connection con = pool.getConnection()) {
+            // Own connection in autocommit, so a caller's rollback can never hand the same block out twice
+            con.setAutoCommit(true);
+            if (!tableChecked) {
+                createTable(con);
+                tableChecked = true;
+            }
+            if (!advance(con, sequence, count)) {
+                seed(con, sequence);
+                if (!advance(con, sequence, count)) {
+                    throw new SQLException("Could not reserve IDs for sequence " + sequence);
+                }
+            }
+            try (PreparedStatement stmt = con.prepareStatement("SELECT LAST_INSERT_ID()");
+                 ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private boolean advance(Connection con, Sequence sequence, int count) throws SQLException {
+        // LAST_INSERT_ID(expr) makes the new value readable on this session without a second lock
+        String query = "UPDATE id_sequences SET NextValue = LAST_INSERT_ID(NextValue + ?) WHERE Name = ?";
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setInt(1, count);
+            stmt.setString(2, sequence.name());
+            return stmt.executeUpdate() == 1;
+        }
+    }
+
+    private void createTable(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS id_sequences ("
+                    + "Name VARCHAR(64) NOT NULL PRIMARY KEY, "
+                    + "NextValue BIGINT NOT NULL)");
+        }
+    }
+
+    // First use of a sequence: start it after the highest key already in its table
+    private void seed(Connection con, Sequence sequence) throws SQLException {
+        String query = "INSERT IGNORE INTO id_sequences (Name, NextValue) "
+                + "SELECT ?, COALESCE(MAX(" + sequence.column + "), 0) + 1 FROM " + sequence.table;
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setString(1, sequence.name());
+            stmt.executeUpdate();
+        }
+        DBLogger.log("INFO", "IdAllocator", "Seeded ID sequence " + sequence, "system");
+    }
+
+    // IDs [start, limit); next runs past limit once the block is used up
+    private static final class Block {
+        private final AtomicLong next;
+        private final long limit;
+
+        private Block(long start, long limit) {
+            this.next = new AtomicLong(start);
+            this.limit = limit;
+        }
+    }
+}
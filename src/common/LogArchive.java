@@ -0,0 +1,353 @@
+package common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed files holding log rows that retention has moved out of MySQL, one segment per day.
+ * A segment is a sequence of blocks: a header (compressed length, row count, oldest and newest timestamp)
+ * followed by the deflated rows, newest first. Search maps the file read-only and only inflates
+ * blocks whose time range overlaps the query.
+ */
+public class LogArchive {
+    private static final String SUFFIX = ".seg";
+    private static final int ROWS_PER_BLOCK = 1000;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+
+    private final Path dir;
+
+    public LogArchive(Path dir) {
+        this.dir = dir;
+    }
+
+    public Path getDirectory() { return dir; }
+
+    /**
+     * Writes every logs row from the given day to that day's segment and returns the number read from MySQL.
+     * Entries already in the segment are merged in (a row present in both is written once), so exporting a
+     * day again after a partial purge keeps what the earlier pass archived. The file is written under a
+     * temporary name and moved into place at the end, so an interrupted export never leaves a partial segment.
+     */
+    public int exportDay(Connection con, LocalDate day) throws SQLException, IOException {
+        Files.createDirectories(dir);
+        Path target = segmentPath(day);
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+
+        String columns = LogSchema.hasStructuredColumns(con)
+                ? "LogID, Timestamp, Level, Source, Username, Action"
+                : "LogID, Timestamp, NULL AS Level, NULL AS Source, NULL AS Username, Action";
+        String query = "SELECT " + columns + " FROM logs " +
+                "WHERE Timestamp >= ? AND Timestamp < ? ORDER BY Timestamp DESC, LogID DESC";
+        int rows = 0;
+        try (OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+             SegmentReader existing = new SegmentReader(target);
+             PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(day.atStartOfDay()));
+            stmt.setTimestamp(2, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+            // Streams rows one at a time instead of buffering the whole day
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                SegmentWriter writer = new SegmentWriter(out);
+                // Both sides are newest first, so this is a single merge pass
+                LogEntry kept = existing.next();
+                while (rs.next()) {
+                    LogEntry row = new LogEntry(rs.getLong("LogID"), rs.getTimestamp("Timestamp"), rs.getString("Level"),
+                            rs.getString("Source"), rs.getString("Username"), rs.getString("Action"));
+                    rows++;
+                    while (kept != null && isNewer(kept, row)) {
+                        writer.add(kept);
+                        kept = existing.next();
+                    }
+                    if (kept != null && kept.getLogId() == row.getLogId()) {
+                        // Archived by an earlier pass and not purged yet
+                        kept = existing.next();
+                    }
+                    writer.add(row);
+                }
+                while (kept != null) {
+                    writer.add(kept);
+                    kept = existing.next();
+                }
+                writer.finish();
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    /**
+     * Up to limit archived entries matching the query and older than after (or the newest if after is null),
+     * newest first. Same ordering as LogQuery.fetchPage, so the viewer can page on from the database into here.
+     */
+    public List<LogEntry> search(LogQuery query, LogEntry after, int limit) throws IOException {
+        List<LogEntry> found = new ArrayList<>();
+        for (LocalDate day : days()) {
+            if (found.size() >= limit) {
+                break;
+            }
+            long dayStart = Timestamp.valueOf(day.atStartOfDay()).getTime();
+            long dayEnd = Timestamp.valueOf(day.plusDays(1).atStartOfDay()).getTime() - 1;
+            if (!overlaps(query, after, dayStart, dayEnd)) {
+                continue;
+            }
+            searchSegment(segmentPath(day), query, after, limit, found);
+        }
+        return found;
+    }
+
+    // Archived days, newest first
+    public List<LocalDate> days() throws IOException {
+        List<LocalDate> days = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return days;
+        }
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(dir, "logs-*" + SUFFIX)) {
+            for (Path segment : segments) {
+                String name = segment.getFileName().toString();
+                days.add(LocalDate.parse(name.substring("logs-".length(), name.length() - SUFFIX.length())));
+            }
+        }
+        days.sort((a, b) -> b.compareTo(a));
+        return days;
+    }
+
+    private Path segmentPath(LocalDate day) {
+        return dir.resolve("logs-" + day + SUFFIX);
+    }
+
+    private void searchSegment(Path segment, LogQuery query, LogEntry after, int limit, List<LogEntry> found) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Inflater inflater = new Inflater();
+            try {
+                while (map.remaining() >= HEADER_BYTES && found.size() < limit) {
+                    int compressedLength = map.getInt();
+                    int rowCount = map.getInt();
+                    long oldest = map.getLong();
+                    long newest = map.getLong();
+                    if (!overlaps(query, after, oldest, newest)) {
+                        map.position(map.position() + compressedLength);
+                        continue;
+                    }
+
+                    DataInputStream in = inflateBlock(map, compressedLength, inflater, segment);
+                    for (int i = 0; i < rowCount && found.size() < limit; i++) {
+                        LogEntry entry = readEntry(in);
+                        if (isAfter(entry, after) && query.matches(entry)) {
+                            found.add(entry);
+                        }
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block in " + segment, e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    // Inflates the block starting at the map's position and moves past it
+    private static DataInputStream inflateBlock(MappedByteBuffer map, int compressedLength, Inflater inflater, Path segment)
+            throws IOException, DataFormatException {
+        ByteBuffer compressed = map.slice(map.position(), compressedLength);
+        map.position(map.position() + compressedLength);
+        inflater.reset();
+        inflater.setInput(compressed);
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(compressedLength * 4);
+        byte[] chunk = new byte[8192];
+        while (!inflater.finished()) {
+            int n = inflater.inflate(chunk);
+            if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                throw new IOException("Truncated block in " + segment);
+            }
+            raw.write(chunk, 0, n);
+        }
+        return new DataInputStream(new ByteArrayInputStream(raw.toByteArray()));
+    }
+
+    // Whether a block spanning [oldest, newest] can hold rows for this page
+    private static boolean overlaps(LogQuery query, LogEntry after, long oldest, long newest) {
+        if (query.getFrom() != null && newest < Timestamp.valueOf(query.getFrom()).getTime()) {
+            return false;
+        }
+        if (query.getTo() != null && oldest >= Timestamp.valueOf(query.getTo()).getTime()) {
+            return false;
+        }
+        return after == null || oldest <= after.getTimestamp().getTime();
+    }
+
+    // Keyset order: strictly older than the cursor on (Timestamp, LogID)
+    private static boolean isAfter(LogEntry entry, LogEntry cursor) {
+        if (cursor == null) {
+            return true;
+        }
+        int cmp = entry.getTimestamp().compareTo(cursor.getTimestamp());
+        return cmp < 0 || (cmp == 0 && entry.getLogId() < cursor.getLogId());
+    }
+
+    // Segment order: newest first on (Timestamp, LogID)
+    private static boolean isNewer(LogEntry entry, LogEntry other) {
+        int cmp = entry.getTimestamp().compareTo(other.getTimestamp());
+        return cmp > 0 || (cmp == 0 && entry.getLogId() > other.getLogId());
+    }
+
+    private static LogEntry readEntry(DataInputStream in) throws IOException {
+        long logId = in.readLong();
+        Timestamp timestamp = new Timestamp(in.readLong());
+        timestamp.setNanos(in.readInt());
+        return new LogEntry(logId, timestamp, readNullable(in), readNullable(in), readNullable(in), readNullable(in));
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            // writeUTF is limited to 64KB; longer messages are cut, which the Action column never reaches in practice
+            out.writeUTF(value.length() > 16_000 ? value.substring(0, 16_000) : value);
+        }
+    }
+
+    // Every entry of an existing segment in file order, one block inflated at a time; empty if there is no segment
+    private static final class SegmentReader implements AutoCloseable {
+        private final Path segment;
+        private final FileChannel channel;
+        private final MappedByteBuffer map;
+        private final Inflater inflater = new Inflater();
+        private DataInputStream block;
+        private int left;
+
+        private SegmentReader(Path segment) throws IOException {
+            this.segment = segment;
+            if (Files.exists(segment)) {
+                channel = FileChannel.open(segment, StandardOpenOption.READ);
+                map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } else {
+                channel = null;
+                map = null;
+            }
+        }
+
+        // null once every block has been read
+        private LogEntry next() throws IOException {
+            while (left == 0) {
+                if (map == null || map.remaining() < HEADER_BYTES) {
+                    return null;
+                }
+                int compressedLength = map.getInt();
+                left = map.getInt();
+                // Skip the time range
+                map.position(map.position() + 8 + 8);
+                try {
+                    block = inflateBlock(map, compressedLength, inflater, segment);
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupt block in " + segment, e);
+                }
+            }
+            left--;
+            return readEntry(block);
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    // Cuts the entries it is given into blocks of ROWS_PER_BLOCK
+    private static final class SegmentWriter {
+        private final OutputStream out;
+        private BlockWriter block = new BlockWriter();
+
+        private SegmentWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        private void add(LogEntry entry) throws IOException {
+            block.add(entry);
+            if (block.count == ROWS_PER_BLOCK) {
+                block.writeTo(out);
+                block = new BlockWriter();
+            }
+        }
+
+        private void finish() throws IOException {
+            if (block.count > 0) {
+                block.writeTo(out);
+            }
+        }
+    }
+
+    // Collects up to ROWS_PER_BLOCK rows and writes them as one compressed block
+    private static final class BlockWriter {
+        private final ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        private final DataOutputStream data = new DataOutputStream(raw);
+        private int count;
+        private long oldest = Long.MAX_VALUE;
+        private long newest = Long.MIN_VALUE;
+
+        private void add(LogEntry entry) throws IOException {
+            long millis = entry.getTimestamp().getTime();
+            data.writeLong(entry.getLogId());
+            data.writeLong(millis);
+            data.writeInt(entry.getTimestamp().getNanos());
+            writeNullable(data, entry.getLevel());
+            writeNullable(data, entry.getSource());
+            writeNullable(data, entry.getUsername());
+            writeNullable(data, entry.getAction());
+            oldest = Math.min(oldest, millis);
+            newest = Math.max(newest, millis);
+            count++;
+        }
+
+        private void writeTo(OutputStream out) throws IOException {
+            data.flush();
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try {
+                deflater.setInput(raw.toByteArray());
+                deflater.finish();
+                byte[] chunk = new byte[8192];
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(chunk);
+                    compressed.write(chunk, 0, n);
+                }
+            } finally {
+                deflater.end();
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(compressed.size()).putInt(count).putLong(oldest).putLong(newest);
+            out.write(header.array());
+            compressed.writeTo(out);
+        }
+    }
+}
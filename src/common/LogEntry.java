@@ -0,0 +1,37 @@
+package common;
+
+import java.sql.Timestamp;
+
+/**
+ * One row of the logs table as shown in the log viewer.
+ * Level, source and username are null for rows written before those columns existed.
+ */
+public class LogEntry {
+    private final long logId;
+    private final Timestamp timestamp;
+    private final String level;
+    private final String source;
+    private final String username;
+    private final String action;
+
+    public LogEntry(long logId, Timestamp timestamp, String level, String source, String username, String action) {
+        this.logId = logId;
+        this.timestamp = timestamp;
+        this.level = level;
+        this.source = source;
+        this.username = username;
+        this.action = action;
+    }
+
+    public long getLogId() { return logId; }
+    public Timestamp getTimestamp() { return timestamp; }
+    public String getLevel() { return level; }
+    public String getSource() { return source; }
+    public String getUsername() { return username; }
+    public String getAction() { return action; }
+
+    @Override
+    public String toString() {
+        return timestamp + " - " + action;
+    }
+}
@@ -0,0 +1,136 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Filters for the log viewer, and the keyset-paginated query that applies them.
+ * Pages are ordered newest first on (Timestamp, LogID); the next page starts strictly after the last
+ * entry of the previous one, so deep pages cost the same as the first instead of growing like OFFSET.
+ * Level, source and username are exact matches on indexed columns (see LogSchema); text is a LIKE on Action.
+ * On a logs table not yet migrated, level, source and username are matched in the Action text instead.
+ */
+public class LogQuery {
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final String level;
+    private final String source;
+    private final String username;
+    private final String text;
+
+    // Any argument may be null or blank for "no filter"; to is exclusive
+    public LogQuery(LocalDateTime from, LocalDateTime to, String level, String source, String username, String text) {
+        this.from = from;
+        this.to = to;
+        this.level = blankToNull(level);
+        this.source = blankToNull(source);
+        this.username = blankToNull(username);
+        this.text = blankToNull(text);
+    }
+
+    public LocalDateTime getFrom() { return from; }
+    public LocalDateTime getTo() { return to; }
+    public String getLevel() { return level; }
+    public String getSource() { return source; }
+    public String getUsername() { return username; }
+    public String getText() { return text; }
+
+    /**
+     * Up to pageSize entries after the given one (or from the newest if after is null).
+     */
+    public List<LogEntry> fetchPage(Connection con, LogEntry after, int pageSize) throws SQLException {
+        boolean structured = LogSchema.hasStructuredColumns(con);
+
+        StringBuilder sql = new StringBuilder(structured
+                ? "SELECT LogID, Timestamp, Level, Source, Username, Action FROM logs WHERE 1 = 1"
+                : "SELECT LogID, Timestamp, NULL AS Level, NULL AS Source, NULL AS Username, Action FROM logs WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (from != null) {
+            sql.append(" AND Timestamp >= ?");
+            params.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND Timestamp < ?");
+            params.add(Timestamp.valueOf(to));
+        }
+        if (level != null) {
+            sql.append(structured ? " AND Level = ?" : " AND Action LIKE ?");
+            params.add(structured ? level : "[" + escapeLike(level) + "] %");
+        }
+        if (source != null) {
+            sql.append(structured ? " AND Source = ?" : " AND Action LIKE ?");
+            params.add(structured ? source : "[%] [" + escapeLike(source) + "] %");
+        }
+        if (username != null) {
+            sql.append(structured ? " AND Username = ?" : " AND Action LIKE ?");
+            params.add(structured ? username : "% (User: " + escapeLike(username) + ")");
+        }
+        if (text != null) {
+            sql.append(" AND Action LIKE ?");
+            params.add("%" + escapeLike(text) + "%");
+        }
+        if (after != null) {
+            sql.append(" AND (Timestamp < ? OR (Timestamp = ? AND LogID < ?))");
+            params.add(after.getTimestamp());
+            params.add(after.getTimestamp());
+            params.add(after.getLogId());
+        }
+        sql.append(" ORDER BY Timestamp DESC, LogID DESC LIMIT ?");
+        params.add(pageSize);
+
+        List<LogEntry> page = new ArrayList<>(pageSize);
+        try (PreparedStatement stmt = con.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+            stmt.setFetchSize(pageSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    page.add(new LogEntry(rs.getLong("LogID"), rs.getTimestamp("Timestamp"), rs.getString("Level"),
+                            rs.getString("Source"), rs.getString("Username"), rs.getString("Action")));
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * The same filters applied in memory, for rows read back from the LogArchive.
+     * Text matching ignores case, like LIKE under the table's default collation.
+     */
+    public boolean matches(LogEntry entry) {
+        Timestamp timestamp = entry.getTimestamp();
+        if (from != null && timestamp.before(Timestamp.valueOf(from))) {
+            return false;
+        }
+        if (to != null && !timestamp.before(Timestamp.valueOf(to))) {
+            return false;
+        }
+        if (level != null && !level.equalsIgnoreCase(entry.getLevel())) {
+            return false;
+        }
+        if (source != null && !source.equalsIgnoreCase(entry.getSource())) {
+            return false;
+        }
+        if (username != null && !username.equalsIgnoreCase(entry.getUsername())) {
+            return false;
+        }
+        return text == null || (entry.getAction() != null
+                && entry.getAction().toLowerCase(Locale.ROOT).contains(text.toLowerCase(Locale.ROOT)));
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
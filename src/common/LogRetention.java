@@ -0,0 +1,201 @@
+package common;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the logs table to the last retentionDays days. Each older day is exported to a LogArchive
+ * segment and then removed from MySQL: by dropping its partition if logs is partitioned by day
+ * (partitions named pYYYYMMDD), otherwise by deleting it in small batches along the time index.
+ * Runs as one headless job, not from the desks, so every archived day lands in the one shared archive
+ * directory the log viewers read. A MySQL named lock still keeps two runs from overlapping.
+ *
+ * Run daily with: java common.LogRetention --archive=DIR [--days=N]
+ * (DIR defaults to the librarymanagement.logArchiveDir system property)
+ */
+public class LogRetention {
+    private static final int DELETE_BATCH_SIZE = 5000;
+    private static final String LOCK_NAME = "librarymanagement.log_retention";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    private final ConnectionPool pool;
+    private final LogArchive archive;
+    private final int retentionDays;
+
+    private final AtomicLong daysArchived = new AtomicLong();
+    private final AtomicLong rowsArchived = new AtomicLong();
+    private final AtomicLong rowsPurged = new AtomicLong();
+    private volatile long lastRunMillis;
+
+    public LogRetention(ConnectionPool pool, LogArchive archive, int retentionDays) {
+        if (retentionDays < 1) {
+            throw new IllegalArgumentException("Retention must be at least one day");
+        }
+        this.pool = pool;
+        this.archive = archive;
+        this.retentionDays = retentionDays;
+    }
+
+    public LogArchive getArchive() { return archive; }
+
+    /**
+     * Archives and removes every day older than the retention window, oldest first.
+     * Returns the number of days processed, or -1 if another client holds the retention lock.
+     */
+    public int runOnce() throws SQLException, IOException {
+        LocalDate cutoff = LocalDate.now().minusDays(retentionDays);
+        try (Connection con = pool.getConnection()) {
+            if (!acquireLock(con)) {
+                return -1;
+            }
+            try {
+                int days = 0;
+                LocalDate day;
+                while ((day = oldestDay(con)) != null && day.isBefore(cutoff)) {
+                    // Export first. If the purge fails partway, the next pass exports the day again and merges the
+                    // remaining rows into the segment, which still holds the ones already deleted
+                    int exported = archive.exportDay(con, day);
+                    long purged = purgeDay(con, day);
+                    daysArchived.incrementAndGet();
+                    rowsArchived.addAndGet(exported);
+                    rowsPurged.addAndGet(purged);
+                    DBLogger.log("INFO", "LogRetention", "Archived " + exported + " log rows from " + day + " and removed " + purged, "system");
+                    days++;
+                }
+                lastRunMillis = System.currentTimeMillis();
+                return days;
+            } finally {
+                releaseLock(con);
+            }
+        }
+    }
+
+    public long getDaysArchived() { return daysArchived.get(); }
+    public long getRowsArchived() { return rowsArchived.get(); }
+    public long getRowsPurged() { return rowsPurged.get(); }
+    public long getLastRunMillis() { return lastRunMillis; }
+
+    public String stats() {
+        return String.format("LogRetention[keep=%dd, days=%d, archived=%d, purged=%d]",
+                retentionDays, getDaysArchived(), getRowsArchived(), getRowsPurged());
+    }
+
+    private LocalDate oldestDay(Connection con) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT MIN(Timestamp) AS Oldest FROM logs");
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                Timestamp oldest = rs.getTimestamp("Oldest");
+                return oldest == null ? null : oldest.toLocalDateTime().toLocalDate();
+            }
+            return null;
+        }
+    }
+
+    private long purgeDay(Connection con, LocalDate day) throws SQLException {
+        String partition = day.format(PARTITION_NAME);
+        if (partitionExists(con, partition)) {
+            long rows = countDay(con, day);
+            try (Statement stmt = con.createStatement()) {
+                stmt.executeUpdate("ALTER TABLE logs DROP PARTITION " + partition);
+            }
+            return rows;
+        }
+
+        // Short autocommit batches keep lock time and undo size small while desks keep logging
+        long purged = 0;
+        String delete = "DELETE FROM logs WHERE Timestamp >= ? AND Timestamp < ? LIMIT " + DELETE_BATCH_SIZE;
+        try (PreparedStatement stmt = con.prepareStatement(delete)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(day.atStartOfDay()));
+            stmt.setTimestamp(2, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+            int deleted;
+            do {
+                deleted = stmt.executeUpdate();
+                purged += deleted;
+            } while (deleted == DELETE_BATCH_SIZE);
+        }
+        return purged;
+    }
+
+    private long countDay(Connection con, LocalDate day) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(
+                "SELECT COUNT(*) FROM logs WHERE Timestamp >= ? AND Timestamp < ?")) {
+            stmt.setTimestamp(1, Timestamp.valueOf(day.atStartOfDay()));
+            stmt.setTimestamp(2, Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    private boolean partitionExists(Connection con, String partition) throws SQLException {
+        String query = "SELECT 1 FROM information_schema.partitions " +
+                "WHERE table_schema = DATABASE() AND table_name = 'logs' AND partition_name = ? LIMIT 1";
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setString(1, partition);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private boolean acquireLock(Connection con) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            stmt.setString(1, LOCK_NAME);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void releaseLock(Connection con) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String dir = System.getProperty(DBUtils.LOG_ARCHIVE_DIR_PROPERTY);
+        int days = DBUtils.LOG_RETENTION_DAYS;
+        for (String arg : args) {
+            if (arg.startsWith("--archive=")) {
+                dir = arg.substring("--archive=".length());
+            } else if (arg.startsWith("--days=")) {
+                days = Integer.parseInt(arg.substring("--days=".length()));
+            } else {
+                dir = null;
+                break;
+            }
+        }
+        // No default directory: archiving into wherever the job happens to run would hide those days from the viewers
+        if (dir == null || dir.isEmpty()) {
+            System.err.println("Usage: LogRetention --archive=DIR [--days=N]");
+            System.exit(2);
+        }
+
+        Path archiveDir = Paths.get(dir);
+        ConnectionPool pool = DBUtils.getPool();
+        DBLogger.setConnectionPool(pool);
+        try {
+            LogRetention retention = new LogRetention(pool, new LogArchive(archiveDir), days);
+            int processed = retention.runOnce();
+            if (processed < 0) {
+                System.out.println("Another retention run holds the lock; nothing done");
+            } else {
+                System.out.println(retention.stats() + " -> " + archiveDir.toAbsolutePath());
+            }
+        } finally {
+            DBUtils.shutdownPool();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package common;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer / single-consumer ring buffer.
+ * Producers claim a slot with a CAS on the tail; the single consumer never needs one.
+ * Each slot carries a sequence number so a producer and the consumer never touch the same slot at once.
+ */
+public final class LogRingBuffer<E> {
+    private final int capacity;
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // Only written by the consumer thread, volatile so size() is accurate for producers
+    private volatile long head = 0;
+
+    public LogRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2: " + requestedCapacity);
+        }
+        // Round up to a power of two so the slot index is a mask instead of a modulo
+        this.capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.elements = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element without blocking. Returns false if the buffer is full.
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    elements[index] = element;
+                    // Publishing the sequence makes the element visible to the consumer
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                // Another producer took this slot first
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element, or returns null if nothing is ready. Consumer thread only.
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long pos = head;
+        int index = (int) (pos & mask);
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        // Hand the slot back to producers for the next lap
+        sequences.set(index, pos + capacity);
+        head = pos + 1;
+        return element;
+    }
+
+    /**
+     * Moves up to max ready elements into the target list. Consumer thread only.
+     */
+    public int drainTo(List<? super E> target, int max) {
+        int count = 0;
+        E element;
+        while (count < max && (element = poll()) != null) {
+            target.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,101 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * The structured columns and the indexes the log viewer's queries rely on.
+ * migrate() adds them to an existing logs table; it rebuilds the table, so it is run once as an admin
+ * step (SchemaMigration), never from a log call. At runtime hasStructuredColumns() only checks for the
+ * columns, and the log writers and queries fall back to the Action text while they are missing.
+ * Rows written before the upgrade keep NULL in the new columns and only match the unfiltered views.
+ */
+public class LogSchema {
+    // Column name -> definition
+    private static final String[][] COLUMNS = {
+            {"Level", "VARCHAR(10) NULL"},
+            {"Source", "VARCHAR(64) NULL"},
+            {"Username", "VARCHAR(64) NULL"},
+    };
+    // Index name -> column list; each filter column leads an index that still ends in the paging key
+    private static final String[][] INDEXES = {
+            {"idx_logs_time_id", "Timestamp, LogID"},
+            {"idx_logs_level_time", "Level, Timestamp, LogID"},
+            {"idx_logs_source_level_time", "Source, Level, Timestamp, LogID"},
+            {"idx_logs_user_time", "Username, Timestamp, LogID"},
+    };
+    // A missing column is looked for again after this long, so desks pick up a migration without a restart
+    private static final long RECHECK_MS = 60_000;
+
+    private static volatile boolean present;
+    private static volatile long checkedAt;
+
+    /**
+     * Adds whatever columns and indexes are missing. MySQL has no ADD COLUMN/INDEX IF NOT EXISTS,
+     * so information_schema is consulted first and running it again is harmless.
+     */
+    public static synchronized void migrate(Connection con) throws SQLException {
+        for (String[] column : COLUMNS) {
+            if (!columnExists(con, column[0])) {
+                try (Statement stmt = con.createStatement()) {
+                    stmt.executeUpdate("ALTER TABLE logs ADD COLUMN " + column[0] + " " + column[1]);
+                }
+            }
+        }
+        for (String[] index : INDEXES) {
+            if (!indexExists(con, index[0])) {
+                try (Statement stmt = con.createStatement()) {
+                    stmt.executeUpdate("ALTER TABLE logs ADD INDEX " + index[0] + " (" + index[1] + ")");
+                }
+            }
+        }
+        present = true;
+    }
+
+    /**
+     * Whether logs has the Level, Source and Username columns. Read-only; a positive answer is kept
+     * for the life of the process.
+     */
+    public static boolean hasStructuredColumns(Connection con) throws SQLException {
+        if (present || System.currentTimeMillis() - checkedAt < RECHECK_MS) {
+            return present;
+        }
+        synchronized (LogSchema.class) {
+            if (present || System.currentTimeMillis() - checkedAt < RECHECK_MS) {
+                return present;
+            }
+            boolean all = true;
+            for (String[] column : COLUMNS) {
+                all &= columnExists(con, column[0]);
+            }
+            present = all;
+            checkedAt = System.currentTimeMillis();
+            return all;
+        }
+    }
+
+    private static boolean columnExists(Connection con, String columnName) throws SQLException {
+        String query = "SELECT 1 FROM information_schema.columns " +
+                "WHERE table_schema = DATABASE() AND table_name = 'logs' AND column_name = ? LIMIT 1";
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setString(1, columnName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static boolean indexExists(Connection con, String indexName) throws SQLException {
+        String query = "SELECT 1 FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = 'logs' AND index_name = ? LIMIT 1";
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setString(1, indexName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
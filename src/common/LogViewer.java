@@ -0,0 +1,182 @@
+package common;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * System log window shared by the admin and librarian dashboards.
+ * Shows the logs table one page at a time in a virtualized list and fetches the next page
+ * when the user scrolls near the end. Date, level, source, user and text filters are applied in SQL.
+ * With "Include archived" ticked, paging carries on into the retention archive once the table runs out.
+ */
+public class LogViewer {
+    private static final int PAGE_SIZE = 200;
+    // Start fetching the next page when a row this close to the end is rendered
+    private static final int PREFETCH_ROWS = 50;
+    private static final String ANY_LEVEL = "Any level";
+
+    private final DBExecutor db;
+    private final String username;
+
+    private final ObservableList<LogEntry> entries = FXCollections.observableArrayList();
+    private final Label statusLabel = new Label();
+    private LogQuery query = new LogQuery(null, null, null, null, null, null);
+    // Bumped when the filters change, so pages for the old filters are dropped
+    private int generation;
+    private boolean loading;
+    private boolean exhausted;
+    private boolean includeArchived;
+    // True once the table has run out and pages come from the archive
+    private boolean inArchive;
+
+    public LogViewer(DBExecutor db, String username) {
+        this.db = db;
+        this.username = username;
+    }
+
+    public void display() {
+        Stage logStage = new Stage();
+        logStage.setTitle("System Logs");
+
+        DatePicker fromPicker = new DatePicker();
+        fromPicker.setPromptText("From");
+        DatePicker toPicker = new DatePicker();
+        toPicker.setPromptText("To");
+        ComboBox<String> levelBox = new ComboBox<>();
+        levelBox.getItems().addAll(ANY_LEVEL, "INFO", "WARN", "ERROR");
+        levelBox.setValue(ANY_LEVEL);
+        TextField sourceField = new TextField();
+        sourceField.setPromptText("Source (e.g. FineCalculator)");
+        TextField userField = new TextField();
+        userField.setPromptText("User");
+        TextField textField = new TextField();
+        textField.setPromptText("Contains...");
+        CheckBox archivedBox = new CheckBox("Include archived");
+        Button applyBtn = new Button("Apply");
+
+        applyBtn.setOnAction(e -> {
+            LocalDate from = fromPicker.getValue();
+            LocalDate to = toPicker.getValue();
+            if (from != null && to != null && to.isBefore(from)) {
+                showAlert("Invalid Range", "The end date is before the start date.");
+                return;
+            }
+            includeArchived = archivedBox.isSelected();
+            String level = levelBox.getValue();
+            query = new LogQuery(from == null ? null : from.atStartOfDay(),
+                    // The picker's end date is inclusive
+                    to == null ? null : to.plusDays(1).atStartOfDay(),
+                    ANY_LEVEL.equals(level) ? null : level,
+                    sourceField.getText(), userField.getText(), textField.getText());
+            restart();
+        });
+        textField.setOnAction(applyBtn.getOnAction());
+        sourceField.setOnAction(applyBtn.getOnAction());
+        userField.setOnAction(applyBtn.getOnAction());
+
+        ListView<LogEntry> logList = new ListView<>(entries);
+        logList.setCellFactory(list -> new ListCell<LogEntry>() {
+            @Override
+            protected void updateItem(LogEntry entry, boolean empty) {
+                super.updateItem(entry, empty);
+                setText(empty || entry == null ? null : entry.toString());
+                if (!empty && getIndex() >= entries.size() - PREFETCH_ROWS) {
+                    loadNextPage();
+                }
+            }
+        });
+        VBox.setVgrow(logList, Priority.ALWAYS);
+
+        HBox dateFilters = new HBox(10, new Label("From:"), fromPicker, new Label("To:"), toPicker, archivedBox);
+        dateFilters.setAlignment(Pos.CENTER_LEFT);
+        HBox fieldFilters = new HBox(10, new Label("Level:"), levelBox, sourceField, userField, textField, applyBtn);
+        fieldFilters.setAlignment(Pos.CENTER_LEFT);
+
+        VBox layout = new VBox(10, new Label("System Logs:"), dateFilters, fieldFilters, logList, statusLabel);
+        layout.setPadding(new Insets(15));
+        logStage.setScene(new Scene(layout, 800, 500));
+        logStage.show();
+
+        restart();
+    }
+
+    private void restart() {
+        generation++;
+        loading = false;
+        exhausted = false;
+        inArchive = false;
+        entries.clear();
+        loadNextPage();
+    }
+
+    // Runs on the FX thread; at most one page is in flight
+    private void loadNextPage() {
+        if (loading || exhausted) {
+            return;
+        }
+        loading = true;
+        int requestGeneration = generation;
+        LogQuery pageQuery = query;
+        LogEntry after = entries.isEmpty() ? null : entries.get(entries.size() - 1);
+        boolean fromArchive = inArchive;
+        statusLabel.setText(fromArchive ? "Searching archive..." : "Loading...");
+
+        if (fromArchive) {
+            db.call("searchLogArchive", () -> DBUtils.getLogArchive().search(pageQuery, after, PAGE_SIZE),
+                    page -> showPage(requestGeneration, true, page),
+                    ex -> showPageError(requestGeneration, ex));
+        } else {
+            db.submit("fetchLogPage", con -> pageQuery.fetchPage(con, after, PAGE_SIZE),
+                    page -> showPage(requestGeneration, false, page),
+                    ex -> showPageError(requestGeneration, ex));
+        }
+    }
+
+    private void showPage(int requestGeneration, boolean fromArchive, List<LogEntry> page) {
+        if (requestGeneration != generation) {
+            return;
+        }
+        loading = false;
+        entries.addAll(page);
+        if (page.size() < PAGE_SIZE) {
+            if (!fromArchive && includeArchived) {
+                // Archived rows are all older than what is left in the table, so keep paging from there
+                inArchive = true;
+                loadNextPage();
+                return;
+            }
+            exhausted = true;
+        }
+        statusLabel.setText(entries.size() + " entries" + (exhausted ? " (end of log)" : ", scroll for more")
+                + (inArchive ? " - including archive" : ""));
+    }
+
+    private void showPageError(int requestGeneration, Throwable ex) {
+        if (requestGeneration != generation) {
+            return;
+        }
+        loading = false;
+        statusLabel.setText("Error retrieving logs: " + ex.getMessage());
+        DBLogger.log("ERROR", "LogViewer", "Error retrieving logs: " + ex.getMessage(), username);
+        ex.printStackTrace();
+    }
+
+    private void showAlert(String title, String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+}
@@ -26,6 +26,7 @@ public class LoginInterface {
     private TextField usernameField = new TextField();
     private PasswordField passwordField = new PasswordField();
     private Stage stage;
+    private Button loginButton;
 
     public LoginInterface(Stage primaryStage) {
         this.stage = primaryStage;
@@ -40,7 +41,7 @@ public class LoginInterface {
         Label welcomeLabel = new Label("Library Management System - Login");
         Label usernameLabel = new Label("Username:");
         Label passwordLabel = new Label("Password:");
-        Button loginButton = new Button("Login");
+        loginButton = new Button("Login");
 
         welcomeLabel.setFont(Font.font("Arial", FontWeight.BOLD, 16));
         loginButton.setOnAction((ActionEvent event) -> authenticate());
@@ -71,59 +72,81 @@ public class LoginInterface {
     }
 
     private void validateUserLogin(String username, String enteredPassword) {
-        Connection con = DBUtils.establishConnection(); // Uses root
-        try {
-            String query = "SELECT PasswordHash, Salt, Role FROM users WHERE Username = ?";
-            PreparedStatement stmt = con.prepareStatement(query);
+        ConnectionPool pool = DBUtils.getPool();
+        DBExecutor db = DBUtils.getExecutor();
+        DBLogger.setConnectionPool(pool);
+        DBLogger.enableAsync(DBUtils.LOG_BUFFER_CAPACITY, DBUtils.LOG_BATCH_SIZE, DBUtils.LOG_FLUSH_INTERVAL_MS,
+                DBUtils.LOG_BACKPRESSURE, DBUtils.LOG_MAX_BLOCK_MS, DBUtils.LOG_SAMPLE_RATE);
+        // Starts loading the availability bitmap while the user is still logging in
+        DBUtils.getAvailabilityIndex();
+        // Sets up the summary tables on a worker with no connection held, before any desk transaction needs them
+        db.run("prepareSummaries", () -> {
+            DBUtils.getFineBalances();
+            DBUtils.getMaintenanceSummary();
+            DBUtils.getMaintenanceCalendar();
+        });
+
+        loginButton.setDisable(true);
+        db.submit("validateUserLogin", con -> findRole(con, username, enteredPassword),
+                role -> {
+                    loginButton.setDisable(false);
+                    if (role != null) {
+                        navigateToRoleInterface(role.toLowerCase(), username, db);
+                    } else {
+                        showAlert("Login Failed", "Incorrect username or password.");
+                    }
+                },
+                error -> {
+                    loginButton.setDisable(false);
+                    error.printStackTrace();
+                    showAlert("Database Error", "An error occurred while connecting.");
+                });
+    }
+
+    // Runs on a DB worker thread; returns null when the credentials don't match
+    private String findRole(Connection con, String username, String enteredPassword) throws Exception {
+        String query = "SELECT PasswordHash, Salt, Role FROM users WHERE Username = ?";
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
             stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
 
-            if (rs.next()) {
-                String storedHash = rs.getString("PasswordHash");
-                String storedSalt = rs.getString("Salt");
-                String role = rs.getString("Role");
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    String storedHash = rs.getString("PasswordHash");
+                    String storedSalt = rs.getString("Salt");
 
-                hashing hasher = new hashing(enteredPassword);
-                String generatedHash = hasher.generateHashWithSalt(enteredPassword, storedSalt);
+                    hashing hasher = new hashing(enteredPassword);
+                    String generatedHash = hasher.generateHashWithSalt(enteredPassword, storedSalt);
 
-                if (storedHash.equals(generatedHash)) {
-                    navigateToRoleInterface(role.toLowerCase(), username, con);
-                    return;
-                } else {
-                    showAlert("Login Failed", "Incorrect username or password.");
+                    if (storedHash.equals(generatedHash)) {
+                        return rs.getString("Role");
+                    }
                 }
-            } else {
-                showAlert("Login Failed", "Incorrect username or password.");
             }
-
-            rs.close();
-            stmt.close();
-            DBUtils.closeConnection(con, stmt);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            showAlert("Database Error", "An error occurred while connecting.");
         }
+        return null;
     }
 
-    private void navigateToRoleInterface(String role, String username, Connection con) {
+    private void navigateToRoleInterface(String role, String username, DBExecutor db) {
         switch (role) {
             case "admin":
-                List<User> userList = loadUserList(con);
-                new AdminInterface(stage, username, con, userList).initializeComponents();
+                db.submit("loadUserList", this::loadUserList,
+                        userList -> new AdminInterface(stage, username, db, userList).initializeComponents(),
+                        error -> {
+                            error.printStackTrace();
+                            new AdminInterface(stage, username, db, new ArrayList<>()).initializeComponents();
+                        });
                 break;
             case "librarian":
-                new LibrarianInterface(stage, username, con).initializeComponents();
+                new LibrarianInterface(stage, username, db).initializeComponents();
                 break;
             case "assistant":
-                new LibrarianAssistantInterface(stage, username, con).initializeComponents();
+                new LibrarianAssistantInterface(stage, username, db).initializeComponents();
                 break;
             default:
                 showAlert("Access Error", "Unrecognized role: " + role);
-                DBUtils.closeConnection(con, null);
         }
     }
-    private List<User> loadUserList(Connection con) {
+    private List<User> loadUserList(Connection con) throws SQLException {
         List<User> users = new ArrayList<>();
         String query = "SELECT Username, IsLocked FROM users";
     
@@ -138,9 +161,6 @@ public class LoginInterface {
                 user.setLocked(isLocked);
                 users.add(user);
             }
-    
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
     
         return users;
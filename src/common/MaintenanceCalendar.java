@@ -0,0 +1,365 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recurring maintenance rules ("every N days from StartDate, until EndDate") from maintenance_rules,
+ * held in memory. Occurrences are never stored: they are worked out for the window a caller asks for,
+ * so a year view over hundreds of facilities costs a few thousand date additions and no rows.
+ * Rules are kept sorted by start date, so a window query only looks at rules that have started by
+ * the end of the window, and per facility for conflict checks.
+ * The rules are read by DBUtils.getMaintenanceCalendar() and then by the reloader, so lookups never
+ * lease a connection of their own while a caller holds one.
+ */
+public class MaintenanceCalendar {
+
+    // One recurring rule
+    public static final class Rule {
+        private final int ruleId;
+        private final int facilityId;
+        private final String description;
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final int intervalDays;
+
+        public Rule(int ruleId, int facilityId, String description, LocalDate startDate, LocalDate endDate, int intervalDays) {
+            this.ruleId = ruleId;
+            this.facilityId = facilityId;
+            this.description = description;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.intervalDays = intervalDays;
+        }
+
+        public int getRuleId() { return ruleId; }
+        public int getFacilityId() { return facilityId; }
+        public String getDescription() { return description; }
+        public LocalDate getStartDate() { return startDate; }
+        public LocalDate getEndDate() { return endDate; }
+        public int getIntervalDays() { return intervalDays; }
+
+        // First occurrence on or after date, or null if the rule has ended by then
+        public LocalDate firstOnOrAfter(LocalDate date) {
+            LocalDate first = startDate;
+            if (date.isAfter(startDate)) {
+                long steps = (ChronoUnit.DAYS.between(startDate, date) + intervalDays - 1) / intervalDays;
+                first = startDate.plusDays(steps * intervalDays);
+            }
+            return endDate != null && first.isAfter(endDate) ? null : first;
+        }
+
+        // Last occurrence on or before date, or null if the rule hadn't started by then
+        public LocalDate lastOnOrBefore(LocalDate date) {
+            LocalDate limit = endDate != null && endDate.isBefore(date) ? endDate : date;
+            if (limit.isBefore(startDate)) {
+                return null;
+            }
+            long steps = ChronoUnit.DAYS.between(startDate, limit) / intervalDays;
+            return startDate.plusDays(steps * intervalDays);
+        }
+
+        // This rule's dates between from and to inclusive
+        public List<LocalDate> datesBetween(LocalDate from, LocalDate to) {
+            List<LocalDate> dates = new ArrayList<>();
+            for (Occurrence occurrence : expand(this, from, to, new ArrayList<>())) {
+                dates.add(occurrence.date);
+            }
+            return dates;
+        }
+
+        public boolean occursOn(LocalDate date) {
+            return !date.isBefore(startDate) && (endDate == null || !date.isAfter(endDate))
+                    && ChronoUnit.DAYS.between(startDate, date) % intervalDays == 0;
+        }
+    }
+
+    // One expanded occurrence of a rule
+    public static final class Occurrence {
+        private final Rule rule;
+        private final LocalDate date;
+
+        private Occurrence(Rule rule, LocalDate date) {
+            this.rule = rule;
+            this.date = date;
+        }
+
+        public Rule getRule() { return rule; }
+        public LocalDate getDate() { return date; }
+    }
+
+    // Immutable snapshot; adding a rule swaps in a new one
+    private static final class State {
+        private final Rule[] byStart;
+        private final LocalDate[] starts;
+        private final Map<Integer, List<Rule>> byFacility;
+
+        private State(List<Rule> rules) {
+            byStart = rules.toArray(new Rule[0]);
+            Arrays.sort(byStart, Comparator.comparing(Rule::getStartDate));
+            starts = new LocalDate[byStart.length];
+            byFacility = new HashMap<>();
+            for (int i = 0; i < byStart.length; i++) {
+                starts[i] = byStart[i].startDate;
+                byFacility.computeIfAbsent(byStart[i].facilityId, f -> new ArrayList<>()).add(byStart[i]);
+            }
+        }
+
+        // Number of rules starting on or before date
+        private int startedBy(LocalDate date) {
+            int low = 0;
+            int high = starts.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid].isAfter(date)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    // One-off records of one facility in a date range; a range read on (FacilityID, MaintenanceDate)
+    private static final String RECORDED_QUERY =
+            "SELECT DISTINCT MaintenanceDate FROM maintenancerecords WHERE FacilityID = ? AND MaintenanceDate BETWEEN ? AND ?";
+    private static final String INSERT_QUERY =
+            "INSERT INTO maintenance_rules (FacilityID, Description, StartDate, EndDate, IntervalDays) VALUES (?, ?, ?, ?, ?)";
+
+    private static final State EMPTY = new State(Collections.emptyList());
+
+    private final ConnectionPool pool;
+    private final ScheduledExecutorService reloader;
+    private final Object loadLock = new Object();
+    private volatile State state;
+
+    public MaintenanceCalendar(ConnectionPool pool) {
+        this.pool = pool;
+        this.reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "maintenance-calendar-reloader");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Re-reads the rules every reloadMinutes, to pick up rules added from other desks.
+     * If nothing has been loaded yet the first read happens straight away.
+     */
+    public void start(long reloadMinutes) {
+        reloader.scheduleWithFixedDelay(() -> {
+            try {
+                reload();
+            } catch (SQLException e) {
+                System.err.println("[MaintenanceCalendar] Reload failed: " + e.getMessage());
+            }
+        }, state == null ? 0 : reloadMinutes, reloadMinutes, TimeUnit.MINUTES);
+    }
+
+    public void shutdown() {
+        reloader.shutdownNow();
+    }
+
+    /**
+     * Every occurrence of every rule between from and to inclusive, in date order.
+     */
+    public List<Occurrence> occurrences(LocalDate from, LocalDate to) {
+        State current = loaded();
+        List<Occurrence> found = new ArrayList<>();
+        int started = current.startedBy(to);
+        for (int i = 0; i < started; i++) {
+            expand(current.byStart[i], from, to, found);
+        }
+        found.sort(Comparator.comparing(Occurrence::getDate));
+        return found;
+    }
+
+    /**
+     * One facility's occurrences between from and to inclusive, in date order.
+     */
+    public List<Occurrence> occurrences(int facilityId, LocalDate from, LocalDate to) {
+        List<Occurrence> found = new ArrayList<>();
+        for (Rule rule : loaded().byFacility.getOrDefault(facilityId, Collections.emptyList())) {
+            expand(rule, from, to, found);
+        }
+        found.sort(Comparator.comparing(Occurrence::getDate));
+        return found;
+    }
+
+    // The facility's rules that land on date; no expansion needed
+    public List<Rule> rulesOn(int facilityId, LocalDate date) {
+        List<Rule> matching = new ArrayList<>();
+        for (Rule rule : loaded().byFacility.getOrDefault(facilityId, Collections.emptyList())) {
+            if (rule.occursOn(date)) {
+                matching.add(rule);
+            }
+        }
+        return matching;
+    }
+
+    // Earliest occurrence after date across the facility's rules, or null
+    public LocalDate nextAfter(int facilityId, LocalDate date) {
+        LocalDate next = null;
+        for (Rule rule : loaded().byFacility.getOrDefault(facilityId, Collections.emptyList())) {
+            LocalDate candidate = rule.firstOnOrAfter(date.plusDays(1));
+            if (candidate != null && (next == null || candidate.isBefore(next))) {
+                next = candidate;
+            }
+        }
+        return next;
+    }
+
+    // Latest occurrence on or before date across the facility's rules, or null
+    public LocalDate lastOnOrBefore(int facilityId, LocalDate date) {
+        LocalDate last = null;
+        for (Rule rule : loaded().byFacility.getOrDefault(facilityId, Collections.emptyList())) {
+            LocalDate candidate = rule.lastOnOrBefore(date);
+            if (candidate != null && (last == null || candidate.isAfter(last))) {
+                last = candidate;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Which of the given dates (in order) already have maintenance at the facility, either a one-off
+     * record or an occurrence of one of its rules. Only the span of the given dates is looked at.
+     */
+    public List<LocalDate> conflicts(Connection con, int facilityId, List<LocalDate> dates) throws SQLException {
+        if (dates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        LocalDate from = dates.get(0);
+        LocalDate to = dates.get(dates.size() - 1);
+        Set<LocalDate> taken = new HashSet<>();
+        for (Occurrence occurrence : occurrences(facilityId, from, to)) {
+            taken.add(occurrence.date);
+        }
+        try (PreparedStatement stmt = con.prepareStatement(RECORDED_QUERY)) {
+            stmt.setInt(1, facilityId);
+            stmt.setString(2, from.toString());
+            stmt.setString(3, to.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    taken.add(rs.getDate(1).toLocalDate());
+                }
+            }
+        }
+        List<LocalDate> clashing = new ArrayList<>();
+        for (LocalDate date : dates) {
+            if (taken.contains(date)) {
+                clashing.add(date);
+            }
+        }
+        return clashing;
+    }
+
+    /**
+     * Stores a new rule (autocommit) and adds it to the in-memory calendar.
+     */
+    public Rule addRule(Connection con, int facilityId, String description, LocalDate startDate,
+                        LocalDate endDate, int intervalDays) throws SQLException {
+        if (intervalDays < 1) {
+            throw new IllegalArgumentException("Interval must be at least one day");
+        }
+        Rule rule;
+        try (PreparedStatement stmt = con.prepareStatement(INSERT_QUERY, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, facilityId);
+            stmt.setString(2, description);
+            stmt.setString(3, startDate.toString());
+            stmt.setString(4, endDate == null ? null : endDate.toString());
+            stmt.setInt(5, intervalDays);
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                keys.next();
+                rule = new Rule(keys.getInt(1), facilityId, description, startDate, endDate, intervalDays);
+            }
+        }
+        synchronized (loadLock) {
+            State current = state;
+            if (current != null) {
+                List<Rule> rules = new ArrayList<>(Arrays.asList(current.byStart));
+                rules.add(rule);
+                state = new State(rules);
+            }
+        }
+        return rule;
+    }
+
+    public void reload() throws SQLException {
+        List<Rule> rules = new ArrayList<>();
+        String query = "SELECT RuleID, FacilityID, Description, StartDate, EndDate, IntervalDays FROM maintenance_rules";
+        synchronized (loadLock) {
+            try (Connection con = pool.getConnection()) {
+                try (PreparedStatement stmt = con.prepareStatement(query);
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Date end = rs.getDate("EndDate");
+                        rules.add(new Rule(rs.getInt("RuleID"), rs.getInt("FacilityID"), rs.getString("Description"),
+                                rs.getDate("StartDate").toLocalDate(), end == null ? null : end.toLocalDate(),
+                                rs.getInt("IntervalDays")));
+                    }
+                }
+            }
+            state = new State(rules);
+        }
+    }
+
+    public String stats() {
+        State current = state;
+        return current == null ? "MaintenanceCalendar[not loaded]"
+                : String.format("MaintenanceCalendar[rules=%d, facilities=%d]", current.byStart.length, current.byFacility.size());
+    }
+
+    /**
+     * Creates maintenance_rules if it does not exist. Called once by DBUtils.getMaintenanceCalendar(),
+     * never on a desk's connection.
+     */
+    public void ensureTable(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS maintenance_rules ("
+                    + "RuleID INT NOT NULL AUTO_INCREMENT PRIMARY KEY, "
+                    + "FacilityID INT NOT NULL, "
+                    + "Description TEXT, "
+                    + "StartDate DATE NOT NULL, "
+                    + "EndDate DATE NULL, "
+                    + "IntervalDays INT NOT NULL, "
+                    + "KEY idx_rules_facility (FacilityID))");
+        }
+    }
+
+    // Never leases a connection, since callers may hold one; until the first load lands there are no rules
+    private State loaded() {
+        State current = state;
+        return current == null ? EMPTY : current;
+    }
+
+    private static List<Occurrence> expand(Rule rule, LocalDate from, LocalDate to, List<Occurrence> into) {
+        LocalDate date = rule.firstOnOrAfter(from);
+        LocalDate last = rule.endDate != null && rule.endDate.isBefore(to) ? rule.endDate : to;
+        while (date != null && !date.isAfter(last)) {
+            into.add(new Occurrence(rule, date));
+            date = date.plusDays(rule.intervalDays);
+        }
+        return into;
+    }
+}
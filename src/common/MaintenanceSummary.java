@@ -0,0 +1,263 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Last and next maintenance date per facility, kept in facility_maintenance_summary so the facility
+ * grid is one join on the primary key instead of a MAX() over maintenancerecords per facility.
+ * Scheduling maintenance updates the row in the same transaction as the insert. Once a facility's
+ * next date has passed its row is stale; readers refresh those few rows with refresh(), and a
+ * periodic rebuild recomputes every row from maintenancerecords through the (FacilityID, MaintenanceDate)
+ * covering index. The summary table is created by DBUtils.getMaintenanceSummary(); the index is added
+ * by SchemaMigration, since it rebuilds maintenancerecords.
+ */
+public class MaintenanceSummary {
+
+    // One facility's summary; either date may be null
+    public static final class Dates {
+        private final LocalDate last;
+        private final LocalDate next;
+
+        public Dates(LocalDate last, LocalDate next) {
+            this.last = last;
+            this.next = next;
+        }
+
+        public LocalDate getLast() { return last; }
+        public LocalDate getNext() { return next; }
+
+        // The next date is today or earlier, so it should have become the last one
+        public boolean isStale(LocalDate today) {
+            return next != null && !next.isAfter(today);
+        }
+    }
+
+    private static final String LOCK_NAME = "librarymanagement.maintenance_summary";
+    private static final String INDEX_NAME = "idx_maintenance_facility_date";
+    private static final String RECORD_PAST =
+            "INSERT INTO facility_maintenance_summary (FacilityID, LastMaintenance, NextMaintenance) VALUES (?, ?, NULL) " +
+            "ON DUPLICATE KEY UPDATE LastMaintenance = GREATEST(COALESCE(LastMaintenance, VALUES(LastMaintenance)), VALUES(LastMaintenance))";
+    private static final String RECORD_FUTURE =
+            "INSERT INTO facility_maintenance_summary (FacilityID, LastMaintenance, NextMaintenance) VALUES (?, NULL, ?) " +
+            "ON DUPLICATE KEY UPDATE NextMaintenance = LEAST(COALESCE(NextMaintenance, VALUES(NextMaintenance)), VALUES(NextMaintenance))";
+    // Dates on or before ? count as done, later ones as upcoming
+    private static final String AGGREGATE =
+            "SELECT FacilityID, " +
+            "MAX(CASE WHEN MaintenanceDate <= ? THEN MaintenanceDate END) AS LastMaintenance, " +
+            "MIN(CASE WHEN MaintenanceDate > ? THEN MaintenanceDate END) AS NextMaintenance " +
+            "FROM maintenancerecords";
+    private static final String UPSERT_SUFFIX =
+            " ON DUPLICATE KEY UPDATE LastMaintenance = VALUES(LastMaintenance), NextMaintenance = VALUES(NextMaintenance)";
+    private static final String CLEAR_ORPHANS =
+            "UPDATE facility_maintenance_summary s " +
+            "LEFT JOIN maintenancerecords m ON m.FacilityID = s.FacilityID " +
+            "SET s.LastMaintenance = NULL, s.NextMaintenance = NULL " +
+            "WHERE m.FacilityID IS NULL AND (s.LastMaintenance IS NOT NULL OR s.NextMaintenance IS NOT NULL)";
+
+    private final ConnectionPool pool;
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean tableChecked;
+
+    private final AtomicLong rebuildCount = new AtomicLong();
+    private final AtomicLong rowsRefreshed = new AtomicLong();
+    private volatile long lastRebuildMillis;
+
+    public MaintenanceSummary(ConnectionPool pool) {
+        this.pool = pool;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "maintenance-summary");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Rebuilds shortly after startup and then every intervalHours.
+     */
+    public void start(long intervalHours) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                rebuild();
+            } catch (SQLException e) {
+                System.err.println("[MaintenanceSummary] Rebuild failed: " + e.getMessage());
+            }
+        }, 1, TimeUnit.HOURS.toMinutes(intervalHours), TimeUnit.MINUTES);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Folds a newly inserted maintenance record into its facility's row, on the caller's connection
+     * and inside its transaction.
+     */
+    public void recordScheduled(Connection con, int facilityId, LocalDate date) throws SQLException {
+        boolean done = !date.isAfter(LocalDate.now());
+        try (PreparedStatement stmt = con.prepareStatement(done ? RECORD_PAST : RECORD_FUTURE)) {
+            stmt.setInt(1, facilityId);
+            stmt.setString(2, date.toString());
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Recomputes the given facilities' rows, e.g. the stale ones a reader just found, and returns them.
+     * Each is one range read on the covering index.
+     */
+    public Map<Integer, Dates> refresh(Connection con, List<Integer> facilityIds) throws SQLException {
+        Map<Integer, Dates> refreshed = new HashMap<>();
+        String today = LocalDate.now().toString();
+        try (PreparedStatement select = con.prepareStatement(AGGREGATE + " WHERE FacilityID = ? GROUP BY FacilityID");
+             PreparedStatement update = con.prepareStatement(
+                     "INSERT INTO facility_maintenance_summary (FacilityID, LastMaintenance, NextMaintenance) VALUES (?, ?, ?)"
+                             + UPSERT_SUFFIX)) {
+            for (int facilityId : facilityIds) {
+                select.setString(1, today);
+                select.setString(2, today);
+                select.setInt(3, facilityId);
+                Dates dates = new Dates(null, null);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (rs.next()) {
+                        dates = new Dates(toLocalDate(rs.getDate("LastMaintenance")), toLocalDate(rs.getDate("NextMaintenance")));
+                    }
+                }
+                update.setInt(1, facilityId);
+                update.setString(2, dates.last == null ? null : dates.last.toString());
+                update.setString(3, dates.next == null ? null : dates.next.toString());
+                update.executeUpdate();
+                refreshed.put(facilityId, dates);
+            }
+        }
+        rowsRefreshed.addAndGet(refreshed.size());
+        return refreshed;
+    }
+
+    /**
+     * Recomputes every facility's row from maintenancerecords in one grouped pass over the covering index.
+     * Returns false without doing anything if another client is already rebuilding.
+     */
+    public boolean rebuild() throws SQLException {
+        long start = DBMetrics.start();
+        try (Connection con = pool.getConnection()) {
+            ensureTable(con);
+            if (!acquireLock(con)) {
+                return false;
+            }
+            try {
+                rebuild(con);
+                rebuildCount.incrementAndGet();
+                lastRebuildMillis = System.currentTimeMillis();
+                DBMetrics.record("rebuildMaintenanceSummary", start, 0);
+                return true;
+            } finally {
+                releaseLock(con);
+            }
+        } catch (SQLException e) {
+            DBMetrics.recordError("rebuildMaintenanceSummary", start);
+            throw e;
+        }
+    }
+
+    public long getRebuildCount() { return rebuildCount.get(); }
+    public long getRowsRefreshed() { return rowsRefreshed.get(); }
+    public long getLastRebuildMillis() { return lastRebuildMillis; }
+
+    public String stats() {
+        return String.format("MaintenanceSummary[rebuilds=%d, refreshed=%d]", getRebuildCount(), getRowsRefreshed());
+    }
+
+    /**
+     * Creates the summary table if it is missing and fills a newly created one straight away.
+     * DDL commits implicitly, so call this on a connection of its own, not inside a transaction.
+     */
+    public void ensureTable(Connection con) throws SQLException {
+        if (tableChecked) {
+            return;
+        }
+        boolean created = false;
+        if (!exists(con, "SELECT 1 FROM information_schema.tables " +
+                "WHERE table_schema = DATABASE() AND table_name = 'facility_maintenance_summary'")) {
+            try (Statement stmt = con.createStatement()) {
+                stmt.executeUpdate("CREATE TABLE IF NOT EXISTS facility_maintenance_summary ("
+                        + "FacilityID INT NOT NULL PRIMARY KEY, "
+                        + "LastMaintenance DATE NULL, "
+                        + "NextMaintenance DATE NULL)");
+            }
+            created = true;
+        }
+        tableChecked = true;
+        if (created) {
+            rebuild(con);
+        }
+    }
+
+    /**
+     * Adds the (FacilityID, MaintenanceDate) covering index to maintenancerecords if it is missing.
+     * Rebuilds that table, so it belongs in SchemaMigration, not on a desk.
+     */
+    public static void migrateIndex(Connection con) throws SQLException {
+        if (!exists(con, "SELECT 1 FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = 'maintenancerecords' AND index_name = '" + INDEX_NAME + "'")) {
+            try (Statement stmt = con.createStatement()) {
+                stmt.executeUpdate("CREATE INDEX " + INDEX_NAME + " ON maintenancerecords (FacilityID, MaintenanceDate)");
+            }
+        }
+    }
+
+    private void rebuild(Connection con) throws SQLException {
+        String query = "INSERT INTO facility_maintenance_summary (FacilityID, LastMaintenance, NextMaintenance) "
+                + AGGREGATE + " GROUP BY FacilityID" + UPSERT_SUFFIX;
+        String today = LocalDate.now().toString();
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setString(1, today);
+            stmt.setString(2, today);
+            stmt.executeUpdate();
+        }
+        // The upsert only reaches facilities that still have records; clear the ones whose records are all gone
+        try (PreparedStatement stmt = con.prepareStatement(CLEAR_ORPHANS)) {
+            stmt.executeUpdate();
+        }
+        DBLogger.log("INFO", "MaintenanceSummary", "Rebuilt facility maintenance summary", "system");
+    }
+
+    private static boolean exists(Connection con, String query) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date == null ? null : date.toLocalDate();
+    }
+
+    private boolean acquireLock(Connection con) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            stmt.setString(1, LOCK_NAME);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+    }
+
+    private void releaseLock(Connection con) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        }
+    }
+}
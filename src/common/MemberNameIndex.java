@@ -0,0 +1,425 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over members.Name for as-you-type search.
+ * Each word of a name is indexed as padded trigrams ("  jo", " joh", "joh", ...), so a query
+ * matches on word prefixes as well as on misspellings that share most trigrams.
+ * Registration, member updates and admin deletes keep it in sync; reload() rebuilds it from the table,
+ * and is scheduled periodically to pick up members added or renamed at other desks.
+ */
+public class MemberNameIndex {
+
+    // One ranked search hit
+    public static final class Match {
+        private final int memberId;
+        private final String name;
+        private final double score;
+
+        private Match(int memberId, String name, double score) {
+            this.memberId = memberId;
+            this.name = name;
+            this.score = score;
+        }
+
+        public int getMemberId() { return memberId; }
+        public String getName() { return name; }
+        public double getScore() { return score; }
+
+        @Override
+        public String toString() {
+            return name + " (#" + memberId + ")";
+        }
+    }
+
+    // Score bonus when every query word is a prefix of some word in the name
+    private static final double PREFIX_BONUS = 1.0;
+    // Extra bonus per query word that is a whole word of the name ("john" ranks John Smith above Johnson)
+    private static final double WORD_BONUS = 0.25;
+    // Below this share of matching trigrams a candidate is noise, not a typo
+    private static final double MIN_SIMILARITY = 0.3;
+
+    private final ConnectionPool pool;
+    private final ScheduledExecutorService scheduler;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object loadLock = new Object();
+    // Guarded by lock
+    private Map<Integer, String> names;
+    private Map<Integer, String[]> words;
+    private Map<String, Set<Integer>> postings;
+    // Changes made while reload() is reading the table, replayed onto the new index; guarded by lock
+    private List<Change> pending;
+
+    private final AtomicLong searchCount = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+
+    public MemberNameIndex(ConnectionPool pool) {
+        this.pool = pool;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "member-name-index");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Re-reads the index every reloadMinutes. The first load still happens on the first search.
+     */
+    public void start(long reloadMinutes) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reload();
+            } catch (SQLException e) {
+                System.err.println("[MemberNameIndex] Reload failed: " + e.getMessage());
+            }
+        }, reloadMinutes, reloadMinutes, TimeUnit.MINUTES);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Members whose name has a word starting with each query word, with no typo tolerance;
+     * at most limit of them, by name. Used where opening the wrong member would be worse than asking.
+     */
+    public List<Match> prefixMatches(String query, int limit) throws SQLException {
+        String[] queryWords = split(query);
+        if (queryWords.length == 0 || limit <= 0) {
+            return new ArrayList<>();
+        }
+        ensureLoaded();
+        List<String> grams = new ArrayList<>();
+        for (String word : queryWords) {
+            addTrigrams(word, false, grams);
+        }
+
+        lock.readLock().lock();
+        try {
+            // Every word prefix's trigrams are in the name, so start from the rarest one
+            Set<Integer> candidates = null;
+            for (String gram : grams) {
+                Set<Integer> ids = postings.get(gram);
+                if (ids == null) {
+                    return new ArrayList<>();
+                }
+                if (candidates == null || ids.size() < candidates.size()) {
+                    candidates = ids;
+                }
+            }
+            List<Match> found = new ArrayList<>();
+            for (Integer id : candidates) {
+                if (matchesPrefixes(words.get(id), queryWords)) {
+                    found.add(new Match(id, names.get(id), 1.0));
+                }
+            }
+            found.sort((a, b) -> a.name.compareToIgnoreCase(b.name));
+            return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The best k members for the query, best first. Blocks only until the first load has finished.
+     */
+    public List<Match> search(String query, int k) throws SQLException {
+        String[] queryWords = split(query);
+        if (queryWords.length == 0 || k <= 0) {
+            return new ArrayList<>();
+        }
+        ensureLoaded();
+        long start = System.nanoTime();
+
+        // The last word is still being typed, so it is matched as a prefix (no trailing pad)
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i < queryWords.length; i++) {
+            addTrigrams(queryWords[i], i < queryWords.length - 1, grams);
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Integer, int[]> shared = new HashMap<>();
+            for (String gram : grams) {
+                Set<Integer> ids = postings.get(gram);
+                if (ids == null) {
+                    continue;
+                }
+                for (Integer id : ids) {
+                    shared.computeIfAbsent(id, x -> new int[1])[0]++;
+                }
+            }
+
+            PriorityQueue<Match> top = new PriorityQueue<>(k + 1, (a, b) -> Double.compare(a.score, b.score));
+            for (Map.Entry<Integer, int[]> hit : shared.entrySet()) {
+                double similarity = (double) hit.getValue()[0] / grams.size();
+                boolean prefix = matchesPrefixes(words.get(hit.getKey()), queryWords);
+                if (similarity < MIN_SIMILARITY && !prefix) {
+                    continue;
+                }
+                double score = similarity + (prefix ? PREFIX_BONUS : 0.0)
+                        + WORD_BONUS * wholeWords(words.get(hit.getKey()), queryWords);
+                top.add(new Match(hit.getKey(), names.get(hit.getKey()), score));
+                if (top.size() > k) {
+                    top.poll();
+                }
+            }
+
+            List<Match> ranked = new ArrayList<>(top);
+            ranked.sort((a, b) -> a.score != b.score ? Double.compare(b.score, a.score) : a.name.compareToIgnoreCase(b.name));
+            return ranked;
+        } finally {
+            lock.readLock().unlock();
+            searchCount.incrementAndGet();
+            searchNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    // Called after a member insert or a name change commits
+    public void put(int memberId, String name) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(new Change(memberId, name));
+            }
+            if (names != null) {
+                apply(memberId, name);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int memberId) {
+        put(memberId, null);
+    }
+
+    // Admin deletes go by name, so drop every member with exactly that name
+    public void removeByName(String name) {
+        List<Integer> ids = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (names != null) {
+                for (Map.Entry<Integer, String> entry : names.entrySet()) {
+                    if (entry.getValue().equals(name)) {
+                        ids.add(entry.getKey());
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int id : ids) {
+            remove(id);
+        }
+    }
+
+    /**
+     * Rebuilds the index from the members table.
+     */
+    public void reload() throws SQLException {
+        synchronized (loadLock) {
+            lock.writeLock().lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Map<Integer, String> fresh = new HashMap<>();
+            try (Connection con = pool.getConnection();
+                 PreparedStatement stmt = con.prepareStatement("SELECT MemberID, Name FROM members");
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    fresh.put(rs.getInt("MemberID"), rs.getString("Name"));
+                }
+            } catch (SQLException e) {
+                lock.writeLock().lock();
+                try {
+                    pending = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                names = new HashMap<>();
+                words = new HashMap<>();
+                postings = new HashMap<>();
+                for (Map.Entry<Integer, String> entry : fresh.entrySet()) {
+                    apply(entry.getKey(), entry.getValue());
+                }
+                for (Change change : pending) {
+                    apply(change.memberId, change.name);
+                }
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return names == null ? 0 : names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getSearchCount() { return searchCount.get(); }
+
+    public double getAverageSearchMicros() {
+        long searches = searchCount.get();
+        return searches == 0 ? 0.0 : searchNanos.get() / 1_000.0 / searches;
+    }
+
+    public String stats() {
+        int trigrams;
+        lock.readLock().lock();
+        try {
+            trigrams = postings == null ? 0 : postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+        return String.format("MemberNameIndex[members=%d, trigrams=%d, searches=%d, avg=%.1fus]",
+                size(), trigrams, getSearchCount(), getAverageSearchMicros());
+    }
+
+    private void ensureLoaded() throws SQLException {
+        lock.readLock().lock();
+        try {
+            if (names != null) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        synchronized (loadLock) {
+            lock.readLock().lock();
+            try {
+                if (names != null) {
+                    return;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            reload();
+        }
+    }
+
+    // A put or remove, kept so it can be replayed onto an index that was read before it happened
+    private static final class Change {
+        private final int memberId;
+        private final String name;
+
+        private Change(int memberId, String name) {
+            this.memberId = memberId;
+            this.name = name;
+        }
+    }
+
+    // Replaces (or with a null name, removes) one member's entry; caller holds the write lock
+    private void apply(int memberId, String name) {
+        String[] oldWords = words.remove(memberId);
+        names.remove(memberId);
+        if (oldWords != null) {
+            List<String> grams = new ArrayList<>();
+            for (String word : oldWords) {
+                addTrigrams(word, true, grams);
+            }
+            for (String gram : grams) {
+                Set<Integer> ids = postings.get(gram);
+                if (ids != null) {
+                    ids.remove(memberId);
+                    if (ids.isEmpty()) {
+                        postings.remove(gram);
+                    }
+                }
+            }
+        }
+        if (name == null) {
+            return;
+        }
+
+        String[] newWords = split(name);
+        names.put(memberId, name);
+        words.put(memberId, newWords);
+        List<String> grams = new ArrayList<>();
+        for (String word : newWords) {
+            addTrigrams(word, true, grams);
+        }
+        for (String gram : grams) {
+            postings.computeIfAbsent(gram, g -> new HashSet<>()).add(memberId);
+        }
+    }
+
+    private static boolean matchesPrefixes(String[] nameWords, String[] queryWords) {
+        if (nameWords == null) {
+            return false;
+        }
+        for (String q : queryWords) {
+            boolean found = false;
+            for (String w : nameWords) {
+                if (w.startsWith(q)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int wholeWords(String[] nameWords, String[] queryWords) {
+        int count = 0;
+        for (String q : queryWords) {
+            for (String w : nameWords) {
+                if (w.equals(q)) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static String[] split(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{Nd}]+", " ").trim();
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    // Two leading spaces make the first letters count; the trailing one marks a whole word
+    private static void addTrigrams(String word, boolean complete, Collection<String> out) {
+        String padded = "  " + word + (complete ? " " : "");
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            out.add(padded.substring(i, i + 3));
+        }
+    }
+}
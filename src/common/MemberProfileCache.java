@@ -0,0 +1,302 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Bounded LRU cache of members rows keyed by MemberID, shared by every screen that shows member details.
+ * Entries expire after a TTL and the least recently used one is evicted when the cache is full.
+ * Keys live in an open-addressing int table and recency in int prev/next arrays, so a lookup never boxes.
+ * Update, renew and delete paths call invalidate() after they commit.
+ */
+public class MemberProfileCache {
+
+    // The members columns the desk screens show
+    public static final class MemberProfile {
+        private final int memberId;
+        private final String name;
+        private final String contactInfo;
+        private final String membershipType;
+        private final String registrationDate;
+        private final String membershipExpiry;
+
+        public MemberProfile(int memberId, String name, String contactInfo, String membershipType,
+                             String registrationDate, String membershipExpiry) {
+            this.memberId = memberId;
+            this.name = name;
+            this.contactInfo = contactInfo;
+            this.membershipType = membershipType;
+            this.registrationDate = registrationDate;
+            this.membershipExpiry = membershipExpiry;
+        }
+
+        public int getMemberId() { return memberId; }
+        public String getName() { return name; }
+        public String getContactInfo() { return contactInfo; }
+        public String getMembershipType() { return membershipType; }
+        public String getRegistrationDate() { return registrationDate; }
+        public String getMembershipExpiry() { return membershipExpiry; }
+    }
+
+    private static final String LOAD_QUERY =
+            "SELECT MemberID, Name, ContactInfo, MembershipType, RegistrationDate, MembershipExpiry FROM members WHERE MemberID = ?";
+    private static final int EMPTY = -1;
+    private static final int NONE = -1;
+
+    private final ConnectionPool pool;
+    private final int capacity;
+    private final long ttlNanos;
+
+    // Hash table: MemberID -> entry slot, linear probing; guarded by this
+    private final int[] tableKeys;
+    private final int[] tableSlots;
+    private final int mask;
+    // Entry slots, linked most- to least-recently used
+    private final int[] slotKeys;
+    private final MemberProfile[] slotValues;
+    private final long[] slotLoadedAt;
+    private final int[] prev;
+    private final int[] next;
+    private int head = NONE;
+    private int tail = NONE;
+    private int size;
+    // Bumped by every invalidation, so a load that raced one isn't cached
+    private long generation;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long expiryCount;
+    private long invalidationCount;
+
+    public MemberProfileCache(ConnectionPool pool, int capacity, long ttlMillis) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be at least 1");
+        }
+        this.pool = pool;
+        this.capacity = capacity;
+        this.ttlNanos = ttlMillis * 1_000_000L;
+
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.tableKeys = new int[tableSize];
+        this.tableSlots = new int[tableSize];
+        this.mask = tableSize - 1;
+        Arrays.fill(tableKeys, EMPTY);
+
+        this.slotKeys = new int[capacity];
+        this.slotValues = new MemberProfile[capacity];
+        this.slotLoadedAt = new long[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+    }
+
+    /**
+     * The member's profile, from the cache if fresh, otherwise from the table; null if there is no such member.
+     */
+    public MemberProfile get(int memberId) throws SQLException {
+        return get(null, memberId);
+    }
+
+    /**
+     * Same as get(memberId), but a miss is loaded on the caller's connection instead of leasing another.
+     */
+    public MemberProfile get(Connection con, int memberId) throws SQLException {
+        long loadGeneration;
+        synchronized (this) {
+            int slot = find(memberId);
+            if (slot != NONE) {
+                if (System.nanoTime() - slotLoadedAt[slot] < ttlNanos) {
+                    hitCount++;
+                    moveToHead(slot);
+                    return slotValues[slot];
+                }
+                expiryCount++;
+                removeSlot(memberId, slot);
+            }
+            missCount++;
+            loadGeneration = generation;
+        }
+
+        MemberProfile profile;
+        if (con != null) {
+            profile = load(con, memberId);
+        } else {
+            try (Connection leased = pool.getConnection()) {
+                profile = load(leased, memberId);
+            }
+        }
+        if (profile != null) {
+            synchronized (this) {
+                if (generation == loadGeneration) {
+                    put(profile);
+                }
+            }
+        }
+        return profile;
+    }
+
+    // Called after an update, renewal or delete of this member commits
+    public synchronized void invalidate(int memberId) {
+        generation++;
+        invalidationCount++;
+        int slot = find(memberId);
+        if (slot != NONE) {
+            removeSlot(memberId, slot);
+        }
+    }
+
+    // For changes that don't know the MemberID, e.g. the admin delete by name
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidationCount++;
+        Arrays.fill(tableKeys, EMPTY);
+        Arrays.fill(slotValues, null);
+        head = NONE;
+        tail = NONE;
+        size = 0;
+    }
+
+    public synchronized int size() { return size; }
+    public synchronized long getHitCount() { return hitCount; }
+    public synchronized long getMissCount() { return missCount; }
+    public synchronized long getEvictionCount() { return evictionCount; }
+    public synchronized long getExpiryCount() { return expiryCount; }
+    public synchronized long getInvalidationCount() { return invalidationCount; }
+
+    public synchronized double getHitRatio() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0.0 : (double) hitCount / lookups;
+    }
+
+    public synchronized String stats() {
+        return String.format("MemberProfileCache[size=%d/%d, hits=%d, misses=%d, hitRatio=%.1f%%, evictions=%d, expired=%d, invalidations=%d]",
+                size, capacity, hitCount, missCount, getHitRatio() * 100, evictionCount, expiryCount, invalidationCount);
+    }
+
+    private MemberProfile load(Connection con, int memberId) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement(LOAD_QUERY)) {
+            stmt.setInt(1, memberId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new MemberProfile(rs.getInt("MemberID"), rs.getString("Name"), rs.getString("ContactInfo"),
+                        rs.getString("MembershipType"), rs.getString("RegistrationDate"), rs.getString("MembershipExpiry"));
+            }
+        }
+    }
+
+    private void put(MemberProfile profile) {
+        int memberId = profile.getMemberId();
+        int slot = find(memberId);
+        if (slot == NONE) {
+            if (size == capacity) {
+                evictionCount++;
+                removeSlot(slotKeys[tail], tail);
+            }
+            // Slots stay packed in 0..size-1, so the next free one is always at size
+            slot = size++;
+            slotKeys[slot] = memberId;
+            insertKey(memberId, slot);
+            linkAtHead(slot);
+        } else {
+            moveToHead(slot);
+        }
+        slotValues[slot] = profile;
+        slotLoadedAt[slot] = System.nanoTime();
+    }
+
+    private int find(int memberId) {
+        for (int i = hash(memberId); tableKeys[i] != EMPTY; i = (i + 1) & mask) {
+            if (tableKeys[i] == memberId) {
+                return tableSlots[i];
+            }
+        }
+        return NONE;
+    }
+
+    private void insertKey(int memberId, int slot) {
+        int i = hash(memberId);
+        while (tableKeys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        tableKeys[i] = memberId;
+        tableSlots[i] = slot;
+    }
+
+    // Drops the entry and moves the last slot into the hole so slots stay packed
+    private void removeSlot(int memberId, int slot) {
+        unlink(slot);
+        deleteKey(memberId);
+        int last = --size;
+        if (slot != last) {
+            int movedKey = slotKeys[last];
+            slotKeys[slot] = movedKey;
+            slotValues[slot] = slotValues[last];
+            slotLoadedAt[slot] = slotLoadedAt[last];
+            prev[slot] = prev[last];
+            next[slot] = next[last];
+            if (prev[slot] != NONE) next[prev[slot]] = slot; else head = slot;
+            if (next[slot] != NONE) prev[next[slot]] = slot; else tail = slot;
+            tableSlots[indexOf(movedKey)] = slot;
+        }
+        slotValues[last] = null;
+    }
+
+    // Backward-shift deletion keeps probe chains intact without tombstones
+    private void deleteKey(int memberId) {
+        int i = indexOf(memberId);
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (tableKeys[j] == EMPTY) {
+                break;
+            }
+            int home = hash(tableKeys[j]);
+            // Move j back into i unless its home lies cyclically in (i, j]
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!stays) {
+                tableKeys[i] = tableKeys[j];
+                tableSlots[i] = tableSlots[j];
+                i = j;
+            }
+        }
+        tableKeys[i] = EMPTY;
+    }
+
+    private int indexOf(int memberId) {
+        int i = hash(memberId);
+        while (tableKeys[i] != memberId) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void moveToHead(int slot) {
+        if (slot != head) {
+            unlink(slot);
+            linkAtHead(slot);
+        }
+    }
+
+    private void linkAtHead(int slot) {
+        prev[slot] = NONE;
+        next[slot] = head;
+        if (head != NONE) prev[head] = slot;
+        head = slot;
+        if (tail == NONE) tail = slot;
+    }
+
+    private void unlink(int slot) {
+        if (prev[slot] != NONE) next[prev[slot]] = next[slot]; else head = next[slot];
+        if (next[slot] != NONE) prev[next[slot]] = prev[slot]; else tail = prev[slot];
+    }
+}
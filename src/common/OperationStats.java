@@ -0,0 +1,54 @@
+package common;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, row and error counts for one named database operation.
+ */
+public class OperationStats implements OperationStatsMBean {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+
+    void record(long nanos, long rowCount) {
+        latency.recordNanos(nanos);
+        if (rowCount > 0) {
+            rows.add(rowCount);
+        }
+    }
+
+    // Failed calls count toward latency too; a slow timeout is exactly what we want to see
+    void recordError(long nanos) {
+        latency.recordNanos(nanos);
+        errors.increment();
+    }
+
+    @Override public long getCount() { return latency.getCount(); }
+    @Override public long getErrorCount() { return errors.sum(); }
+    @Override public long getRowCount() { return rows.sum(); }
+    @Override public double getMeanMillis() { return latency.getMeanMillis(); }
+    @Override public double getP50Millis() { return latency.getPercentileMillis(50); }
+    @Override public double getP95Millis() { return latency.getPercentileMillis(95); }
+    @Override public double getP99Millis() { return latency.getPercentileMillis(99); }
+    @Override public double getMaxMillis() { return latency.getMaxMillis(); }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        errors.reset();
+        rows.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[count=%d, errors=%d, rows=%d, p50=%.2fms, p95=%.2fms, p99=%.2fms, max=%.2fms]",
+                name, getCount(), getErrorCount(), getRowCount(), getP50Millis(), getP95Millis(), getP99Millis(), getMaxMillis());
+    }
+}
@@ -0,0 +1,16 @@
+package common;
+
+/**
+ * JMX view of one named database operation, registered as common:type=DBMetrics,name=...
+ */
+public interface OperationStatsMBean {
+    long getCount();
+    long getErrorCount();
+    long getRowCount();
+    double getMeanMillis();
+    double getP50Millis();
+    double getP95Millis();
+    double getP99Millis();
+    double getMaxMillis();
+    void reset();
+}
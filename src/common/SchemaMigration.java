@@ -0,0 +1,39 @@
+package common;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * One-off schema changes that rebuild large tables, applied by an administrator instead of by whichever
+ * desk happens to touch the table first. Every step checks information_schema before changing anything,
+ * so running it again is harmless. Run it in a quiet period: each ALTER copies its table.
+ *
+ * Run with: java common.SchemaMigration
+ */
+public class SchemaMigration {
+
+    public static void migrate(Connection con) throws SQLException {
+        long start = System.currentTimeMillis();
+        LogSchema.migrate(con);
+        System.out.println("logs: structured columns and indexes in place (" + (System.currentTimeMillis() - start) + " ms)");
+        start = System.currentTimeMillis();
+        BookPageQuery.migrateIndexes(con);
+        System.out.println("books: title and author sort indexes in place (" + (System.currentTimeMillis() - start) + " ms)");
+        start = System.currentTimeMillis();
+        MaintenanceSummary.migrateIndex(con);
+        System.out.println("maintenancerecords: facility/date index in place (" + (System.currentTimeMillis() - start) + " ms)");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            System.err.println("Usage: SchemaMigration");
+            System.exit(2);
+        }
+        ConnectionPool pool = DBUtils.getPool();
+        try (Connection con = pool.getConnection()) {
+            migrate(con);
+        } finally {
+            DBUtils.shutdownPool();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package common;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of prepared statements for one physical connection, keyed by SQL text.
+ * ConnectionPool routes prepareStatement(String) through it, so code that prepares the same
+ * constant query on every call reuses one statement for as long as the connection lives.
+ * Callers still close their statement as usual; closing only hands it back to the cache.
+ */
+public class StatementCache {
+    // Totals across every connection in the process
+    private static final AtomicLong hitCount = new AtomicLong();
+    private static final AtomicLong missCount = new AtomicLong();
+    private static final AtomicLong evictionCount = new AtomicLong();
+
+    private final int maxSize;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    public StatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        // Access order, so iteration starts at the least recently used statement
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a cached statement for the SQL, preparing one on a miss.
+     * The proxy it hands out is tied to the given lease: getConnection() returns the lease, not the raw connection.
+     */
+    public synchronized PreparedStatement prepare(Connection raw, Connection lease, String sql) throws SQLException {
+        CachedStatement cached = statements.get(sql);
+        if (cached != null && !cached.inUse) {
+            hitCount.incrementAndGet();
+        } else if (cached != null) {
+            // Same SQL already checked out in this lease (e.g. nested loop); give out a plain one
+            missCount.incrementAndGet();
+            return raw.prepareStatement(sql);
+        } else {
+            missCount.incrementAndGet();
+            cached = new CachedStatement(sql, raw.prepareStatement(sql));
+            statements.put(sql, cached);
+            evictOverflow();
+        }
+        cached.inUse = true;
+        return cached.checkOut(lease);
+    }
+
+    /**
+     * Called when the connection goes back to the pool: statements the caller forgot to close are
+     * reset and returned to the cache, and any handles still held by the caller stop working.
+     */
+    public synchronized void releaseAll() {
+        List<CachedStatement> broken = new ArrayList<>();
+        for (CachedStatement cached : statements.values()) {
+            if (cached.inUse && !cached.checkIn()) {
+                broken.add(cached);
+            }
+        }
+        for (CachedStatement cached : broken) {
+            statements.remove(cached.sql);
+            closeQuietly(cached.statement);
+        }
+    }
+
+    /**
+     * Closes every cached statement. Called before the physical connection is closed.
+     */
+    public synchronized void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            closeQuietly(cached.statement);
+        }
+        statements.clear();
+    }
+
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    private void evictOverflow() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (statements.size() > maxSize && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            // A statement that is checked out right now can't be closed under its caller
+            if (eldest.inUse) {
+                continue;
+            }
+            it.remove();
+            closeQuietly(eldest.statement);
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private synchronized void checkIn(CachedStatement cached) {
+        if (!cached.checkIn()) {
+            statements.remove(cached.sql);
+            closeQuietly(cached.statement);
+        }
+        // Entries that were checked out when the cache overflowed can go now
+        evictOverflow();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("[StatementCache] Failed to close statement: " + e.getMessage());
+        }
+    }
+
+    public static long getHitCount() { return hitCount.get(); }
+    public static long getMissCount() { return missCount.get(); }
+    public static long getEvictionCount() { return evictionCount.get(); }
+
+    public static double getHitRatio() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    public static String stats() {
+        return String.format("StatementCache[hits=%d, misses=%d, hitRatio=%.1f%%, evictions=%d]",
+                getHitCount(), getMissCount(), getHitRatio() * 100, getEvictionCount());
+    }
+
+    // One physical statement plus the handle currently given out for it
+    private final class CachedStatement {
+        private final String sql;
+        private final PreparedStatement statement;
+        // Settings as prepared, put back on check-in so one caller's streaming or limits don't leak into the next
+        private final int fetchSize;
+        private final int maxRows;
+        private final int queryTimeout;
+        private boolean inUse = false;
+        private Handle handle;
+
+        private CachedStatement(String sql, PreparedStatement statement) throws SQLException {
+            this.sql = sql;
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+            this.maxRows = statement.getMaxRows();
+            this.queryTimeout = statement.getQueryTimeout();
+        }
+
+        private PreparedStatement checkOut(Connection lease) {
+            handle = new Handle(this, lease);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, handle);
+        }
+
+        // Resets the statement for the next caller; returns false if it is no longer usable
+        private boolean checkIn() {
+            if (handle != null) {
+                handle.returned = true;
+                handle = null;
+            }
+            inUse = false;
+            try {
+                if (statement.isClosed()) {
+                    return false;
+                }
+                ResultSet open = statement.getResultSet();
+                if (open != null) {
+                    open.close();
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                if (statement.getFetchSize() != fetchSize) {
+                    statement.setFetchSize(fetchSize);
+                }
+                if (statement.getMaxRows() != maxRows) {
+                    statement.setMaxRows(maxRows);
+                }
+                if (statement.getQueryTimeout() != queryTimeout) {
+                    statement.setQueryTimeout(queryTimeout);
+                }
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+    }
+
+    private final class Handle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection lease;
+        private volatile boolean returned = false;
+
+        private Handle(CachedStatement cached, Connection lease) {
+            this.cached = cached;
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        checkIn(cached);
+                    }
+                    return null;
+                case "isClosed":
+                    if (returned) return true;
+                    break;
+                case "getConnection":
+                    return lease;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + cached.sql + (returned ? ", returned" : "") + "]";
+                default:
+                    break;
+            }
+
+            if (returned) {
+                throw new SQLException("Statement has already been closed");
+            }
+            try {
+                return method.invoke(cached.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package common;
+
+import javafx.concurrent.Worker;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.HBox;
+
+/**
+ * Progress bar, status message and Cancel button for a running DBTask.
+ * Hidden while nothing is loading.
+ */
+public class TaskProgressBar extends HBox {
+    private final ProgressBar progressBar = new ProgressBar();
+    private final Label messageLabel = new Label();
+    private final Button cancelBtn = new Button("Cancel");
+    private Worker<?> current;
+
+    public TaskProgressBar() {
+        super(10);
+        setAlignment(Pos.CENTER_LEFT);
+        progressBar.setPrefWidth(200);
+        cancelBtn.setOnAction(e -> {
+            if (current != null) {
+                current.cancel();
+            }
+        });
+        getChildren().addAll(progressBar, messageLabel, cancelBtn);
+        setVisible(false);
+        setManaged(false);
+    }
+
+    /**
+     * Shows the task's progress until it finishes. Any task watched before is cancelled.
+     */
+    public void watch(Worker<?> task) {
+        if (current != null && current.isRunning()) {
+            current.cancel();
+        }
+        current = task;
+
+        progressBar.progressProperty().bind(task.progressProperty());
+        messageLabel.textProperty().bind(task.messageProperty());
+        cancelBtn.disableProperty().bind(task.runningProperty().not());
+        visibleProperty().bind(task.runningProperty());
+        managedProperty().bind(task.runningProperty());
+    }
+}
@@ -1,6 +1,9 @@
 package librarian;
 
+import common.ConnectionPool;
 import common.DBLogger;
+import common.DBUtils;
+import common.IdAllocator;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -9,7 +12,7 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 
 public class AfterRegistration {
-    private Connection con;
+    private ConnectionPool pool;
     private String name;
     private String contact;
     private String regDate;
@@ -21,9 +24,9 @@ public class AfterRegistration {
     private String username;
     private LibraryFunctions libraryFunctions;
 
-    public AfterRegistration(Connection con, String name, String contact, String regDate, LocalDate expiryDate,
+    public AfterRegistration(ConnectionPool pool, String name, String contact, String regDate, LocalDate expiryDate,
                              int memberID, int planID, int facilityID, String membershipType, String username) {
-        this.con = con;
+        this.pool = pool;
         this.name = name;
         this.contact = contact;
         this.regDate = regDate;
@@ -33,13 +36,25 @@ public class AfterRegistration {
         this.facilityID = facilityID;
         this.membershipType = membershipType;
         this.username = username;
-        this.libraryFunctions = new LibraryFunctions(con, username);
+        this.libraryFunctions = new LibraryFunctions(pool, username);
     }
 
     public void registerMember() throws SQLException {
         try {
-            String query = "INSERT INTO members (MemberID, Name, ContactInfo, MembershipType, RegistrationDate, MembershipExpiry, RoleID) VALUES (?, ?, ?, ?, ?, ?, ?)";
-            PreparedStatement statement = con.prepareStatement(query);
+            insertMember();
+            libraryFunctions.showConfirm("Registration Successful", "New library member has been registered.");
+        } catch (SQLException e) {
+            DBLogger.log("ERROR", "AfterRegistration", "Failed to register library member.", username);
+            e.printStackTrace();
+            libraryFunctions.showAlert("Database Error", "Registration failed. Please try again.");
+        }
+    }
+
+    // The members insert alone, without dialogs; returns false if no row was written
+    public boolean insertMember() throws SQLException {
+        String query = "INSERT INTO members (MemberID, Name, ContactInfo, MembershipType, RegistrationDate, MembershipExpiry, RoleID) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (Connection con = pool.getConnection();
+             PreparedStatement statement = con.prepareStatement(query)) {
             statement.setInt(1, memberID);
             statement.setString(2, name);
             statement.setString(3, contact);
@@ -51,25 +66,23 @@ public class AfterRegistration {
             int rs = statement.executeUpdate();
             if (rs == 1) {
                 DBLogger.log("INFO", "AfterRegistration", "New member inserted into members table.", username);
+                DBUtils.getMemberNameIndex().put(memberID, name);
             }
-            libraryFunctions.showConfirm("Registration Successful", "New library member has been registered.");
-        } catch (SQLException e) {
-            DBLogger.log("ERROR", "AfterRegistration", "Failed to register library member.", username);
-            e.printStackTrace();
-            libraryFunctions.showAlert("Database Error", "Registration failed. Please try again.");
+            return rs == 1;
         }
     }
 
     public void renewMembership() throws SQLException {
-        try {
-            String updateQuery = "UPDATE members SET MembershipExpiry = ?, MembershipType = ? WHERE MemberID = ?";
-            PreparedStatement updateStatement = con.prepareStatement(updateQuery);
+        String updateQuery = "UPDATE members SET MembershipExpiry = ?, MembershipType = ? WHERE MemberID = ?";
+        try (Connection con = pool.getConnection();
+             PreparedStatement updateStatement = con.prepareStatement(updateQuery)) {
             updateStatement.setString(1, expiryDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
             updateStatement.setString(2, membershipType);
             updateStatement.setInt(3, memberID);
 
             int rs = updateStatement.executeUpdate();
             if (rs > 0) {
+                DBUtils.getMemberProfileCache().invalidate(memberID);
                 DBLogger.log("INFO", "AfterRegistration", "Membership renewed in members table.", username);
             }
             libraryFunctions.showConfirm("Membership Renewed", "Membership renewed successfully.");
@@ -81,9 +94,13 @@ public class AfterRegistration {
     }
 
     public void assignFacility() throws SQLException {
-        try {
-            String query = "INSERT INTO libraryfacilities (FacilityID, FacilityName, Status, LibrarianID) VALUES (?, ?, ?, ?)";
-            PreparedStatement statement = con.prepareStatement(query);
+        String query = "INSERT INTO libraryfacilities (FacilityID, FacilityName, Status, LibrarianID) VALUES (?, ?, ?, ?)";
+        try (Connection con = pool.getConnection();
+             PreparedStatement statement = con.prepareStatement(query)) {
+            // No facility chosen by the caller: take the next one from the allocator
+            if (facilityID <= 0) {
+                facilityID = DBUtils.getIdAllocator().next(IdAllocator.Sequence.FACILITY);
+            }
             statement.setInt(1, facilityID);
             statement.setString(2, "Assigned Facility for MemberID " + memberID);
             statement.setString(3, "Available");
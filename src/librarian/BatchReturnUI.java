@@ -0,0 +1,389 @@
+package librarian;
+
+import common.DBExecutor;
+import common.DBLogger;
+import common.DBTask;
+import common.DBUtils;
+import common.FineBalances;
+import common.TaskProgressBar;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Processes a whole book-drop of returns at once: BorrowIDs are pasted or scanned in,
+ * looked up with IN (...) queries and written back as JDBC batches in one transaction.
+ * Results go to a summary table instead of one dialog per book.
+ */
+public class BatchReturnUI {
+    // IDs per lookup query; short lists are padded so every chunk reuses the same cached statement
+    private static final int LOOKUP_CHUNK_SIZE = 100;
+
+    private final DBExecutor db;
+    private final String username;
+    private final TaskProgressBar progress = new TaskProgressBar();
+
+    public BatchReturnUI(DBExecutor db, String username) {
+        this.db = db;
+        this.username = username;
+    }
+
+    public void display() {
+        Stage stage = new Stage();
+        stage.setTitle("Batch Return");
+
+        BorderPane layout = new BorderPane();
+        layout.setPadding(new Insets(15));
+
+        // Scanners type the ID and press Enter, so each scan lands on its own line below
+        TextField scanField = new TextField();
+        scanField.setPromptText("Scan or type a Borrow ID and press Enter");
+        TextArea idsArea = new TextArea();
+        idsArea.setPromptText("Borrow IDs, one per line or separated by commas/spaces");
+        idsArea.setPrefRowCount(6);
+        Label countLabel = new Label("0 IDs queued");
+
+        scanField.setOnAction(e -> {
+            String scanned = scanField.getText().trim();
+            if (!scanned.isEmpty()) {
+                idsArea.appendText(scanned + "\n");
+                scanField.clear();
+            }
+        });
+        idsArea.textProperty().addListener((obs, old, text) ->
+                countLabel.setText(parseIds(text, new ArrayList<>()).size() + " IDs queued"));
+
+        Button processBtn = new Button("Process Returns");
+        Button clearBtn = new Button("Clear");
+        Label summaryLabel = new Label();
+
+        TableView<ReturnResult> resultsTable = createResultsTable();
+
+        clearBtn.setOnAction(e -> {
+            idsArea.clear();
+            resultsTable.setItems(FXCollections.observableArrayList());
+            summaryLabel.setText("");
+        });
+
+        processBtn.setOnAction(e -> {
+            List<String> invalid = new ArrayList<>();
+            List<Integer> borrowIds = parseIds(idsArea.getText(), invalid);
+            if (!invalid.isEmpty()) {
+                showAlert("Input Error", "Not valid Borrow IDs: " + String.join(", ", invalid));
+                return;
+            }
+            if (borrowIds.isEmpty()) {
+                showAlert("Input Error", "Enter or scan at least one Borrow ID.");
+                return;
+            }
+
+            processBtn.setDisable(true);
+            DBTask<BatchSummary> task = db.task("processReturns", (con, t) -> processReturns(con, t, borrowIds));
+            progress.watch(task);
+            task.setOnSucceeded(ev -> {
+                processBtn.setDisable(false);
+                BatchSummary summary = task.getValue();
+                resultsTable.setItems(summary.results);
+                summaryLabel.setText(summary.describe());
+                idsArea.clear();
+            });
+            task.setOnFailed(ev -> {
+                processBtn.setDisable(false);
+                Throwable ex = task.getException();
+                DBLogger.log("ERROR", "BatchReturnUI", "Batch return failed: " + ex.getMessage(), username);
+                ex.printStackTrace();
+                showAlert("Error", "Could not process the returns. Nothing was changed.");
+            });
+            task.setOnCancelled(ev -> processBtn.setDisable(false));
+        });
+
+        VBox input = new VBox(10, new Label("Borrow IDs:"), scanField, idsArea,
+                new HBox(10, processBtn, clearBtn, countLabel), progress);
+        input.setPadding(new Insets(0, 0, 10, 0));
+
+        layout.setTop(input);
+        layout.setCenter(resultsTable);
+        layout.setBottom(summaryLabel);
+        BorderPane.setMargin(summaryLabel, new Insets(10, 0, 0, 0));
+
+        stage.setScene(new Scene(layout, 650, 600));
+        stage.show();
+    }
+
+    private TableView<ReturnResult> createResultsTable() {
+        TableView<ReturnResult> table = new TableView<>();
+
+        TableColumn<ReturnResult, Integer> borrowIdCol = new TableColumn<>("Borrow ID");
+        borrowIdCol.setCellValueFactory(new PropertyValueFactory<>("borrowId"));
+
+        TableColumn<ReturnResult, Integer> bookIdCol = new TableColumn<>("Book ID");
+        bookIdCol.setCellValueFactory(new PropertyValueFactory<>("bookId"));
+
+        TableColumn<ReturnResult, String> dueDateCol = new TableColumn<>("Due Date");
+        dueDateCol.setCellValueFactory(new PropertyValueFactory<>("dueDate"));
+
+        TableColumn<ReturnResult, String> statusCol = new TableColumn<>("Status");
+        statusCol.setCellValueFactory(new PropertyValueFactory<>("status"));
+        statusCol.setPrefWidth(150);
+
+        TableColumn<ReturnResult, Double> fineCol = new TableColumn<>("Fine");
+        fineCol.setCellValueFactory(new PropertyValueFactory<>("fine"));
+
+        table.getColumns().addAll(borrowIdCol, bookIdCol, dueDateCol, statusCol, fineCol);
+        return table;
+    }
+
+    // Splits on commas and whitespace, drops duplicates (double scans) and collects anything non-numeric
+    private static List<Integer> parseIds(String text, List<String> invalid) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (String token : text.split("[,\\s]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            try {
+                ids.add(Integer.parseInt(token));
+            } catch (NumberFormatException e) {
+                invalid.add(token);
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    // Runs on a DB worker thread
+    private BatchSummary processReturns(Connection con, DBTask<BatchSummary> task, List<Integer> borrowIds) throws SQLException {
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+
+        ObservableList<ReturnResult> results = FXCollections.observableArrayList();
+        String updateReturn = "UPDATE borrowingrecords SET ReturnDate = ?, Overdue = ?, FineAmount = ? " +
+                "WHERE BorrowID = ? AND ReturnDate IS NULL";
+        String markAvailable = "UPDATE books SET Availability = 1 WHERE BookID = ?";
+        List<Integer> returnedBooks = new ArrayList<>();
+        // Net change to each member's fine balance, written once per member
+        Map<Integer, Double> balanceChanges = new HashMap<>();
+        List<FineBalances.Entry> balances = new ArrayList<>();
+        double totalFines = 0;
+
+        // The loans are locked by the lookup, so a return at another desk waits for this batch or is seen by it
+        con.setAutoCommit(false);
+        try {
+            task.message("Looking up " + borrowIds.size() + " loans...");
+            Map<Integer, Loan> loans = lookupLoans(con, task, borrowIds);
+            if (task.isCancelled()) {
+                con.rollback();
+                return null;
+            }
+
+            // Loans to return, in the order their updates are batched
+            List<Integer> pending = new ArrayList<>();
+            Set<Integer> returnedElsewhere = new HashSet<>();
+            try (PreparedStatement updateStmt = task.track(con.prepareStatement(updateReturn))) {
+                for (int borrowId : borrowIds) {
+                    Loan loan = loans.get(borrowId);
+                    if (loan == null || loan.returnDate != null) {
+                        continue;
+                    }
+                    updateStmt.setString(1, today.toString());
+                    updateStmt.setBoolean(2, loan.isOverdue(today));
+                    updateStmt.setDouble(3, loan.fine(today));
+                    updateStmt.setInt(4, borrowId);
+                    updateStmt.addBatch();
+                    pending.add(borrowId);
+                }
+                task.message("Writing " + pending.size() + " returns...");
+                int[] counts = updateStmt.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    // Anything else means the loan was returned elsewhere; leave its book and fine alone
+                    if (counts[i] != 1) {
+                        returnedElsewhere.add(pending.get(i));
+                    }
+                }
+            }
+
+            try (PreparedStatement bookStmt = con.prepareStatement(markAvailable)) {
+                for (int borrowId : borrowIds) {
+                    Loan loan = loans.get(borrowId);
+                    if (loan == null) {
+                        results.add(new ReturnResult(borrowId, 0, "", "Not found", 0.0));
+                        continue;
+                    }
+                    if (loan.returnDate != null) {
+                        results.add(new ReturnResult(borrowId, loan.bookId, loan.dueDate.toString(),
+                                "Already returned " + loan.returnDate, 0.0));
+                        continue;
+                    }
+                    if (returnedElsewhere.contains(borrowId)) {
+                        results.add(new ReturnResult(borrowId, loan.bookId, loan.dueDate.toString(),
+                                "Already returned elsewhere", 0.0));
+                        continue;
+                    }
+                    double fine = loan.fine(today);
+                    bookStmt.setInt(1, loan.bookId);
+                    bookStmt.addBatch();
+                    returnedBooks.add(loan.bookId);
+                    balanceChanges.merge(loan.memberId, fine - loan.fineAmount, Double::sum);
+                    totalFines += fine;
+                    results.add(new ReturnResult(borrowId, loan.bookId, loan.dueDate.toString(),
+                            loan.isOverdue(today) ? "Returned (overdue)" : "Returned", fine));
+                }
+                bookStmt.executeBatch();
+            }
+            for (Map.Entry<Integer, Double> change : balanceChanges.entrySet()) {
+                balances.add(DBUtils.getFineBalances().adjust(con, change.getKey(), change.getValue()));
+            }
+
+            if (task.isCancelled()) {
+                con.rollback();
+                return null;
+            }
+            con.commit();
+            for (int bookId : returnedBooks) {
+                DBUtils.getAvailabilityIndex().markReturned(bookId);
+            }
+            DBUtils.getFineBalances().publishAll(balances);
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        int returned = returnedBooks.size();
+        DBLogger.log("INFO", "BatchReturnUI", "Batch return processed " + returned + " of " + borrowIds.size() + " BorrowIDs", username);
+        return new BatchSummary(results, borrowIds.size(), returned, totalFines, elapsedNanos);
+    }
+
+    // Locks the loans it reads until the caller's transaction ends; IDs are visited in order so two batches can't deadlock
+    private Map<Integer, Loan> lookupLoans(Connection con, DBTask<BatchSummary> task, List<Integer> borrowIds) throws SQLException {
+        StringBuilder query = new StringBuilder(
+                "SELECT BorrowID, MemberID, BookID, DueDate, ReturnDate, FineAmount FROM borrowingrecords WHERE BorrowID IN (");
+        for (int i = 0; i < LOOKUP_CHUNK_SIZE; i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(") FOR UPDATE");
+
+        List<Integer> sorted = new ArrayList<>(borrowIds);
+        Collections.sort(sorted);
+        Map<Integer, Loan> loans = new HashMap<>();
+        try (PreparedStatement stmt = task.track(con.prepareStatement(query.toString()))) {
+            for (int from = 0; from < sorted.size() && !task.isCancelled(); from += LOOKUP_CHUNK_SIZE) {
+                List<Integer> chunk = sorted.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, sorted.size()));
+                for (int i = 0; i < LOOKUP_CHUNK_SIZE; i++) {
+                    // Repeat the last ID to fill the unused placeholders
+                    stmt.setInt(i + 1, chunk.get(Math.min(i, chunk.size() - 1)));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        String returnDate = rs.getString("ReturnDate");
+                        loans.put(rs.getInt("BorrowID"), new Loan(rs.getInt("MemberID"), rs.getInt("BookID"),
+                                LocalDate.parse(rs.getString("DueDate")), returnDate, rs.getDouble("FineAmount")));
+                    }
+                }
+                task.progress(from + chunk.size(), sorted.size());
+            }
+        }
+        return loans;
+    }
+
+    private void showAlert(String title, String msg) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(msg);
+        alert.showAndWait();
+    }
+
+    private static class Loan {
+        private final int memberId;
+        private final int bookId;
+        private final LocalDate dueDate;
+        private final String returnDate;
+        private final double fineAmount;
+
+        private Loan(int memberId, int bookId, LocalDate dueDate, String returnDate, double fineAmount) {
+            this.memberId = memberId;
+            this.bookId = bookId;
+            this.dueDate = dueDate;
+            this.returnDate = returnDate;
+            this.fineAmount = fineAmount;
+        }
+
+        private boolean isOverdue(LocalDate today) {
+            return today.isAfter(dueDate);
+        }
+
+        private double fine(LocalDate today) {
+            return isOverdue(today) ? ChronoUnit.DAYS.between(dueDate, today) * FineCalculator.DAILY_FINE_RATE : 0.0;
+        }
+    }
+
+    private static class BatchSummary {
+        private final ObservableList<ReturnResult> results;
+        private final int requested;
+        private final int returned;
+        private final double totalFines;
+        private final long elapsedNanos;
+
+        private BatchSummary(ObservableList<ReturnResult> results, int requested, int returned,
+                             double totalFines, long elapsedNanos) {
+            this.results = results;
+            this.requested = requested;
+            this.returned = returned;
+            this.totalFines = totalFines;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        private String describe() {
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            double perSecond = seconds > 0 ? returned / seconds : 0;
+            return String.format("Returned %d of %d in %.0f ms (%.1f returns/s). Skipped: %d. Total fines: $%.2f",
+                    returned, requested, seconds * 1000, perSecond, requested - returned, totalFines);
+        }
+    }
+
+    // ReturnResult class for TableView
+    public static class ReturnResult {
+        private final int borrowId;
+        private final int bookId;
+        private final String dueDate;
+        private final String status;
+        private final double fine;
+
+        public ReturnResult(int borrowId, int bookId, String dueDate, String status, double fine) {
+            this.borrowId = borrowId;
+            this.bookId = bookId;
+            this.dueDate = dueDate;
+            this.status = status;
+            this.fine = fine;
+        }
+
+        public int getBorrowId() { return borrowId; }
+        public int getBookId() { return bookId; }
+        public String getDueDate() { return dueDate; }
+        public String getStatus() { return status; }
+        public double getFine() { return fine; }
+    }
+}
@@ -1,21 +1,33 @@
 package librarian;
 
+import common.BulkImport;
+import common.DBExecutor;
 import common.DBLogger;
+import common.DBTask;
+import common.DBUtils;
+import common.IdAllocator;
+import common.TaskProgressBar;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
-import java.sql.Connection;
+import java.io.File;
+import java.nio.file.Path;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Locale;
 
 public class BookInventoryUI {
-    private final Connection con;
+    private final DBExecutor db;
     private final String username;
+    private final TaskProgressBar importProgress = new TaskProgressBar();
+    private final Label importStatus = new Label();
 
-    public BookInventoryUI(Connection con, String username) {
-        this.con = con;
+    public BookInventoryUI(DBExecutor db, String username) {
+        this.db = db;
         this.username = username;
     }
 
@@ -29,6 +41,7 @@ public class BookInventoryUI {
         layout.setHgap(10);
 
         TextField bookIdField = new TextField();
+        bookIdField.setPromptText("Assigned when adding");
         TextField titleField = new TextField();
         TextField authorField = new TextField();
 
@@ -44,9 +57,23 @@ public class BookInventoryUI {
         layout.add(addBtn, 0, 3);
         layout.add(removeBtn, 1, 3);
 
+        // Bulk mode: a whole catalog from a CSV/TSV file with Title and Author columns
+        Button importBtn = new Button("Import from File...");
+        importBtn.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Import Catalog");
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV or TSV files", "*.csv", "*.tsv", "*.txt"));
+            File file = chooser.showOpenDialog(stage);
+            if (file != null) {
+                importCatalog(file.toPath(), importBtn);
+            }
+        });
+        layout.add(importBtn, 0, 4, 2, 1);
+        layout.add(importProgress, 0, 5, 2, 1);
+        layout.add(importStatus, 0, 6, 2, 1);
+
         addBtn.setOnAction(e -> {
             try {
-                int id = Integer.parseInt(bookIdField.getText());
                 String title = titleField.getText().trim();
                 String author = authorField.getText().trim();
 
@@ -55,15 +82,27 @@ public class BookInventoryUI {
                     return;
                 }
 
-                PreparedStatement stmt = con.prepareStatement(
-                        "INSERT INTO books (BookID, Title, Author, Availability) VALUES (?, ?, ?, 1)");
-                stmt.setInt(1, id);
-                stmt.setString(2, title);
-                stmt.setString(3, author);
-                stmt.executeUpdate();
-
-                DBLogger.log("INFO", "BookInventoryUI", "Book added: " + title, username);
-                showInfo("Success", "Book added to inventory.");
+                db.submit("addBook", con -> {
+                            int id = DBUtils.getIdAllocator().next(IdAllocator.Sequence.BOOK);
+                            try (PreparedStatement stmt = con.prepareStatement(
+                                    "INSERT INTO books (BookID, Title, Author, Availability) VALUES (?, ?, ?, 1)")) {
+                                stmt.setInt(1, id);
+                                stmt.setString(2, title);
+                                stmt.setString(3, author);
+                                stmt.executeUpdate();
+                            }
+                            DBUtils.getAvailabilityIndex().addBook(id, title, author);
+                            return id;
+                        },
+                        id -> {
+                            DBLogger.log("INFO", "BookInventoryUI", "Book added: " + title + " (ID " + id + ")", username);
+                            bookIdField.setText(String.valueOf(id));
+                            showInfo("Success", "Book added to inventory with ID " + id + ".");
+                        },
+                        ex -> {
+                            showAlert("Error", "Failed to add book.");
+                            ex.printStackTrace();
+                        });
             } catch (Exception ex) {
                 showAlert("Error", "Failed to add book.");
                 ex.printStackTrace();
@@ -73,25 +112,119 @@ public class BookInventoryUI {
         removeBtn.setOnAction(e -> {
             try {
                 int id = Integer.parseInt(bookIdField.getText());
-                PreparedStatement stmt = con.prepareStatement("DELETE FROM books WHERE BookID = ?");
-                stmt.setInt(1, id);
-                int affected = stmt.executeUpdate();
-                if (affected > 0) {
-                    DBLogger.log("INFO", "BookInventoryUI", "Book removed: ID " + id, username);
-                    showInfo("Success", "Book removed.");
-                } else {
-                    showAlert("Not Found", "No book found with that ID.");
-                }
+                db.submit("removeBook", con -> {
+                            try (PreparedStatement stmt = con.prepareStatement("DELETE FROM books WHERE BookID = ?")) {
+                                stmt.setInt(1, id);
+                                int affected = stmt.executeUpdate();
+                                if (affected > 0) {
+                                    DBUtils.getAvailabilityIndex().removeBook(id);
+                                }
+                                return affected;
+                            }
+                        },
+                        affected -> {
+                            if (affected > 0) {
+                                DBLogger.log("INFO", "BookInventoryUI", "Book removed: ID " + id, username);
+                                showInfo("Success", "Book removed.");
+                            } else {
+                                showAlert("Not Found", "No book found with that ID.");
+                            }
+                        },
+                        ex -> {
+                            showAlert("Error", "Failed to remove book.");
+                            ex.printStackTrace();
+                        });
             } catch (Exception ex) {
                 showAlert("Error", "Failed to remove book.");
                 ex.printStackTrace();
             }
         });
 
-        stage.setScene(new Scene(layout, 400, 250));
+        stage.setScene(new Scene(layout, 520, 320));
         stage.show();
     }
 
+    private void importCatalog(Path file, Button importBtn) {
+        Path rejectFile = file.resolveSibling(file.getFileName() + ".rejected.tsv");
+        importBtn.setDisable(true);
+        importStatus.setText("Importing " + file.getFileName() + "...");
+        DBTask<BulkImport.Report> task = db.task("importCatalog", (con, t) -> {
+            BulkImport<String[]> bulk = new BulkImport<>(DBUtils.getPool(), DBUtils.getIdAllocator(), new CatalogTarget());
+            long start = System.currentTimeMillis();
+            BulkImport.Report report = bulk.run(file, rejectFile, t::isCancelled, (bytesRead, bytesTotal, read, imported, rejected) -> {
+                t.progress(bytesRead, bytesTotal);
+                long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                t.message(String.format(Locale.ROOT, "%d imported, %d rejected (%.0f rows/s)",
+                        imported, rejected, imported * 1000.0 / elapsed));
+            });
+            t.rows(report.getImported());
+            return report;
+        });
+        importProgress.watch(task);
+        task.setOnSucceeded(ev -> {
+            importBtn.setDisable(false);
+            BulkImport.Report report = task.getValue();
+            importStatus.setText(report.toString());
+            DBLogger.log("INFO", "BookInventoryUI", "Catalog import from " + file.getFileName() + ": " + report, username);
+        });
+        task.setOnFailed(ev -> {
+            importBtn.setDisable(false);
+            Throwable ex = task.getException();
+            importStatus.setText("Import failed: " + ex.getMessage());
+            DBLogger.log("ERROR", "BookInventoryUI", "Catalog import failed: " + ex.getMessage(), username);
+            ex.printStackTrace();
+            showAlert("Error", "Catalog import failed. Books committed before the error remain in the inventory.");
+        });
+        task.setOnCancelled(ev -> {
+            importBtn.setDisable(false);
+            importStatus.setText("Import cancelled. Books committed before cancelling remain in the inventory.");
+        });
+    }
+
+    // Title and Author per record; each book is added as available
+    private static final class CatalogTarget implements BulkImport.Target<String[]> {
+        @Override
+        public String[] fields() {
+            return new String[]{"Title", "Author"};
+        }
+
+        @Override
+        public String[] parse(String[] fields) {
+            if (fields[0].isEmpty() || fields[1].isEmpty()) {
+                throw new IllegalArgumentException("Title and Author cannot be empty");
+            }
+            return fields;
+        }
+
+        @Override
+        public IdAllocator.Sequence sequence() {
+            return IdAllocator.Sequence.BOOK;
+        }
+
+        @Override
+        public String insertInto() {
+            return "books (BookID, Title, Author, Availability)";
+        }
+
+        @Override
+        public String valuesRow() {
+            return "(?, ?, ?, 1)";
+        }
+
+        @Override
+        public int bind(PreparedStatement stmt, int index, int id, String[] row) throws SQLException {
+            stmt.setInt(index, id);
+            stmt.setString(index + 1, row[0]);
+            stmt.setString(index + 2, row[1]);
+            return index + 3;
+        }
+
+        @Override
+        public void committed(int id, String[] row) {
+            DBUtils.getAvailabilityIndex().addBook(id, row[0], row[1]);
+        }
+    }
+
     private void showAlert(String title, String msg) {
         Alert alert = new Alert(Alert.AlertType.ERROR, msg, ButtonType.OK);
         alert.setTitle(title);
@@ -1,52 +1,39 @@
 package librarian;
 
+import common.CheckoutEngine;
+import common.ConnectionPool;
+import common.DBExecutor;
 import common.DBLogger;
+import common.DBUtils;
+import common.IdAllocator;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 
 public class BorrowingPlanFunctions {
-    private Connection con;
+    private ConnectionPool pool;
     private String username;
 
-    public BorrowingPlanFunctions(Connection con, String username) {
-        this.con = con;
+    public BorrowingPlanFunctions(ConnectionPool pool, String username) {
+        this.pool = pool;
         this.username = username;
     }
 
     public void recordBorrowing(int memberId, int bookId) {
         try {
-            if (!validateMember(memberId)) {
+            CheckoutEngine.Result result = borrow(memberId, bookId);
+
+            if (result.getOutcome() == CheckoutEngine.Outcome.INVALID_MEMBER) {
                 showAlert("Invalid Member", "Member ID does not exist.");
                 return;
             }
 
-            if (!validateBookAvailability(bookId)) {
+            if (result.getOutcome() == CheckoutEngine.Outcome.BOOK_UNAVAILABLE) {
                 showAlert("Book Unavailable", "Book is already borrowed or unavailable.");
                 return;
             }
 
-            String query = "INSERT INTO borrowingrecords (BorrowID, MemberID, BookID, BorrowDate, DueDate, Overdue, FineAmount) VALUES (?, ?, ?, ?, ?, ?, ?)";
-            PreparedStatement statement = con.prepareStatement(query);
-
-            int borrowId = getNextBorrowID();
-            LocalDate borrowDate = LocalDate.now();
-            LocalDate dueDate = borrowDate.plusDays(14);
-
-            statement.setInt(1, borrowId);
-            statement.setInt(2, memberId);
-            statement.setInt(3, bookId);
-            statement.setString(4, borrowDate.toString());
-            statement.setString(5, dueDate.toString());
-            statement.setBoolean(6, false);
-            statement.setDouble(7, 0.00);
-
-            statement.executeUpdate();
-
-            markBookUnavailable(bookId);
-
-            DBLogger.log("INFO", "BorrowingPlanFunctions", "Recorded borrowing for MemberID " + memberId + " and BookID " + bookId, username);
             showConfirm("Borrow Recorded", "Book has been borrowed successfully.");
 
         } catch (Exception e) {
@@ -56,38 +43,58 @@ public class BorrowingPlanFunctions {
         }
     }
 
+    // The checkout itself, without any dialogs; also driven by the desk load simulator
+    public CheckoutEngine.Result borrow(int memberId, int bookId) throws SQLException {
+        LocalDate dueDate = LocalDate.now().plusDays(14);
+        CheckoutEngine.Result result = DBUtils.getCheckoutEngine().checkout(memberId, bookId, dueDate);
+        if (result.isSuccess()) {
+            DBLogger.log("INFO", "BorrowingPlanFunctions", "Recorded borrowing for MemberID " + memberId + " and BookID " + bookId, username);
+        }
+        return result;
+    }
+
     public int getNextBorrowID() throws SQLException {
-        String query = "SELECT MAX(BorrowID) AS MaxID FROM borrowingrecords";
-        PreparedStatement stmt = con.prepareStatement(query);
-        ResultSet rs = stmt.executeQuery();
-        if (rs.next()) return rs.getInt("MaxID") + 1;
-        return 1;
+        return DBUtils.getIdAllocator().next(IdAllocator.Sequence.BORROW);
     }
 
     public boolean validateMember(int memberId) throws SQLException {
-        PreparedStatement stmt = con.prepareStatement("SELECT MemberID FROM members WHERE MemberID = ?");
-        stmt.setInt(1, memberId);
-        ResultSet rs = stmt.executeQuery();
-        return rs.next();
+        try (Connection con = pool.getConnection()) {
+            return validateMember(con, memberId);
+        }
+    }
+
+    private boolean validateMember(Connection con, int memberId) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT MemberID FROM members WHERE MemberID = ?")) {
+            stmt.setInt(1, memberId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
     }
 
+    // Answered from the in-memory availability bitmap, no round trip
     public boolean validateBookAvailability(int bookId) throws SQLException {
-        PreparedStatement stmt = con.prepareStatement("SELECT Availability FROM books WHERE BookID = ?");
-        stmt.setInt(1, bookId);
-        ResultSet rs = stmt.executeQuery();
-        return rs.next() && rs.getBoolean("Availability");
+        return DBUtils.getAvailabilityIndex().isAvailable(bookId);
     }
 
     public void markBookUnavailable(int bookId) throws SQLException {
-        PreparedStatement stmt = con.prepareStatement("UPDATE books SET Availability = 0 WHERE BookID = ?");
-        stmt.setInt(1, bookId);
-        stmt.executeUpdate();
+        try (Connection con = pool.getConnection()) {
+            markBookUnavailable(con, bookId);
+        }
+        DBUtils.getAvailabilityIndex().markBorrowed(bookId);
+    }
+
+    private void markBookUnavailable(Connection con, int bookId) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("UPDATE books SET Availability = 0 WHERE BookID = ?")) {
+            stmt.setInt(1, bookId);
+            stmt.executeUpdate();
+        }
     }
 
     public int getMaxMemberID() {
-        try {
-            PreparedStatement stmt = con.prepareStatement("SELECT MAX(MemberID) AS MaxID FROM members");
-            ResultSet rs = stmt.executeQuery();
+        try (Connection con = pool.getConnection();
+             PreparedStatement stmt = con.prepareStatement("SELECT MAX(MemberID) AS MaxID FROM members");
+             ResultSet rs = stmt.executeQuery()) {
             if (rs.next()) return rs.getInt("MaxID");
         } catch (SQLException e) {
             DBLogger.log("ERROR", "BorrowingPlanFunctions", "Failed to get max member ID.", username);
@@ -97,18 +104,23 @@ public class BorrowingPlanFunctions {
     }
 
     private void showAlert(String title, String content) {
-        javafx.scene.control.Alert alert = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.ERROR);
-        alert.setTitle(title);
-        alert.setHeaderText(null);
-        alert.setContentText(content);
-        alert.showAndWait();
+        // May be called from a DB worker thread
+        DBExecutor.runOnFx(() -> {
+            javafx.scene.control.Alert alert = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.ERROR);
+            alert.setTitle(title);
+            alert.setHeaderText(null);
+            alert.setContentText(content);
+            alert.showAndWait();
+        });
     }
 
     private void showConfirm(String title, String content) {
-        javafx.scene.control.Alert alert = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.INFORMATION);
-        alert.setTitle(title);
-        alert.setHeaderText(null);
-        alert.setContentText(content);
-        alert.showAndWait();
+        DBExecutor.runOnFx(() -> {
+            javafx.scene.control.Alert alert = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.INFORMATION);
+            alert.setTitle(title);
+            alert.setHeaderText(null);
+            alert.setContentText(content);
+            alert.showAndWait();
+        });
     }
 }
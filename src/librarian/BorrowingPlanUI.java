@@ -1,22 +1,21 @@
 package librarian;
 
+import common.DBExecutor;
 import common.DBLogger;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
 
-import java.sql.Connection;
-
 public class BorrowingPlanUI {
     public GridPane layout;
-    private Connection con;
+    private DBExecutor db;
     private BorrowingPlanFunctions planFunctions;
     private String username;
 
-    public BorrowingPlanUI(Connection con, String username) {
+    public BorrowingPlanUI(DBExecutor db, String username) {
         layout = new GridPane();
-        this.con = con;
+        this.db = db;
         this.username = username;
-        this.planFunctions = new BorrowingPlanFunctions(con, username);
+        this.planFunctions = new BorrowingPlanFunctions(db.getPool(), username);
         addComponents();
     }
 
@@ -27,7 +26,9 @@ public class BorrowingPlanUI {
         Label memberIdLabel = new Label("Member ID:");
         Spinner<Integer> memberIdSpinner = new Spinner<>();
         memberIdSpinner.setEditable(true);
-        memberIdSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, planFunctions.getMaxMemberID()));
+        SpinnerValueFactory.IntegerSpinnerValueFactory memberIdFactory = new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 1);
+        memberIdSpinner.setValueFactory(memberIdFactory);
+        db.call("getMaxMemberID", planFunctions::getMaxMemberID, memberIdFactory::setMax, Throwable::printStackTrace);
 
         Label bookIdLabel = new Label("Book ID:");
         TextField bookIdField = new TextField();
@@ -36,8 +37,18 @@ public class BorrowingPlanUI {
 
         assignButton.setOnAction(e -> {
             int memberId = memberIdSpinner.getValue();
-            int bookId = Integer.parseInt(bookIdField.getText());
-            planFunctions.recordBorrowing(memberId, bookId);
+            int bookId = parseBookId(bookIdField.getText());
+            if (bookId <= 0) {
+                showAlert("Input Error", "Please enter a valid Book ID");
+                return;
+            }
+            assignButton.setDisable(true);
+            db.run("recordBorrowingPlan", () -> planFunctions.recordBorrowing(memberId, bookId),
+                    () -> assignButton.setDisable(false),
+                    ex -> {
+                        assignButton.setDisable(false);
+                        ex.printStackTrace();
+                    });
         });
 
         layout.add(memberIdLabel, 0, 0);
@@ -46,4 +57,21 @@ public class BorrowingPlanUI {
         layout.add(bookIdField, 1, 1);
         layout.add(assignButton, 0, 2);
     }
+
+    // 0 (never a valid ID) for anything that isn't a number
+    private static int parseBookId(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void showAlert(String title, String msg) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+        alert.setContentText(msg);
+        alert.showAndWait();
+    }
 }
@@ -0,0 +1,288 @@
+package librarian;
+
+import common.ConnectionPool;
+import common.DBLogger;
+import common.DBMetrics;
+import common.DBUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Brings the fine on every open overdue loan up to date in one pass, so fines are current
+ * without anyone clicking "Calculate Fine" member by member.
+ * Loans are split into BorrowID ranges; each range is one set-based UPDATE, run in parallel on
+ * pooled connections. Finished ranges are checkpointed per run date and chunk size, so a rerun after
+ * a crash only does the ranges that are left; a rerun with a different --chunk starts over, which is
+ * safe because only rows whose fine still changes are written.
+ *
+ * Run nightly with: java librarian.FineAccrualJob [--date=YYYY-MM-DD] [--threads=N] [--chunk=N]
+ */
+public class FineAccrualJob {
+    private static final int DEFAULT_CHUNK_SIZE = 5000;
+    private static final int DEFAULT_THREADS = 4;
+
+    // Only rows whose fine actually changes are written
+    private static final String ACCRUE_QUERY =
+            "UPDATE borrowingrecords SET Overdue = 1, FineAmount = DATEDIFF(?, DueDate) * ? " +
+            "WHERE BorrowID >= ? AND BorrowID < ? AND ReturnDate IS NULL AND DueDate < ? " +
+            "AND (Overdue = 0 OR FineAmount <> DATEDIFF(?, DueDate) * ?)";
+    // Same rows as ACCRUE_QUERY, run first: adds each member's net fine change to their balance
+    private static final String BALANCE_QUERY =
+            "INSERT INTO member_fine_balances (MemberID, Balance, Version) " +
+            "SELECT MemberID, SUM(DATEDIFF(?, DueDate) * ? - FineAmount), 1 FROM borrowingrecords " +
+            "WHERE BorrowID >= ? AND BorrowID < ? AND ReturnDate IS NULL AND DueDate < ? " +
+            "AND (Overdue = 0 OR FineAmount <> DATEDIFF(?, DueDate) * ?) " +
+            "GROUP BY MemberID " +
+            "ON DUPLICATE KEY UPDATE Balance = Balance + VALUES(Balance), Version = Version + 1";
+    private static final String CHECKPOINT_QUERY =
+            "INSERT IGNORE INTO fine_accrual_checkpoints (RunDate, ChunkSize, ChunkStart, RowsUpdated) VALUES (?, ?, ?, ?)";
+
+    private final ConnectionPool pool;
+    private final LocalDate runDate;
+    private final int chunkSize;
+    private final int threads;
+    private final String username;
+
+    public FineAccrualJob(ConnectionPool pool, LocalDate runDate, int chunkSize, int threads, String username) {
+        if (chunkSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("Invalid job settings: chunk=" + chunkSize + ", threads=" + threads);
+        }
+        this.pool = pool;
+        this.runDate = runDate;
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.username = username;
+    }
+
+    /**
+     * Runs every range not yet checkpointed for runDate and waits for all of them.
+     */
+    public Report run() throws SQLException, InterruptedException {
+        long start = System.nanoTime();
+        int[] range;
+        Set<Integer> done;
+        // Creates member_fine_balances, before this thread holds a connection of its own
+        DBUtils.getFineBalances();
+        try (Connection con = pool.getConnection()) {
+            createCheckpointTable(con);
+            range = openLoanRange(con);
+            done = finishedChunks(con);
+        }
+
+        AtomicLong rowsUpdated = new AtomicLong();
+        int skipped = 0;
+        List<Future<?>> chunks = new ArrayList<>();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "fine-accrual-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            if (range != null) {
+                // Chunk boundaries are aligned to chunkSize so they line up with earlier same-sized runs' checkpoints
+                for (long from = (range[0] / chunkSize) * (long) chunkSize; from <= range[1]; from += chunkSize) {
+                    int chunkStart = (int) from;
+                    if (done.contains(chunkStart)) {
+                        skipped++;
+                        continue;
+                    }
+                    chunks.add(workers.submit(() -> {
+                        rowsUpdated.addAndGet(accrueChunk(chunkStart));
+                        return null;
+                    }));
+                }
+            }
+
+            SQLException failure = null;
+            for (Future<?> chunk : chunks) {
+                try {
+                    chunk.get();
+                } catch (ExecutionException e) {
+                    // Keep going; the failed ranges stay unchecked and are retried on the next run
+                    if (failure == null) {
+                        failure = e.getCause() instanceof SQLException
+                                ? (SQLException) e.getCause() : new SQLException(e.getCause());
+                    }
+                }
+            }
+
+            Report report = new Report(runDate, chunks.size(), skipped, rowsUpdated.get(), System.nanoTime() - start);
+            if (failure != null) {
+                DBLogger.log("ERROR", "FineAccrualJob", "Fine accrual incomplete: " + failure.getMessage() + " " + report, username);
+                throw failure;
+            }
+            DBLogger.log("INFO", "FineAccrualJob", report.toString(), username);
+            return report;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    // One BorrowID range: the balance change, the set-based update and its checkpoint commit together
+    private long accrueChunk(int chunkStart) throws SQLException {
+        long start = DBMetrics.start();
+        try (Connection con = pool.getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement balances = con.prepareStatement(BALANCE_QUERY);
+                 PreparedStatement accrue = con.prepareStatement(ACCRUE_QUERY);
+                 PreparedStatement checkpoint = con.prepareStatement(CHECKPOINT_QUERY)) {
+                String date = runDate.toString();
+                bindRange(balances, date, chunkStart);
+                balances.executeUpdate();
+
+                bindRange(accrue, date, chunkStart);
+                int updated = accrue.executeUpdate();
+
+                checkpoint.setString(1, date);
+                checkpoint.setInt(2, chunkSize);
+                checkpoint.setInt(3, chunkStart);
+                checkpoint.setInt(4, updated);
+                checkpoint.executeUpdate();
+
+                con.commit();
+                DBMetrics.record("accrueFineChunk", start, updated);
+                return updated;
+            } catch (SQLException e) {
+                con.rollback();
+                DBMetrics.recordError("accrueFineChunk", start);
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        }
+    }
+
+    // BALANCE_QUERY and ACCRUE_QUERY take the same parameters
+    private void bindRange(PreparedStatement stmt, String date, int chunkStart) throws SQLException {
+        stmt.setString(1, date);
+        stmt.setDouble(2, FineCalculator.DAILY_FINE_RATE);
+        stmt.setInt(3, chunkStart);
+        stmt.setLong(4, (long) chunkStart + chunkSize);
+        stmt.setString(5, date);
+        stmt.setString(6, date);
+        stmt.setDouble(7, FineCalculator.DAILY_FINE_RATE);
+    }
+
+    // Lowest and highest BorrowID still out, or null if nothing is
+    private int[] openLoanRange(Connection con) throws SQLException {
+        String query = "SELECT MIN(BorrowID) AS MinID, MAX(BorrowID) AS MaxID FROM borrowingrecords WHERE ReturnDate IS NULL";
+        try (PreparedStatement stmt = con.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next() && rs.getObject("MinID") != null) {
+                return new int[]{rs.getInt("MinID"), rs.getInt("MaxID")};
+            }
+            return null;
+        }
+    }
+
+    // Only checkpoints written with this chunk size line up with this run's ranges
+    private Set<Integer> finishedChunks(Connection con) throws SQLException {
+        Set<Integer> done = new HashSet<>();
+        try (PreparedStatement stmt = con.prepareStatement(
+                "SELECT ChunkStart FROM fine_accrual_checkpoints WHERE RunDate = ? AND ChunkSize = ?")) {
+            stmt.setString(1, runDate.toString());
+            stmt.setInt(2, chunkSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    done.add(rs.getInt("ChunkStart"));
+                }
+            }
+        }
+        return done;
+    }
+
+    private void createCheckpointTable(Connection con) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS fine_accrual_checkpoints ("
+                    + "RunDate DATE NOT NULL, "
+                    + "ChunkSize INT NOT NULL, "
+                    + "ChunkStart INT NOT NULL, "
+                    + "RowsUpdated INT NOT NULL, "
+                    + "PRIMARY KEY (RunDate, ChunkSize, ChunkStart))");
+        }
+        // Tables from before ChunkSize was part of the key: old rows get 0, so no run ever resumes from them
+        try (PreparedStatement stmt = con.prepareStatement("SELECT 1 FROM information_schema.columns "
+                + "WHERE table_schema = DATABASE() AND table_name = 'fine_accrual_checkpoints' AND column_name = 'ChunkSize'");
+             ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) {
+                return;
+            }
+        }
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE fine_accrual_checkpoints ADD COLUMN ChunkSize INT NOT NULL DEFAULT 0 AFTER RunDate, "
+                    + "DROP PRIMARY KEY, ADD PRIMARY KEY (RunDate, ChunkSize, ChunkStart)");
+        }
+    }
+
+    // Outcome of one run
+    public static class Report {
+        private final LocalDate runDate;
+        private final int chunksRun;
+        private final int chunksSkipped;
+        private final long rowsUpdated;
+        private final long elapsedNanos;
+
+        private Report(LocalDate runDate, int chunksRun, int chunksSkipped, long rowsUpdated, long elapsedNanos) {
+            this.runDate = runDate;
+            this.chunksRun = chunksRun;
+            this.chunksSkipped = chunksSkipped;
+            this.rowsUpdated = rowsUpdated;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRowsUpdated() { return rowsUpdated; }
+        public double getElapsedMillis() { return elapsedNanos / 1_000_000.0; }
+
+        public double getRowsPerSecond() {
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            return seconds <= 0 ? 0.0 : rowsUpdated / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Fine accrual for %s: %d rows updated in %d chunks (%d already done), %.0f ms, %.1f rows/s",
+                    runDate, rowsUpdated, chunksRun, chunksSkipped, getElapsedMillis(), getRowsPerSecond());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LocalDate runDate = LocalDate.now();
+        int threads = DEFAULT_THREADS;
+        int chunkSize = DEFAULT_CHUNK_SIZE;
+        for (String arg : args) {
+            if (arg.startsWith("--date=")) {
+                runDate = LocalDate.parse(arg.substring("--date=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--chunk=")) {
+                chunkSize = Integer.parseInt(arg.substring("--chunk=".length()));
+            } else {
+                System.err.println("Usage: FineAccrualJob [--date=YYYY-MM-DD] [--threads=N] [--chunk=N]");
+                System.exit(2);
+            }
+        }
+
+        ConnectionPool pool = DBUtils.getPool();
+        DBLogger.setConnectionPool(pool);
+        try {
+            Report report = new FineAccrualJob(pool, runDate, chunkSize, threads, "fine-accrual-job").run();
+            System.out.println(report);
+        } finally {
+            DBUtils.shutdownPool();
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package librarian;
 
+import common.ConnectionPool;
+import common.DBExecutor;
 import common.DBLogger;
+import common.DBUtils;
+import common.FineBalances;
 import javafx.scene.control.Alert;
 
 import java.sql.*;
@@ -8,53 +12,85 @@ import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 
 public class FineCalculator {
-    private final Connection con;
+    private final ConnectionPool pool;
     private final String username;
-    private final double DAILY_FINE_RATE = 2.00;
+    public static final double DAILY_FINE_RATE = 2.00;
 
-    public FineCalculator(Connection con, String username) {
-        this.con = con;
+    public FineCalculator(ConnectionPool pool, String username) {
+        this.pool = pool;
         this.username = username;
     }
 
+    /**
+     * Fine owed on a loan due on dueDate as of today; zero until the day after the due date.
+     */
+    public static double fineFor(LocalDate dueDate, LocalDate today) {
+        return today.isAfter(dueDate) ? DAILY_FINE_RATE * ChronoUnit.DAYS.between(dueDate, today) : 0.0;
+    }
+
     public void calculateFineForMember(int memberId) {
-        String query = "SELECT BorrowID, DueDate FROM borrowingrecords WHERE MemberID = ? AND Overdue = 0";
+        int fined;
+        try {
+            fined = applyFines(memberId);
+        } catch (SQLException e) {
+            DBLogger.log("ERROR", "FineCalculator", "Error while calculating fine for MemberID: " + memberId, username);
+            showAlert("Database Error", "Could not calculate fines. Try again.");
+            e.printStackTrace();
+            return;
+        }
 
-        try (PreparedStatement stmt = con.prepareStatement(query)) {
-            stmt.setInt(1, memberId);
-            ResultSet rs = stmt.executeQuery();
+        if (fined > 0) {
+            showInfo("Fine Calculated", "Overdue fines have been calculated and updated.");
+        } else {
+            showInfo("No Fines", "No overdue books for this member.");
+        }
+    }
 
-            boolean anyFines = false;
+    /**
+     * Marks the member's overdue loans and sets their fines, without any dialogs. Returns how many loans were fined.
+     * The loans and the member's fine balance are updated in one transaction.
+     */
+    public int applyFines(int memberId) throws SQLException {
+        String query = "SELECT BorrowID, DueDate, FineAmount FROM borrowingrecords WHERE MemberID = ? AND Overdue = 0 FOR UPDATE";
+        FineBalances balances = DBUtils.getFineBalances();
+        FineBalances.Entry balance;
+        int fined = 0;
 
-            while (rs.next()) {
-                int borrowId = rs.getInt("BorrowID");
-                LocalDate dueDate = LocalDate.parse(rs.getString("DueDate"));
+        try (Connection con = pool.getConnection()) {
+            con.setAutoCommit(false);
+            try (PreparedStatement stmt = con.prepareStatement(query)) {
+                stmt.setInt(1, memberId);
+                ResultSet rs = stmt.executeQuery();
                 LocalDate today = LocalDate.now();
+                double delta = 0;
 
-                if (today.isAfter(dueDate)) {
-                    long overdueDays = ChronoUnit.DAYS.between(dueDate, today);
-                    double fine = DAILY_FINE_RATE * overdueDays;
+                while (rs.next()) {
+                    int borrowId = rs.getInt("BorrowID");
+                    LocalDate dueDate = LocalDate.parse(rs.getString("DueDate"));
 
-                    markOverdue(borrowId, fine);
-                    anyFines = true;
-                    DBLogger.log("INFO", "FineCalculator", "Fine calculated for BorrowID: " + borrowId + " (Fine: " + fine + ")", username);
-                }
-            }
+                    if (today.isAfter(dueDate)) {
+                        double fine = fineFor(dueDate, today);
 
-            if (anyFines) {
-                showInfo("Fine Calculated", "Overdue fines have been calculated and updated.");
-            } else {
-                showInfo("No Fines", "No overdue books for this member.");
+                        markOverdue(con, borrowId, fine);
+                        delta += fine - rs.getDouble("FineAmount");
+                        fined++;
+                        DBLogger.log("INFO", "FineCalculator", "Fine calculated for BorrowID: " + borrowId + " (Fine: " + fine + ")", username);
+                    }
+                }
+                balance = balances.adjust(con, memberId, delta);
+                con.commit();
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(true);
             }
-
-        } catch (SQLException e) {
-            DBLogger.log("ERROR", "FineCalculator", "Error while calculating fine for MemberID: " + memberId, username);
-            showAlert("Database Error", "Could not calculate fines. Try again.");
-            e.printStackTrace();
         }
+        balances.publish(balance);
+        return fined;
     }
 
-    private void markOverdue(int borrowId, double fineAmount) throws SQLException {
+    private void markOverdue(Connection con, int borrowId, double fineAmount) throws SQLException {
         String updateQuery = "UPDATE borrowingrecords SET Overdue = 1, FineAmount = ? WHERE BorrowID = ?";
         try (PreparedStatement updateStmt = con.prepareStatement(updateQuery)) {
             updateStmt.setDouble(1, fineAmount);
@@ -64,18 +100,23 @@ public class FineCalculator {
     }
 
     private void showAlert(String title, String message) {
-        Alert alert = new Alert(Alert.AlertType.ERROR);
-        alert.setTitle(title);
-        alert.setHeaderText(null);
-        alert.setContentText(message);
-        alert.showAndWait();
+        // May be called from a DB worker thread
+        DBExecutor.runOnFx(() -> {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle(title);
+            alert.setHeaderText(null);
+            alert.setContentText(message);
+            alert.showAndWait();
+        });
     }
 
     private void showInfo(String title, String message) {
-        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-        alert.setTitle(title);
-        alert.setHeaderText(null);
-        alert.setContentText(message);
-        alert.showAndWait();
+        DBExecutor.runOnFx(() -> {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle(title);
+            alert.setHeaderText(null);
+            alert.setContentText(message);
+            alert.showAndWait();
+        });
     }
 }
@@ -1,5 +1,7 @@
 package librarian;
 
+import common.DBExecutor;
+import common.LogViewer;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -7,22 +9,16 @@ import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 
 public class LibrarianInterface {
     private Stage stage;
     private String librarianUsername;
-    private Connection connection;
+    private DBExecutor db;
 
-    public LibrarianInterface(Stage stage, String librarianUsername, Connection connection) {
+    public LibrarianInterface(Stage stage, String librarianUsername, DBExecutor db) {
         this.stage = stage;
         this.librarianUsername = librarianUsername;
-        this.connection = connection;
+        this.db = db;
     }
 
     public void initializeComponents() {
@@ -43,7 +39,7 @@ public class LibrarianInterface {
         
         returnBookBtn.setOnAction(e -> {
             try {
-                ReturnBookUI returnBookUI = new ReturnBookUI(connection, librarianUsername);
+                ReturnBookUI returnBookUI = new ReturnBookUI(db, librarianUsername);
                 returnBookUI.display();
             } catch (Exception ex) {
                 ex.printStackTrace();
@@ -53,7 +49,7 @@ public class LibrarianInterface {
 
         registerMemberBtn.setOnAction(e -> {
             try {
-                RegisterLibraryMemberUI registerUI = new RegisterLibraryMemberUI(connection, librarianUsername);
+                RegisterLibraryMemberUI registerUI = new RegisterLibraryMemberUI(db, librarianUsername);
                 registerUI.display();
             } catch (Exception ex) {
                 ex.printStackTrace();
@@ -64,7 +60,7 @@ public class LibrarianInterface {
         renewMembershipBtn.setOnAction(e -> {
             try {
                 Stage renewStage = new Stage();
-                RenewLibraryMembership renewUI = new RenewLibraryMembership(connection, librarianUsername);
+                RenewLibraryMembership renewUI = new RenewLibraryMembership(db, librarianUsername);
                 renewStage.setScene(new Scene(renewUI.layout, 400, 250));
                 renewStage.setTitle("Renew Membership");
                 renewStage.show();
@@ -77,7 +73,7 @@ public class LibrarianInterface {
         borrowBookBtn.setOnAction(e -> {
             try {
                 Stage borrowStage = new Stage();
-                BorrowingPlanUI borrowUI = new BorrowingPlanUI(connection, librarianUsername);
+                BorrowingPlanUI borrowUI = new BorrowingPlanUI(db, librarianUsername);
                 borrowStage.setScene(new Scene(borrowUI.layout, 400, 250));
                 borrowStage.setTitle("Record Borrowing");
                 borrowStage.show();
@@ -96,8 +92,8 @@ public class LibrarianInterface {
             dialog.showAndWait().ifPresent(input -> {
                 try {
                     int memberId = Integer.parseInt(input);
-                    FineCalculator calculator = new FineCalculator(connection, librarianUsername);
-                    calculator.calculateFineForMember(memberId);
+                    FineCalculator calculator = new FineCalculator(db.getPool(), librarianUsername);
+                    db.run("calculateFineForMember", () -> calculator.calculateFineForMember(memberId));
                 } catch (NumberFormatException ex) {
                     showAlert("Input Error", "Please enter a valid numeric Member ID.");
                 }
@@ -106,7 +102,7 @@ public class LibrarianInterface {
 
         updateMemberBtn.setOnAction(e -> {
             try {
-                UpdateMemberInfoUI updateUI = new UpdateMemberInfoUI(connection, librarianUsername);
+                UpdateMemberInfoUI updateUI = new UpdateMemberInfoUI(db, librarianUsername);
                 updateUI.display();
             } catch (Exception ex) {
                 ex.printStackTrace();
@@ -116,7 +112,7 @@ public class LibrarianInterface {
 
         manageBooksBtn.setOnAction(e -> {
             try {
-                BookInventoryUI bookUI = new BookInventoryUI(connection, librarianUsername);
+                BookInventoryUI bookUI = new BookInventoryUI(db, librarianUsername);
                 bookUI.display();
             } catch (Exception ex) {
                 ex.printStackTrace();
@@ -126,7 +122,7 @@ public class LibrarianInterface {
 
         scheduleMaintenanceBtn.setOnAction(e -> {
             try {
-                ScheduleMaintenanceUI maintenanceUI = new ScheduleMaintenanceUI(connection, librarianUsername);
+                ScheduleMaintenanceUI maintenanceUI = new ScheduleMaintenanceUI(db, librarianUsername);
                 maintenanceUI.display();
             } catch (Exception ex) {
                 ex.printStackTrace();
@@ -136,7 +132,7 @@ public class LibrarianInterface {
 
         viewLogsBtn.setOnAction(e -> {
             try {
-                showSystemLogs(getSystemLogs());
+                showSystemLogs();
             } catch (Exception ex) {
                 ex.printStackTrace();
                 showAlert("Error", "Error loading logs: " + ex.getMessage());
@@ -177,35 +173,7 @@ public class LibrarianInterface {
     }
 
     // Display system logs clearly
-    private void showSystemLogs(List<String> logs) {
-        Stage logStage = new Stage();
-        logStage.setTitle("System Logs");
-
-        TextArea logArea = new TextArea(String.join("\n", logs));
-        logArea.setEditable(false);
-        logArea.setWrapText(true);
-
-        VBox logLayout = new VBox(10, new Label("System Logs:"), logArea);
-        logLayout.setPadding(new Insets(15));
-
-        Scene logScene = new Scene(logLayout, 400, 300);
-        logStage.setScene(logScene);
-        logStage.show();
-    }
-
-    // Fetch system logs securely
-    private List<String> getSystemLogs() {
-        List<String> logs = new ArrayList<>();
-        String query = "SELECT Timestamp, Action FROM logs ORDER BY Timestamp DESC";
-
-        try (PreparedStatement stmt = connection.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
-            while (rs.next()) {
-                logs.add(rs.getTimestamp("Timestamp").toString() + " - " + rs.getString("Action"));
-            }
-        } catch (SQLException e) {
-            logs.add("Error retrieving logs: " + e.getMessage());
-        }
-        return logs;
+    private void showSystemLogs() {
+        new LogViewer(db, librarianUsername).display();
     }
 }
@@ -1,37 +1,31 @@
 package librarian;
 
+import common.ConnectionPool;
+import common.DBExecutor;
 import common.DBLogger;
+import common.DBUtils;
+import common.MemberProfileCache;
 import javafx.scene.control.Alert;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 
 public class LibraryFunctions {
-    private Connection con;
+    private ConnectionPool pool;
     private String username;
 
-    public LibraryFunctions(Connection con, String username) {
-        this.con = con;
+    public LibraryFunctions(ConnectionPool pool, String username) {
+        this.pool = pool;
         this.username = username;
     }
 
     public String getMembershipType(int memberID) throws SQLException {
         String membershipType = "";
         try {
-            String query = "SELECT MembershipType FROM members WHERE MemberID = ?";
-            PreparedStatement statement = con.prepareStatement(query);
-            statement.setInt(1, memberID);
-            ResultSet rs = statement.executeQuery();
-
-            if (rs.next()) {
+            MemberProfileCache.MemberProfile profile = DBUtils.getMemberProfileCache().get(memberID);
+            if (profile != null) {
                 DBLogger.log("INFO", "LibraryFunctions", "Fetched MembershipType from members.", username);
-                membershipType = rs.getString("MembershipType");
+                membershipType = profile.getMembershipType();
             }
-
-            rs.close();
-            statement.close();
         } catch (SQLException e) {
             DBLogger.log("ERROR", "LibraryFunctions", "Failed to fetch MembershipType.", username);
             e.printStackTrace();
@@ -40,18 +34,23 @@ public class LibraryFunctions {
     }
 
     public void showAlert(String title, String content) {
-        Alert alert = new Alert(Alert.AlertType.ERROR);
-        alert.setTitle(title);
-        alert.setHeaderText(null);
-        alert.setContentText(content);
-        alert.showAndWait();
+        // May be called from a DB worker thread
+        DBExecutor.runOnFx(() -> {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle(title);
+            alert.setHeaderText(null);
+            alert.setContentText(content);
+            alert.showAndWait();
+        });
     }
 
     public void showConfirm(String title, String content) {
-        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-        alert.setTitle(title);
-        alert.setHeaderText(null);
-        alert.setContentText(content);
-        alert.showAndWait();
+        DBExecutor.runOnFx(() -> {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle(title);
+            alert.setHeaderText(null);
+            alert.setContentText(content);
+            alert.showAndWait();
+        });
     }
 }
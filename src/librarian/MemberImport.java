@@ -0,0 +1,276 @@
+package librarian;
+
+import common.BulkImport;
+import common.ConnectionPool;
+import common.DBLogger;
+import common.DBUtils;
+import common.IdAllocator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registers members in bulk from a CSV/TSV export of a legacy system, without the registration form.
+ * Records go through BulkImport: parsed and validated in parallel with the same e-mail pattern as the
+ * form, member IDs taken a chunk at a time, multi-row inserts into members. Nothing is logged per row;
+ * the run ends with one summary (counts by membership type, rejection reasons, including rows the
+ * database refused) printed and logged, and rejected records with their reasons in FILE.rejected.tsv.
+ * E-mail addresses already in members are rejected, so a run that failed part way can simply be rerun.
+ *
+ * Columns: Name, ContactInfo, MembershipType (Regular or Premium) and optionally RegistrationDate and
+ * MembershipExpiry (YYYY-MM-DD). Missing dates default as in the form: registered today, expiring
+ * after six months (Regular) or a year (Premium). A header row may give the columns in any order.
+ *
+ * Run with: java librarian.MemberImport FILE [--today=YYYY-MM-DD] [--chunk=N] [--batch=N] [--parsers=N] [--writers=N]
+ */
+public class MemberImport implements BulkImport.Target<MemberImport.Member> {
+    private static final String[] FIELDS = {"Name", "ContactInfo", "MembershipType", "RegistrationDate", "MembershipExpiry"};
+    // Print progress at most this often
+    private static final long PROGRESS_INTERVAL_MS = 5000;
+    private static final int TOP_REASONS = 10;
+
+    // One validated record
+    public static final class Member {
+        private final String name;
+        private final String contact;
+        private final String type;
+        private final LocalDate registered;
+        private final LocalDate expiry;
+
+        private Member(String name, String contact, String type, LocalDate registered, LocalDate expiry) {
+            this.name = name;
+            this.contact = contact;
+            this.type = type;
+            this.registered = registered;
+            this.expiry = expiry;
+        }
+    }
+
+    private final LocalDate today;
+    private final String username;
+    // Lower-cased contacts already registered, read before the run
+    private final Set<String> registeredContacts = ConcurrentHashMap.newKeySet();
+    // Lower-cased contacts seen so far, so a member listed twice in the file is only registered once
+    private final Set<String> contacts = ConcurrentHashMap.newKeySet();
+    private final Map<String, LongAdder> rejectReasons = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> importedByType = new ConcurrentHashMap<>();
+
+    public MemberImport(LocalDate today, String username) {
+        this.today = today;
+        this.username = username;
+    }
+
+    @Override
+    public String[] fields() {
+        return FIELDS;
+    }
+
+    @Override
+    public int requiredFields() {
+        return 3;
+    }
+
+    // Runs on a parser thread
+    @Override
+    public Member parse(String[] fields) {
+        String name = fields[0];
+        String contact = fields[1];
+        if (name.isEmpty()) {
+            throw reject("Name is empty");
+        }
+        if (!RegisterLibraryMemberFunctions.EMAIL_PATTERN.matcher(contact).matches()) {
+            throw reject("Invalid e-mail address");
+        }
+        String type;
+        if (fields[2].equalsIgnoreCase("Regular")) {
+            type = "Regular";
+        } else if (fields[2].equalsIgnoreCase("Premium")) {
+            type = "Premium";
+        } else {
+            throw reject("Unknown membership type");
+        }
+        LocalDate registered = fields[3].isEmpty() ? today : date(fields[3], "Invalid registration date");
+        LocalDate expiry = fields[4].isEmpty()
+                ? (type.equals("Premium") ? registered.plusYears(1) : registered.plusMonths(6))
+                : date(fields[4], "Invalid expiry date");
+        if (expiry.isBefore(registered)) {
+            throw reject("Expiry before registration");
+        }
+        String key = contact.toLowerCase(Locale.ROOT);
+        if (registeredContacts.contains(key)) {
+            throw reject("E-mail already registered");
+        }
+        if (!contacts.add(key)) {
+            throw reject("Duplicate e-mail in file");
+        }
+        return new Member(name, contact, type, registered, expiry);
+    }
+
+    @Override
+    public IdAllocator.Sequence sequence() {
+        return IdAllocator.Sequence.MEMBER;
+    }
+
+    @Override
+    public String insertInto() {
+        return "members (MemberID, Name, ContactInfo, MembershipType, RegistrationDate, MembershipExpiry, RoleID)";
+    }
+
+    @Override
+    public String valuesRow() {
+        return "(?, ?, ?, ?, ?, ?, 3)"; // RoleID for Member
+    }
+
+    @Override
+    public int bind(PreparedStatement stmt, int index, int id, Member member) throws SQLException {
+        stmt.setInt(index, id);
+        stmt.setString(index + 1, member.name);
+        stmt.setString(index + 2, member.contact);
+        stmt.setString(index + 3, member.type);
+        stmt.setString(index + 4, member.registered.toString());
+        stmt.setString(index + 5, member.expiry.toString());
+        return index + 6;
+    }
+
+    @Override
+    public void committed(int id, Member member) {
+        importedByType.computeIfAbsent(member.type, t -> new LongAdder()).increment();
+        DBUtils.getMemberNameIndex().put(id, member.name);
+    }
+
+    @Override
+    public void refused(Member member, SQLException error) {
+        reject(error.getErrorCode() == 1062 ? "Refused by database (duplicate key)"
+                : "Refused by database (error " + error.getErrorCode() + ")");
+    }
+
+    /**
+     * Reads the contacts of existing members, so they are rejected instead of registered twice.
+     * Call before the import starts.
+     */
+    public void loadRegisteredContacts(Connection con) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT ContactInfo FROM members")) {
+            // Streams rows one at a time instead of buffering the whole table
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String contact = rs.getString("ContactInfo");
+                    if (contact != null) {
+                        registeredContacts.add(contact.trim().toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The import's report followed by the per-type and per-reason breakdown.
+     */
+    public String summarize(BulkImport.Report report) {
+        StringBuilder summary = new StringBuilder(report.toString());
+        importedByType.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> summary.append("\n  imported ").append(e.getKey()).append(": ").append(e.getValue().sum()));
+        rejectReasons.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                .limit(TOP_REASONS)
+                .forEach(e -> summary.append("\n  rejected (").append(e.getKey()).append("): ").append(e.getValue().sum()));
+        return summary.toString();
+    }
+
+    private LocalDate date(String value, String reason) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw reject(reason);
+        }
+    }
+
+    private IllegalArgumentException reject(String reason) {
+        rejectReasons.computeIfAbsent(reason, r -> new LongAdder()).increment();
+        return new IllegalArgumentException(reason);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path file = null;
+        LocalDate today = LocalDate.now();
+        int chunk = 0;
+        int batch = 0;
+        int parsers = 0;
+        int writers = 0;
+        for (String arg : args) {
+            if (arg.startsWith("--today=")) {
+                today = LocalDate.parse(arg.substring("--today=".length()));
+            } else if (arg.startsWith("--chunk=")) {
+                chunk = Integer.parseInt(arg.substring("--chunk=".length()));
+            } else if (arg.startsWith("--batch=")) {
+                batch = Integer.parseInt(arg.substring("--batch=".length()));
+            } else if (arg.startsWith("--parsers=")) {
+                parsers = Integer.parseInt(arg.substring("--parsers=".length()));
+            } else if (arg.startsWith("--writers=")) {
+                writers = Integer.parseInt(arg.substring("--writers=".length()));
+            } else if (!arg.startsWith("--") && file == null) {
+                file = Paths.get(arg);
+            } else {
+                file = null;
+                break;
+            }
+        }
+        if (file == null) {
+            System.err.println("Usage: MemberImport FILE [--today=YYYY-MM-DD] [--chunk=N] [--batch=N] [--parsers=N] [--writers=N]");
+            System.exit(2);
+        }
+
+        ConnectionPool pool = DBUtils.getPool();
+        DBLogger.setConnectionPool(pool);
+        try {
+            MemberImport target = new MemberImport(today, "member-import");
+            try (Connection con = pool.getConnection()) {
+                target.loadRegisteredContacts(con);
+            }
+            BulkImport<Member> bulk = new BulkImport<>(pool, DBUtils.getIdAllocator(), target);
+            if (chunk > 0) {
+                bulk.setChunkRows(chunk);
+            }
+            if (batch > 0) {
+                bulk.setBatchRows(batch);
+            }
+            if (parsers > 0) {
+                bulk.setParseThreads(parsers);
+            }
+            if (writers > 0) {
+                bulk.setWriterThreads(writers);
+            }
+            long start = System.currentTimeMillis();
+            long[] lastPrinted = {start};
+            BulkImport.Report report = bulk.run(file, file.resolveSibling(file.getFileName() + ".rejected.tsv"), () -> false,
+                    (bytesRead, bytesTotal, read, imported, rejected) -> {
+                        long now = System.currentTimeMillis();
+                        if (now - lastPrinted[0] >= PROGRESS_INTERVAL_MS) {
+                            lastPrinted[0] = now;
+                            System.out.printf(Locale.ROOT, "%3.0f%%  %,d imported, %,d rejected, %,.0f rows/s%n",
+                                    bytesTotal == 0 ? 100.0 : bytesRead * 100.0 / bytesTotal, imported, rejected,
+                                    imported * 1000.0 / Math.max(1, now - start));
+                        }
+                    });
+            String summary = target.summarize(report);
+            System.out.println(summary);
+            DBLogger.log("INFO", "MemberImport", "Imported members from " + file.getFileName() + ": "
+                    + summary.replace("\n", ";"), target.username);
+        } finally {
+            DBUtils.shutdownPool();
+        }
+    }
+}
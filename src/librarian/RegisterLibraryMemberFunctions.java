@@ -1,40 +1,39 @@
 package librarian;
 
+import common.ConnectionPool;
+import common.DBExecutor;
 import common.DBLogger;
+import common.DBUtils;
+import common.IdAllocator;
+import common.MemberProfileCache;
 import javafx.scene.control.Alert;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.regex.Pattern;
 
 public class RegisterLibraryMemberFunctions {
-    private Connection con;
+    // Compiled once; shared with the bulk member import
+    public static final Pattern EMAIL_PATTERN = Pattern.compile("^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$");
+
+    private ConnectionPool pool;
     private String username;
 
-    public RegisterLibraryMemberFunctions(Connection con, String username) {
-        this.con = con;
+    public RegisterLibraryMemberFunctions(ConnectionPool pool, String username) {
+        this.pool = pool;
         this.username = username;
     }
 
     public boolean validateInputs(String name, String contact, String type) {
-        String emailRegex = "^[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$";
-        Pattern pattern = Pattern.compile(emailRegex);
-        boolean isValid = !name.isBlank() && !contact.isBlank() && type != null && pattern.matcher(contact).matches();
+        boolean isValid = !name.isBlank() && !contact.isBlank() && type != null && EMAIL_PATTERN.matcher(contact).matches();
         DBLogger.log("INFO", "RegisterLibraryMemberFunctions", "Input validation result: " + isValid, username);
         return isValid;
     }
 
     public int fetchNextMemberID() throws SQLException {
-        String query = "SELECT MAX(MemberID) AS MaxID FROM members";
-        try (PreparedStatement stmt = con.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
-            if (rs.next()) {
-                int nextID = rs.getInt("MaxID") + 1;
-                DBLogger.log("INFO", "RegisterLibraryMemberFunctions", "Fetched next MemberID: " + nextID, username);
-                return nextID;
-            }
+        try {
+            int nextID = DBUtils.getIdAllocator().next(IdAllocator.Sequence.MEMBER);
+            DBLogger.log("INFO", "RegisterLibraryMemberFunctions", "Fetched next MemberID: " + nextID, username);
+            return nextID;
         } catch (SQLException e) {
             DBLogger.log("ERROR", "RegisterLibraryMemberFunctions", "Failed to fetch next MemberID.", username);
             e.printStackTrace();
@@ -45,12 +44,9 @@ public class RegisterLibraryMemberFunctions {
     public String getMembershipType(int memberID) throws SQLException {
         String membershipType = "";
         try {
-            String query = "SELECT MembershipType FROM members WHERE MemberID = ?";
-            PreparedStatement statement = con.prepareStatement(query);
-            statement.setInt(1, memberID);
-            ResultSet rs = statement.executeQuery();
-            if (rs.next()) {
-                membershipType = rs.getString("MembershipType");
+            MemberProfileCache.MemberProfile profile = DBUtils.getMemberProfileCache().get(memberID);
+            if (profile != null) {
+                membershipType = profile.getMembershipType();
                 DBLogger.log("INFO", "RegisterLibraryMemberFunctions", "Fetched MembershipType: " + membershipType, username);
             }
         } catch (SQLException e) {
@@ -61,18 +57,23 @@ public class RegisterLibraryMemberFunctions {
     }
 
     public void showAlert(String title, String content) {
-        Alert alert = new Alert(Alert.AlertType.ERROR);
-        alert.setTitle(title);
-        alert.setHeaderText(null);
-        alert.setContentText(content);
-        alert.showAndWait();
+        // May be called from a DB worker thread
+        DBExecutor.runOnFx(() -> {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle(title);
+            alert.setHeaderText(null);
+            alert.setContentText(content);
+            alert.showAndWait();
+        });
     }
 
     public void showConfirm(String title, String content) {
-        Alert alert = new Alert(Alert.AlertType.INFORMATION);
-        alert.setTitle(title);
-        alert.setHeaderText(null);
-        alert.setContentText(content);
-        alert.showAndWait();
+        DBExecutor.runOnFx(() -> {
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setTitle(title);
+            alert.setHeaderText(null);
+            alert.setContentText(content);
+            alert.showAndWait();
+        });
     }
 }
@@ -1,23 +1,23 @@
 package librarian;
 
+import common.DBExecutor;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
 import javafx.stage.Stage;
 
-import java.sql.Connection;
 import java.time.LocalDate;
 
 public class RegisterLibraryMemberUI {
-    private Connection con;
+    private DBExecutor db;
     private String username;
     private RegisterLibraryMemberFunctions regFunctions;
 
-    public RegisterLibraryMemberUI(Connection con, String username) {
-        this.con = con;
+    public RegisterLibraryMemberUI(DBExecutor db, String username) {
+        this.db = db;
         this.username = username;
-        this.regFunctions = new RegisterLibraryMemberFunctions(con, username);
+        this.regFunctions = new RegisterLibraryMemberFunctions(db.getPool(), username);
     }
 
     public void display() {
@@ -59,26 +59,30 @@ public class RegisterLibraryMemberUI {
                 return;
             }
 
-            try {
-                int newMemberID = regFunctions.fetchNextMemberID();
-                LocalDate today = LocalDate.now();
-                LocalDate expiry = type.equals("Premium") ? today.plusYears(1) : today.plusMonths(6);
-
-                AfterRegistration after = new AfterRegistration(
-                    con, name, contact, today.toString(), expiry,
-                    newMemberID, -1, 0, type, username
-                );
-
-                after.registerMember();
-
-                nameField.clear();
-                contactField.clear();
-                typeComboBox.getSelectionModel().clearSelection();
-
-            } catch (Exception ex) {
-                regFunctions.showAlert("Registration Failed", "Could not register new member.");
-                ex.printStackTrace();
-            }
+            registerBtn.setDisable(true);
+            db.run("registerMember", () -> {
+                        int newMemberID = regFunctions.fetchNextMemberID();
+                        LocalDate today = LocalDate.now();
+                        LocalDate expiry = type.equals("Premium") ? today.plusYears(1) : today.plusMonths(6);
+
+                        AfterRegistration after = new AfterRegistration(
+                            db.getPool(), name, contact, today.toString(), expiry,
+                            newMemberID, -1, 0, type, username
+                        );
+
+                        after.registerMember();
+                    },
+                    () -> {
+                        registerBtn.setDisable(false);
+                        nameField.clear();
+                        contactField.clear();
+                        typeComboBox.getSelectionModel().clearSelection();
+                    },
+                    ex -> {
+                        registerBtn.setDisable(false);
+                        regFunctions.showAlert("Registration Failed", "Could not register new member.");
+                        ex.printStackTrace();
+                    });
         });
 
         Scene scene = new Scene(layout, 400, 250);
@@ -1,5 +1,7 @@
 package librarian;
 
+import common.DBExecutor;
+import common.DBUtils;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import java.sql.*;
@@ -8,11 +10,11 @@ import java.time.format.DateTimeFormatter;
 
 public class RenewLibraryMembership {
     public GridPane layout;
-    private Connection con;
+    private DBExecutor db;
     private String username;
 
-    public RenewLibraryMembership(Connection con, String username) {
-        this.con = con;
+    public RenewLibraryMembership(DBExecutor db, String username) {
+        this.db = db;
         this.username = username;
         addComponents();
     }
@@ -25,7 +27,9 @@ public class RenewLibraryMembership {
         Label memberIdLabel = new Label("Member ID:");
         Spinner<Integer> memberIdSpinner = new Spinner<>();
         memberIdSpinner.setEditable(true);
-        memberIdSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, getMaxMemberID()));
+        SpinnerValueFactory.IntegerSpinnerValueFactory memberIdFactory = new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 1);
+        memberIdSpinner.setValueFactory(memberIdFactory);
+        db.submit("getMaxMemberID", this::getMaxMemberID, memberIdFactory::setMax, Throwable::printStackTrace);
 
         Label typeLabel = new Label("New Membership Type:");
         ComboBox<String> typeComboBox = new ComboBox<>();
@@ -35,11 +39,19 @@ public class RenewLibraryMembership {
         renewButton.setOnAction(e -> {
             int memberId = memberIdSpinner.getValue();
             String type = typeComboBox.getValue();
-            try {
-                renewMembership(memberId, type);
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+            if (type == null || type.isEmpty()) {
+                showAlert("Input Error", "Provide valid Member ID and Membership Type");
+                return;
             }
+            db.submit("renewMembership", con -> renewMembership(con, memberId, type),
+                    renewed -> {
+                        if (renewed) {
+                            showInfo("Success", "Membership renewed for MemberID: " + memberId);
+                        } else {
+                            showAlert("Input Error", "Provide valid Member ID and Membership Type");
+                        }
+                    },
+                    Throwable::printStackTrace);
         });
 
         layout.add(memberIdLabel, 0, 0);
@@ -49,38 +61,38 @@ public class RenewLibraryMembership {
         layout.add(renewButton, 0, 2);
     }
 
-    private void renewMembership(int memberId, String type) throws SQLException {
-        if (type == null || type.isEmpty() || !validateMemberExists(memberId)) {
-            showAlert("Input Error", "Provide valid Member ID and Membership Type");
-            return;
+    // Runs on a DB worker thread; returns false if the member doesn't exist
+    private boolean renewMembership(Connection con, int memberId, String type) throws SQLException {
+        if (!validateMemberExists(con, memberId)) {
+            return false;
         }
 
         String updateQuery = "UPDATE members SET MembershipType = ?, MembershipExpiry = ? WHERE MemberID = ?";
-        PreparedStatement stmt = con.prepareStatement(updateQuery);
-        stmt.setString(1, type);
-        stmt.setString(2, LocalDate.now().plusMonths(6).format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
-        stmt.setInt(3, memberId);
-        stmt.executeUpdate();
-
-        showInfo("Success", "Membership renewed for MemberID: " + memberId);
+        try (PreparedStatement stmt = con.prepareStatement(updateQuery)) {
+            stmt.setString(1, type);
+            stmt.setString(2, LocalDate.now().plusMonths(6).format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+            stmt.setInt(3, memberId);
+            stmt.executeUpdate();
+        }
+        DBUtils.getMemberProfileCache().invalidate(memberId);
+        return true;
     }
 
-    private boolean validateMemberExists(int memberId) throws SQLException {
+    private boolean validateMemberExists(Connection con, int memberId) throws SQLException {
         String query = "SELECT * FROM members WHERE MemberID = ?";
-        PreparedStatement stmt = con.prepareStatement(query);
-        stmt.setInt(1, memberId);
-        ResultSet rs = stmt.executeQuery();
-        return rs.next();
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+            stmt.setInt(1, memberId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
     }
 
-    private int getMaxMemberID() {
-        try {
-            String query = "SELECT MAX(MemberID) as MaxID FROM members";
-            PreparedStatement stmt = con.prepareStatement(query);
-            ResultSet rs = stmt.executeQuery();
+    private int getMaxMemberID(Connection con) throws SQLException {
+        String query = "SELECT MAX(MemberID) as MaxID FROM members";
+        try (PreparedStatement stmt = con.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
             if (rs.next()) return rs.getInt("MaxID");
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return 1;
     }
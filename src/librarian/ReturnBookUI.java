@@ -1,6 +1,9 @@
 package librarian;
 
+import common.DBExecutor;
 import common.DBLogger;
+import common.DBUtils;
+import common.FineBalances;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -10,15 +13,15 @@ import javafx.stage.Stage;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 
 public class ReturnBookUI {
-    private final Connection con;
+    private final DBExecutor db;
     private final String username;
 
-    public ReturnBookUI(Connection con, String username) {
-        this.con = con;
+    public ReturnBookUI(DBExecutor db, String username) {
+        this.db = db;
         this.username = username;
     }
 
@@ -35,64 +38,98 @@ public class ReturnBookUI {
         borrowIdField.setPromptText("Enter Borrow ID");
 
         Button returnBtn = new Button("Return Book");
+        // For emptying the book-drop: many IDs, one transaction, one summary
+        Button batchBtn = new Button("Batch Return...");
+        batchBtn.setOnAction(e -> new BatchReturnUI(db, username).display());
 
         layout.add(new Label("Borrow ID:"), 0, 0);
         layout.add(borrowIdField, 1, 0);
         layout.add(returnBtn, 1, 1);
+        layout.add(batchBtn, 1, 2);
 
         returnBtn.setOnAction(e -> {
             try {
                 int borrowId = Integer.parseInt(borrowIdField.getText().trim());
-                processReturn(borrowId);
+                returnBtn.setDisable(true);
+                db.submit("processReturn", con -> processReturn(con, borrowId, username),
+                        fine -> {
+                            returnBtn.setDisable(false);
+                            if (fine == null) {
+                                showAlert("Not Found", "Borrow ID not found in records.");
+                            } else {
+                                showInfo("Success", "Book returned successfully." + (fine > 0 ? "\nFine: $" + fine : ""));
+                            }
+                        },
+                        ex -> {
+                            returnBtn.setDisable(false);
+                            DBLogger.log("ERROR", "ReturnBookUI", "Error processing return for BorrowID: " + borrowId, username);
+                            ex.printStackTrace();
+                            showAlert("Error", "Could not process the return.");
+                        });
             } catch (NumberFormatException ex) {
                 showAlert("Input Error", "Please enter a valid numeric Borrow ID.");
             }
         });
 
-        stage.setScene(new Scene(layout, 350, 150));
+        stage.setScene(new Scene(layout, 350, 180));
         stage.show();
     }
 
-    private void processReturn(int borrowId) {
-        String selectQuery = "SELECT BookID, DueDate, Overdue FROM borrowingrecords WHERE BorrowID = ?";
+    // Runs on a DB worker thread; returns the fine charged, or null if the BorrowID doesn't exist.
+    // No UI in here, so the benchmarks under bench/ can drive it headless.
+    public static Double processReturn(Connection con, int borrowId, String username) throws SQLException {
+        String selectQuery = "SELECT MemberID, BookID, DueDate, Overdue, FineAmount FROM borrowingrecords WHERE BorrowID = ? FOR UPDATE";
         String updateReturn = "UPDATE borrowingrecords SET ReturnDate = ?, Overdue = ?, FineAmount = ? WHERE BorrowID = ?";
         String markAvailable = "UPDATE books SET Availability = 1 WHERE BookID = ?";
 
+        FineBalances balances = DBUtils.getFineBalances();
+        FineBalances.Entry balance;
+        int bookId;
+        double fine;
+
+        // Loan, book and the member's fine balance change together
+        con.setAutoCommit(false);
         try (PreparedStatement selectStmt = con.prepareStatement(selectQuery)) {
             selectStmt.setInt(1, borrowId);
             ResultSet rs = selectStmt.executeQuery();
 
-            if (rs.next()) {
-                int bookId = rs.getInt("BookID");
-                LocalDate dueDate = LocalDate.parse(rs.getString("DueDate"));
-                LocalDate today = LocalDate.now();
-                boolean isOverdue = today.isAfter(dueDate);
-                double fine = isOverdue ? ChronoUnit.DAYS.between(dueDate, today) * 2.0 : 0.0;
-
-                try (PreparedStatement updateStmt = con.prepareStatement(updateReturn);
-                     PreparedStatement bookStmt = con.prepareStatement(markAvailable)) {
-
-                    updateStmt.setString(1, today.toString());
-                    updateStmt.setBoolean(2, isOverdue);
-                    updateStmt.setDouble(3, fine);
-                    updateStmt.setInt(4, borrowId);
-                    updateStmt.executeUpdate();
-
-                    bookStmt.setInt(1, bookId);
-                    bookStmt.executeUpdate();
-
-                    DBLogger.log("INFO", "ReturnBookUI", "Book returned for BorrowID: " + borrowId, username);
-                    showInfo("Success", "Book returned successfully." + (isOverdue ? "\nFine: $" + fine : ""));
-                }
-            } else {
-                showAlert("Not Found", "Borrow ID not found in records.");
+            if (!rs.next()) {
+                con.commit();
+                return null;
             }
-
-        } catch (Exception e) {
-            DBLogger.log("ERROR", "ReturnBookUI", "Error processing return for BorrowID: " + borrowId, username);
-            e.printStackTrace();
-            showAlert("Error", "Could not process the return.");
+            int memberId = rs.getInt("MemberID");
+            bookId = rs.getInt("BookID");
+            LocalDate dueDate = LocalDate.parse(rs.getString("DueDate"));
+            LocalDate today = LocalDate.now();
+            boolean isOverdue = today.isAfter(dueDate);
+            fine = FineCalculator.fineFor(dueDate, today);
+            double previousFine = rs.getDouble("FineAmount");
+
+            try (PreparedStatement updateStmt = con.prepareStatement(updateReturn);
+                 PreparedStatement bookStmt = con.prepareStatement(markAvailable)) {
+
+                updateStmt.setString(1, today.toString());
+                updateStmt.setBoolean(2, isOverdue);
+                updateStmt.setDouble(3, fine);
+                updateStmt.setInt(4, borrowId);
+                updateStmt.executeUpdate();
+
+                bookStmt.setInt(1, bookId);
+                bookStmt.executeUpdate();
+            }
+            balance = balances.adjust(con, memberId, fine - previousFine);
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
         }
+
+        DBUtils.getAvailabilityIndex().markReturned(bookId);
+        balances.publish(balance);
+        DBLogger.log("INFO", "ReturnBookUI", "Book returned for BorrowID: " + borrowId, username);
+        return fine;
     }
 
     private void showAlert(String title, String msg) {
@@ -1,22 +1,35 @@
 package librarian;
 
+import common.DBExecutor;
 import common.DBLogger;
+import common.DBUtils;
+import common.MaintenanceCalendar;
+import common.MaintenanceSummary;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
 import javafx.stage.Stage;
 
-import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class ScheduleMaintenanceUI {
-    private final Connection con;
+    private static final String NO_REPEAT = "Does not repeat";
+    private static final String REPEAT_DAYS = "Days";
+    private static final String REPEAT_WEEKS = "Weeks";
+    // How far ahead a recurring rule is checked against existing maintenance
+    private static final int CONFLICT_HORIZON_DAYS = 365;
+
+    private final DBExecutor db;
     private final String username;
 
-    public ScheduleMaintenanceUI(Connection con, String username) {
-        this.con = con;
+    public ScheduleMaintenanceUI(DBExecutor db, String username) {
+        this.db = db;
         this.username = username;
     }
 
@@ -33,6 +46,16 @@ public class ScheduleMaintenanceUI {
         TextField descriptionField = new TextField();
         DatePicker datePicker = new DatePicker(LocalDate.now());
 
+        ComboBox<String> repeatBox = new ComboBox<>();
+        repeatBox.getItems().addAll(NO_REPEAT, REPEAT_DAYS, REPEAT_WEEKS);
+        repeatBox.setValue(NO_REPEAT);
+        TextField everyField = new TextField("1");
+        everyField.setPrefColumnCount(4);
+        DatePicker untilPicker = new DatePicker();
+        untilPicker.setPromptText("No end date");
+        everyField.disableProperty().bind(repeatBox.valueProperty().isEqualTo(NO_REPEAT));
+        untilPicker.disableProperty().bind(repeatBox.valueProperty().isEqualTo(NO_REPEAT));
+
         Button scheduleBtn = new Button("Schedule");
 
         layout.add(new Label("Facility ID:"), 0, 0);
@@ -41,38 +64,133 @@ public class ScheduleMaintenanceUI {
         layout.add(descriptionField, 1, 1);
         layout.add(new Label("Scheduled Date:"), 0, 2);
         layout.add(datePicker, 1, 2);
-        layout.add(scheduleBtn, 1, 3);
+        layout.add(new Label("Repeat every:"), 0, 3);
+        layout.add(new HBox(5, everyField, repeatBox), 1, 3);
+        layout.add(new Label("Until:"), 0, 4);
+        layout.add(untilPicker, 1, 4);
+        layout.add(scheduleBtn, 1, 5);
 
         scheduleBtn.setOnAction(e -> {
             try {
                 int facilityId = Integer.parseInt(facilityIdField.getText());
                 String desc = descriptionField.getText().trim();
-                String date = datePicker.getValue().toString();
+                LocalDate date = datePicker.getValue();
 
                 if (desc.isEmpty()) {
                     showAlert("Input Error", "Description is required.");
                     return;
                 }
 
-                String query = "INSERT INTO maintenancerecords (FacilityID, Description, MaintenanceDate) VALUES (?, ?, ?)";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setInt(1, facilityId);
-                stmt.setString(2, desc);
-                stmt.setString(3, date);
-                stmt.executeUpdate();
+                int intervalDays = 0;
+                LocalDate until = null;
+                if (!NO_REPEAT.equals(repeatBox.getValue())) {
+                    int every = Integer.parseInt(everyField.getText().trim());
+                    if (every < 1) {
+                        showAlert("Input Error", "Repeat interval must be at least 1.");
+                        return;
+                    }
+                    intervalDays = REPEAT_WEEKS.equals(repeatBox.getValue()) ? every * 7 : every;
+                    until = untilPicker.getValue();
+                    if (until != null && until.isBefore(date)) {
+                        showAlert("Input Error", "End date is before the first date.");
+                        return;
+                    }
+                }
 
-                DBLogger.log("INFO", "ScheduleMaintenanceUI", "Maintenance scheduled for FacilityID " + facilityId, username);
-                showInfo("Scheduled", "Maintenance scheduled successfully.");
+                checkAndSchedule(facilityId, desc, date, intervalDays, until);
             } catch (Exception ex) {
                 showAlert("Error", "Failed to schedule maintenance.");
                 ex.printStackTrace();
             }
         });
 
-        stage.setScene(new Scene(layout, 450, 250));
+        stage.setScene(new Scene(layout, 450, 320));
         stage.show();
     }
 
+    // Warns about dates that already have maintenance at the facility before saving
+    private void checkAndSchedule(int facilityId, String desc, LocalDate date, int intervalDays, LocalDate until) {
+        MaintenanceCalendar.Rule candidate = intervalDays > 0
+                ? new MaintenanceCalendar.Rule(0, facilityId, desc, date, until, intervalDays) : null;
+        db.submit("checkMaintenanceConflicts", con -> {
+                    List<LocalDate> dates = candidate == null ? List.of(date)
+                            : candidate.datesBetween(date, date.plusDays(CONFLICT_HORIZON_DAYS));
+                    return DBUtils.getMaintenanceCalendar().conflicts(con, facilityId, dates);
+                },
+                conflicts -> {
+                    if (!conflicts.isEmpty() && !confirm("Maintenance Conflict", "Facility " + facilityId
+                            + " already has maintenance on " + describe(conflicts) + ". Schedule anyway?")) {
+                        return;
+                    }
+                    if (candidate == null) {
+                        scheduleOnce(facilityId, desc, date);
+                    } else {
+                        scheduleRecurring(candidate);
+                    }
+                },
+                ex -> {
+                    showAlert("Error", "Failed to check existing maintenance.");
+                    ex.printStackTrace();
+                });
+    }
+
+    private void scheduleOnce(int facilityId, String desc, LocalDate date) {
+        String query = "INSERT INTO maintenancerecords (FacilityID, Description, MaintenanceDate) VALUES (?, ?, ?)";
+        db.submit("scheduleMaintenance", con -> {
+                    // The record and the facility's summary row change together
+                    MaintenanceSummary summary = DBUtils.getMaintenanceSummary();
+                    con.setAutoCommit(false);
+                    try (PreparedStatement stmt = con.prepareStatement(query)) {
+                        stmt.setInt(1, facilityId);
+                        stmt.setString(2, desc);
+                        stmt.setString(3, date.toString());
+                        int inserted = stmt.executeUpdate();
+                        summary.recordScheduled(con, facilityId, date);
+                        con.commit();
+                        return inserted;
+                    } catch (SQLException ex) {
+                        con.rollback();
+                        throw ex;
+                    } finally {
+                        con.setAutoCommit(true);
+                    }
+                },
+                inserted -> {
+                    DBLogger.log("INFO", "ScheduleMaintenanceUI", "Maintenance scheduled for FacilityID " + facilityId, username);
+                    showInfo("Scheduled", "Maintenance scheduled successfully.");
+                },
+                ex -> {
+                    showAlert("Error", "Failed to schedule maintenance.");
+                    ex.printStackTrace();
+                });
+    }
+
+    private void scheduleRecurring(MaintenanceCalendar.Rule candidate) {
+        db.submit("addMaintenanceRule",
+                con -> DBUtils.getMaintenanceCalendar().addRule(con, candidate.getFacilityId(), candidate.getDescription(),
+                        candidate.getStartDate(), candidate.getEndDate(), candidate.getIntervalDays()),
+                rule -> {
+                    DBLogger.log("INFO", "ScheduleMaintenanceUI", "Recurring maintenance rule " + rule.getRuleId()
+                            + " (every " + rule.getIntervalDays() + " days) added for FacilityID " + rule.getFacilityId(), username);
+                    showInfo("Scheduled", "Recurring maintenance scheduled every " + rule.getIntervalDays() + " days.");
+                },
+                ex -> {
+                    showAlert("Error", "Failed to schedule maintenance.");
+                    ex.printStackTrace();
+                });
+    }
+
+    private static String describe(List<LocalDate> dates) {
+        String shown = dates.stream().limit(5).map(LocalDate::toString).collect(Collectors.joining(", "));
+        return dates.size() > 5 ? shown + " and " + (dates.size() - 5) + " more" : shown;
+    }
+
+    private boolean confirm(String title, String msg) {
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, msg, ButtonType.YES, ButtonType.NO);
+        alert.setTitle(title);
+        return alert.showAndWait().filter(ButtonType.YES::equals).isPresent();
+    }
+
     private void showAlert(String title, String msg) {
         Alert alert = new Alert(Alert.AlertType.ERROR, msg, ButtonType.OK);
         alert.setTitle(title);
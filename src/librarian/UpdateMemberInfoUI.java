@@ -1,6 +1,8 @@
 package librarian;
 
+import common.DBExecutor;
 import common.DBLogger;
+import common.DBUtils;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -10,13 +12,14 @@ import javafx.stage.Stage;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 
 public class UpdateMemberInfoUI {
-    private Connection con;
+    private DBExecutor db;
     private String username;
 
-    public UpdateMemberInfoUI(Connection con, String username) {
-        this.con = con;
+    public UpdateMemberInfoUI(DBExecutor db, String username) {
+        this.db = db;
         this.username = username;
     }
 
@@ -30,7 +33,9 @@ public class UpdateMemberInfoUI {
         layout.setHgap(10);
 
         Label idLabel = new Label("Member ID:");
-        Spinner<Integer> memberIdSpinner = new Spinner<>(1, getMaxMemberID(), 1);
+        SpinnerValueFactory.IntegerSpinnerValueFactory memberIdFactory = new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 1, 1);
+        Spinner<Integer> memberIdSpinner = new Spinner<>(memberIdFactory);
+        db.submit("getMaxMemberID", this::getMaxMemberID, memberIdFactory::setMax, ex -> {});
 
         Label nameLabel = new Label("New Name:");
         TextField nameField = new TextField();
@@ -56,15 +61,31 @@ public class UpdateMemberInfoUI {
                 }
 
                 String query = "UPDATE members SET Name = ?, ContactInfo = ?, MembershipType = ? WHERE MemberID = ?";
-                PreparedStatement stmt = con.prepareStatement(query);
-                stmt.setString(1, newName);
-                stmt.setString(2, newContact);
-                stmt.setString(3, newType);
-                stmt.setInt(4, memberId);
-                stmt.executeUpdate();
-
-                DBLogger.log("INFO", "UpdateMemberInfoUI", "Updated member info for ID: " + memberId, username);
-                showInfo("Update Successful", "Member information has been updated.");
+                updateBtn.setDisable(true);
+                db.submit("updateMemberInfo", con -> {
+                            try (PreparedStatement stmt = con.prepareStatement(query)) {
+                                stmt.setString(1, newName);
+                                stmt.setString(2, newContact);
+                                stmt.setString(3, newType);
+                                stmt.setInt(4, memberId);
+                                int updated = stmt.executeUpdate();
+                                if (updated > 0) {
+                                    DBUtils.getMemberNameIndex().put(memberId, newName);
+                                    DBUtils.getMemberProfileCache().invalidate(memberId);
+                                }
+                                return updated;
+                            }
+                        },
+                        updated -> {
+                            updateBtn.setDisable(false);
+                            DBLogger.log("INFO", "UpdateMemberInfoUI", "Updated member info for ID: " + memberId, username);
+                            showInfo("Update Successful", "Member information has been updated.");
+                        },
+                        ex -> {
+                            updateBtn.setDisable(false);
+                            showAlert("Error", "Failed to update member info.");
+                            ex.printStackTrace();
+                        });
             } catch (Exception ex) {
                 showAlert("Error", "Failed to update member info.");
                 ex.printStackTrace();
@@ -85,12 +106,11 @@ public class UpdateMemberInfoUI {
         stage.show();
     }
 
-    private int getMaxMemberID() {
-        try {
-            PreparedStatement stmt = con.prepareStatement("SELECT MAX(MemberID) AS MaxID FROM members");
-            ResultSet rs = stmt.executeQuery();
+    private int getMaxMemberID(Connection con) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("SELECT MAX(MemberID) AS MaxID FROM members");
+             ResultSet rs = stmt.executeQuery()) {
             if (rs.next()) return rs.getInt("MaxID");
-        } catch (Exception ignored) {}
+        }
         return 1;
     }
 
@@ -0,0 +1,252 @@
+package librarian_assistant;
+
+import common.AvailabilityIndex;
+import common.BookPageQuery;
+import common.DBExecutor;
+import common.DBLogger;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableView;
+import javafx.scene.control.skin.VirtualFlow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Feeds the available-books table a sliding window of keyset pages from BookPageQuery.
+ * At most MAX_PAGES pages are held; scrolling past either end of the window fetches the page beyond it
+ * and drops one from the other end. The page after the window is fetched in the background as soon as
+ * the previous one is shown, so scrolling down through the catalog rarely waits on the database.
+ * All state is touched on the FX thread only.
+ */
+class AvailableBooksPager {
+    private static final int PAGE_SIZE = 200;
+    // Move the window when a row this close to either end is rendered
+    private static final int PREFETCH_ROWS = 50;
+    private static final int MAX_PAGES = 10;
+
+    private final DBExecutor db;
+    private final String username;
+    private final TableView<BookBorrowingAssistant.Book> table;
+    private final Label statusLabel;
+
+    private final ObservableList<BookBorrowingAssistant.Book> rows = FXCollections.observableArrayList();
+    // Sizes of the pages currently in rows, first to last
+    private final Deque<Integer> pageSizes = new ArrayDeque<>();
+    private BookPageQuery query = new BookPageQuery(null, null, null);
+    // Bumped when the query changes, so pages for the old query are dropped
+    private int generation;
+    // Bumped when the end of the window is cut off, so a page prefetched after the old end is dropped
+    private int tailVersion;
+    // The page after the window, fetched ahead of need
+    private List<BookBorrowingAssistant.Book> nextPage;
+    private boolean fetchingNext;
+    private boolean fetchingPrevious;
+    // Show the next page as soon as it arrives, because the user has already scrolled to the end
+    private boolean appendWhenFetched;
+    private boolean atStart;
+    private boolean atEnd;
+    private int lastShownRow = -1;
+    private boolean checkPending;
+
+    AvailableBooksPager(DBExecutor db, String username, TableView<BookBorrowingAssistant.Book> table, Label statusLabel) {
+        this.db = db;
+        this.username = username;
+        this.table = table;
+        this.statusLabel = statusLabel;
+        table.setItems(rows);
+    }
+
+    void setQuery(BookPageQuery query) {
+        this.query = query;
+        restart();
+    }
+
+    void restart() {
+        generation++;
+        tailVersion++;
+        rows.clear();
+        pageSizes.clear();
+        nextPage = null;
+        fetchingNext = false;
+        fetchingPrevious = false;
+        atStart = true;
+        atEnd = false;
+        appendWhenFetched = true;
+        statusLabel.setText("Loading...");
+        fetchNext();
+    }
+
+    /**
+     * Called by the table's rows as they render. The window is moved after the layout pass,
+     * never from inside it.
+     */
+    void rowShown(int index) {
+        lastShownRow = index;
+        if (checkPending) {
+            return;
+        }
+        checkPending = true;
+        Platform.runLater(() -> {
+            checkPending = false;
+            if (lastShownRow >= rows.size() - PREFETCH_ROWS) {
+                showNextPage();
+            }
+            if (lastShownRow < PREFETCH_ROWS) {
+                showPreviousPage();
+            }
+        });
+    }
+
+    private void fetchNext() {
+        if (fetchingNext || atEnd || nextPage != null) {
+            return;
+        }
+        fetchingNext = true;
+        int requestGeneration = generation;
+        int requestTail = tailVersion;
+        BookPageQuery pageQuery = query;
+        AvailabilityIndex.CatalogEntry after = rows.isEmpty() ? null : toEntry(rows.get(rows.size() - 1));
+        db.submit("fetchBookPage", con -> toBooks(pageQuery.fetchPage(con, after, PAGE_SIZE)),
+                page -> {
+                    if (requestGeneration != generation || requestTail != tailVersion) {
+                        return;
+                    }
+                    fetchingNext = false;
+                    if (page.isEmpty()) {
+                        atEnd = true;
+                        updateStatus();
+                        return;
+                    }
+                    nextPage = page;
+                    if (appendWhenFetched) {
+                        showNextPage();
+                    }
+                },
+                ex -> showPageError(requestGeneration, ex));
+    }
+
+    private void showNextPage() {
+        if (atEnd && nextPage == null) {
+            return;
+        }
+        if (nextPage == null) {
+            appendWhenFetched = true;
+            fetchNext();
+            return;
+        }
+        appendWhenFetched = false;
+        List<BookBorrowingAssistant.Book> page = nextPage;
+        nextPage = null;
+        int firstVisible = firstVisibleRow();
+        rows.addAll(page);
+        pageSizes.addLast(page.size());
+        if (page.size() < PAGE_SIZE) {
+            atEnd = true;
+        }
+        int removed = 0;
+        while (pageSizes.size() > MAX_PAGES) {
+            int size = pageSizes.removeFirst();
+            rows.remove(0, size);
+            removed += size;
+            atStart = false;
+        }
+        if (removed > 0) {
+            table.scrollTo(Math.max(0, firstVisible - removed));
+        }
+        updateStatus();
+        fetchNext();
+    }
+
+    private void showPreviousPage() {
+        if (atStart || fetchingPrevious || rows.isEmpty()) {
+            return;
+        }
+        fetchingPrevious = true;
+        int requestGeneration = generation;
+        BookPageQuery pageQuery = query;
+        AvailabilityIndex.CatalogEntry before = toEntry(rows.get(0));
+        db.submit("fetchBookPageBefore", con -> toBooks(pageQuery.fetchPageBefore(con, before, PAGE_SIZE)),
+                page -> {
+                    if (requestGeneration != generation) {
+                        return;
+                    }
+                    fetchingPrevious = false;
+                    if (page.size() < PAGE_SIZE) {
+                        atStart = true;
+                    }
+                    if (page.isEmpty()) {
+                        updateStatus();
+                        return;
+                    }
+                    int firstVisible = firstVisibleRow();
+                    rows.addAll(0, page);
+                    pageSizes.addFirst(page.size());
+                    while (pageSizes.size() > MAX_PAGES) {
+                        int size = pageSizes.removeLast();
+                        rows.remove(rows.size() - size, rows.size());
+                        atEnd = false;
+                        tailVersion++;
+                        nextPage = null;
+                        fetchingNext = false;
+                    }
+                    table.scrollTo(firstVisible + page.size());
+                    updateStatus();
+                },
+                ex -> showPageError(requestGeneration, ex));
+    }
+
+    private int firstVisibleRow() {
+        VirtualFlow<?> flow = (VirtualFlow<?>) table.lookup(".virtual-flow");
+        IndexedCell<?> cell = flow == null ? null : flow.getFirstVisibleCell();
+        return cell == null ? 0 : cell.getIndex();
+    }
+
+    private void updateStatus() {
+        if (rows.isEmpty()) {
+            statusLabel.setText(query.isFiltered() ? "No available books match the filter" : "No available books");
+            return;
+        }
+        statusLabel.setText("Showing " + query.getSort() + " " + describe(rows.get(0)) + " to " + describe(rows.get(rows.size() - 1))
+                + (atStart ? " (start of list)" : "") + (atEnd ? " (end of list)" : ", scroll for more"));
+    }
+
+    private String describe(BookBorrowingAssistant.Book book) {
+        switch (query.getSort()) {
+            case TITLE:
+                return "\"" + book.getTitle() + "\"";
+            case AUTHOR:
+                return book.getAuthor();
+            default:
+                return String.valueOf(book.getId());
+        }
+    }
+
+    private void showPageError(int requestGeneration, Throwable ex) {
+        if (requestGeneration != generation) {
+            return;
+        }
+        fetchingNext = false;
+        fetchingPrevious = false;
+        statusLabel.setText("Error loading available books: " + ex.getMessage());
+        DBLogger.log("ERROR", "BookBorrowingAssistant", "Error loading available books: " + ex.getMessage(), username);
+        ex.printStackTrace();
+    }
+
+    private static List<BookBorrowingAssistant.Book> toBooks(List<AvailabilityIndex.CatalogEntry> entries) {
+        List<BookBorrowingAssistant.Book> books = new ArrayList<>(entries.size());
+        for (AvailabilityIndex.CatalogEntry entry : entries) {
+            books.add(new BookBorrowingAssistant.Book(entry.getBookId(), entry.getTitle(), entry.getAuthor(), "Available"));
+        }
+        return books;
+    }
+
+    private static AvailabilityIndex.CatalogEntry toEntry(BookBorrowingAssistant.Book book) {
+        return new AvailabilityIndex.CatalogEntry(book.getId(), book.getTitle(), book.getAuthor());
+    }
+}
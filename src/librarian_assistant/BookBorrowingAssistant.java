@@ -1,14 +1,20 @@
 package librarian_assistant;
 
+import common.BookPageQuery;
+import common.CheckoutEngine;
+import common.DBExecutor;
 import common.DBLogger;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import common.DBUtils;
+import common.MemberProfileCache;
 import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
@@ -20,11 +26,11 @@ import java.time.LocalDate;
  * Shows available books and can assign them to members
  */
 public class BookBorrowingAssistant {
-    private Connection con;
+    private DBExecutor db;
     private String username;
-    
-    public BookBorrowingAssistant(Connection con, String username) {
-        this.con = con;
+
+    public BookBorrowingAssistant(DBExecutor db, String username) {
+        this.db = db;
         this.username = username;
     }
     
@@ -39,16 +45,37 @@ public class BookBorrowingAssistant {
         GridPane borrowingForm = createBorrowingForm();
         mainLayout.setTop(borrowingForm);
         
-        // Create available books table (center section)
-        TableView<Book> booksTable = createBooksTable();
-        refreshBooksTable(booksTable);
+        // Create available books table (center section); rows are paged in as the user scrolls
+        Label booksStatus = new Label();
+        TableView<Book> booksTable = new TableView<>();
+        AvailableBooksPager pager = new AvailableBooksPager(db, username, booksTable, booksStatus);
+        configureBooksTable(booksTable, pager);
+        VBox.setVgrow(booksTable, Priority.ALWAYS);
+        
+        // Filters and sort order are applied in SQL, not to the rows on screen
+        TextField titleFilter = new TextField();
+        titleFilter.setPromptText("Title contains...");
+        TextField authorFilter = new TextField();
+        authorFilter.setPromptText("Author contains...");
+        ComboBox<BookPageQuery.SortKey> sortBox = new ComboBox<>();
+        sortBox.getItems().addAll(BookPageQuery.SortKey.values());
+        sortBox.setValue(BookPageQuery.SortKey.BOOK_ID);
+        Button applyBtn = new Button("Apply");
+        applyBtn.setOnAction(e -> pager.setQuery(
+                new BookPageQuery(titleFilter.getText(), authorFilter.getText(), sortBox.getValue())));
+        titleFilter.setOnAction(applyBtn.getOnAction());
+        authorFilter.setOnAction(applyBtn.getOnAction());
         
         // Refresh button for books
         Button refreshBtn = new Button("Refresh Book List");
-        refreshBtn.setOnAction(e -> refreshBooksTable(booksTable));
+        refreshBtn.setOnAction(e -> pager.restart());
+        
+        HBox filterBox = new HBox(10, titleFilter, authorFilter, new Label("Sort by:"), sortBox, applyBtn, refreshBtn);
+        filterBox.setAlignment(Pos.CENTER_LEFT);
         
-        VBox booksSection = new VBox(10, new Label("Available Books"), booksTable, refreshBtn);
+        VBox booksSection = new VBox(10, new Label("Available Books"), filterBox, booksTable, booksStatus);
         mainLayout.setCenter(booksSection);
+        pager.restart();
         
         Scene scene = new Scene(mainLayout, 800, 600);
         stage.setScene(scene);
@@ -65,7 +92,9 @@ public class BookBorrowingAssistant {
         Label memberIdLabel = new Label("Member ID:");
         Spinner<Integer> memberIdSpinner = new Spinner<>();
         memberIdSpinner.setEditable(true);
-        memberIdSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, getMaxMemberID()));
+        SpinnerValueFactory.IntegerSpinnerValueFactory memberIdFactory = new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 100);
+        memberIdSpinner.setValueFactory(memberIdFactory);
+        db.submit("getMaxMemberID", this::getMaxMemberID, memberIdFactory::setMax, Throwable::printStackTrace);
         
         // Member info display
         Button loadMemberBtn = new Button("Load Member");
@@ -76,8 +105,7 @@ public class BookBorrowingAssistant {
         
         loadMemberBtn.setOnAction(e -> {
             int memberId = memberIdSpinner.getValue();
-            String memberInfo = getMemberInfo(memberId);
-            memberInfoArea.setText(memberInfo);
+            db.submit("getMemberInfo", con -> getMemberInfo(con, memberId), memberInfoArea::setText, Throwable::printStackTrace);
         });
         
         // Book selection
@@ -96,13 +124,39 @@ public class BookBorrowingAssistant {
                 int bookId = Integer.parseInt(bookIdField.getText());
                 LocalDate dueDate = dueDatePicker.getValue();
                 
+                if (bookId <= 0) {
+                    showAlert("Input Error", "Please enter a valid Book ID");
+                    return;
+                }
+                
                 if (memberInfoArea.getText().isEmpty()) {
                     showAlert("Error", "Please load member information first");
                     return;
                 }
                 
-                recordBorrowing(memberId, bookId, dueDate);
-                bookIdField.clear();
+                borrowBtn.setDisable(true);
+                db.call("recordBorrowing", () -> recordBorrowing(memberId, bookId, dueDate),
+                        outcome -> {
+                            borrowBtn.setDisable(false);
+                            switch (outcome) {
+                                case SUCCESS:
+                                    showInfo("Success", "Book has been borrowed successfully.\nDue Date: " + dueDate.toString());
+                                    break;
+                                case INVALID_MEMBER:
+                                    showAlert("Invalid Member", "Member ID does not exist.");
+                                    break;
+                                case BOOK_UNAVAILABLE:
+                                    showAlert("Book Unavailable", "Book is not available for borrowing.");
+                                    break;
+                            }
+                            bookIdField.clear();
+                        },
+                        ex -> {
+                            borrowBtn.setDisable(false);
+                            DBLogger.log("ERROR", "BookBorrowingAssistant", "Error recording borrowing: " + ex.getMessage(), username);
+                            showAlert("Database Error", "Could not record borrowing. Error: " + ex.getMessage());
+                            ex.printStackTrace();
+                        });
                 
             } catch (NumberFormatException ex) {
                 showAlert("Input Error", "Please enter a valid Book ID");
@@ -131,8 +185,7 @@ public class BookBorrowingAssistant {
         return form;
     }
     
-    private TableView<Book> createBooksTable() {
-        TableView<Book> table = new TableView<>();
+    private void configureBooksTable(TableView<Book> table, AvailableBooksPager pager) {
         
         // Create columns
         TableColumn<Book, Integer> idCol = new TableColumn<>("Book ID");
@@ -149,12 +202,21 @@ public class BookBorrowingAssistant {
         TableColumn<Book, String> statusCol = new TableColumn<>("Status");
         statusCol.setCellValueFactory(new PropertyValueFactory<>("status"));
         
-        // Add columns to table
+        // Add columns to table; sorting a window of pages client-side would be misleading
         table.getColumns().addAll(idCol, titleCol, authorCol, statusCol);
+        table.getColumns().forEach(column -> column.setSortable(false));
         
-        // Double-click handler to select a book
+        // Double-click handler to select a book; rendering a row near either end of the window pages more in
         table.setRowFactory(tv -> {
-            TableRow<Book> row = new TableRow<>();
+            TableRow<Book> row = new TableRow<Book>() {
+                @Override
+                protected void updateItem(Book book, boolean empty) {
+                    super.updateItem(book, empty);
+                    if (!empty) {
+                        pager.rowShown(getIndex());
+                    }
+                }
+            };
             row.setOnMouseClicked(event -> {
                 if (event.getClickCount() == 2 && (!row.isEmpty())) {
                     Book book = row.getItem();
@@ -170,129 +232,31 @@ public class BookBorrowingAssistant {
             });
             return row;
         });
-        
-        return table;
-    }
-    
-    private void refreshBooksTable(TableView<Book> table) {
-        ObservableList<Book> books = FXCollections.observableArrayList();
-        
-        try {
-            String query = "SELECT BookID, Title, Author, Availability FROM books WHERE Availability = 1";
-            PreparedStatement stmt = con.prepareStatement(query);
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                int id = rs.getInt("BookID");
-                String title = rs.getString("Title");
-                String author = rs.getString("Author");
-                boolean available = rs.getBoolean("Availability");
-                
-                books.add(new Book(id, title, author, available ? "Available" : "Borrowed"));
-            }
-            
-            DBLogger.log("INFO", "BookBorrowingAssistant", "Refreshed available books list", username);
-            
-        } catch (SQLException e) {
-            DBLogger.log("ERROR", "BookBorrowingAssistant", "Error loading available books: " + e.getMessage(), username);
-            e.printStackTrace();
-        }
-        
-        table.setItems(books);
-    }
-    
-    private void recordBorrowing(int memberId, int bookId, LocalDate dueDate) {
-        try {
-            // Validate member and book first
-            if (!validateMember(memberId)) {
-                showAlert("Invalid Member", "Member ID does not exist.");
-                return;
-            }
-
-            if (!validateBookAvailability(bookId)) {
-                showAlert("Book Unavailable", "Book is not available for borrowing.");
-                return;
-            }
-
-            // Generate a new borrow ID
-            int borrowId = getNextBorrowID();
-            LocalDate borrowDate = LocalDate.now();
-
-            // Insert the borrowing record
-            String insertQuery = "INSERT INTO borrowingrecords (BorrowID, MemberID, BookID, BorrowDate, DueDate, Overdue, FineAmount) VALUES (?, ?, ?, ?, ?, ?, ?)";
-            PreparedStatement insertStmt = con.prepareStatement(insertQuery);
-            insertStmt.setInt(1, borrowId);
-            insertStmt.setInt(2, memberId);
-            insertStmt.setInt(3, bookId);
-            insertStmt.setString(4, borrowDate.toString());
-            insertStmt.setString(5, dueDate.toString());
-            insertStmt.setBoolean(6, false);
-            insertStmt.setDouble(7, 0.00);
-
-            int insertResult = insertStmt.executeUpdate();
-
-            // Update book availability
-            String updateQuery = "UPDATE books SET Availability = 0 WHERE BookID = ?";
-            PreparedStatement updateStmt = con.prepareStatement(updateQuery);
-            updateStmt.setInt(1, bookId);
-            
-            int updateResult = updateStmt.executeUpdate();
-
-            if (insertResult > 0 && updateResult > 0) {
-                DBLogger.log("INFO", "BookBorrowingAssistant", "Book borrowing recorded: MemberID: " + memberId + ", BookID: " + bookId, username);
-                showInfo("Success", "Book has been borrowed successfully.\nDue Date: " + dueDate.toString());
-            } else {
-                showAlert("Error", "Failed to record borrowing");
-            }
-
-        } catch (SQLException e) {
-            DBLogger.log("ERROR", "BookBorrowingAssistant", "Error recording borrowing: " + e.getMessage(), username);
-            showAlert("Database Error", "Could not record borrowing. Error: " + e.getMessage());
-            e.printStackTrace();
-        }
     }
     
-    private int getNextBorrowID() throws SQLException {
-        String query = "SELECT MAX(BorrowID) AS MaxID FROM borrowingrecords";
-        try (PreparedStatement stmt = con.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
-            if (rs.next()) return rs.getInt("MaxID") + 1;
-            return 1;
+    // Runs on a DB worker thread
+    private CheckoutEngine.Outcome recordBorrowing(int memberId, int bookId, LocalDate dueDate) throws SQLException {
+        CheckoutEngine.Result result = DBUtils.getCheckoutEngine().checkout(memberId, bookId, dueDate);
+        if (result.isSuccess()) {
+            DBLogger.log("INFO", "BookBorrowingAssistant", "Book borrowing recorded: MemberID: " + memberId + ", BookID: " + bookId, username);
         }
+        return result.getOutcome();
     }
     
-    private boolean validateMember(int memberId) throws SQLException {
-        String query = "SELECT MemberID FROM members WHERE MemberID = ?";
-        PreparedStatement stmt = con.prepareStatement(query);
-        stmt.setInt(1, memberId);
-        ResultSet rs = stmt.executeQuery();
-        return rs.next();
-    }
-    
-    private boolean validateBookAvailability(int bookId) throws SQLException {
-        String query = "SELECT Availability FROM books WHERE BookID = ?";
-        PreparedStatement stmt = con.prepareStatement(query);
-        stmt.setInt(1, bookId);
-        ResultSet rs = stmt.executeQuery();
-        return rs.next() && rs.getBoolean("Availability");
-    }
-    
-    private String getMemberInfo(int memberId) {
+    // Runs on a DB worker thread
+    private String getMemberInfo(Connection con, int memberId) {
         StringBuilder info = new StringBuilder();
         
         try {
-            String query = "SELECT Name, ContactInfo, MembershipType, MembershipExpiry FROM members WHERE MemberID = ?";
-            PreparedStatement stmt = con.prepareStatement(query);
-            stmt.setInt(1, memberId);
-            ResultSet rs = stmt.executeQuery();
+            MemberProfileCache.MemberProfile profile = DBUtils.getMemberProfileCache().get(con, memberId);
             
-            if (rs.next()) {
-                info.append("Name: ").append(rs.getString("Name")).append("\n");
-                info.append("Contact: ").append(rs.getString("ContactInfo")).append("\n");
-                info.append("Membership: ").append(rs.getString("MembershipType"));
+            if (profile != null) {
+                info.append("Name: ").append(profile.getName()).append("\n");
+                info.append("Contact: ").append(profile.getContactInfo()).append("\n");
+                info.append("Membership: ").append(profile.getMembershipType());
                 
                 // Check if membership is valid
-                LocalDate expiry = LocalDate.parse(rs.getString("MembershipExpiry"));
+                LocalDate expiry = LocalDate.parse(profile.getMembershipExpiry());
                 if (expiry.isBefore(LocalDate.now())) {
                     info.append("\nWARNING: Membership expired on ").append(expiry);
                 }
@@ -312,14 +276,11 @@ public class BookBorrowingAssistant {
         return info.toString();
     }
     
-    private int getMaxMemberID() {
-        try {
-            String query = "SELECT MAX(MemberID) as MaxID FROM members";
-            PreparedStatement stmt = con.prepareStatement(query);
-            ResultSet rs = stmt.executeQuery();
+    private int getMaxMemberID(Connection con) throws SQLException {
+        String query = "SELECT MAX(MemberID) as MaxID FROM members";
+        try (PreparedStatement stmt = con.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
             if (rs.next()) return rs.getInt("MaxID");
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return 100; // Default fallback
     }
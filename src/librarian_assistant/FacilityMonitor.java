@@ -1,6 +1,10 @@
 package librarian_assistant;
 
+import common.DBExecutor;
 import common.DBLogger;
+import common.DBUtils;
+import common.MaintenanceCalendar;
+import common.MaintenanceSummary;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -14,17 +18,25 @@ import javafx.stage.Stage;
 
 import java.sql.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Allows librarian assistants to monitor library facilities
  * View-only access to facility status and maintenance schedules
  */
 public class FacilityMonitor {
-    private Connection con;
+    // Recurring rules never end on their own, so "Show All" expands them this far ahead only
+    private static final int SHOW_ALL_RECURRING_DAYS = 365;
+    
+    private DBExecutor db;
     private String username;
     
-    public FacilityMonitor(Connection con, String username) {
-        this.con = con;
+    public FacilityMonitor(DBExecutor db, String username) {
+        this.db = db;
         this.username = username;
     }
     
@@ -112,11 +124,27 @@ public class FacilityMonitor {
             loadMaintenanceSchedule(maintenanceTable, start, end);
         });
         
+        Button monthBtn = new Button("This Month");
+        monthBtn.setOnAction(e -> {
+            LocalDate first = LocalDate.now().withDayOfMonth(1);
+            startDatePicker.setValue(first);
+            endDatePicker.setValue(first.plusMonths(1).minusDays(1));
+            loadMaintenanceSchedule(maintenanceTable, startDatePicker.getValue(), endDatePicker.getValue());
+        });
+        
+        Button yearBtn = new Button("This Year");
+        yearBtn.setOnAction(e -> {
+            LocalDate first = LocalDate.now().withDayOfYear(1);
+            startDatePicker.setValue(first);
+            endDatePicker.setValue(first.plusYears(1).minusDays(1));
+            loadMaintenanceSchedule(maintenanceTable, startDatePicker.getValue(), endDatePicker.getValue());
+        });
+        
         Button allBtn = new Button("Show All");
         allBtn.setOnAction(e -> loadMaintenanceSchedule(maintenanceTable, null, null));
         
         filterBox.getChildren().addAll(new Label("From:"), startDatePicker, 
-                                     new Label("To:"), endDatePicker, filterBtn, allBtn);
+                                     new Label("To:"), endDatePicker, filterBtn, monthBtn, yearBtn, allBtn);
         
         // Add components to view
         view.getChildren().addAll(titleLabel, filterBox, maintenanceTable);
@@ -148,8 +176,11 @@ public class FacilityMonitor {
         TableColumn<Facility, String> lastMaintenanceCol = new TableColumn<>("Last Maintenance");
         lastMaintenanceCol.setCellValueFactory(new PropertyValueFactory<>("lastMaintenance"));
         
+        TableColumn<Facility, String> nextMaintenanceCol = new TableColumn<>("Next Maintenance");
+        nextMaintenanceCol.setCellValueFactory(new PropertyValueFactory<>("nextMaintenance"));
+        
         // Add columns to table
-        table.getColumns().addAll(idCol, nameCol, typeCol, statusCol, lastMaintenanceCol);
+        table.getColumns().addAll(idCol, nameCol, typeCol, statusCol, lastMaintenanceCol, nextMaintenanceCol);
         
         return table;
     }
@@ -189,72 +220,127 @@ public class FacilityMonitor {
     }
     
     private void loadFacilities(TableView<Facility> table, String statusFilter) {
+        db.submit("loadFacilities", con -> fetchFacilities(con, statusFilter), table::setItems, ex -> {
+            DBLogger.log("ERROR", "FacilityMonitor", "Error loading facilities: " + ex.getMessage(), username);
+            showAlert("Database Error", "Error loading facilities: " + ex.getMessage());
+            ex.printStackTrace();
+        });
+    }
+    
+    // Runs on a DB worker thread
+    private ObservableList<Facility> fetchFacilities(Connection con, String statusFilter) throws SQLException {
         ObservableList<Facility> facilities = FXCollections.observableArrayList();
-        
-        try {
-            String query = 
-                "SELECT f.FacilityID, f.FacilityName, f.Status, " +
-                "(SELECT MAX(MaintenanceDate) FROM maintenancerecords WHERE FacilityID = f.FacilityID) as LastMaintenance " +
-                "FROM libraryfacilities f";
-                
-            // Add status filter if needed
-            if (statusFilter != null && !statusFilter.equals("All Statuses")) {
-                query += " WHERE f.Status = ?";
-            }
-            
-            PreparedStatement stmt = con.prepareStatement(query);
+        MaintenanceSummary summary = DBUtils.getMaintenanceSummary();
+        MaintenanceCalendar calendar = DBUtils.getMaintenanceCalendar();
+        
+        // Maintenance dates come from the per-facility summary: one primary key lookup per row
+        String query = 
+            "SELECT f.FacilityID, f.FacilityName, f.Status, s.LastMaintenance, s.NextMaintenance " +
+            "FROM libraryfacilities f " +
+            "LEFT JOIN facility_maintenance_summary s ON s.FacilityID = f.FacilityID";
             
+        // Add status filter if needed
+        if (statusFilter != null && !statusFilter.equals("All Statuses")) {
+            query += " WHERE f.Status = ?";
+        }
+        
+        LocalDate today = LocalDate.now();
+        List<Integer> stale = new ArrayList<>();
+        List<MaintenanceSummary.Dates> dates = new ArrayList<>();
+        
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
+        
             if (statusFilter != null && !statusFilter.equals("All Statuses")) {
                 stmt.setString(1, statusFilter);
             }
-            
+        
             ResultSet rs = stmt.executeQuery();
-            
+        
             while (rs.next()) {
                 int id = rs.getInt("FacilityID");
                 String name = rs.getString("FacilityName");
                 String type = "Library Facility"; // Using a default since Type doesn't exist
                 String status = rs.getString("Status");
-                String lastMaintenance = rs.getString("LastMaintenance");
+                MaintenanceSummary.Dates facilityDates = new MaintenanceSummary.Dates(
+                        toLocalDate(rs.getDate("LastMaintenance")), toLocalDate(rs.getDate("NextMaintenance")));
                 
-                if (lastMaintenance == null) {
-                    lastMaintenance = "None";
+                if (facilityDates.isStale(today)) {
+                    stale.add(id);
                 }
-                
-                facilities.add(new Facility(id, name, type, status, lastMaintenance));
+                dates.add(facilityDates);
+                facilities.add(new Facility(id, name, type, status, null, null));
             }
-            
-            DBLogger.log("INFO", "FacilityMonitor", "Loaded facilities with filter: " + statusFilter, username);
-            
-        } catch (SQLException e) {
-            DBLogger.log("ERROR", "FacilityMonitor", "Error loading facilities: " + e.getMessage(), username);
-            showAlert("Database Error", "Error loading facilities: " + e.getMessage());
-            e.printStackTrace();
         }
         
-        table.setItems(facilities);
+        // Facilities whose next maintenance date has passed since the summary was written
+        Map<Integer, MaintenanceSummary.Dates> refreshed = stale.isEmpty() ? Map.of() : summary.refresh(con, stale);
+        for (int i = 0; i < facilities.size(); i++) {
+            Facility facility = facilities.get(i);
+            MaintenanceSummary.Dates facilityDates = refreshed.getOrDefault(facility.getId(), dates.get(i));
+            // Recurring rules are worked out in memory and win if they fall closer to today
+            LocalDate last = later(facilityDates.getLast(), calendar.lastOnOrBefore(facility.getId(), today));
+            LocalDate next = earlier(facilityDates.getNext(), calendar.nextAfter(facility.getId(), today));
+            facilities.set(i, new Facility(facility.getId(), facility.getName(), facility.getType(), facility.getStatus(),
+                    format(last), format(next)));
+        }
+        
+        DBLogger.log("INFO", "FacilityMonitor", "Loaded facilities with filter: " + statusFilter, username);
+        
+        return facilities;
+    }
+    
+    private static LocalDate toLocalDate(Date date) {
+        return date == null ? null : date.toLocalDate();
+    }
+    
+    private static String format(LocalDate date) {
+        return date == null ? "None" : date.toString();
+    }
+    
+    private static LocalDate later(LocalDate a, LocalDate b) {
+        return a == null ? b : b == null || a.isAfter(b) ? a : b;
+    }
+    
+    private static LocalDate earlier(LocalDate a, LocalDate b) {
+        return a == null ? b : b == null || a.isBefore(b) ? a : b;
+    }
+    
+    // Determine status based on date since there's no Status column
+    private static String statusFor(LocalDate scheduled) {
+        if (scheduled == null) {
+            return "Unknown";
+        }
+        return scheduled.isBefore(LocalDate.now()) ? "Completed" : "Scheduled";
     }
     
     private void loadMaintenanceSchedule(TableView<Maintenance> table, LocalDate startDate, LocalDate endDate) {
+        db.submit("loadMaintenanceSchedule", con -> fetchMaintenanceSchedule(con, startDate, endDate), table::setItems, ex -> {
+            DBLogger.log("ERROR", "FacilityMonitor", "Error loading maintenance: " + ex.getMessage(), username);
+            showAlert("Database Error", "Error loading maintenance schedule: " + ex.getMessage());
+            ex.printStackTrace();
+        });
+    }
+    
+    // Runs on a DB worker thread
+    private ObservableList<Maintenance> fetchMaintenanceSchedule(Connection con, LocalDate startDate, LocalDate endDate) throws SQLException {
         ObservableList<Maintenance> maintenanceList = FXCollections.observableArrayList();
         
-        try {
-            StringBuilder queryBuilder = new StringBuilder(
-                "SELECT m.RecordID as MaintenanceID, m.FacilityID, f.FacilityName, " +
-                "m.Description, m.MaintenanceDate as ScheduledDate, f.LibrarianID " +
-                "FROM maintenancerecords m " +
-                "JOIN libraryfacilities f ON m.FacilityID = f.FacilityID"
-            );
-            
-            // Add date filters if provided
-            if (startDate != null && endDate != null) {
-                queryBuilder.append(" WHERE m.MaintenanceDate BETWEEN ? AND ?");
-            }
-            
-            queryBuilder.append(" ORDER BY m.MaintenanceDate");
-            
-            PreparedStatement stmt = con.prepareStatement(queryBuilder.toString());
-            
+        StringBuilder queryBuilder = new StringBuilder(
+            "SELECT m.RecordID as MaintenanceID, m.FacilityID, f.FacilityName, " +
+            "m.Description, m.MaintenanceDate as ScheduledDate, f.LibrarianID " +
+            "FROM maintenancerecords m " +
+            "JOIN libraryfacilities f ON m.FacilityID = f.FacilityID"
+        );
+        
+        // Add date filters if provided
+        if (startDate != null && endDate != null) {
+            queryBuilder.append(" WHERE m.MaintenanceDate BETWEEN ? AND ?");
+        }
+        
+        queryBuilder.append(" ORDER BY m.MaintenanceDate");
+        
+        try (PreparedStatement stmt = con.prepareStatement(queryBuilder.toString())) {
+        
             // Set date parameters if needed
             if (startDate != null && endDate != null) {
                 stmt.setString(1, startDate.toString());
@@ -271,32 +357,49 @@ public class FacilityMonitor {
                 String scheduledDate = rs.getString("ScheduledDate");
                 int librarianId = rs.getInt("LibrarianID");
                 
-                // Determine status based on date since there's no Status column
-                String status;
-                if (scheduledDate != null) {
-                    LocalDate scheduled = LocalDate.parse(scheduledDate);
-                    if (scheduled.isBefore(LocalDate.now())) {
-                        status = "Completed";
-                    } else {
-                        status = "Scheduled";
-                    }
-                } else {
-                    status = "Unknown";
-                }
+                String status = statusFor(scheduledDate == null ? null : LocalDate.parse(scheduledDate));
                 
                 maintenanceList.add(new Maintenance(id, facilityId, facilityName, 
                                                   description, scheduledDate, status, librarianId));
             }
-            
-            DBLogger.log("INFO", "FacilityMonitor", "Loaded maintenance schedule", username);
-            
-        } catch (SQLException e) {
-            DBLogger.log("ERROR", "FacilityMonitor", "Error loading maintenance: " + e.getMessage(), username);
-            showAlert("Database Error", "Error loading maintenance schedule: " + e.getMessage());
-            e.printStackTrace();
         }
         
-        table.setItems(maintenanceList);
+        // Recurring maintenance is expanded for the requested window only, never stored
+        LocalDate from = startDate != null && endDate != null ? startDate : LocalDate.now();
+        LocalDate to = startDate != null && endDate != null ? endDate : from.plusDays(SHOW_ALL_RECURRING_DAYS);
+        List<MaintenanceCalendar.Occurrence> occurrences = DBUtils.getMaintenanceCalendar().occurrences(from, to);
+        if (!occurrences.isEmpty()) {
+            Map<Integer, Maintenance> facilities = fetchFacilityNames(con);
+            for (MaintenanceCalendar.Occurrence occurrence : occurrences) {
+                MaintenanceCalendar.Rule rule = occurrence.getRule();
+                Maintenance facility = facilities.get(rule.getFacilityId());
+                if (facility == null) {
+                    continue;
+                }
+                maintenanceList.add(new Maintenance(0, rule.getFacilityId(), facility.getFacilityName(),
+                        rule.getDescription() + " (rule #" + rule.getRuleId() + ", every " + rule.getIntervalDays() + " days)",
+                        occurrence.getDate().toString(), statusFor(occurrence.getDate()), facility.getLibrarianId()));
+            }
+            maintenanceList.sort(Comparator.comparing(Maintenance::getScheduledDate, Comparator.nullsFirst(Comparator.naturalOrder())));
+        }
+        
+        DBLogger.log("INFO", "FacilityMonitor", "Loaded maintenance schedule", username);
+        
+        return maintenanceList;
+    }
+    
+    // Facility name and librarian per facility, for rows expanded from recurring rules
+    private Map<Integer, Maintenance> fetchFacilityNames(Connection con) throws SQLException {
+        Map<Integer, Maintenance> facilities = new HashMap<>();
+        try (PreparedStatement stmt = con.prepareStatement("SELECT FacilityID, FacilityName, LibrarianID FROM libraryfacilities");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int facilityId = rs.getInt("FacilityID");
+                facilities.put(facilityId, new Maintenance(0, facilityId, rs.getString("FacilityName"),
+                        null, null, null, rs.getInt("LibrarianID")));
+            }
+        }
+        return facilities;
     }
     
     private void showAlert(String title, String msg) {
@@ -314,13 +417,15 @@ public class FacilityMonitor {
         private final String type;
         private final String status;
         private final String lastMaintenance;
+        private final String nextMaintenance;
         
-        public Facility(int id, String name, String type, String status, String lastMaintenance) {
+        public Facility(int id, String name, String type, String status, String lastMaintenance, String nextMaintenance) {
             this.id = id;
             this.name = name;
             this.type = type;
             this.status = status;
             this.lastMaintenance = lastMaintenance;
+            this.nextMaintenance = nextMaintenance;
         }
         
         public int getId() { return id; }
@@ -328,6 +433,7 @@ public class FacilityMonitor {
         public String getType() { return type; }
         public String getStatus() { return status; }
         public String getLastMaintenance() { return lastMaintenance; }
+        public String getNextMaintenance() { return nextMaintenance; }
     }
     
     // Maintenance class for TableView
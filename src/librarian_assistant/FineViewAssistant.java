@@ -1,6 +1,10 @@
 package librarian_assistant;
 
+import common.DBExecutor;
 import common.DBLogger;
+import common.DBTask;
+import common.DBUtils;
+import common.TaskProgressBar;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -15,17 +19,26 @@ import javafx.stage.Stage;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Allows librarian assistants to view fines for overdue books
  * Cannot modify or process payments - view only
  */
 public class FineViewAssistant {
-    private Connection con;
+    private DBExecutor db;
     private String username;
+    private final TaskProgressBar finesProgress = new TaskProgressBar();
+    private final Label finesSummary = new Label();
+    // The load finesSummary belongs to; FX thread only
+    private DBTask<Integer> currentLoad;
     
-    public FineViewAssistant(Connection con, String username) {
-        this.con = con;
+    // Rows handed to the FX thread per update while fines stream in
+    private static final int CHUNK_SIZE = 500;
+    
+    public FineViewAssistant(DBExecutor db, String username) {
+        this.db = db;
         this.username = username;
     }
     
@@ -47,7 +60,7 @@ public class FineViewAssistant {
         Button refreshBtn = new Button("Refresh All Fines");
         refreshBtn.setOnAction(e -> refreshAllFines(finesTable));
         
-        VBox finesSection = new VBox(10, new Label("Overdue Books and Fines"), finesTable, refreshBtn);
+        VBox finesSection = new VBox(10, new Label("Overdue Books and Fines"), finesProgress, finesSummary, finesTable, refreshBtn);
         finesSection.setPadding(new Insets(10, 0, 0, 0));
         mainLayout.setCenter(finesSection);
         
@@ -69,7 +82,9 @@ public class FineViewAssistant {
         Label memberIdLabel = new Label("Member ID:");
         Spinner<Integer> memberIdSpinner = new Spinner<>();
         memberIdSpinner.setEditable(true);
-        memberIdSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, getMaxMemberID()));
+        SpinnerValueFactory.IntegerSpinnerValueFactory memberIdFactory = new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 100);
+        memberIdSpinner.setValueFactory(memberIdFactory);
+        db.submit("getMaxMemberID", this::getMaxMemberID, memberIdFactory::setMax, Throwable::printStackTrace);
         
         // Member search button
         Button searchBtn = new Button("View Member Fines");
@@ -97,8 +112,11 @@ public class FineViewAssistant {
                 boolean recalculate = recalculateBox.isSelected();
                 refreshFinesForMember(table, memberId, recalculate);
                 
-                // Update result label
+                // Update result label; the balance comes from the per-member aggregate, not a rescan
                 resultLabel.setText("Showing fines for Member ID: " + memberId);
+                db.call("getFineBalance", () -> DBUtils.getFineBalances().balanceOf(memberId),
+                        balance -> resultLabel.setText(String.format("Showing fines for Member ID: %d (owes $%.2f)", memberId, balance)),
+                        Throwable::printStackTrace);
             }
         });
         
@@ -145,85 +163,100 @@ public class FineViewAssistant {
     
     private void refreshAllFines(TableView<Fine> table) {
         ObservableList<Fine> fines = FXCollections.observableArrayList();
+        table.setItems(fines);
+        DBTask<Integer> task = db.task("loadAllFines", (con, t) -> loadAllFines(con, t, fines));
+        showFines(task, "Error loading fines: ");
+    }
+    
+    private void refreshFinesForMember(TableView<Fine> table, int memberId, boolean recalculate) {
+        ObservableList<Fine> fines = FXCollections.observableArrayList();
+        table.setItems(fines);
+        DBTask<Integer> task = db.task("loadFinesForMember", (con, t) -> loadFinesForMember(con, t, fines, memberId, recalculate));
+        showFines(task, "Error loading fines for member: ");
+    }
+    
+    private void showFines(DBTask<Integer> task, String logPrefix) {
+        currentLoad = task;
+        finesSummary.setText("Loading fines...");
+        finesProgress.watch(task);
+        // A load replaced by a refresh is cancelled too, but the label already belongs to the new one
+        task.setOnCancelled(e -> {
+            if (task == currentLoad) {
+                finesSummary.setText(finesSummary.getText() + " (load cancelled)");
+            }
+        });
+        task.setOnFailed(e -> {
+            Throwable ex = task.getException();
+            DBLogger.log("ERROR", "FineViewAssistant", logPrefix + ex.getMessage(), username);
+            showAlert("Database Error", "Error loading fines: " + ex.getMessage());
+            ex.printStackTrace();
+        });
+    }
+    
+    // Runs on a DB worker thread; rows are appended to fines as they arrive
+    private int loadAllFines(Connection con, DBTask<Integer> task, ObservableList<Fine> fines) throws SQLException {
+        String query = 
+            "SELECT br.BorrowID, br.MemberID, m.Name, br.BookID, b.Title, " +
+            "br.DueDate, br.FineAmount, br.Overdue " +
+            "FROM borrowingrecords br " +
+            "JOIN members m ON br.MemberID = m.MemberID " +
+            "JOIN books b ON br.BookID = b.BookID " +
+            "WHERE br.DueDate < ? AND br.BorrowDate IS NOT NULL";
         
-        try {
-            String query = 
-                "SELECT br.BorrowID, br.MemberID, m.Name, br.BookID, b.Title, " +
-                "br.DueDate, br.FineAmount, br.Overdue " +
-                "FROM borrowingrecords br " +
-                "JOIN members m ON br.MemberID = m.MemberID " +
-                "JOIN books b ON br.BookID = b.BookID " +
-                "WHERE br.DueDate < ? AND br.BorrowDate IS NOT NULL";
-            
-            PreparedStatement stmt = con.prepareStatement(query);
+        int count;
+        try (PreparedStatement stmt = task.track(con.prepareStatement(query))) {
             stmt.setString(1, LocalDate.now().toString());
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                int borrowId = rs.getInt("BorrowID");
-                int memberId = rs.getInt("MemberID");
-                String memberName = rs.getString("Name");
-                int bookId = rs.getInt("BookID");
-                String bookTitle = rs.getString("Title");
-                String dueDateStr = rs.getString("DueDate");
-                LocalDate dueDate = LocalDate.parse(dueDateStr);
-                
-                // Calculate days late
-                long daysLate = ChronoUnit.DAYS.between(dueDate, LocalDate.now());
-                daysLate = Math.max(0, daysLate); // Ensure non-negative
-                
-                // Calculate or get fine amount
-                double fineAmount = rs.getDouble("FineAmount");
-                boolean isOverdue = rs.getBoolean("Overdue");
-                
-                // If not marked as overdue or fine amount is 0, calculate it
-                if (!isOverdue || fineAmount == 0) {
-                    fineAmount = daysLate * 2.00; // Using same rate as FineCalculator
-                }
-                
-                fines.add(new Fine(borrowId, memberId, memberName, bookId, bookTitle, 
-                                  dueDateStr, (int)daysLate, fineAmount));
-            }
-            
-            DBLogger.log("INFO", "FineViewAssistant", "Loaded all overdue fines", username);
-            
-        } catch (SQLException e) {
-            DBLogger.log("ERROR", "FineViewAssistant", "Error loading fines: " + e.getMessage(), username);
-            showAlert("Database Error", "Error loading fines: " + e.getMessage());
-            e.printStackTrace();
+            count = streamFines(stmt, task, fines, false);
         }
         
-        table.setItems(fines);
+        DBLogger.log("INFO", "FineViewAssistant", "Loaded " + count + " overdue fines", username);
+        
+        return count;
     }
     
-    private void refreshFinesForMember(TableView<Fine> table, int memberId, boolean recalculate) {
-        ObservableList<Fine> fines = FXCollections.observableArrayList();
+    // Runs on a DB worker thread; rows are appended to fines as they arrive
+    private int loadFinesForMember(Connection con, DBTask<Integer> task, ObservableList<Fine> fines,
+                                   int memberId, boolean recalculate) throws SQLException {
+        String query = 
+            "SELECT br.BorrowID, br.MemberID, m.Name, br.BookID, b.Title, " +
+            "br.DueDate, br.FineAmount, br.Overdue " +
+            "FROM borrowingrecords br " +
+            "JOIN members m ON br.MemberID = m.MemberID " +
+            "JOIN books b ON br.BookID = b.BookID " +
+            "WHERE br.MemberID = ? AND br.DueDate < ? AND br.BorrowDate IS NOT NULL";
         
-        try {
-            String query = 
-                "SELECT br.BorrowID, br.MemberID, m.Name, br.BookID, b.Title, " +
-                "br.DueDate, br.FineAmount, br.Overdue " +
-                "FROM borrowingrecords br " +
-                "JOIN members m ON br.MemberID = m.MemberID " +
-                "JOIN books b ON br.BookID = b.BookID " +
-                "WHERE br.MemberID = ? AND br.DueDate < ? AND br.BorrowDate IS NOT NULL";
-            
-            PreparedStatement stmt = con.prepareStatement(query);
+        int count;
+        try (PreparedStatement stmt = task.track(con.prepareStatement(query))) {
             stmt.setInt(1, memberId);
             stmt.setString(2, LocalDate.now().toString());
-            ResultSet rs = stmt.executeQuery();
-            
-            while (rs.next()) {
-                int borrowId = rs.getInt("BorrowID");
-                String memberName = rs.getString("Name");
-                int bookId = rs.getInt("BookID");
-                String bookTitle = rs.getString("Title");
+            count = streamFines(stmt, task, fines, recalculate);
+        }
+        
+        DBLogger.log("INFO", "FineViewAssistant", "Loaded fines for MemberID: " + memberId, username);
+        
+        return count;
+    }
+    
+    /**
+     * Reads the fines one row at a time and hands them to the FX thread in chunks, so the first rows
+     * show up straight away and memory stays flat however big the overdue backlog is.
+     * Stops at the next row once the task is cancelled. Returns the number of rows read.
+     */
+    private int streamFines(PreparedStatement stmt, DBTask<Integer> task, ObservableList<Fine> fines,
+                            boolean recalculate) throws SQLException {
+        LocalDate today = LocalDate.now();
+        List<Fine> chunk = new ArrayList<>(CHUNK_SIZE);
+        int count = 0;
+        double total = 0;
+        
+        // Streams rows instead of buffering the whole result set in the driver
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next() && !task.isCancelled()) {
                 String dueDateStr = rs.getString("DueDate");
-                LocalDate dueDate = LocalDate.parse(dueDateStr);
                 
                 // Calculate days late
-                long daysLate = ChronoUnit.DAYS.between(dueDate, LocalDate.now());
-                daysLate = Math.max(0, daysLate); // Ensure non-negative
+                long daysLate = Math.max(0, ChronoUnit.DAYS.between(LocalDate.parse(dueDateStr), today));
                 
                 // Calculate or get fine amount
                 double fineAmount = rs.getDouble("FineAmount");
@@ -234,29 +267,39 @@ public class FineViewAssistant {
                     fineAmount = daysLate * 2.00; // Using same rate as FineCalculator
                 }
                 
-                fines.add(new Fine(borrowId, memberId, memberName, bookId, bookTitle, 
-                                  dueDateStr, (int)daysLate, fineAmount));
+                chunk.add(new Fine(rs.getInt("BorrowID"), rs.getInt("MemberID"), rs.getString("Name"),
+                                   rs.getInt("BookID"), rs.getString("Title"), dueDateStr, (int) daysLate, fineAmount));
+                count++;
+                total += fineAmount;
+                
+                if (chunk.size() == CHUNK_SIZE) {
+                    publish(task, fines, chunk, count, total);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
             }
-            
-            DBLogger.log("INFO", "FineViewAssistant", "Loaded fines for MemberID: " + memberId, username);
-            
-        } catch (SQLException e) {
-            DBLogger.log("ERROR", "FineViewAssistant", "Error loading fines for member: " + e.getMessage(), username);
-            showAlert("Database Error", "Error loading fines: " + e.getMessage());
-            e.printStackTrace();
         }
-        
-        table.setItems(fines);
+        publish(task, fines, chunk, count, total);
+        task.rows(count);
+        return count;
+    }
+    
+    private void publish(DBTask<Integer> task, ObservableList<Fine> fines, List<Fine> chunk, int count, double total) {
+        String summary = String.format("%,d fines, total $%,.2f", count, total);
+        task.message("Loaded " + summary);
+        DBExecutor.runOnFx(() -> {
+            // A cancelled or superseded load must not touch the table or summary any more
+            if (!task.isCancelled()) {
+                fines.addAll(chunk);
+                finesSummary.setText(summary);
+            }
+        });
     }
     
-    private int getMaxMemberID() {
-        try {
-            String query = "SELECT MAX(MemberID) as MaxID FROM members";
-            PreparedStatement stmt = con.prepareStatement(query);
-            ResultSet rs = stmt.executeQuery();
+    private int getMaxMemberID(Connection con) throws SQLException {
+        String query = "SELECT MAX(MemberID) as MaxID FROM members";
+        try (PreparedStatement stmt = con.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
             if (rs.next()) return rs.getInt("MaxID");
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return 100; // Default fallback
     }
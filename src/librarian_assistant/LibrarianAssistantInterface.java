@@ -1,5 +1,6 @@
 package librarian_assistant;
 
+import common.DBExecutor;
 import common.DBLogger;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -8,8 +9,6 @@ import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
 
-import java.sql.Connection;
-
 /**
  * Main interface for the Librarian Assistant system
  * Provides limited features compared to full librarian access
@@ -18,12 +17,12 @@ import java.sql.Connection;
 public class LibrarianAssistantInterface {
     private Stage stage;
     private String assistantUsername;
-    private Connection connection;
+    private DBExecutor db;
 
-    public LibrarianAssistantInterface(Stage stage, String assistantUsername, Connection connection) {
+    public LibrarianAssistantInterface(Stage stage, String assistantUsername, DBExecutor db) {
         this.stage = stage;
         this.assistantUsername = assistantUsername;
-        this.connection = connection;
+        this.db = db;
     }
 
     public void initializeComponents() {
@@ -40,7 +39,7 @@ public class LibrarianAssistantInterface {
         // Set button actions
         renewMembershipBtn.setOnAction(e -> {
             try {
-                MembershipRenewalAssistant renewal = new MembershipRenewalAssistant(connection, assistantUsername);
+                MembershipRenewalAssistant renewal = new MembershipRenewalAssistant(db, assistantUsername);
                 renewal.display();
                 DBLogger.log("INFO", "LibrarianAssistantInterface", "Accessed Membership Renewal", assistantUsername);
             } catch (Exception ex) {
@@ -51,7 +50,7 @@ public class LibrarianAssistantInterface {
 
         assignBookBtn.setOnAction(e -> {
             try {
-                BookBorrowingAssistant borrowing = new BookBorrowingAssistant(connection, assistantUsername);
+                BookBorrowingAssistant borrowing = new BookBorrowingAssistant(db, assistantUsername);
                 borrowing.display();
                 DBLogger.log("INFO", "LibrarianAssistantInterface", "Accessed Book Borrowing", assistantUsername);
             } catch (Exception ex) {
@@ -62,7 +61,7 @@ public class LibrarianAssistantInterface {
 
         viewFinesBtn.setOnAction(e -> {
             try {
-                FineViewAssistant fineView = new FineViewAssistant(connection, assistantUsername);
+                FineViewAssistant fineView = new FineViewAssistant(db, assistantUsername);
                 fineView.display();
                 DBLogger.log("INFO", "LibrarianAssistantInterface", "Accessed Fine Viewer", assistantUsername);
             } catch (Exception ex) {
@@ -73,7 +72,7 @@ public class LibrarianAssistantInterface {
 
         viewMemberInfoBtn.setOnAction(e -> {
             try {
-                MemberInfoViewer memberInfo = new MemberInfoViewer(connection, assistantUsername);
+                MemberInfoViewer memberInfo = new MemberInfoViewer(db, assistantUsername);
                 memberInfo.display();
                 DBLogger.log("INFO", "LibrarianAssistantInterface", "Accessed Member Info Viewer", assistantUsername);
             } catch (Exception ex) {
@@ -84,7 +83,7 @@ public class LibrarianAssistantInterface {
 
         facilityMonitorBtn.setOnAction(e -> {
             try {
-                FacilityMonitor facilityMonitor = new FacilityMonitor(connection, assistantUsername);
+                FacilityMonitor facilityMonitor = new FacilityMonitor(db, assistantUsername);
                 facilityMonitor.display();
                 DBLogger.log("INFO", "LibrarianAssistantInterface", "Accessed Facility Monitor", assistantUsername);
             } catch (Exception ex) {
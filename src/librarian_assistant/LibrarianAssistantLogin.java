@@ -1,5 +1,6 @@
 package librarian_assistant;
 
+import common.DBExecutor;
 import common.DBLogger;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -20,11 +21,11 @@ import java.sql.ResultSet;
  */
 public class LibrarianAssistantLogin {
     private Stage stage;
-    private Connection connection;
+    private DBExecutor db;
     
-    public LibrarianAssistantLogin(Stage stage, Connection connection) {
+    public LibrarianAssistantLogin(Stage stage, DBExecutor db) {
         this.stage = stage;
-        this.connection = connection;
+        this.db = db;
     }
     
     public void display() {
@@ -73,27 +74,30 @@ public class LibrarianAssistantLogin {
                 return;
             }
             
-            try {
-                boolean authenticated = authenticateAssistant(username, password);
-                
-                if (authenticated) {
-                    DBLogger.log("INFO", "LibrarianAssistantLogin", "Login successful for: " + username, username);
-                    
-                    // Close login window
-                    Stage assistantStage = new Stage();
-                    LibrarianAssistantInterface dashboard = new LibrarianAssistantInterface(assistantStage, username, connection);
-                    dashboard.initializeComponents();
-                    
-                    stage.close();
-                } else {
-                    messageText.setText("Invalid username or password");
-                    DBLogger.log("WARN", "LibrarianAssistantLogin", "Failed login attempt for: " + username, "system");
-                }
-            } catch (Exception ex) {
-                messageText.setText("Login error: " + ex.getMessage());
-                DBLogger.log("ERROR", "LibrarianAssistantLogin", "Login error: " + ex.getMessage(), "system");
-                ex.printStackTrace();
-            }
+            loginBtn.setDisable(true);
+            db.submit("authenticateAssistant", con -> authenticateAssistant(con, username, password),
+                    authenticated -> {
+                        loginBtn.setDisable(false);
+                        if (authenticated) {
+                            DBLogger.log("INFO", "LibrarianAssistantLogin", "Login successful for: " + username, username);
+                            
+                            // Close login window
+                            Stage assistantStage = new Stage();
+                            LibrarianAssistantInterface dashboard = new LibrarianAssistantInterface(assistantStage, username, db);
+                            dashboard.initializeComponents();
+                            
+                            stage.close();
+                        } else {
+                            messageText.setText("Invalid username or password");
+                            DBLogger.log("WARN", "LibrarianAssistantLogin", "Failed login attempt for: " + username, "system");
+                        }
+                    },
+                    ex -> {
+                        loginBtn.setDisable(false);
+                        messageText.setText("Login error: " + ex.getMessage());
+                        DBLogger.log("ERROR", "LibrarianAssistantLogin", "Login error: " + ex.getMessage(), "system");
+                        ex.printStackTrace();
+                    });
         });
         
         cancelBtn.setOnAction(e -> stage.close());
@@ -103,16 +107,17 @@ public class LibrarianAssistantLogin {
         stage.show();
     }
     
-    private boolean authenticateAssistant(String username, String password) {
-        try {
-            String query = "SELECT * FROM users WHERE Username = ? AND Password = ? AND RoleID = ?";
-            PreparedStatement statement = connection.prepareStatement(query);
+    // Runs on a DB worker thread
+    private boolean authenticateAssistant(Connection connection, String username, String password) {
+        String query = "SELECT * FROM users WHERE Username = ? AND Password = ? AND RoleID = ?";
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setString(1, username);
             statement.setString(2, password); // In a real system, you'd use proper password hashing
             statement.setInt(3, 4); // Assuming RoleID 4 is for Librarian Assistants
             
-            ResultSet resultSet = statement.executeQuery();
-            return resultSet.next(); // If there's a record, authentication passed
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next(); // If there's a record, authentication passed
+            }
             
         } catch (Exception e) {
             e.printStackTrace();
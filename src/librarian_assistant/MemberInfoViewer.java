@@ -1,9 +1,14 @@
 package librarian_assistant;
 
+import common.DBExecutor;
 import common.DBLogger;
+import common.DBUtils;
+import common.MemberNameIndex;
+import common.MemberProfileCache;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
+import javafx.geometry.Side;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
@@ -14,17 +19,20 @@ import javafx.stage.Stage;
 
 import java.sql.*;
 import java.time.LocalDate;
+import java.util.List;
 
 /**
  * Allows librarian assistants to view member information
  * Read-only access to member data and borrowing history
  */
 public class MemberInfoViewer {
-    private Connection con;
+    private static final int SUGGESTION_COUNT = 8;
+
+    private DBExecutor db;
     private String username;
     
-    public MemberInfoViewer(Connection con, String username) {
-        this.con = con;
+    public MemberInfoViewer(DBExecutor db, String username) {
+        this.db = db;
         this.username = username;
     }
     
@@ -82,11 +90,32 @@ public class MemberInfoViewer {
         panel.setPadding(new Insets(0, 0, 10, 0));
         
         Label memberIdLabel = new Label("Member ID:");
-        Spinner<Integer> memberIdSpinner = new Spinner<>(1, getMaxMemberID(), 1);
+        SpinnerValueFactory.IntegerSpinnerValueFactory memberIdFactory = new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 100, 1);
+        Spinner<Integer> memberIdSpinner = new Spinner<>(memberIdFactory);
+        db.submit("getMaxMemberID", this::getMaxMemberID, memberIdFactory::setMax, Throwable::printStackTrace);
         memberIdSpinner.setEditable(true);
         
         Label memberNameLabel = new Label("or Member Name:");
         TextField memberNameField = new TextField();
+        ContextMenu suggestions = new ContextMenu();
+        
+        // As-you-type suggestions from the in-memory name index
+        memberNameField.textProperty().addListener((obs, oldText, newText) -> {
+            String query = newText.trim();
+            if (query.isEmpty()) {
+                suggestions.hide();
+                return;
+            }
+            db.call("suggestMemberNames", () -> DBUtils.getMemberNameIndex().search(query, SUGGESTION_COUNT),
+                    matches -> {
+                        // Ignore answers to text the user has already typed past
+                        if (!query.equals(memberNameField.getText().trim())) {
+                            return;
+                        }
+                        showSuggestions(matches, suggestions, memberNameField);
+                    },
+                    Throwable::printStackTrace);
+        });
         
         Button searchBtn = new Button("Search");
         searchBtn.setOnAction(e -> {
@@ -158,88 +187,125 @@ public class MemberInfoViewer {
     }
     
     private void loadMemberInfo(int memberId, TextArea detailsArea, TableView<BorrowingRecord> borrowingTable) {
-        try {
-            String query = "SELECT * FROM members WHERE MemberID = ?";
-            PreparedStatement stmt = con.prepareStatement(query);
-            stmt.setInt(1, memberId);
-            ResultSet rs = stmt.executeQuery();
-            
-            if (rs.next()) {
-                StringBuilder details = new StringBuilder();
-                details.append("Member ID: ").append(rs.getInt("MemberID")).append("\n");
-                details.append("Name: ").append(rs.getString("Name")).append("\n");
-                details.append("Contact: ").append(rs.getString("ContactInfo")).append("\n");
-                details.append("Membership Type: ").append(rs.getString("MembershipType")).append("\n");
-                
-                String registrationDate = rs.getString("RegistrationDate");
-                details.append("Registration Date: ").append(registrationDate).append("\n");
-                
-                String expiryDate = rs.getString("MembershipExpiry");
-                details.append("Membership Expiry: ").append(expiryDate).append("\n");
-                
-                // Check if membership is active
-                LocalDate expiry = LocalDate.parse(expiryDate);
-                if (expiry.isBefore(LocalDate.now())) {
-                    details.append("Membership Status: EXPIRED\n");
-                } else {
-                    details.append("Membership Status: ACTIVE\n");
+        db.submit("fetchMemberInfo", con -> fetchMemberInfo(con, memberId),
+                lookup -> showLookup(lookup, detailsArea, borrowingTable),
+                ex -> {
+                    detailsArea.setText("Error loading member information: " + ex.getMessage());
+                    DBLogger.log("ERROR", "MemberInfoViewer", "Error loading member data: " + ex.getMessage(), username);
+                    ex.printStackTrace();
+                });
+    }
+    
+    private void searchMemberByName(String name, TextArea detailsArea, TableView<BorrowingRecord> borrowingTable) {
+        db.submit("searchMemberByName", con -> {
+                    MemberNameIndex index = DBUtils.getMemberNameIndex();
+                    List<MemberNameIndex.Match> matches = index.prefixMatches(name, SUGGESTION_COUNT + 1);
+                    if (matches.size() == 1) {
+                        return fetchMemberInfo(con, matches.get(0).getMemberId());
+                    }
+                    if (matches.size() > 1) {
+                        return new MemberLookup("Several members match \"" + name + "\"; search by one of these Member IDs:\n"
+                                + listMatches(matches), FXCollections.observableArrayList());
+                    }
+                    // Close spellings are only offered, never opened, so a typo can't show someone else's record
+                    DBLogger.log("WARN", "MemberInfoViewer", "No member found with name: " + name, username);
+                    List<MemberNameIndex.Match> similar = index.search(name, SUGGESTION_COUNT);
+                    return new MemberLookup("No member found with name matching: " + name
+                            + (similar.isEmpty() ? "" : "\nDid you mean:\n" + listMatches(similar)),
+                            FXCollections.observableArrayList());
+                },
+                lookup -> showLookup(lookup, detailsArea, borrowingTable),
+                ex -> {
+                    detailsArea.setText("Error searching for member: " + ex.getMessage());
+                    DBLogger.log("ERROR", "MemberInfoViewer", "Error searching member: " + ex.getMessage(), username);
+                    ex.printStackTrace();
+                });
+    }
+    
+    private void showSuggestions(List<MemberNameIndex.Match> matches, ContextMenu suggestions, TextField memberNameField) {
+        suggestions.getItems().clear();
+        for (MemberNameIndex.Match match : matches) {
+            MenuItem item = new MenuItem(match.toString());
+            item.setOnAction(e -> {
+                Scene scene = memberNameField.getScene();
+                TextArea detailsArea = (TextArea) scene.lookup("#memberDetailsArea");
+                TableView<BorrowingRecord> table = (TableView<BorrowingRecord>) scene.lookup("#borrowingTable");
+                if (detailsArea != null && table != null) {
+                    loadMemberInfo(match.getMemberId(), detailsArea, table);
                 }
-                
-                detailsArea.setText(details.toString());
-                
-                // Load borrowing history
-                loadBorrowingHistory(memberId, borrowingTable);
-                
-                DBLogger.log("INFO", "MemberInfoViewer", "Loaded info for MemberID: " + memberId, username);
-            } else {
-                detailsArea.setText("No member found with ID: " + memberId);
-                borrowingTable.setItems(FXCollections.observableArrayList());
-                DBLogger.log("WARN", "MemberInfoViewer", "No member found with ID: " + memberId, username);
-            }
-            
-        } catch (SQLException e) {
-            detailsArea.setText("Error loading member information: " + e.getMessage());
-            DBLogger.log("ERROR", "MemberInfoViewer", "Error loading member data: " + e.getMessage(), username);
-            e.printStackTrace();
+            });
+            suggestions.getItems().add(item);
+        }
+        if (matches.isEmpty()) {
+            suggestions.hide();
+        } else if (!suggestions.isShowing()) {
+            suggestions.show(memberNameField, Side.BOTTOM, 0, 0);
         }
     }
     
-    private void searchMemberByName(String name, TextArea detailsArea, TableView<BorrowingRecord> borrowingTable) {
-        try {
-            String query = "SELECT * FROM members WHERE Name LIKE ?";
-            PreparedStatement stmt = con.prepareStatement(query);
-            stmt.setString(1, "%" + name + "%");
-            ResultSet rs = stmt.executeQuery();
+    private void showLookup(MemberLookup lookup, TextArea detailsArea, TableView<BorrowingRecord> borrowingTable) {
+        detailsArea.setText(lookup.details);
+        borrowingTable.setItems(lookup.history);
+    }
+    
+    // Runs on a DB worker thread
+    private MemberLookup fetchMemberInfo(Connection con, int memberId) throws SQLException {
+        MemberProfileCache.MemberProfile profile = DBUtils.getMemberProfileCache().get(con, memberId);
+        if (profile != null) {
+            StringBuilder details = new StringBuilder();
+            details.append("Member ID: ").append(profile.getMemberId()).append("\n");
+            details.append("Name: ").append(profile.getName()).append("\n");
+            details.append("Contact: ").append(profile.getContactInfo()).append("\n");
+            details.append("Membership Type: ").append(profile.getMembershipType()).append("\n");
+            
+            String registrationDate = profile.getRegistrationDate();
+            details.append("Registration Date: ").append(registrationDate).append("\n");
             
-            if (rs.next()) {
-                int memberId = rs.getInt("MemberID");
-                loadMemberInfo(memberId, detailsArea, borrowingTable);
+            String expiryDate = profile.getMembershipExpiry();
+            details.append("Membership Expiry: ").append(expiryDate).append("\n");
+            
+            // Check if membership is active
+            LocalDate expiry = LocalDate.parse(expiryDate);
+            if (expiry.isBefore(LocalDate.now())) {
+                details.append("Membership Status: EXPIRED\n");
             } else {
-                detailsArea.setText("No member found with name containing: " + name);
-                borrowingTable.setItems(FXCollections.observableArrayList());
-                DBLogger.log("WARN", "MemberInfoViewer", "No member found with name: " + name, username);
+                details.append("Membership Status: ACTIVE\n");
             }
             
-        } catch (SQLException e) {
-            detailsArea.setText("Error searching for member: " + e.getMessage());
-            DBLogger.log("ERROR", "MemberInfoViewer", "Error searching member: " + e.getMessage(), username);
-            e.printStackTrace();
+            // Load borrowing history on the same connection
+            ObservableList<BorrowingRecord> history = loadBorrowingHistory(con, memberId);
+            
+            DBLogger.log("INFO", "MemberInfoViewer", "Loaded info for MemberID: " + memberId, username);
+            return new MemberLookup(details.toString(), history);
+        }
+    
+        DBLogger.log("WARN", "MemberInfoViewer", "No member found with ID: " + memberId, username);
+        return new MemberLookup("No member found with ID: " + memberId, FXCollections.observableArrayList());
+    }
+    
+    private static String listMatches(List<MemberNameIndex.Match> matches) {
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; i < Math.min(matches.size(), SUGGESTION_COUNT); i++) {
+            list.append("  ").append(matches.get(i)).append("\n");
         }
+        if (matches.size() > SUGGESTION_COUNT) {
+            list.append("  ...\n");
+        }
+        return list.toString();
     }
     
-    private void loadBorrowingHistory(int memberId, TableView<BorrowingRecord> table) {
+    private ObservableList<BorrowingRecord> loadBorrowingHistory(Connection con, int memberId) throws SQLException {
         ObservableList<BorrowingRecord> records = FXCollections.observableArrayList();
         
-        try {
-            String query = 
-                "SELECT br.BorrowID, br.BookID, b.Title, b.Author, " +
-                "br.BorrowDate, br.DueDate, br.Overdue " +
-                "FROM borrowingrecords br " +
-                "JOIN books b ON br.BookID = b.BookID " +
-                "WHERE br.MemberID = ? " +
-                "ORDER BY br.BorrowDate DESC";
-            
-            PreparedStatement stmt = con.prepareStatement(query);
+        String query = 
+            "SELECT br.BorrowID, br.BookID, b.Title, b.Author, " +
+            "br.BorrowDate, br.DueDate, br.Overdue " +
+            "FROM borrowingrecords br " +
+            "JOIN books b ON br.BookID = b.BookID " +
+            "WHERE br.MemberID = ? " +
+            "ORDER BY br.BorrowDate DESC";
+        
+        try (PreparedStatement stmt = con.prepareStatement(query)) {
             stmt.setInt(1, memberId);
             ResultSet rs = stmt.executeQuery();
             
@@ -264,24 +330,16 @@ public class MemberInfoViewer {
                 records.add(new BorrowingRecord(borrowId, bookId, title, author, 
                                               borrowDate, dueDate, status));
             }
-            
-        } catch (SQLException e) {
-            showAlert("Database Error", "Error loading borrowing history: " + e.getMessage());
-            DBLogger.log("ERROR", "MemberInfoViewer", "Error loading borrowing history: " + e.getMessage(), username);
-            e.printStackTrace();
         }
         
-        table.setItems(records);
+        return records;
     }
     
-    private int getMaxMemberID() {
-        try {
-            String query = "SELECT MAX(MemberID) as MaxID FROM members";
-            PreparedStatement stmt = con.prepareStatement(query);
-            ResultSet rs = stmt.executeQuery();
+    private int getMaxMemberID(Connection con) throws SQLException {
+        String query = "SELECT MAX(MemberID) as MaxID FROM members";
+        try (PreparedStatement stmt = con.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
             if (rs.next()) return rs.getInt("MaxID");
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return 100; // Default fallback
     }
@@ -294,6 +352,17 @@ public class MemberInfoViewer {
         alert.showAndWait();
     }
     
+    // Details text and borrowing history for one member, built on the worker thread
+    private static class MemberLookup {
+        private final String details;
+        private final ObservableList<BorrowingRecord> history;
+        
+        private MemberLookup(String details, ObservableList<BorrowingRecord> history) {
+            this.details = details;
+            this.history = history;
+        }
+    }
+    
     // BorrowingRecord class for TableView
     public static class BorrowingRecord {
         private final int borrowId;
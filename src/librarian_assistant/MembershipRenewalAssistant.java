@@ -1,6 +1,9 @@
 package librarian_assistant;
 
+import common.DBExecutor;
 import common.DBLogger;
+import common.DBUtils;
+import common.MemberProfileCache;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -16,11 +19,11 @@ import java.time.format.DateTimeFormatter;
  * Cannot modify other member data or create new members
  */
 public class MembershipRenewalAssistant {
-    private Connection con;
+    private DBExecutor db;
     private String username;
 
-    public MembershipRenewalAssistant(Connection con, String username) {
-        this.con = con;
+    public MembershipRenewalAssistant(DBExecutor db, String username) {
+        this.db = db;
         this.username = username;
     }
 
@@ -37,7 +40,9 @@ public class MembershipRenewalAssistant {
         Label memberIdLabel = new Label("Member ID:");
         Spinner<Integer> memberIdSpinner = new Spinner<>();
         memberIdSpinner.setEditable(true);
-        memberIdSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, getMaxMemberID()));
+        SpinnerValueFactory.IntegerSpinnerValueFactory memberIdFactory = new SpinnerValueFactory.IntegerSpinnerValueFactory(1, 100);
+        memberIdSpinner.setValueFactory(memberIdFactory);
+        db.submit("getMaxMemberID", this::getMaxMemberID, memberIdFactory::setMax, Throwable::printStackTrace);
 
         // Display current member info
         Label currentInfoLabel = new Label("Current Info:");
@@ -49,8 +54,7 @@ public class MembershipRenewalAssistant {
         Button loadButton = new Button("Load Member Info");
         loadButton.setOnAction(e -> {
             int memberId = memberIdSpinner.getValue();
-            String memberInfo = getMemberInfo(memberId);
-            currentInfoArea.setText(memberInfo);
+            db.submit("getMemberInfo", con -> getMemberInfo(con, memberId), currentInfoArea::setText, Throwable::printStackTrace);
         });
 
         // Membership type
@@ -82,11 +86,25 @@ public class MembershipRenewalAssistant {
                     return;
                 }
                 
-                renewMembership(memberId, type, duration);
-                
-                // Clear selections
-                typeComboBox.getSelectionModel().clearSelection();
-                currentInfoArea.clear();
+                renewButton.setDisable(true);
+                db.submit("renewMembership", con -> renewMembership(con, memberId, type, duration),
+                        expiryStr -> {
+                            renewButton.setDisable(false);
+                            if (expiryStr != null) {
+                                showInfo("Success", "Membership renewed successfully.\nNew expiry date: " + expiryStr);
+                            } else {
+                                showAlert("Error", "Member not found or update failed");
+                            }
+                            
+                            // Clear selections
+                            typeComboBox.getSelectionModel().clearSelection();
+                            currentInfoArea.clear();
+                        },
+                        ex -> {
+                            renewButton.setDisable(false);
+                            showAlert("Error", "Failed to renew membership: " + ex.getMessage());
+                            ex.printStackTrace();
+                        });
                 
             } catch (Exception ex) {
                 showAlert("Error", "Failed to renew membership: " + ex.getMessage());
@@ -116,20 +134,18 @@ public class MembershipRenewalAssistant {
         stage.show();
     }
 
-    private String getMemberInfo(int memberId) {
+    // Runs on a DB worker thread
+    private String getMemberInfo(Connection con, int memberId) {
         StringBuilder info = new StringBuilder();
         
         try {
-            String query = "SELECT Name, ContactInfo, MembershipType, MembershipExpiry FROM members WHERE MemberID = ?";
-            PreparedStatement stmt = con.prepareStatement(query);
-            stmt.setInt(1, memberId);
-            ResultSet rs = stmt.executeQuery();
+            MemberProfileCache.MemberProfile profile = DBUtils.getMemberProfileCache().get(con, memberId);
             
-            if (rs.next()) {
-                info.append("Name: ").append(rs.getString("Name")).append("\n");
-                info.append("Contact: ").append(rs.getString("ContactInfo")).append("\n");
-                info.append("Current Type: ").append(rs.getString("MembershipType")).append("\n");
-                info.append("Expires: ").append(rs.getString("MembershipExpiry"));
+            if (profile != null) {
+                info.append("Name: ").append(profile.getName()).append("\n");
+                info.append("Contact: ").append(profile.getContactInfo()).append("\n");
+                info.append("Current Type: ").append(profile.getMembershipType()).append("\n");
+                info.append("Expires: ").append(profile.getMembershipExpiry());
                 
                 DBLogger.log("INFO", "MembershipRenewalAssistant", "Retrieved info for MemberID: " + memberId, username);
             } else {
@@ -146,7 +162,8 @@ public class MembershipRenewalAssistant {
         return info.toString();
     }
 
-    private void renewMembership(int memberId, String type, String duration) throws SQLException {
+    // Runs on a DB worker thread; returns the new expiry date, or null if no member was updated
+    private String renewMembership(Connection con, int memberId, String type, String duration) throws SQLException {
         try {
             // Calculate new expiry date based on selected duration
             LocalDate newExpiry;
@@ -167,19 +184,20 @@ public class MembershipRenewalAssistant {
             
             // Update the membership
             String updateQuery = "UPDATE members SET MembershipType = ?, MembershipExpiry = ? WHERE MemberID = ?";
-            PreparedStatement stmt = con.prepareStatement(updateQuery);
-            stmt.setString(1, type);
-            stmt.setString(2, expiryStr);
-            stmt.setInt(3, memberId);
-            
-            int result = stmt.executeUpdate();
+            int result;
+            try (PreparedStatement stmt = con.prepareStatement(updateQuery)) {
+                stmt.setString(1, type);
+                stmt.setString(2, expiryStr);
+                stmt.setInt(3, memberId);
+                result = stmt.executeUpdate();
+            }
             
             if (result > 0) {
+                DBUtils.getMemberProfileCache().invalidate(memberId);
                 DBLogger.log("INFO", "MembershipRenewalAssistant", "Membership renewed for MemberID: " + memberId, username);
-                showInfo("Success", "Membership renewed successfully.\nNew expiry date: " + expiryStr);
-            } else {
-                showAlert("Error", "Member not found or update failed");
+                return expiryStr;
             }
+            return null;
             
         } catch (SQLException e) {
             DBLogger.log("ERROR", "MembershipRenewalAssistant", "Failed to renew membership: " + e.getMessage(), username);
@@ -187,14 +205,11 @@ public class MembershipRenewalAssistant {
         }
     }
 
-    private int getMaxMemberID() {
-        try {
-            String query = "SELECT MAX(MemberID) as MaxID FROM members";
-            PreparedStatement stmt = con.prepareStatement(query);
-            ResultSet rs = stmt.executeQuery();
+    private int getMaxMemberID(Connection con) throws SQLException {
+        String query = "SELECT MAX(MemberID) as MaxID FROM members";
+        try (PreparedStatement stmt = con.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
             if (rs.next()) return rs.getInt("MaxID");
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return 100; // Default fallback
     }